@@ -1,6 +1,8 @@
 package com.ociweb.apis.inventory.controllers;
 
 import com.ociweb.apis.model.*;
+import com.ociweb.greenspring.annotation.GreenAllocationFree;
+import com.ociweb.greenspring.annotation.GreenIntern;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -13,17 +15,18 @@ import java.util.List;
 public class LocationInventoryUpdateController extends BaseController {
 	@RequestMapping(value = "/{orgCode}/{feedType}", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<Response> createInventory(@RequestBody List<InventoryStoreMulti> inventorydata,
-			@PathVariable String orgCode, @PathVariable int feedType) {
+			@PathVariable @GreenIntern String orgCode, @PathVariable int feedType) {
 		return new ResponseEntity<Response>(HttpStatus.OK);
 	}
 
 	@RequestMapping(value = "/" + Constants.OVERRIDE_DEMAND + "/{orgCode}/", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<Response> createOverrideDemand(@RequestBody List<OverrideDemand> overrideDemandList,
-			@PathVariable String orgCode) {
+			@PathVariable @GreenIntern String orgCode) {
 		return new ResponseEntity<Response>(HttpStatus.OK);
 	}
 
 	@GetMapping(value = "hello")
+	@GreenAllocationFree
 	public ResponseEntity<Response> sayHello() {
 		return new ResponseEntity<Response>(HttpStatus.OK);
 	}
@@ -3,4 +3,67 @@ package com.ociweb.apis.model;
 import java.io.Serializable;
 
 public class OverrideDemand implements Serializable {
+    private int storeId;
+    private String sku;
+    private int demandQuantity;
+    private String startDate;
+    private String endDate;
+    private String reasonCode;
+    private int priority;
+
+    public int getStoreId() {
+        return storeId;
+    }
+
+    public void setStoreId(int storeId) {
+        this.storeId = storeId;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public void setSku(String sku) {
+        this.sku = sku;
+    }
+
+    public int getDemandQuantity() {
+        return demandQuantity;
+    }
+
+    public void setDemandQuantity(int demandQuantity) {
+        this.demandQuantity = demandQuantity;
+    }
+
+    public String getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(String startDate) {
+        this.startDate = startDate;
+    }
+
+    public String getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(String endDate) {
+        this.endDate = endDate;
+    }
+
+    public String getReasonCode() {
+        return reasonCode;
+    }
+
+    public void setReasonCode(String reasonCode) {
+        this.reasonCode = reasonCode;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
 }
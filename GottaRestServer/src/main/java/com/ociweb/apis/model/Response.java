@@ -1,4 +1,30 @@
 package com.ociweb.apis.model;
 
 public class Response {
+    private String orgCode;
+    private int accepted;
+
+    public Response() {
+    }
+
+    public Response(String orgCode, int accepted) {
+        this.orgCode = orgCode;
+        this.accepted = accepted;
+    }
+
+    public String getOrgCode() {
+        return orgCode;
+    }
+
+    public void setOrgCode(String orgCode) {
+        this.orgCode = orgCode;
+    }
+
+    public int getAccepted() {
+        return accepted;
+    }
+
+    public void setAccepted(int accepted) {
+        this.accepted = accepted;
+    }
 }
@@ -1,6 +1,7 @@
 package com.ociweb.apis.other.controllers;
 
 import com.ociweb.apis.model.*;
+import com.ociweb.greenspring.annotation.GreenIntern;
 import com.ociweb.greenspring.annotation.GreenServiceScope;
 import com.ociweb.greenspring.annotation.GreenParallelism;
 import org.springframework.http.HttpStatus;
@@ -16,13 +17,13 @@ import java.util.List;
 public class OtherLocationInventoryUpdateController extends BaseController {
 	@RequestMapping(value = "/{orgCode}/{feedType}", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<Response> createInventory(@RequestBody List<InventoryStoreMulti> inventorydata,
-													@PathVariable String orgCode, @PathVariable int feedType) {
+													@PathVariable @GreenIntern String orgCode, @PathVariable int feedType) {
 		return new ResponseEntity<Response>(HttpStatus.OK);
 	}
 
 	@RequestMapping(value = "/" + Constants.OVERRIDE_DEMAND + "/{orgCode}", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<Response> createOverrideDemand(@RequestBody List<OverrideDemand> overrideDemandList,
-														 @PathVariable String orgCode) {
+														 @PathVariable @GreenIntern String orgCode) {
 		return new ResponseEntity<Response>(HttpStatus.OK);
 	}
 }
@@ -0,0 +1,123 @@
+package com.ociweb.greenspring.allocation;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Runs every generated route listed on the class path against in memory stubs of the request
+// reader, channel writer and command channel, and prints the bytes each allocates per request
+// once warm, split by stage. Throws when a route marked @GreenAllocationFree allocates or cannot
+// be checked, which fails the verify phase of this module.
+//
+// -warmup 20000 -iterations 100000 -fixtures dir -only text
+//
+// A fixture is the request body of one route, in dir/<route class simple name>.json. Without it
+// the first of {} and [] the route accepts is used. Template fields are 1 or ACME.
+public class AllocationCheck {
+    private final Map<String, String> options = new LinkedHashMap<>();
+
+    public static void main(String[] args) throws Exception {
+        new AllocationCheck(args).run();
+    }
+
+    private AllocationCheck(String[] args) {
+        options.put("warmup", "20000");
+        options.put("iterations", "100000");
+        options.put("fixtures", null);
+        options.put("only", null);
+        for (int i = 0; i < args.length; i += 2) {
+            String name = args[i].replaceFirst("^-+", "");
+            if (!options.containsKey(name) || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Unknown option " + args[i] + ", expected one of " + options.keySet());
+            }
+            options.put(name, args[i + 1]);
+        }
+    }
+
+    private void run() throws IOException {
+        List<ListedRoute> routes = ListedRoute.load(AllocationCheck.class.getClassLoader());
+        if (routes.isEmpty()) {
+            throw new IllegalStateException("No " + ListedRoute.LISTING + " on the class path, was the GreenSpring processor run?");
+        }
+        int warmup = Integer.parseInt(options.get("warmup"));
+        int iterations = Integer.parseInt(options.get("iterations"));
+        String only = options.get("only");
+
+        AllocationMeter meter = new AllocationMeter();
+        List<RouteProbe.Result> results = new ArrayList<>();
+        for (ListedRoute route : routes) {
+            if (only == null || route.routeClass.contains(only)) {
+                results.add(new RouteProbe(route, meter, fixture(route), warmup, iterations).run());
+            }
+        }
+
+        List<String> failures = print(results);
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("@GreenAllocationFree routes allocate: " + String.join(", ", failures));
+        }
+    }
+
+    private byte[] fixture(ListedRoute route) throws IOException {
+        String dir = options.get("fixtures");
+        if (dir == null) {
+            return null;
+        }
+        Path file = Paths.get(dir, route.getSimpleName() + ".json");
+        return Files.exists(file) ? Files.readAllBytes(file) : null;
+    }
+
+    // Marked routes are flagged with *, the result column is only filled in for them.
+    private static List<String> print(List<RouteProbe.Result> results) {
+        PrintStream out = System.out;
+        List<String> failures = new ArrayList<>();
+        out.printf("%-64s %8s", "route", "B/req");
+        for (String stage : RouteProbe.STAGES) {
+            out.printf(" %" + Math.max(10, stage.length()) + "s", stage);
+        }
+        out.printf(" %6s %6s%n", "status", "result");
+
+        for (RouteProbe.Result result : results) {
+            boolean marked = result.route.is("allocationFree");
+            out.printf("%-64s", (marked ? "* " : "  ") + result.route.getSimpleName());
+            if (result.skipped != null) {
+                out.printf(" not checked: %s", result.skipped);
+                if (marked) {
+                    failures.add(result.route.getSimpleName());
+                    out.print("  FAIL");
+                }
+                out.println();
+                continue;
+            }
+            out.printf(" %8.1f", result.perRequest);
+            for (int i = 0; i < RouteProbe.STAGES.length; i++) {
+                out.printf(" %" + Math.max(10, RouteProbe.STAGES[i].length()) + ".1f", result.stages[i]);
+            }
+            out.printf(" %6d", result.status);
+            if (marked) {
+                boolean failed = result.allocates();
+                out.printf(" %6s", failed ? "FAIL" : "ok");
+                if (failed) {
+                    failures.add(result.route.getSimpleName() + " (" + worstStage(result) + ")");
+                }
+            }
+            out.println();
+        }
+        return failures;
+    }
+
+    private static String worstStage(RouteProbe.Result result) {
+        int worst = 0;
+        for (int i = 1; i < result.stages.length; i++) {
+            if (result.stages[i] > result.stages[worst]) {
+                worst = i;
+            }
+        }
+        return String.format("%.1f B/req, mostly %s", result.perRequest, RouteProbe.STAGES[worst]);
+    }
+}
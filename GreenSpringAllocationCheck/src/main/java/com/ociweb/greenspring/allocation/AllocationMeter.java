@@ -0,0 +1,43 @@
+package com.ociweb.greenspring.allocation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+// Bytes allocated by the thread that created the meter, from the JVM's per thread accounting.
+// Reading the counter may allocate by itself, that cost is measured once and taken off every
+// interval.
+final class AllocationMeter {
+    private final com.sun.management.ThreadMXBean threads;
+    private final long threadId;
+    private final long overhead;
+
+    AllocationMeter() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM does not count allocated bytes per thread");
+        }
+        this.threads = (com.sun.management.ThreadMXBean)bean;
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+        this.threadId = Thread.currentThread().getId();
+        this.overhead = calibrate();
+    }
+
+    long allocated() {
+        return threads.getThreadAllocatedBytes(threadId);
+    }
+
+    // Bytes allocated since start was read, less the cost of the two reads.
+    long since(long start) {
+        return Math.max(0, allocated() - start - overhead);
+    }
+
+    private long calibrate() {
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < 10_000; i++) {
+            long start = allocated();
+            least = Math.min(least, allocated() - start);
+        }
+        return least;
+    }
+}
@@ -0,0 +1,101 @@
+package com.ociweb.greenspring.allocation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// One line of the route listing the processor writes next to the generated classes.
+final class ListedRoute {
+    static final String LISTING = "META-INF/greenspring/routes";
+
+    private static final Pattern FIELD = Pattern.compile("([#$])\\{(\\w+)}");
+
+    final String routeClass;
+    final String serviceClass;
+    final List<String> verbs;
+    final String template;
+    final Set<String> flags;
+    // True for the numeric #{} fields of the template, in GreenLightning's field order.
+    final boolean[] numeric;
+    final List<Binder> binders = new ArrayList<>();
+
+    static final class Binder {
+        final int idx;
+        final String name;
+        final String kind;
+
+        private Binder(int idx, String name, String kind) {
+            this.idx = idx;
+            this.name = name;
+            this.kind = kind;
+        }
+    }
+
+    private ListedRoute(String line) {
+        String[] columns = line.split("\t");
+        if (columns.length != 6) {
+            throw new IllegalArgumentException("Malformed route listing line: " + line);
+        }
+        this.routeClass = columns[0];
+        this.serviceClass = columns[1];
+        this.verbs = Arrays.asList(columns[2].split(","));
+        this.template = columns[3];
+        this.flags = columns[4].equals("-") ? Collections.emptySet() : new HashSet<>(Arrays.asList(columns[4].split(",")));
+
+        List<Boolean> fields = new ArrayList<>();
+        Matcher matcher = FIELD.matcher(template);
+        while (matcher.find()) {
+            fields.add(matcher.group(1).equals("#"));
+        }
+        this.numeric = new boolean[fields.size()];
+        for (int i = 0; i < numeric.length; i++) {
+            numeric[i] = fields.get(i);
+        }
+
+        if (!columns[5].equals("-")) {
+            for (String binder : columns[5].split(",")) {
+                String[] parts = binder.split(":");
+                binders.add(new Binder(Integer.parseInt(parts[0]), parts[1], parts[2]));
+            }
+        }
+    }
+
+    static List<ListedRoute> load(ClassLoader loader) throws IOException {
+        List<ListedRoute> routes = new ArrayList<>();
+        Enumeration<URL> listings = loader.getResources(LISTING);
+        while (listings.hasMoreElements()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(listings.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        routes.add(new ListedRoute(line));
+                    }
+                }
+            }
+        }
+        return routes;
+    }
+
+    boolean is(String flag) {
+        return flags.contains(flag);
+    }
+
+    boolean hasBody() {
+        return is("body") || is("streamedBody");
+    }
+
+    String getSimpleName() {
+        return routeClass.substring(routeClass.lastIndexOf('.') + 1);
+    }
+}
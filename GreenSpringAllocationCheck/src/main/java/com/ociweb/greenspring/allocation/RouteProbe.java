@@ -0,0 +1,238 @@
+package com.ociweb.greenspring.allocation;
+
+import com.ociweb.gl.api.GreenCommandChannel;
+import com.ociweb.gl.api.HTTPRequestReader;
+import com.ociweb.gl.api.RestListener;
+import com.ociweb.greenspring.runtime.GreenServicePool;
+import com.ociweb.pronghorn.network.config.HTTPVerbDefaults;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Drives one generated route with the stubs and splits what it allocates per request into the
+// parameter binders, body decoding, the service with its ResponseEntity and the Writable.
+// Body and Writable are measured inside the stub callbacks. The binders run between reader
+// calls, so they are replayed on their own against the same request, and the service is what
+// the full request allocates beyond the other three. A streamed body is decoded while the
+// service runs, so for those routes the service is counted with the body.
+final class RouteProbe {
+    static final String[] STAGES = {"paramToString", "body decode", "service/ResponseEntity", "Writable"};
+    static final int PARAMS = 0;
+    static final int BODY = 1;
+    static final int SERVICE = 2;
+    static final int WRITABLE = 3;
+
+    private static final long NUMBER = 1;
+    private static final String TEXT = "ACME";
+    private static final String[] BODIES = {"{}", "[]"};
+
+    static final class Result {
+        final ListedRoute route;
+        final String skipped;
+        final int status;
+        final double perRequest;
+        final double[] stages;
+
+        private Result(ListedRoute route, String skipped, int status, double perRequest, double[] stages) {
+            this.route = route;
+            this.skipped = skipped;
+            this.status = status;
+            this.perRequest = perRequest;
+            this.stages = stages;
+        }
+
+        // Less than a byte per request is the counter's noise, not an allocation on the path.
+        boolean allocates() {
+            return perRequest >= 1;
+        }
+    }
+
+    private final ListedRoute route;
+    private final AllocationMeter meter;
+    private final byte[] fixture;
+    private final int warmup;
+    private final int iterations;
+    private Object sink;
+
+    RouteProbe(ListedRoute route, AllocationMeter meter, byte[] fixture, int warmup, int iterations) {
+        this.route = route;
+        this.meter = meter;
+        this.fixture = fixture;
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    Result run() {
+        if (route.is("async")) {
+            return skipped("async, the response completes on another thread");
+        }
+        try {
+            return measure();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return skipped(e.toString());
+        }
+    }
+
+    private Result measure() throws ReflectiveOperationException {
+        Class<?> routeType = Class.forName(route.routeClass);
+        StubCommandChannel channel = new StubCommandChannel();
+        RestListener listener = (RestListener)routeType.getConstructor(GreenCommandChannel.class).newInstance(channel);
+        bindService(routeType, listener);
+
+        String verb = route.verbs.get(0);
+        StubRequestReader request = new StubRequestReader(verb.equals("ANY") ? HTTPVerbDefaults.GET : HTTPVerbDefaults.valueOf(verb),
+                route.numeric, NUMBER, TEXT);
+        if (route.hasBody()) {
+            chooseBody(listener, request, channel);
+        }
+
+        exercise(listener, request, warmup);
+        long answered = channel.getResponses();
+        long start = meter.allocated();
+        exercise(listener, request, iterations);
+        long total = meter.since(start);
+        if (channel.getResponses() - answered != iterations) {
+            return skipped("the route did not answer every request");
+        }
+
+        request.meter(meter);
+        channel.meter(meter);
+        exercise(listener, request, iterations);
+        request.meter(null);
+        channel.meter(null);
+
+        double[] stages = new double[STAGES.length];
+        stages[PARAMS] = replayBinders(routeType, listener, request) / (double)iterations;
+        stages[BODY] = request.getBodyAllocated() / (double)iterations;
+        stages[WRITABLE] = channel.getWritableAllocated() / (double)iterations;
+        double perRequest = total / (double)iterations;
+        stages[SERVICE] = Math.max(0, perRequest - stages[PARAMS] - stages[BODY] - stages[WRITABLE]);
+        return new Result(route, null, channel.getStatus(), perRequest, stages);
+    }
+
+    private Result skipped(String reason) {
+        return new Result(route, reason, 0, 0, new double[STAGES.length]);
+    }
+
+    private void bindService(Class<?> routeType, RestListener listener) throws ReflectiveOperationException {
+        Object service = Class.forName(route.serviceClass).getConstructor().newInstance();
+        if (route.is("pooled")) {
+            routeType.getMethod("setServicePool", GreenServicePool.class).invoke(listener, new GreenServicePool<>(() -> service, 1));
+        }
+        else {
+            routeType.getMethod("setService", service.getClass()).invoke(listener, service);
+        }
+    }
+
+    // Without a fixture the first body the route accepts is used.
+    private void chooseBody(RestListener listener, StubRequestReader request, StubCommandChannel channel) {
+        if (fixture != null) {
+            request.setBody(fixture);
+            return;
+        }
+        for (String body : BODIES) {
+            request.setBody(body.getBytes(StandardCharsets.UTF_8));
+            request.next();
+            listener.restRequest(request);
+            if (channel.getStatus() < 400) {
+                return;
+            }
+        }
+    }
+
+    private static void exercise(RestListener listener, StubRequestReader request, int count) {
+        for (int i = 0; i < count; i++) {
+            request.next();
+            listener.restRequest(request);
+        }
+    }
+
+    // Bytes the text binders allocate over the measured iterations, beyond an empty binder call.
+    private long replayBinders(Class<?> routeType, RestListener listener, StubRequestReader request) throws ReflectiveOperationException {
+        List<MethodHandle> handles = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        for (ListedRoute.Binder binder : route.binders) {
+            MethodHandle handle;
+            switch (binder.kind) {
+                case "string":
+                    handle = binder(routeType, listener, "paramToString", null);
+                    break;
+                case "interned":
+                    handle = binder(routeType, listener, "paramToInterned", field(routeType, listener, binder.name + "Interned"));
+                    break;
+                case "text":
+                    handle = binder(routeType, listener, "paramToText", field(routeType, listener, binder.name + "Text"));
+                    break;
+                default:
+                    continue; // numbers are read in place
+            }
+            handles.add(handle);
+            ids.add(binder.idx);
+        }
+        if (handles.isEmpty()) {
+            return 0;
+        }
+        MethodHandle[] binders = handles.toArray(new MethodHandle[0]);
+        MethodHandle[] empty = new MethodHandle[binders.length];
+        MethodHandle none = MethodHandles.lookup().findStatic(RouteProbe.class, "noBinder",
+                MethodType.methodType(Object.class, int.class, HTTPRequestReader.class));
+        Arrays.fill(empty, none);
+        int[] idx = ids.stream().mapToInt(Integer::intValue).toArray();
+
+        replay(binders, idx, request, warmup);
+        replay(empty, idx, request, warmup);
+        long used = replay(binders, idx, request, iterations);
+        long baseline = replay(empty, idx, request, iterations);
+        return Math.max(0, used - baseline);
+    }
+
+    private long replay(MethodHandle[] binders, int[] idx, StubRequestReader request, int count) {
+        long start = meter.allocated();
+        try {
+            for (int i = 0; i < count; i++) {
+                for (int b = 0; b < binders.length; b++) {
+                    sink = (Object)binders[b].invokeExact(idx[b], (HTTPRequestReader)request);
+                }
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException("Binder replay failed for " + route.routeClass, e);
+        }
+        return meter.since(start);
+    }
+
+    private static Object noBinder(int idx, HTTPRequestReader request) {
+        return request;
+    }
+
+    // The private binder of the route as (int idx, HTTPRequestReader reader) -> Object.
+    private static MethodHandle binder(Class<?> routeType, Object listener, String name, Object extra) throws ReflectiveOperationException {
+        Method method = null;
+        for (Method candidate : routeType.getDeclaredMethods()) {
+            if (candidate.getName().equals(name)) {
+                method = candidate;
+            }
+        }
+        if (method == null) {
+            throw new NoSuchMethodException(routeType.getName() + "." + name);
+        }
+        method.setAccessible(true);
+        MethodHandle handle = MethodHandles.lookup().unreflect(method);
+        if (extra != null) {
+            handle = MethodHandles.insertArguments(handle, 3, extra);
+        }
+        return handle.bindTo(listener).asType(MethodType.methodType(Object.class, int.class, HTTPRequestReader.class));
+    }
+
+    private static Object field(Class<?> routeType, Object listener, String name) throws ReflectiveOperationException {
+        Field field = routeType.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(listener);
+    }
+}
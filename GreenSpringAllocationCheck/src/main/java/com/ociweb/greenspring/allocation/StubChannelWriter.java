@@ -0,0 +1,164 @@
+package com.ociweb.greenspring.allocation;
+
+import com.ociweb.pronghorn.pipe.ChannelWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Collects a response body into a reused array, which only grows until the largest body fits.
+final class StubChannelWriter extends ChannelWriter {
+    private byte[] bytes = new byte[4096];
+    private int length;
+
+    void reset() {
+        length = 0;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    String getText() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void ensure(int more) {
+        if (length + more > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + more));
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        ensure(1);
+        bytes[length++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] b) {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensure(len);
+        System.arraycopy(b, off, bytes, length, len);
+        length += len;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void writeObject(Object obj) {
+        throw new UnsupportedOperationException("writeObject");
+    }
+
+    @Override
+    public void writeBoolean(boolean v) {
+        write(v ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(int v) {
+        write(v);
+    }
+
+    @Override
+    public void writeShort(int v) {
+        write(v >>> 8);
+        write(v);
+    }
+
+    @Override
+    public void writeChar(int v) {
+        writeShort(v);
+    }
+
+    @Override
+    public void writeInt(int v) {
+        writeShort(v >>> 16);
+        writeShort(v);
+    }
+
+    @Override
+    public void writeLong(long v) {
+        writeInt((int)(v >>> 32));
+        writeInt((int)v);
+    }
+
+    @Override
+    public void writeFloat(float v) {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+    @Override
+    public void writeDouble(double v) {
+        writeLong(Double.doubleToLongBits(v));
+    }
+
+    @Override
+    public void writeBytes(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            write(s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeChars(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            writeChar(s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeUTF(String s) {
+        append(s);
+    }
+
+    @Override
+    public StubChannelWriter append(CharSequence csq) {
+        return append(csq, 0, csq.length());
+    }
+
+    // UTF-8, one char at a time so nothing is allocated.
+    @Override
+    public StubChannelWriter append(CharSequence csq, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = csq.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(csq.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, csq.charAt(++i));
+                write(0xF0 | (cp >> 18));
+                write(0x80 | ((cp >> 12) & 0x3F));
+                write(0x80 | ((cp >> 6) & 0x3F));
+                write(0x80 | (cp & 0x3F));
+            }
+            else {
+                append(c);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public StubChannelWriter append(char c) {
+        if (c < 0x80) {
+            write(c);
+        }
+        else if (c < 0x800) {
+            write(0xC0 | (c >> 6));
+            write(0x80 | (c & 0x3F));
+        }
+        else {
+            write(0xE0 | (c >> 12));
+            write(0x80 | ((c >> 6) & 0x3F));
+            write(0x80 | (c & 0x3F));
+        }
+        return this;
+    }
+}
@@ -0,0 +1,78 @@
+package com.ociweb.greenspring.allocation;
+
+import com.ociweb.gl.api.GreenCommandChannel;
+import com.ociweb.gl.api.HTTPRequestReader;
+import com.ociweb.gl.api.Writable;
+import com.ociweb.pronghorn.network.config.HTTPContentType;
+
+// Accepts every response and writes its body into a StubChannelWriter straight away. When
+// metered, the bytes allocated by the route's Writable are added to getWritableAllocated().
+// The route benchmarks drive generated routes with it and StubRequestReader as well.
+public final class StubCommandChannel extends GreenCommandChannel {
+    private final StubChannelWriter writer = new StubChannelWriter();
+    private AllocationMeter meter;
+    private long writableAllocated;
+    private long responses;
+    private int status;
+
+    // Counts from zero until metering is stopped with null.
+    void meter(AllocationMeter meter) {
+        if (meter != null) {
+            this.writableAllocated = 0;
+        }
+        this.meter = meter;
+    }
+
+    long getWritableAllocated() {
+        return writableAllocated;
+    }
+
+    public long getResponses() {
+        return responses;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getBody() {
+        return writer.getText();
+    }
+
+    @Override
+    public boolean publishHTTPResponse(HTTPRequestReader reqeustReader, int statusCode) {
+        return respond(statusCode, null);
+    }
+
+    @Override
+    public boolean publishHTTPResponse(HTTPRequestReader reqeustReader, int statusCode, HTTPContentType contentType, Writable writable) {
+        return respond(statusCode, writable);
+    }
+
+    @Override
+    public boolean publishHTTPResponse(HTTPRequestReader reqeustReader, int statusCode, boolean hasContinuation, HTTPContentType contentType, Writable writable) {
+        return respond(statusCode, writable);
+    }
+
+    @Override
+    public boolean publishHTTPResponse(long connectionId, long sequenceCode, int statusCode, boolean hasContinuation, HTTPContentType contentType, Writable writable) {
+        return respond(statusCode, writable);
+    }
+
+    private boolean respond(int statusCode, Writable writable) {
+        status = statusCode;
+        responses++;
+        writer.reset();
+        if (writable != null) {
+            if (meter == null) {
+                writable.write(writer);
+            }
+            else {
+                long start = meter.allocated();
+                writable.write(writer);
+                writableAllocated += meter.since(start);
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,262 @@
+package com.ociweb.greenspring.allocation;
+
+import com.ociweb.gl.api.HTTPRequestReader;
+import com.ociweb.gl.api.Headable;
+import com.ociweb.gl.api.Payloadable;
+import com.ociweb.pronghorn.network.config.HTTPVerbDefaults;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// In memory request with fixed template values and body. Every call to next() looks like a new
+// request to the route, so the service runs each time. No headers are present. When metered,
+// the bytes allocated while the route decodes the body are added to getBodyAllocated().
+public final class StubRequestReader extends HTTPRequestReader {
+    private final HTTPVerbDefaults verb;
+    private final long[] numbers;
+    private final CharSequence[] texts;
+    private byte[] body;
+    private int position;
+    private long sequenceCode;
+
+    private AllocationMeter meter;
+    private long bodyAllocated;
+
+    public StubRequestReader(HTTPVerbDefaults verb, boolean[] numeric, long number, CharSequence text) {
+        this.verb = verb;
+        this.numbers = new long[numeric.length];
+        this.texts = new CharSequence[numeric.length];
+        for (int i = 0; i < numeric.length; i++) {
+            if (numeric[i]) {
+                numbers[i] = number;
+            }
+            else {
+                texts[i] = text;
+            }
+        }
+    }
+
+    public void setBody(byte[] body) {
+        this.body = body;
+    }
+
+    public void next() {
+        sequenceCode++;
+    }
+
+    // Counts from zero until metering is stopped with null.
+    void meter(AllocationMeter meter) {
+        if (meter != null) {
+            this.bodyAllocated = 0;
+        }
+        this.meter = meter;
+    }
+
+    long getBodyAllocated() {
+        return bodyAllocated;
+    }
+
+    @Override
+    public int getRouteId() {
+        return 0;
+    }
+
+    @Override
+    public long getConnectionId() {
+        return 1;
+    }
+
+    @Override
+    public long getSequenceCode() {
+        return sequenceCode;
+    }
+
+    @Override
+    public HTTPVerbDefaults getVerb() {
+        return verb;
+    }
+
+    @Override
+    public int getInt(int idx) {
+        return (int)numbers[idx];
+    }
+
+    @Override
+    public long getLong(int idx) {
+        return numbers[idx];
+    }
+
+    @Override
+    public short getShort(int idx) {
+        return (short)numbers[idx];
+    }
+
+    @Override
+    public byte getByte(int idx) {
+        return (byte)numbers[idx];
+    }
+
+    @Override
+    public double getDouble(int idx) {
+        return numbers[idx];
+    }
+
+    @Override
+    public <A extends Appendable> A getText(int idx, A target) {
+        try {
+            target.append(texts[idx]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return target;
+    }
+
+    @Override
+    public boolean openPayloadData(Payloadable reader) {
+        if (body == null) {
+            return false;
+        }
+        position = 0;
+        if (meter == null) {
+            reader.read(this);
+        }
+        else {
+            long start = meter.allocated();
+            reader.read(this);
+            bodyAllocated += meter.since(start);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean openHeaderData(int headerId, Headable reader) {
+        return false;
+    }
+
+    // The body as a stream, the way GreenLightning hands it to a Payloadable.
+
+    @Override
+    public int available() {
+        return body == null ? 0 : body.length - position;
+    }
+
+    @Override
+    public int read() {
+        return available() > 0 ? body[position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b) {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        int count = Math.min(len, available());
+        if (count <= 0) {
+            return len == 0 ? 0 : -1;
+        }
+        System.arraycopy(body, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        int count = (int)Math.max(0, Math.min(n, available()));
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public Object readObject() {
+        throw new UnsupportedOperationException("readObject");
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        if (len > available()) {
+            throw new EOFException();
+        }
+        read(b, off, len);
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        return (int)skip(n);
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readUnsignedByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        return (byte)readUnsignedByte();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        int value = read();
+        if (value < 0) {
+            throw new EOFException();
+        }
+        return value;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        return (short)readUnsignedShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return (readUnsignedByte() << 8) | readUnsignedByte();
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return (char)readUnsignedShort();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        return (readUnsignedShort() << 16) | readUnsignedShort();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        return ((long)readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @Override
+    public String readLine() {
+        throw new UnsupportedOperationException("readLine");
+    }
+
+    @Override
+    public String readUTF() {
+        throw new UnsupportedOperationException("readUTF");
+    }
+}
@@ -0,0 +1,29 @@
+package com.ociweb.greenspring.allocation.fixtures;
+
+import com.ociweb.greenspring.annotation.GreenAllocationFree;
+import com.ociweb.greenspring.annotation.GreenIntern;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+// Routes the check runs next to GottaRestServer's, there so it can fail. Every body route of
+// the sample decodes a list of beans and always allocates, this one binds an int body and an
+// interned path variable and answers a shared ResponseEntity, so it must report 0 B/req.
+@RestController
+@RequestMapping(value = "fixtures")
+public class ThresholdController {
+    private static final ResponseEntity<String> OK = new ResponseEntity<String>(HttpStatus.OK);
+
+    private volatile int reorderThreshold;
+
+    @RequestMapping(value = "/threshold/{orgCode}", method = RequestMethod.PUT)
+    @GreenAllocationFree
+    public ResponseEntity<String> setReorderThreshold(@RequestBody int threshold, @PathVariable @GreenIntern String orgCode) {
+        reorderThreshold = threshold;
+        return OK;
+    }
+}
@@ -0,0 +1,39 @@
+package com.ociweb.greenspring.benchmarks;
+
+import java.io.InputStream;
+
+// Rewindable stream over a fixed body so reading it allocates nothing.
+final class BytesIn extends InputStream {
+    private final byte[] data;
+    private int position;
+
+    BytesIn(byte[] data) {
+        this.data = data;
+    }
+
+    BytesIn rewind() {
+        position = 0;
+        return this;
+    }
+
+    @Override
+    public int read() {
+        return position < data.length ? data[position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (position >= data.length) {
+            return -1;
+        }
+        int count = Math.min(len, data.length - position);
+        System.arraycopy(data, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return data.length - position;
+    }
+}
@@ -0,0 +1,39 @@
+package com.ociweb.greenspring.benchmarks;
+
+import java.io.OutputStream;
+
+// Fixed buffer standing in for the response pipe, it grows only while the benchmark warms up.
+final class BytesOut extends OutputStream {
+    private byte[] data = new byte[1 << 16];
+    private int length;
+
+    BytesOut rewind() {
+        length = 0;
+        return this;
+    }
+
+    int length() {
+        return length;
+    }
+
+    @Override
+    public void write(int b) {
+        ensure(1);
+        data[length++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensure(len);
+        System.arraycopy(b, off, data, length, len);
+        length += len;
+    }
+
+    private void ensure(int more) {
+        if (length + more > data.length) {
+            byte[] grown = new byte[Math.max(data.length * 2, length + more)];
+            System.arraycopy(data, 0, grown, 0, length);
+            data = grown;
+        }
+    }
+}
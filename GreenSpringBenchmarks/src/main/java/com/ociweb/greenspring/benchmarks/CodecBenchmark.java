@@ -0,0 +1,93 @@
+package com.ociweb.greenspring.benchmarks;
+
+import com.ociweb.apis.model.InventoryStoreMulti;
+import com.ociweb.apis.model.OverrideDemand;
+import com.ociweb.apis.model.codecs.GreenInventoryStoreMultiCodec;
+import com.ociweb.apis.model.codecs.GreenOverrideDemandCodec;
+import com.ociweb.greenspring.runtime.GreenJsonReader;
+import com.ociweb.greenspring.runtime.GreenJsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Body decode and response encode through the generated codecs, the same calls a route's
+// read and write make, for a single record, a typical feed and a bulk feed.
+@State(Scope.Thread)
+public class CodecBenchmark {
+    @Param({"1", "100", "1000"})
+    public int items;
+
+    private final GreenJsonReader reader = new GreenJsonReader();
+    private final GreenJsonWriter writer = new GreenJsonWriter();
+    private final BytesOut out = new BytesOut();
+    private BytesIn inventoryBody;
+    private BytesIn overrideDemandBody;
+    private List<InventoryStoreMulti> inventory;
+    private List<OverrideDemand> overrideDemand;
+
+    @Setup
+    public void setup() throws IOException {
+        inventoryBody = new BytesIn(Payloads.inventory(items));
+        overrideDemandBody = new BytesIn(Payloads.overrideDemand(items));
+        inventory = decodeInventory();
+        overrideDemand = decodeOverrideDemand();
+    }
+
+    @Benchmark
+    public List<InventoryStoreMulti> decodeInventory() throws IOException {
+        GreenJsonReader json = reader.reset(inventoryBody.rewind());
+        List<InventoryStoreMulti> list = new ArrayList<>();
+        if (json.beginArray()) {
+            while (json.hasNext()) {
+                list.add(GreenInventoryStoreMultiCodec.read(json));
+            }
+        }
+        return list;
+    }
+
+    @Benchmark
+    public List<OverrideDemand> decodeOverrideDemand() throws IOException {
+        GreenJsonReader json = reader.reset(overrideDemandBody.rewind());
+        List<OverrideDemand> list = new ArrayList<>();
+        if (json.beginArray()) {
+            while (json.hasNext()) {
+                list.add(GreenOverrideDemandCodec.read(json));
+            }
+        }
+        return list;
+    }
+
+    @Benchmark
+    public int encodeInventory() throws IOException {
+        GreenJsonWriter json = writer.reset(out.rewind());
+        json.beginArray();
+        for (int i = 0; i < inventory.size(); i++) {
+            if (i > 0) {
+                json.comma();
+            }
+            GreenInventoryStoreMultiCodec.write(inventory.get(i), json);
+        }
+        json.endArray();
+        return out.length();
+    }
+
+    @Benchmark
+    public int encodeOverrideDemand() throws IOException {
+        GreenJsonWriter json = writer.reset(out.rewind());
+        json.beginArray();
+        for (int i = 0; i < overrideDemand.size(); i++) {
+            if (i > 0) {
+                json.comma();
+            }
+            GreenOverrideDemandCodec.write(overrideDemand.get(i), json);
+        }
+        json.endArray();
+        return out.length();
+    }
+}
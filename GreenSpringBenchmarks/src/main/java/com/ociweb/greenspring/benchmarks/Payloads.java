@@ -0,0 +1,46 @@
+package com.ociweb.greenspring.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+
+// Request bodies shaped like the inventory feeds the sample app receives. Fields the DTOs do not
+// declare are skipped by the codecs, which is part of what a real feed costs to decode.
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    static byte[] inventory(int items) {
+        StringBuilder json = new StringBuilder(items * 220 + 2).append('[');
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"storeId\":").append(100 + i % 250)
+                    .append(",\"sku\":\"SKU-").append(1_000_000 + i).append('"')
+                    .append(",\"quantity\":").append(i * 7 % 500)
+                    .append(",\"unitOfMeasure\":\"EA\"")
+                    .append(",\"price\":").append(i % 90 + 0.99)
+                    .append(",\"availableDate\":\"2018-03-").append(10 + i % 18).append("T08:00:00Z\"")
+                    .append(",\"onHold\":").append(i % 13 == 0)
+                    .append(",\"version\":").append(i % 5 == 0 ? "null" : String.valueOf(1_520_000_000_000L + i))
+                    .append(",\"locations\":[\"A").append(i % 40).append("\",\"B").append(i % 12).append("\"]}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] overrideDemand(int items) {
+        StringBuilder json = new StringBuilder(items * 180 + 2).append('[');
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"storeId\":").append(100 + i % 250)
+                    .append(",\"sku\":\"SKU-").append(1_000_000 + i).append('"')
+                    .append(",\"demandQuantity\":").append(i * 3 % 200)
+                    .append(",\"startDate\":\"2018-04-01\",\"endDate\":\"2018-04-").append(2 + i % 27).append('"')
+                    .append(",\"reasonCode\":\"").append(i % 2 == 0 ? "PROMO" : "WEATHER").append('"')
+                    .append(",\"priority\":").append(i % 4).append('}');
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,93 @@
+package com.ociweb.greenspring.benchmarks;
+
+import com.ociweb.apis.inventory.controllers.LocationInventoryUpdateController;
+import com.ociweb.apis.inventory.controllers.routes.GreenLocationInventoryUpdateControllerCreateInventory;
+import com.ociweb.apis.model.InventoryStoreMulti;
+import com.ociweb.apis.model.Response;
+import com.ociweb.apis.model.codecs.GreenInventoryStoreMultiCodec;
+import com.ociweb.greenspring.allocation.StubCommandChannel;
+import com.ociweb.greenspring.allocation.StubRequestReader;
+import com.ociweb.greenspring.runtime.GreenInternTable;
+import com.ociweb.greenspring.runtime.GreenJsonReader;
+import com.ociweb.pronghorn.network.config.HTTPVerbDefaults;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// GreenLocationInventoryUpdateControllerCreateInventory.restRequest end to end, and the binder and
+// service steps it is made of. The route is driven with the allocation check's stubs: the request
+// reader serves the body and POST /inventory/ACME/2, and the channel writes every response at once.
+// The route decodes a request body and answers a bodyless 200, CodecBenchmark times the encoding.
+@State(Scope.Thread)
+public class RouteBenchmark {
+    @Param({"1", "100", "1000"})
+    public int items;
+
+    private static final String[] ORG_CODES = {"ACME", "GLOBEX", "INITECH", "UMBRELLA", "STARK", "WAYNE", "TYRELL", "CYBERDYNE"};
+
+    private final LocationInventoryUpdateController service = new LocationInventoryUpdateController();
+    private final GreenInternTable orgCodeInterned = new GreenInternTable(64);
+    private final StringBuilder paramBuffer = new StringBuilder();
+    private final StubCommandChannel channel = new StubCommandChannel();
+    private final StubRequestReader request = new StubRequestReader(HTTPVerbDefaults.POST, new boolean[]{false, true}, 2, "ACME");
+    private final GreenLocationInventoryUpdateControllerCreateInventory route = new GreenLocationInventoryUpdateControllerCreateInventory(channel);
+    private List<InventoryStoreMulti> inventory;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] body = Payloads.inventory(items);
+        request.setBody(body);
+        route.setService(service);
+        inventory = decode(body);
+
+        request.next();
+        if (!route.restRequest(request) || channel.getStatus() != 200) {
+            throw new IllegalStateException("The route answered " + channel.getStatus() + " " + channel.getBody());
+        }
+    }
+
+    @Benchmark
+    public String extractInternedParam() {
+        paramBuffer.setLength(0);
+        paramBuffer.append(ORG_CODES[next++ & 7]);
+        return orgCodeInterned.intern(paramBuffer);
+    }
+
+    @Benchmark
+    public String extractStringParam() {
+        paramBuffer.setLength(0);
+        paramBuffer.append(ORG_CODES[next++ & 7]);
+        return paramBuffer.toString();
+    }
+
+    @Benchmark
+    public ResponseEntity<Response> dispatch() {
+        return service.createInventory(inventory, ORG_CODES[next++ & 7], 2);
+    }
+
+    @Benchmark
+    public int restRequest() {
+        request.next();
+        route.restRequest(request);
+        return channel.getStatus();
+    }
+
+    private static List<InventoryStoreMulti> decode(byte[] body) throws IOException {
+        GreenJsonReader json = new GreenJsonReader().reset(new BytesIn(body));
+        List<InventoryStoreMulti> list = new ArrayList<>();
+        if (json.beginArray()) {
+            while (json.hasNext()) {
+                list.add(GreenInventoryStoreMultiCodec.read(json));
+            }
+        }
+        return list;
+    }
+}
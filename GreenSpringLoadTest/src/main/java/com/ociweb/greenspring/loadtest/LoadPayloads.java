@@ -0,0 +1,42 @@
+package com.ociweb.greenspring.loadtest;
+
+import java.nio.charset.StandardCharsets;
+
+// Feed bodies with the fields an inventory integration sends.
+final class LoadPayloads {
+
+    private LoadPayloads() {
+    }
+
+    static byte[] inventory(int records) {
+        StringBuilder json = new StringBuilder(records * 200 + 2).append('[');
+        for (int i = 0; i < records; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"storeId\":").append(100 + i % 250)
+                    .append(",\"sku\":\"SKU-").append(1_000_000 + i).append('"')
+                    .append(",\"quantity\":").append(i * 7 % 500)
+                    .append(",\"unitOfMeasure\":\"EA\"")
+                    .append(",\"price\":").append(i % 90 + 0.99)
+                    .append(",\"availableDate\":\"2018-03-").append(10 + i % 18).append("T08:00:00Z\"")
+                    .append(",\"version\":").append(1_520_000_000_000L + i).append('}');
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] overrideDemand(int records) {
+        StringBuilder json = new StringBuilder(records * 160 + 2).append('[');
+        for (int i = 0; i < records; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"storeId\":").append(100 + i % 250)
+                    .append(",\"sku\":\"SKU-").append(1_000_000 + i).append('"')
+                    .append(",\"demandQuantity\":").append(i * 3 % 200)
+                    .append(",\"startDate\":\"2018-04-01\",\"endDate\":\"2018-04-").append(2 + i % 27).append('"')
+                    .append(",\"reasonCode\":\"").append(i % 2 == 0 ? "PROMO" : "WEATHER").append("\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,212 @@
+package com.ociweb.greenspring.loadtest;
+
+import com.ociweb.greenspring.runtime.GreenHistogram;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// Starts the Spring MVC deployment and the generated GreenSpringApp of the GottaRestServer
+// controllers one after the other, replays the same request mix against each at a fixed
+// arrival rate and prints latency percentiles, throughput and GC totals side by side.
+//
+// -rate 2000 -seconds 60 -warmup 20 -connections 64 -heap 512m -mix file -servers spring,green
+public class LoadTest {
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, String> options = new LinkedHashMap<>();
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest(args).run();
+    }
+
+    private LoadTest(String[] args) {
+        options.put("rate", "2000");
+        options.put("seconds", "60");
+        options.put("warmup", "20");
+        options.put("connections", "64");
+        options.put("heap", "512m");
+        options.put("servers", ServerProcess.SPRING + "," + ServerProcess.GREEN);
+        options.put("host", "127.0.0.1");
+        options.put("springPort", "8081");
+        options.put("greenPort", "8082");
+        options.put("mix", null);
+        for (int i = 0; i < args.length; i += 2) {
+            String name = args[i].replaceFirst("^-+", "");
+            if (!options.containsKey(name) || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Unknown option " + args[i] + ", expected one of " + options.keySet());
+            }
+            options.put(name, args[i + 1]);
+        }
+    }
+
+    private void run() throws Exception {
+        RequestMix mix = RequestMix.load(options.get("mix"));
+        int rate = Integer.parseInt(options.get("rate"));
+        int connections = Integer.parseInt(options.get("connections"));
+        System.setProperty("http.maxConnections", Integer.toString(connections));
+
+        System.out.println("Request mix:");
+        for (RequestMix.Request request : mix.getRequests()) {
+            System.out.println("  " + request);
+        }
+
+        Map<String, Report> reports = new LinkedHashMap<>();
+        for (String server : options.get("servers").split(",")) {
+            reports.put(server, measure(server.trim(), mix, rate, connections));
+        }
+        print(reports, rate);
+    }
+
+    private Report measure(String server, RequestMix mix, int rate, int connections) throws Exception {
+        int port = Integer.parseInt(options.get(server + "Port"));
+        String host = options.get("host");
+        Process process = new ProcessBuilder(javaCommand(server, port))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        BufferedReader replies = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        Writer commands = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        try {
+            awaitReady(host, port, mix.getRequests().get(0).path);
+            OpenLoopDriver driver = new OpenLoopDriver(host, port, mix, connections);
+
+            System.out.println(server + ": warming up for " + options.get("warmup") + "s");
+            driver.run(rate, Long.parseLong(options.get("warmup")));
+
+            long[] before = gcStats(commands, replies);
+            System.out.println(server + ": measuring for " + options.get("seconds") + "s at " + rate + " requests/s");
+            OpenLoopDriver.Result result = driver.run(rate, Long.parseLong(options.get("seconds")));
+            long[] after = gcStats(commands, replies);
+            return new Report(result, after[0] - before[0], after[1] - before[1], after[2] - before[2]);
+        } finally {
+            try {
+                commands.write("exit\n");
+                commands.flush();
+            } catch (IOException e) {
+                // already gone
+            }
+            process.waitFor();
+        }
+    }
+
+    private List<String> javaCommand(String server, int port) {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-Xms" + options.get("heap"));
+        command.add("-Xmx" + options.get("heap"));
+        command.add("-cp");
+        command.add(classpath());
+        command.add(ServerProcess.class.getName());
+        command.add(server);
+        command.add(Integer.toString(port));
+        return command;
+    }
+
+    // exec:java runs inside Maven, where java.class.path is not the project's class path.
+    private static String classpath() {
+        ClassLoader loader = LoadTest.class.getClassLoader();
+        if (loader instanceof URLClassLoader) {
+            StringBuilder path = new StringBuilder();
+            for (URL url : ((URLClassLoader)loader).getURLs()) {
+                if (path.length() > 0) {
+                    path.append(File.pathSeparatorChar);
+                }
+                path.append(new File(url.getPath()).getAbsolutePath());
+            }
+            return path.toString();
+        }
+        return System.getProperty("java.class.path");
+    }
+
+    private static void awaitReady(String host, int port, String path) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection)new URL("http://" + host + ":" + port + path).openConnection();
+                connection.setConnectTimeout(1_000);
+                connection.getResponseCode();
+                connection.disconnect();
+                return;
+            } catch (IOException e) {
+                Thread.sleep(250);
+            }
+        }
+        throw new IllegalStateException("Server on port " + port + " did not start");
+    }
+
+    private static long[] gcStats(Writer commands, BufferedReader replies) throws IOException {
+        commands.write("gc\n");
+        commands.flush();
+        String line;
+        while ((line = replies.readLine()) != null) {
+            if (line.startsWith("gc ")) {
+                String[] fields = line.split(" ");
+                return new long[] {Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3])};
+            }
+        }
+        throw new IOException("Server exited");
+    }
+
+    private static void print(Map<String, Report> reports, int rate) {
+        PrintStream out = System.out;
+        out.println();
+        out.printf("%-22s", "offered " + rate + "/s");
+        reports.keySet().forEach(server -> out.printf("%16s", server));
+        out.println();
+        row(reports, "throughput/s", report -> String.format("%.0f", report.result.throughput()));
+        row(reports, "completed", report -> Long.toString(report.result.completed));
+        row(reports, "errors", report -> Long.toString(report.result.errors));
+        row(reports, "dropped", report -> Long.toString(report.result.dropped));
+        for (double percentile : PERCENTILES) {
+            row(reports, "latency p" + trim(percentile * 100) + " ms",
+                    report -> millis(GreenHistogram.percentile(report.result.latencies, percentile)));
+        }
+        row(reports, "latency max ms", report -> millis(report.result.max));
+        row(reports, "gc collections", report -> Long.toString(report.gcCount));
+        row(reports, "gc time ms", report -> Long.toString(report.gcMillis));
+        row(reports, "allocated MB", report -> String.format("%.1f", report.allocated / 1e6));
+        row(reports, "allocated B/request", report -> report.result.completed == 0 ? "-"
+                : Long.toString(report.allocated / report.result.completed));
+    }
+
+    private static void row(Map<String, Report> reports, String name, Function<Report, String> value) {
+        System.out.printf("%-22s", name);
+        reports.values().forEach(report -> System.out.printf("%16s", value.apply(report)));
+        System.out.println();
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    private static String trim(double value) {
+        return value == Math.rint(value) ? Long.toString((long)value) : Double.toString(value);
+    }
+
+    private static final class Report {
+        private final OpenLoopDriver.Result result;
+        private final long gcCount;
+        private final long gcMillis;
+        private final long allocated;
+
+        private Report(OpenLoopDriver.Result result, long gcCount, long gcMillis, long allocated) {
+            this.result = result;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+            this.allocated = allocated;
+        }
+    }
+}
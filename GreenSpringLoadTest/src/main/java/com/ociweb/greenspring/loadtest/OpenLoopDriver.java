@@ -0,0 +1,147 @@
+package com.ociweb.greenspring.loadtest;
+
+import com.ociweb.greenspring.runtime.GreenHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Sends requests at a fixed arrival rate whatever the server's response time. Latency is taken
+// from the moment a request was due, not when a connection was free to send it, so queueing
+// behind a slow server shows up in the percentiles instead of lowering the offered load.
+final class OpenLoopDriver {
+    private static final int BACKLOG_SECONDS = 10;
+
+    static final class Result {
+        final long[] latencies = new long[GreenHistogram.BUCKETS];
+        long completed;
+        long errors;
+        long dropped;
+        long max;
+        long elapsedNanos;
+
+        double throughput() {
+            return elapsedNanos > 0 ? completed * 1e9 / elapsedNanos : 0;
+        }
+    }
+
+    private final String baseUrl;
+    private final RequestMix mix;
+    private final int connections;
+
+    OpenLoopDriver(String host, int port, RequestMix mix, int connections) {
+        this.baseUrl = "http://" + host + ":" + port;
+        this.mix = mix;
+        this.connections = connections;
+    }
+
+    Result run(int rate, long seconds) throws InterruptedException {
+        List<GreenHistogram> histograms = new CopyOnWriteArrayList<>();
+        ThreadLocal<GreenHistogram> histogram = ThreadLocal.withInitial(() -> {
+            GreenHistogram created = new GreenHistogram();
+            histograms.add(created);
+            return created;
+        });
+        AtomicLong completed = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long dropped = 0;
+
+        ThreadPoolExecutor workers = (ThreadPoolExecutor)Executors.newFixedThreadPool(connections, task -> {
+            Thread thread = new Thread(task, "LoadTestConnection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long total = rate * seconds;
+        long backlog = (long)rate * BACKLOG_SECONDS;
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long due = start + i * 1_000_000_000L / rate;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (workers.getQueue().size() > backlog) {
+                dropped++;
+                continue;
+            }
+            RequestMix.Request request = mix.pick(i);
+            workers.execute(() -> {
+                if (send(request)) {
+                    histogram.get().record(System.nanoTime() - due);
+                    completed.incrementAndGet();
+                }
+                else {
+                    errors.incrementAndGet();
+                }
+            });
+        }
+        shutdown(workers);
+
+        Result result = new Result();
+        result.elapsedNanos = System.nanoTime() - start;
+        result.completed = completed.get();
+        result.errors = errors.get();
+        result.dropped = dropped;
+        for (GreenHistogram recorded : histograms) {
+            recorded.addTo(result.latencies);
+            result.max = Math.max(result.max, recorded.getMax());
+        }
+        return result;
+    }
+
+    // Any response below 500 counts, the mix may include requests the controllers reject.
+    private boolean send(RequestMix.Request request) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection)new URL(baseUrl + request.path).openConnection();
+            connection.setRequestMethod(request.verb);
+            connection.setConnectTimeout(5_000);
+            connection.setReadTimeout(30_000);
+            if (request.body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                connection.setFixedLengthStreamingMode(request.body.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(request.body);
+                }
+            }
+            int status = connection.getResponseCode();
+            drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            return status < 500;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return false;
+        }
+    }
+
+    // Reading the body to the end lets the JDK reuse the connection for the next request.
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try (InputStream body = in) {
+            byte[] skip = new byte[4096];
+            while (body.read(skip) >= 0) {
+            }
+        }
+    }
+
+    private static void shutdown(ExecutorService workers) throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(60, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.ociweb.greenspring.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// Weighted requests replayed by the load test. Each line of a mix file is
+// "weight verb path [body]" where body is inventory:<records>, overrideDemand:<records> or @<file>.
+final class RequestMix {
+
+    static final class Request {
+        final String verb;
+        final String path;
+        final byte[] body;
+
+        private Request(String verb, String path, byte[] body) {
+            this.verb = verb;
+            this.path = path;
+            this.body = body;
+        }
+
+        @Override
+        public String toString() {
+            return verb + " " + path + (body != null ? " (" + body.length + " bytes)" : "");
+        }
+    }
+
+    private final List<Request> requests = new ArrayList<>();
+    private final List<Integer> weights = new ArrayList<>();
+    private int totalWeight;
+
+    static RequestMix load(String file) throws IOException {
+        if (file == null) {
+            return parse(new InputStreamReader(RequestMix.class.getResourceAsStream("/default.mix"), StandardCharsets.UTF_8));
+        }
+        return parse(Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8));
+    }
+
+    private static RequestMix parse(Reader source) throws IOException {
+        RequestMix mix = new RequestMix();
+        try (BufferedReader lines = new BufferedReader(source)) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length < 3) {
+                    throw new IllegalArgumentException("Expected weight verb path [body]: " + line);
+                }
+                mix.add(Integer.parseInt(parts[0]), new Request(parts[1].toUpperCase(), parts[2], parts.length > 3 ? body(parts[3]) : null));
+            }
+        }
+        if (mix.totalWeight == 0) {
+            throw new IllegalArgumentException("The request mix is empty");
+        }
+        return mix;
+    }
+
+    private static byte[] body(String spec) throws IOException {
+        if (spec.startsWith("@")) {
+            return Files.readAllBytes(Paths.get(spec.substring(1)));
+        }
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? spec : spec.substring(0, colon);
+        int records = colon < 0 ? 1 : Integer.parseInt(spec.substring(colon + 1));
+        switch (kind) {
+            case "inventory":
+                return LoadPayloads.inventory(records);
+            case "overrideDemand":
+                return LoadPayloads.overrideDemand(records);
+            default:
+                throw new IllegalArgumentException("Unknown body " + spec);
+        }
+    }
+
+    private void add(int weight, Request request) {
+        if (weight > 0) {
+            requests.add(request);
+            weights.add(weight);
+            totalWeight += weight;
+        }
+    }
+
+    // Spreads the requests by weight over a sequence number, so both servers get the same order.
+    Request pick(long sequence) {
+        int ticket = (int)(mixBits(sequence) % totalWeight);
+        for (int i = 0; i < requests.size(); i++) {
+            ticket -= weights.get(i);
+            if (ticket < 0) {
+                return requests.get(i);
+            }
+        }
+        return requests.get(requests.size() - 1);
+    }
+
+    List<Request> getRequests() {
+        return requests;
+    }
+
+    private static long mixBits(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return (z ^ (z >>> 31)) & Long.MAX_VALUE;
+    }
+}
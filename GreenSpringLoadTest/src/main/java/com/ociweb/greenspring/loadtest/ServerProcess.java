@@ -0,0 +1,146 @@
+package com.ociweb.greenspring.loadtest;
+
+import com.ociweb.apis.GreenSpringApp;
+import com.ociweb.gl.api.GreenRuntime;
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Child JVM running one of the servers, so each gets its own heap and GC counters. The load
+// test talks to it over stdin and stdout: "gc" prints the collector totals, "exit" stops it.
+public class ServerProcess {
+    static final String SPRING = "spring";
+    static final String GREEN = "green";
+
+    private static final Set<String> heapPools = new HashSet<>();
+    private static final AtomicLong collections = new AtomicLong();
+    private static final AtomicLong collected = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        String server = args[0];
+        int port = Integer.parseInt(args[1]);
+        countCollected();
+        if (SPRING.equals(server)) {
+            startSpring(port);
+        }
+        else if (GREEN.equals(server)) {
+            startGreen(port);
+        }
+        else {
+            throw new IllegalArgumentException("Unknown server " + server);
+        }
+
+        BufferedReader commands = new BufferedReader(new InputStreamReader(System.in));
+        String command;
+        while ((command = commands.readLine()) != null) {
+            if (command.equals("gc")) {
+                System.out.println(gcStats());
+                System.out.flush();
+            }
+            else if (command.equals("exit")) {
+                break;
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void startSpring(int port) throws Exception {
+        AnnotationConfigWebApplicationContext context = new AnnotationConfigWebApplicationContext();
+        context.register(SpringWebConfig.class);
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setPort(port);
+        tomcat.setBaseDir(new File(System.getProperty("java.io.tmpdir"), "greenspring-tomcat-" + port).getAbsolutePath());
+        Context root = tomcat.addContext("", null);
+        Tomcat.addServlet(root, "dispatcher", new DispatcherServlet(context)).setLoadOnStartup(1);
+        root.addServletMappingDecoded("/*", "dispatcher");
+        tomcat.start();
+    }
+
+    // The generated app reads its port and TLS setting from the greenspring.* properties.
+    private static void startGreen(int port) {
+        System.setProperty("greenspring.port", Integer.toString(port));
+        System.setProperty("greenspring.tls", "false");
+        GreenRuntime.run(new GreenSpringApp(), new String[0]);
+    }
+
+    // Every collection reports the heap pools before and after, what it freed was allocated since
+    // an earlier one or since startup. Threads that exit take their allocation counters with them,
+    // so these are counted instead.
+    private static void countCollected() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter)gc).addNotificationListener((notification, handback) -> {
+                if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                    return;
+                }
+                GcInfo info = GarbageCollectionNotificationInfo.from((CompositeData)notification.getUserData()).getGcInfo();
+                Map<String, MemoryUsage> after = info.getMemoryUsageAfterGc();
+                long freed = 0;
+                for (Map.Entry<String, MemoryUsage> before : info.getMemoryUsageBeforeGc().entrySet()) {
+                    if (heapPools.contains(before.getKey())) {
+                        freed += before.getValue().getUsed() - after.get(before.getKey()).getUsed();
+                    }
+                }
+                collected.addAndGet(freed);
+                collections.incrementAndGet();
+            }, null, null);
+        }
+    }
+
+    // count, milliseconds spent collecting and bytes allocated: all that collections freed plus the
+    // heap in use now, so the difference of two samples is what was allocated in between. Heap in
+    // use counts whole TLABs, which is off by at most a TLAB per thread. Notifications arrive on
+    // their own thread, a sample is taken again until no collection ran or went unreported during it.
+    private static String gcStats() throws InterruptedException {
+        while (true) {
+            long count = collectionCount();
+            long freed = collected.get();
+            long used = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (heapPools.contains(pool.getName())) {
+                    used += pool.getUsage().getUsed();
+                }
+            }
+            if (collections.get() == count && collectionCount() == count && collected.get() == freed) {
+                long time = 0;
+                for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                    time += Math.max(0, gc.getCollectionTime());
+                }
+                return "gc " + count + " " + time + " " + (freed + used);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+}
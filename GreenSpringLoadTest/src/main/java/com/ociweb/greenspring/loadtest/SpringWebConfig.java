@@ -0,0 +1,12 @@
+package com.ociweb.greenspring.loadtest;
+
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+// Plain Spring MVC over the GottaRestServer controllers, the deployment GreenSpring replaces.
+@Configuration
+@EnableWebMvc
+@ComponentScan("com.ociweb.apis")
+public class SpringWebConfig {
+}
@@ -1,9 +1,21 @@
 package com.ociweb.greenspring;
 
+import com.ociweb.greenspring.adaptors.GreenConstantResponses;
+import com.ociweb.greenspring.adaptors.GreenEventListeners;
+import com.ociweb.greenspring.adaptors.GreenExceptionHandlers;
+import com.ociweb.greenspring.adaptors.GreenJsonCodecs;
 import com.ociweb.greenspring.adaptors.GreenRoute;
+import com.ociweb.greenspring.adaptors.GreenScheduledMethods;
+import com.ociweb.greenspring.adaptors.GreenWiring;
+import com.ociweb.greenspring.annotation.CreateGreenSpringApp;
 import com.ociweb.greenspring.annotation.CreateGreenSpringAppConfig;
 import com.ociweb.greenspring.builder.GreenBehaviorBuilder;
+import com.ociweb.greenspring.builder.GreenComponentsBuilder;
+import com.ociweb.greenspring.builder.GreenElementException;
+import com.ociweb.greenspring.builder.GreenEventsBuilder;
+import com.ociweb.greenspring.builder.GreenSchedulesBuilder;
 import com.ociweb.greenspring.builder.GreenSpringAppBuilder;
+import com.ociweb.greenspring.builder.GreenWiringBuilder;
 
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
@@ -20,6 +32,10 @@ import java.util.Set;
 
 @SupportedAnnotationTypes({
         "org.springframework.web.bind.annotation.*",
+        "org.springframework.context.event.EventListener",
+        "org.springframework.scheduling.annotation.*",
+        "org.springframework.stereotype.*",
+        "org.springframework.beans.factory.annotation.*",
         "com.ociweb.greenspring.annotation.*"})
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
 //@AutoService(GreenSpringProcessor.class) - Google thing to produce meta file
@@ -27,13 +43,14 @@ import java.util.Set;
 public class GreenSpringProcessor extends AbstractProcessor {
     private Filer filer;
     private Messager messager;
-    private final CreateGreenSpringAppConfig config = new CreateGreenSpringAppConfig();
+    private GreenConstantResponses constants;
 
     @Override
     public synchronized void init(ProcessingEnvironment processingEnv) {
         super.init(processingEnv);
         filer = processingEnv.getFiler();
         messager = processingEnv.getMessager();
+        constants = new GreenConstantResponses(processingEnv);
     }
 
     @Override
@@ -41,17 +58,32 @@ public class GreenSpringProcessor extends AbstractProcessor {
         if (annotations.isEmpty()) {
             return true;
         }
-        GreenSpringAppBuilder app = new GreenSpringAppBuilder(config.getAppName(), config.getSubPackage(), config.getPort());
+        CreateGreenSpringAppConfig config = fetchConfig(roundEnv);
+        GreenJsonCodecs codecs = new GreenJsonCodecs(messager, config.getSubPackage());
+        GreenEventsBuilder events = new GreenEventsBuilder(new GreenEventListeners(processingEnv, codecs, roundEnv), codecs);
+        GreenSchedulesBuilder schedules = new GreenSchedulesBuilder(new GreenScheduledMethods(processingEnv, roundEnv));
+        GreenWiringBuilder wiring = new GreenWiringBuilder(new GreenWiring(processingEnv, roundEnv));
+        GreenComponentsBuilder components = new GreenComponentsBuilder(events, schedules, wiring, config.getSubPackage());
+        GreenSpringAppBuilder app = new GreenSpringAppBuilder(config, codecs, events, components, wiring);
+        GreenExceptionHandlers handlers = new GreenExceptionHandlers(processingEnv, constants, roundEnv);
 
         for (GreenRoute controller : GreenRoute.fetchControllers(roundEnv)) {
             Element element = controller.getElement();
             try {
-                GreenBehaviorBuilder current = new GreenBehaviorBuilder(controller, config.getSubPackage());
+                GreenBehaviorBuilder current = new GreenBehaviorBuilder(controller, config.getSubPackage(), codecs, constants, handlers, events, schedules, wiring);
                 app.addBehavior(current);
+                warnSpringCaching(controller);
                 for (GreenRoute route : GreenRoute.fetchMethods(element)) {
-                    current.addRoutedMethod(route);
+                    warnSpringCaching(route);
+                    try {
+                        current.addRoutedMethod(route);
+                    } catch (GreenElementException e) {
+                        messager.printMessage(Diagnostic.Kind.ERROR, e.getLocalizedMessage(), e.getElement());
+                    } catch (IllegalArgumentException e) {
+                        messager.printMessage(Diagnostic.Kind.ERROR, e.getLocalizedMessage(), route.getElement());
+                    }
                 }
-            } catch (ClassNotFoundException e) {
+            } catch (ClassNotFoundException | IllegalArgumentException e) {
                 messager.printMessage(Diagnostic.Kind.ERROR, e.getLocalizedMessage(), element);
             }
         }
@@ -62,4 +94,21 @@ public class GreenSpringProcessor extends AbstractProcessor {
         }
         return true;
     }
+
+    private void warnSpringCaching(GreenRoute route) {
+        if (route.hasSpringCaching()) {
+            messager.printMessage(Diagnostic.Kind.WARNING, "GreenSpring does not apply Spring's cache annotations,"
+                    + " the service is called on every request, use @GreenCache to cache a GET response", route.getElement());
+        }
+    }
+
+    private CreateGreenSpringAppConfig fetchConfig(RoundEnvironment roundEnv) {
+        Set<? extends Element> apps = roundEnv.getElementsAnnotatedWith(CreateGreenSpringApp.class);
+        if (apps.size() > 1) {
+            for (Element element : apps) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Only one @CreateGreenSpringApp is allowed", element);
+            }
+        }
+        return new CreateGreenSpringAppConfig(apps.isEmpty() ? null : apps.iterator().next().getAnnotation(CreateGreenSpringApp.class));
+    }
 }
@@ -0,0 +1,221 @@
+package com.ociweb.greenspring.adaptors;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.squareup.javapoet.CodeBlock;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class GreenBean {
+    private final TypeElement element;
+    private final boolean instantiable;
+    private final List<Property> properties = new ArrayList<>();
+
+    public static class Property {
+        private final String name;
+        private String jsonName;
+        private TypeMirror type;
+        private Element field;
+        private String getter;
+        private String setter;
+        private boolean ignored;
+        private final List<Element> members = new ArrayList<>();
+
+        private Property(String name) {
+            this.name = name;
+            this.jsonName = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getJsonName() {
+            return jsonName;
+        }
+
+        public TypeMirror getType() {
+            return type;
+        }
+
+        public Element getElement() {
+            return field;
+        }
+
+        // Field, getter and setter, whichever exist, as they may all carry annotations.
+        public List<Element> getMembers() {
+            return members;
+        }
+
+        public boolean isReadable() {
+            return getter != null || isPublicField(false);
+        }
+
+        public boolean isWritable() {
+            return setter != null || isPublicField(true);
+        }
+
+        public CodeBlock get(String target) {
+            if (getter != null) {
+                return CodeBlock.of("$L.$L()", target, getter);
+            }
+            return CodeBlock.of("$L.$L", target, name);
+        }
+
+        public CodeBlock set(String target, CodeBlock value) {
+            if (setter != null) {
+                return CodeBlock.builder().addStatement("$L.$L($L)", target, setter, value).build();
+            }
+            return CodeBlock.builder().addStatement("$L.$L = $L", target, name, value).build();
+        }
+
+        private boolean isPublicField(boolean assigned) {
+            return field != null
+                    && field.getModifiers().contains(Modifier.PUBLIC)
+                    && !(assigned && field.getModifiers().contains(Modifier.FINAL));
+        }
+
+        private void annotated(Element member) {
+            members.add(member);
+            JsonIgnore ignore = member.getAnnotation(JsonIgnore.class);
+            if (ignore != null && ignore.value()) {
+                ignored = true;
+            }
+            JsonProperty property = member.getAnnotation(JsonProperty.class);
+            if (property != null && !property.value().isEmpty()) {
+                jsonName = property.value();
+            }
+        }
+    }
+
+    public GreenBean(TypeElement element) {
+        this.element = element;
+        this.instantiable = isInstantiable(element);
+
+        Map<String, Property> found = new LinkedHashMap<>();
+        TypeElement current = element;
+        while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+            for (Element member : current.getEnclosedElements()) {
+                if (member.getModifiers().contains(Modifier.STATIC)) {
+                    continue;
+                }
+                if (member.getKind() == ElementKind.FIELD) {
+                    if (member.getModifiers().contains(Modifier.TRANSIENT)) {
+                        continue;
+                    }
+                    Property property = found.computeIfAbsent(member.getSimpleName().toString(), Property::new);
+                    if (property.field == null) {
+                        property.field = member;
+                        if (property.type == null) {
+                            property.type = member.asType();
+                        }
+                        property.annotated(member);
+                    }
+                }
+                else if (member.getKind() == ElementKind.METHOD && member.getModifiers().contains(Modifier.PUBLIC)) {
+                    accessor((ExecutableElement)member, found);
+                }
+            }
+            current = superclass(current);
+        }
+
+        for (Property property : found.values()) {
+            if (!property.ignored && property.type != null) {
+                properties.add(property);
+            }
+        }
+    }
+
+    public TypeElement getElement() {
+        return element;
+    }
+
+    public boolean isInstantiable() {
+        return instantiable;
+    }
+
+    public List<Property> getProperties() {
+        return properties;
+    }
+
+    private static void accessor(ExecutableElement method, Map<String, Property> found) {
+        String methodName = method.getSimpleName().toString();
+        List<? extends VariableElement> params = method.getParameters();
+        TypeMirror returns = method.getReturnType();
+        if (params.isEmpty() && returns.getKind() != TypeKind.VOID) {
+            String name = null;
+            if (methodName.startsWith("get") && methodName.length() > 3 && !methodName.equals("getClass")) {
+                name = propertyName(methodName.substring(3));
+            }
+            else if (methodName.startsWith("is") && methodName.length() > 2 && returns.getKind() == TypeKind.BOOLEAN) {
+                name = propertyName(methodName.substring(2));
+            }
+            if (name != null) {
+                Property property = found.computeIfAbsent(name, Property::new);
+                if (property.getter == null) {
+                    property.getter = methodName;
+                    property.type = returns;
+                    property.annotated(method);
+                }
+            }
+        }
+        else if (params.size() == 1 && methodName.startsWith("set") && methodName.length() > 3) {
+            Property property = found.computeIfAbsent(propertyName(methodName.substring(3)), Property::new);
+            if (property.setter == null) {
+                property.setter = methodName;
+                if (property.type == null) {
+                    property.type = params.get(0).asType();
+                }
+                property.annotated(method);
+            }
+        }
+    }
+
+    // Same mangling Jackson applies to accessor names: the leading upper case run is lowered.
+    private static String propertyName(String suffix) {
+        StringBuilder name = new StringBuilder(suffix);
+        for (int i = 0; i < name.length() && Character.isUpperCase(name.charAt(i)); i++) {
+            name.setCharAt(i, Character.toLowerCase(name.charAt(i)));
+        }
+        return name.toString();
+    }
+
+    private static TypeElement superclass(TypeElement type) {
+        TypeMirror parent = type.getSuperclass();
+        if (parent.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement)((DeclaredType)parent).asElement();
+    }
+
+    private static boolean isInstantiable(TypeElement element) {
+        if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        if (element.getNestingKind() != NestingKind.TOP_LEVEL && !element.getModifiers().contains(Modifier.STATIC)) {
+            return false;
+        }
+        for (Element member : element.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR
+                    && member.getModifiers().contains(Modifier.PUBLIC)
+                    && ((ExecutableElement)member).getParameters().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,231 @@
+package com.ociweb.greenspring.adaptors;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.ParameterizedTypeTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.Trees;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import java.util.List;
+
+// Finds handlers whose body is a single return of a ResponseEntity built from a constant status
+// and either no body, a literal or a public static final field. Such handlers have no effect
+// besides their result, so the route can answer without calling them.
+public class GreenConstantResponses {
+    private final Trees trees;
+    private final Elements elements;
+
+    public static class Constant {
+        private final int status;
+        private final CodeBlock body;
+        private final TypeMirror bodyType;
+
+        private Constant(int status, CodeBlock body, TypeMirror bodyType) {
+            this.status = status;
+            this.body = body;
+            this.bodyType = bodyType;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        // Null when the response has no body.
+        public CodeBlock getBody() {
+            return body;
+        }
+
+        // Type of the body expression, which may be narrower than the handler declares.
+        public TypeMirror getBodyType() {
+            return bodyType;
+        }
+    }
+
+    public GreenConstantResponses(ProcessingEnvironment processingEnv) {
+        Trees found;
+        try {
+            found = Trees.instance(processingEnv);
+        } catch (IllegalArgumentException e) {
+            found = null; // not running inside javac, nothing is treated as constant
+        }
+        this.trees = found;
+        this.elements = processingEnv.getElementUtils();
+    }
+
+    public Constant find(ExecutableElement method) {
+        if (trees == null) {
+            return null;
+        }
+        MethodTree tree = trees.getTree(method);
+        BlockTree body = tree != null ? tree.getBody() : null;
+        if (body == null || body.getStatements().size() != 1) {
+            return null;
+        }
+        StatementTree statement = body.getStatements().get(0);
+        if (!(statement instanceof ReturnTree)) {
+            return null;
+        }
+        return entity(((ReturnTree)statement).getExpression(), trees.getPath(method));
+    }
+
+    private Constant entity(ExpressionTree expression, TreePath method) {
+        expression = unwrap(expression);
+        if (expression instanceof NewClassTree) {
+            NewClassTree created = (NewClassTree)expression;
+            if (created.getClassBody() != null || !isResponseEntity(created.getIdentifier(), method)) {
+                return null;
+            }
+            List<? extends ExpressionTree> args = created.getArguments();
+            if (args.size() == 1) {
+                return constant(status(args.get(0), method), null, method);
+            }
+            if (args.size() == 2) {
+                return constant(status(args.get(1), method), args.get(0), method);
+            }
+            return null;
+        }
+        if (expression instanceof MethodInvocationTree) {
+            MethodInvocationTree call = (MethodInvocationTree)expression;
+            if (!(call.getMethodSelect() instanceof MemberSelectTree)) {
+                return null;
+            }
+            MemberSelectTree select = (MemberSelectTree)call.getMethodSelect();
+            String name = select.getIdentifier().toString();
+            List<? extends ExpressionTree> args = call.getArguments();
+            if (isResponseEntity(select.getExpression(), method)) {
+                return name.equals("ok") && args.size() == 1 ? constant(200, args.get(0), method) : null;
+            }
+            if (name.equals("build") && args.isEmpty()) {
+                return constant(builderStatus(select.getExpression(), method), null, method);
+            }
+            if (name.equals("body") && args.size() == 1) {
+                return constant(builderStatus(select.getExpression(), method), args.get(0), method);
+            }
+        }
+        return null;
+    }
+
+    private Constant constant(int status, ExpressionTree body, TreePath method) {
+        if (status < 0) {
+            return null;
+        }
+        if (body == null) {
+            return new Constant(status, null, null);
+        }
+        body = unwrap(body);
+        if (body instanceof LiteralTree) {
+            Object value = ((LiteralTree)body).getValue();
+            if (value == null) {
+                return new Constant(status, null, null);
+            }
+            if (value instanceof String) {
+                return new Constant(status, CodeBlock.of("$S", value), elements.getTypeElement("java.lang.String").asType());
+            }
+            return null;
+        }
+        if (body instanceof IdentifierTree || body instanceof MemberSelectTree) {
+            Element field = trees.getElement(TreePath.getPath(method, body));
+            if (field != null && field.getKind() == ElementKind.FIELD
+                    && field.getModifiers().contains(Modifier.STATIC)
+                    && field.getModifiers().contains(Modifier.FINAL)
+                    && field.getModifiers().contains(Modifier.PUBLIC)
+                    && field.getEnclosingElement().getModifiers().contains(Modifier.PUBLIC)) {
+                return new Constant(status, CodeBlock.of("$T.$L", ClassName.get((TypeElement)field.getEnclosingElement()), field.getSimpleName()), field.asType());
+            }
+        }
+        return null;
+    }
+
+    private int builderStatus(ExpressionTree expression, TreePath method) {
+        expression = unwrap(expression);
+        if (!(expression instanceof MethodInvocationTree)) {
+            return -1;
+        }
+        MethodInvocationTree call = (MethodInvocationTree)expression;
+        if (!(call.getMethodSelect() instanceof MemberSelectTree)) {
+            return -1;
+        }
+        MemberSelectTree select = (MemberSelectTree)call.getMethodSelect();
+        if (!isResponseEntity(select.getExpression(), method)) {
+            return -1;
+        }
+        List<? extends ExpressionTree> args = call.getArguments();
+        switch (select.getIdentifier().toString()) {
+            case "ok":
+                return args.isEmpty() ? 200 : -1;
+            case "accepted":
+                return 202;
+            case "noContent":
+                return 204;
+            case "badRequest":
+                return 400;
+            case "notFound":
+                return 404;
+            case "unprocessableEntity":
+                return 422;
+            case "status":
+                return args.size() == 1 ? status(args.get(0), method) : -1;
+            default:
+                return -1;
+        }
+    }
+
+    // An HttpStatus constant or an int literal, names are resolved so a look-alike is not mistaken for one.
+    private int status(ExpressionTree expression, TreePath method) {
+        expression = unwrap(expression);
+        if (expression instanceof LiteralTree && ((LiteralTree)expression).getValue() instanceof Integer) {
+            return (Integer)((LiteralTree)expression).getValue();
+        }
+        if (!(expression instanceof IdentifierTree || expression instanceof MemberSelectTree)) {
+            return -1;
+        }
+        Element constant = trees.getElement(TreePath.getPath(method, expression));
+        if (constant == null || constant.getKind() != ElementKind.ENUM_CONSTANT
+                || !((TypeElement)constant.getEnclosingElement()).getQualifiedName().contentEquals(HttpStatus.class.getName())) {
+            return -1;
+        }
+        try {
+            return HttpStatus.valueOf(constant.getSimpleName().toString()).value();
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private boolean isResponseEntity(Tree type, TreePath method) {
+        if (type instanceof ParameterizedTypeTree) {
+            type = ((ParameterizedTypeTree)type).getType();
+        }
+        Element element = trees.getElement(TreePath.getPath(method, type));
+        return element instanceof TypeElement
+                && ((TypeElement)element).getQualifiedName().contentEquals(ResponseEntity.class.getName());
+    }
+
+    private static ExpressionTree unwrap(ExpressionTree expression) {
+        while (expression instanceof ParenthesizedTree) {
+            expression = ((ParenthesizedTree)expression).getExpression();
+        }
+        return expression;
+    }
+}
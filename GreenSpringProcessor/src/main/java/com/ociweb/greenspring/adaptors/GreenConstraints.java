@@ -0,0 +1,287 @@
+package com.ociweb.greenspring.adaptors;
+
+import com.ociweb.greenspring.runtime.GreenValidationException;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.TypeSpec;
+
+import javax.annotation.processing.Messager;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypesException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.validation.Constraint;
+import javax.validation.Valid;
+import javax.validation.constraints.AssertFalse;
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Null;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.regex.PatternSyntaxException;
+
+// Bean validation compiled into the codecs. The built-in constraints of a property become plain
+// comparisons in the validate method of its codec, each throwing an exception created when the
+// codec loads, so a rejected record costs a branch and a throw. Constraints that need a
+// validator implementation at run time are reported and left unchecked.
+public class GreenConstraints {
+    private static final Set<String> checked = new HashSet<>(Arrays.asList(
+            NotNull.class.getName(), Null.class.getName(), AssertTrue.class.getName(), AssertFalse.class.getName(),
+            Min.class.getName(), Max.class.getName(), DecimalMin.class.getName(), DecimalMax.class.getName(),
+            Size.class.getName(), Pattern.class.getName()));
+
+    private static final Set<String> texts = new HashSet<>(Arrays.asList(
+            "java.lang.String", "java.lang.CharSequence"));
+
+    private static final Set<String> collections = new HashSet<>(Arrays.asList(
+            "java.util.Collection", "java.util.List", "java.util.ArrayList", "java.util.Set", "java.util.HashSet"));
+
+    private static final Set<String> numbers = new HashSet<>(Arrays.asList(
+            "java.lang.Byte", "java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double"));
+
+    private final Messager messager;
+
+    public GreenConstraints(Messager messager) {
+        this.messager = messager;
+    }
+
+    public boolean isCascaded(GreenBean.Property property) {
+        return property.getMembers().stream().anyMatch(member -> member.getAnnotation(Valid.class) != null);
+    }
+
+    public boolean isConstrained(GreenBean.Property property) {
+        return property.getMembers().stream()
+                .flatMap(member -> member.getAnnotationMirrors().stream())
+                .anyMatch(GreenConstraints::isConstraint);
+    }
+
+    // Adds to validate the checks of a property whose value is in the local variable, and to
+    // codec the exceptions they throw. A constraint repeated on the field and an accessor is
+    // checked once.
+    public void addChecks(TypeSpec.Builder codec, CodeBlock.Builder validate, GreenBean.Property property, String local) {
+        if (property.getMembers().isEmpty()) {
+            return;
+        }
+        Element member = property.getMembers().get(0);
+        for (Element annotated : property.getMembers()) {
+            for (AnnotationMirror mirror : annotated.getAnnotationMirrors()) {
+                if (!checked.contains(annotationName(mirror)) && isConstraint(mirror)) {
+                    messager.printMessage(Diagnostic.Kind.WARNING, "GreenSpring does not check @"
+                            + mirror.getAnnotationType().asElement().getSimpleName() + ", it needs a validator at run time", annotated);
+                }
+            }
+        }
+
+        TypeMirror type = property.getType();
+        boolean primitive = type.getKind().isPrimitive();
+        String nonNull = primitive ? "" : local + " != null && ";
+
+        NotNull notNull = find(property, NotNull.class);
+        if (notNull != null && inDefaultGroup(notNull::groups, member) && !primitive) {
+            check(codec, validate, property, "NotNull", notNull.message(), "may not be null",
+                    CodeBlock.of("$L == null", local));
+        }
+        Null isNull = find(property, Null.class);
+        if (isNull != null && inDefaultGroup(isNull::groups, member) && expect(!primitive, "Null", type, member)) {
+            check(codec, validate, property, "Null", isNull.message(), "must be null",
+                    CodeBlock.of("$L != null", local));
+        }
+        AssertTrue assertTrue = find(property, AssertTrue.class);
+        if (assertTrue != null && inDefaultGroup(assertTrue::groups, member) && expect(isBoolean(type), "AssertTrue", type, member)) {
+            check(codec, validate, property, "AssertTrue", assertTrue.message(), "must be true",
+                    CodeBlock.of("$L!$L", nonNull, local));
+        }
+        AssertFalse assertFalse = find(property, AssertFalse.class);
+        if (assertFalse != null && inDefaultGroup(assertFalse::groups, member) && expect(isBoolean(type), "AssertFalse", type, member)) {
+            check(codec, validate, property, "AssertFalse", assertFalse.message(), "must be false",
+                    CodeBlock.of("$L$L", nonNull, local));
+        }
+        Min min = find(property, Min.class);
+        if (min != null && inDefaultGroup(min::groups, member) && expect(isNumber(type), "Min", type, member)) {
+            check(codec, validate, property, "Min", interpolate(min.message(), "value", min.value()),
+                    "must be greater than or equal to " + min.value(),
+                    CodeBlock.of("$L$L < $LL", nonNull, local, min.value()));
+        }
+        Max max = find(property, Max.class);
+        if (max != null && inDefaultGroup(max::groups, member) && expect(isNumber(type), "Max", type, member)) {
+            check(codec, validate, property, "Max", interpolate(max.message(), "value", max.value()),
+                    "must be less than or equal to " + max.value(),
+                    CodeBlock.of("$L$L > $LL", nonNull, local, max.value()));
+        }
+        DecimalMin decimalMin = find(property, DecimalMin.class);
+        if (decimalMin != null && inDefaultGroup(decimalMin::groups, member) && expect(isNumber(type), "DecimalMin", type, member)) {
+            String bound = decimal(decimalMin.value(), member);
+            if (bound != null) {
+                check(codec, validate, property, "DecimalMin", interpolate(decimalMin.message(), "value", decimalMin.value()),
+                        "must be greater than " + (decimalMin.inclusive() ? "or equal to " : "") + decimalMin.value(),
+                        CodeBlock.of("$L$L $L $LD", nonNull, local, decimalMin.inclusive() ? "<" : "<=", bound));
+            }
+        }
+        DecimalMax decimalMax = find(property, DecimalMax.class);
+        if (decimalMax != null && inDefaultGroup(decimalMax::groups, member) && expect(isNumber(type), "DecimalMax", type, member)) {
+            String bound = decimal(decimalMax.value(), member);
+            if (bound != null) {
+                check(codec, validate, property, "DecimalMax", interpolate(decimalMax.message(), "value", decimalMax.value()),
+                        "must be less than " + (decimalMax.inclusive() ? "or equal to " : "") + decimalMax.value(),
+                        CodeBlock.of("$L$L $L $LD", nonNull, local, decimalMax.inclusive() ? ">" : ">=", bound));
+            }
+        }
+        Size size = find(property, Size.class);
+        if (size != null && inDefaultGroup(size::groups, member) && expect(isText(type) || isCollection(type), "Size", type, member)) {
+            String length = isText(type) ? local + ".length()" : local + ".size()";
+            CodeBlock outside;
+            if (size.max() == Integer.MAX_VALUE) {
+                outside = CodeBlock.of("$L < $L", length, size.min());
+            }
+            else if (size.min() <= 0) {
+                outside = CodeBlock.of("$L > $L", length, size.max());
+            }
+            else {
+                outside = CodeBlock.of("($L < $L || $L > $L)", length, size.min(), length, size.max());
+            }
+            check(codec, validate, property, "Size",
+                    interpolate(interpolate(size.message(), "min", size.min()), "max", size.max()),
+                    "size must be between " + size.min() + " and " + size.max(),
+                    CodeBlock.of("$L$L", nonNull, outside));
+        }
+        Pattern pattern = find(property, Pattern.class);
+        if (pattern != null && inDefaultGroup(pattern::groups, member) && expect(isText(type), "Pattern", type, member)) {
+            int flags = 0;
+            for (Pattern.Flag flag : pattern.flags()) {
+                flags |= flag.getValue();
+            }
+            try {
+                java.util.regex.Pattern.compile(pattern.regexp(), flags);
+                String compiled = constantName(property, "Pattern") + "_REGEXP";
+                codec.addField(FieldSpec.builder(java.util.regex.Pattern.class, compiled, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$T.compile($S, $L)", java.util.regex.Pattern.class, pattern.regexp(), flags)
+                        .build());
+                check(codec, validate, property, "Pattern", interpolate(pattern.message(), "regexp", pattern.regexp()),
+                        "must match \"" + pattern.regexp() + "\"",
+                        CodeBlock.of("$L!$L.matcher($L).matches()", nonNull, compiled, local));
+            } catch (PatternSyntaxException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "GreenSpring cannot compile @Pattern " + e.getDescription(), member);
+            }
+        }
+    }
+
+    private static <A extends Annotation> A find(GreenBean.Property property, Class<A> constraint) {
+        for (Element member : property.getMembers()) {
+            A annotation = member.getAnnotation(constraint);
+            if (annotation != null) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private void check(TypeSpec.Builder codec, CodeBlock.Builder validate, GreenBean.Property property,
+                       String constraint, String message, String defaultMessage, CodeBlock failed) {
+        String rejected = constantName(property, constraint);
+        String text = message.equals("{javax.validation.constraints." + constraint + ".message}") ? defaultMessage : message;
+        codec.addField(FieldSpec.builder(GreenValidationException.class, rejected, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T($S, $S)", GreenValidationException.class, property.getJsonName(), text)
+                .build());
+        validate.beginControlFlow("if ($L)", failed)
+                .addStatement("throw $L", rejected)
+                .endControlFlow();
+    }
+
+    // Class values are only seen as mirrors while compiling.
+    private boolean inDefaultGroup(Supplier<Class<?>[]> groups, Element member) {
+        int declared;
+        try {
+            declared = groups.get().length;
+        } catch (MirroredTypesException e) {
+            declared = e.getTypeMirrors().size();
+        }
+        if (declared == 0) {
+            return true;
+        }
+        messager.printMessage(Diagnostic.Kind.WARNING, "GreenSpring only checks constraints of the default group", member);
+        return false;
+    }
+
+    private boolean expect(boolean supported, String constraint, TypeMirror type, Element member) {
+        if (!supported) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "GreenSpring cannot check @" + constraint + " on " + type, member);
+        }
+        return supported;
+    }
+
+    private String decimal(String value, Element member) {
+        try {
+            return Double.toString(Double.parseDouble(value));
+        } catch (NumberFormatException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "GreenSpring cannot read the bound " + value, member);
+            return null;
+        }
+    }
+
+    private static String interpolate(String message, String attribute, Object value) {
+        return message.replace("{" + attribute + "}", String.valueOf(value));
+    }
+
+    private static boolean isConstraint(AnnotationMirror mirror) {
+        return annotationName(mirror).startsWith("javax.validation.constraints.")
+                || mirror.getAnnotationType().asElement().getAnnotation(Constraint.class) != null;
+    }
+
+    private static String annotationName(AnnotationMirror mirror) {
+        return ((TypeElement)mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+
+    private static boolean isBoolean(TypeMirror type) {
+        return type.getKind() == TypeKind.BOOLEAN || "java.lang.Boolean".equals(declaredName(type));
+    }
+
+    private static boolean isNumber(TypeMirror type) {
+        return (type.getKind().isPrimitive() && type.getKind() != TypeKind.BOOLEAN && type.getKind() != TypeKind.CHAR)
+                || numbers.contains(declaredName(type));
+    }
+
+    private static boolean isText(TypeMirror type) {
+        return texts.contains(declaredName(type));
+    }
+
+    private static boolean isCollection(TypeMirror type) {
+        return collections.contains(declaredName(type));
+    }
+
+    private static String declaredName(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return ((TypeElement)((DeclaredType)type).asElement()).getQualifiedName().toString();
+    }
+
+    private static String constantName(GreenBean.Property property, String constraint) {
+        return upperCase(property.getName()) + "_" + upperCase(constraint);
+    }
+
+    private static String upperCase(String source) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (Character.isUpperCase(c) && i > 0) {
+                name.append('_');
+            }
+            name.append(Character.toUpperCase(c));
+        }
+        return name.toString();
+    }
+}
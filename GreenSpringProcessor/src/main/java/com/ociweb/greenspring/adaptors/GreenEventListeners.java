@@ -0,0 +1,141 @@
+package com.ociweb.greenspring.adaptors;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.event.EventListener;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The @EventListener methods of the app, by the class declaring them. Events travel between
+// behaviors as GreenLightning topics named after the listener's parameter type, so only what
+// the codecs encode can be an event: beans, text, numbers and enums the app publishes itself.
+// Spring's own ApplicationEvents, conditions and listeners returning follow-up events are
+// reported instead of silently never firing.
+public class GreenEventListeners {
+    private final Types types;
+    private final Elements elements;
+    private final Messager messager;
+    private final TypeMirror publisherAware;
+    private final Map<TypeElement, List<Listener>> listeners = new LinkedHashMap<>();
+    private final Map<String, TypeMirror> events = new LinkedHashMap<>();
+
+    public static class Listener {
+        private final ExecutableElement method;
+        private final TypeMirror event;
+
+        private Listener(ExecutableElement method, TypeMirror event) {
+            this.method = method;
+            this.event = event;
+        }
+
+        public String getMethodName() {
+            return method.getSimpleName().toString();
+        }
+
+        public TypeMirror getEvent() {
+            return event;
+        }
+
+        public String getTopic() {
+            return topicOf(event);
+        }
+    }
+
+    public GreenEventListeners(ProcessingEnvironment processingEnv, GreenJsonCodecs codecs, RoundEnvironment roundEnv) {
+        this.types = processingEnv.getTypeUtils();
+        this.elements = processingEnv.getElementUtils();
+        this.messager = processingEnv.getMessager();
+        this.publisherAware = elements.getTypeElement(ApplicationEventPublisherAware.class.getName()).asType();
+
+        TypeMirror applicationEvent = elements.getTypeElement(ApplicationEvent.class.getName()).asType();
+        TypeMirror iterable = types.erasure(elements.getTypeElement(Iterable.class.getName()).asType());
+        for (Element element : roundEnv.getElementsAnnotatedWith(EventListener.class)) {
+            if (element.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement)element;
+            TypeMirror event = method.getParameters().size() == 1 ? method.getParameters().get(0).asType() : null;
+            if (event == null || event.getKind() != TypeKind.DECLARED) {
+                error("GreenSpring event listeners take the event as their only parameter", method);
+            }
+            else if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getReturnType().getKind() != TypeKind.VOID) {
+                error("GreenSpring event listeners are public and return void", method);
+            }
+            else if (hasAttributes(method)) {
+                error("GreenSpring delivers events by parameter type, classes and condition are not supported", method);
+            }
+            else if (types.isSubtype(event, applicationEvent)) {
+                error("GreenSpring cannot deliver " + event + ", only objects the app publishes are events", method);
+            }
+            else if (!codecs.isSupported(event) || types.isSubtype(types.erasure(event), iterable)) {
+                error("GreenSpring cannot encode events of type " + event, method);
+            }
+            else {
+                TypeMirror erased = types.erasure(event);
+                events.putIfAbsent(topicOf(erased), erased);
+                listeners.computeIfAbsent((TypeElement)method.getEnclosingElement(), key -> new ArrayList<>())
+                        .add(new Listener(method, erased));
+            }
+        }
+    }
+
+    public static String topicOf(TypeMirror event) {
+        return event.toString();
+    }
+
+    public List<Listener> forClass(Element element) {
+        return listeners.getOrDefault(element, Collections.emptyList());
+    }
+
+    // Classes with listeners that are not controllers get a behavior of their own.
+    public List<TypeElement> getComponents() {
+        List<TypeElement> components = new ArrayList<>();
+        for (TypeElement element : listeners.keySet()) {
+            if (element.getAnnotation(RequestMapping.class) == null) {
+                components.add(element);
+            }
+        }
+        return components;
+    }
+
+    // Every type some listener takes, once, in the order first seen.
+    public List<TypeMirror> getEvents() {
+        return new ArrayList<>(events.values());
+    }
+
+    public boolean isPublisher(Element element) {
+        return types.isSubtype(element.asType(), publisherAware);
+    }
+
+    private boolean hasAttributes(ExecutableElement method) {
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            if (((TypeElement)mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(EventListener.class.getName())) {
+                return !mirror.getElementValues().isEmpty();
+            }
+        }
+        return false;
+    }
+
+    private void error(String message, Element element) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,252 @@
+package com.ociweb.greenspring.adaptors;
+
+import com.squareup.javapoet.CodeBlock;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypesException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Exception mappings of a controller, from its @ExceptionHandler methods, those of the
+// @ControllerAdvice classes and the @ResponseStatus of exception types. They are ordered the
+// way Spring resolves them, the controller's handlers, then the advice, then the annotated
+// exceptions, and within each the most specific exception type first. Only what is known at
+// compile time is kept: the status, and the body when the handler returns a constant.
+public class GreenExceptionHandlers {
+    private final Types types;
+    private final Elements elements;
+    private final Messager messager;
+    private final GreenConstantResponses constants;
+    private final TypeMirror throwable;
+    private final List<Advice> advice = new ArrayList<>();
+    private final List<Mapping> annotated = new ArrayList<>();
+
+    public static class Mapping {
+        private final TypeMirror exception;
+        private final int status;
+        private final CodeBlock body;
+        private final TypeMirror bodyType;
+
+        private Mapping(TypeMirror exception, int status, CodeBlock body, TypeMirror bodyType) {
+            this.exception = exception;
+            this.status = status;
+            this.body = body;
+            this.bodyType = bodyType;
+        }
+
+        public TypeMirror getException() {
+            return exception;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        // Null when the response has no body.
+        public CodeBlock getBody() {
+            return body;
+        }
+
+        public TypeMirror getBodyType() {
+            return bodyType;
+        }
+    }
+
+    private static class Advice {
+        private final List<String> packages;
+        private final List<Mapping> mappings = new ArrayList<>();
+
+        private Advice(String[]... packages) {
+            this.packages = new ArrayList<>();
+            for (String[] names : packages) {
+                this.packages.addAll(Arrays.asList(names));
+            }
+        }
+
+        private boolean appliesTo(String packageName) {
+            return packages.isEmpty() || packages.stream().anyMatch(name -> packageName.equals(name) || packageName.startsWith(name + "."));
+        }
+    }
+
+    public GreenExceptionHandlers(ProcessingEnvironment processingEnv, GreenConstantResponses constants, RoundEnvironment roundEnv) {
+        this.types = processingEnv.getTypeUtils();
+        this.elements = processingEnv.getElementUtils();
+        this.messager = processingEnv.getMessager();
+        this.constants = constants;
+        this.throwable = elements.getTypeElement("java.lang.Throwable").asType();
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(ControllerAdvice.class)) {
+            ControllerAdvice annotation = element.getAnnotation(ControllerAdvice.class);
+            Advice scoped = new Advice(annotation.value(), annotation.basePackages());
+            handlers(element, scoped.mappings);
+            advice.add(scoped);
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(RestControllerAdvice.class)) {
+            RestControllerAdvice annotation = element.getAnnotation(RestControllerAdvice.class);
+            Advice scoped = new Advice(annotation.value(), annotation.basePackages());
+            handlers(element, scoped.mappings);
+            advice.add(scoped);
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(ResponseStatus.class)) {
+            if (element.getKind() == ElementKind.CLASS && types.isSubtype(element.asType(), throwable)) {
+                annotated.add(statusMapping(types.erasure(element.asType()), element.getAnnotation(ResponseStatus.class)));
+            }
+        }
+    }
+
+    public List<Mapping> forController(Element controller) {
+        List<Mapping> local = new ArrayList<>();
+        handlers(controller, local);
+
+        String packageName = elements.getPackageOf(controller).getQualifiedName().toString();
+        List<Mapping> advised = new ArrayList<>();
+        for (Advice scoped : advice) {
+            if (scoped.appliesTo(packageName)) {
+                advised.addAll(scoped.mappings);
+            }
+        }
+
+        // Exceptions from libraries are only seen through the throws clauses of the handlers.
+        List<Mapping> statuses = new ArrayList<>(annotated);
+        for (Element member : controller.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            for (TypeMirror thrown : ((ExecutableElement)member).getThrownTypes()) {
+                ResponseStatus status = findResponseStatus(thrown);
+                if (status != null && statuses.stream().noneMatch(mapping -> types.isSameType(mapping.exception, types.erasure(thrown)))) {
+                    statuses.add(statusMapping(types.erasure(thrown), status));
+                }
+            }
+        }
+
+        List<Mapping> ordered = new ArrayList<>();
+        ordered.addAll(specificFirst(local));
+        ordered.addAll(specificFirst(advised));
+        ordered.addAll(specificFirst(statuses));
+        return ordered;
+    }
+
+    private void handlers(Element type, List<Mapping> mappings) {
+        for (Element member : type.getEnclosedElements()) {
+            ExceptionHandler handler = member.getAnnotation(ExceptionHandler.class);
+            if (member.getKind() != ElementKind.METHOD || handler == null) {
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement)member;
+            GreenConstantResponses.Constant constant = constants.find(method);
+            ResponseStatus responseStatus = method.getAnnotation(ResponseStatus.class);
+            int status;
+            CodeBlock body = null;
+            TypeMirror bodyType = null;
+            if (constant != null) {
+                status = constant.getStatus();
+                body = constant.getBody();
+                bodyType = constant.getBodyType();
+            }
+            else if (responseStatus != null) {
+                status = status(responseStatus);
+                if (method.getReturnType().getKind() != TypeKind.VOID) {
+                    messager.printMessage(Diagnostic.Kind.WARNING, "GreenSpring answers " + method.getSimpleName()
+                            + " with its @ResponseStatus only, the body is not constant", method);
+                }
+            }
+            else {
+                status = HttpStatus.INTERNAL_SERVER_ERROR.value();
+                messager.printMessage(Diagnostic.Kind.WARNING, "GreenSpring answers " + method.getSimpleName()
+                        + " with " + status + ", it neither returns a constant ResponseEntity nor has a @ResponseStatus", method);
+            }
+            for (TypeMirror exception : handledTypes(method, handler)) {
+                mappings.add(new Mapping(types.erasure(exception), status, body, bodyType));
+            }
+        }
+    }
+
+    // Without a value the handler takes the exception types of its parameters.
+    private List<TypeMirror> handledTypes(ExecutableElement method, ExceptionHandler handler) {
+        List<? extends TypeMirror> declared;
+        try {
+            handler.value();
+            declared = Collections.emptyList();
+        } catch (MirroredTypesException e) {
+            declared = e.getTypeMirrors();
+        }
+        List<TypeMirror> handled = new ArrayList<>(declared);
+        if (handled.isEmpty()) {
+            for (VariableElement param : method.getParameters()) {
+                if (types.isSubtype(param.asType(), throwable)) {
+                    handled.add(param.asType());
+                }
+            }
+        }
+        return handled;
+    }
+
+    // A @ResponseStatus reason becomes the body, as a JSON string.
+    private Mapping statusMapping(TypeMirror exception, ResponseStatus responseStatus) {
+        String reason = responseStatus.reason();
+        return reason.isEmpty()
+                ? new Mapping(exception, status(responseStatus), null, null)
+                : new Mapping(exception, status(responseStatus), CodeBlock.of("$S", reason), elements.getTypeElement("java.lang.String").asType());
+    }
+
+    // Spring looks for @ResponseStatus on the superclasses of the exception as well.
+    private ResponseStatus findResponseStatus(TypeMirror type) {
+        while (type.getKind() == TypeKind.DECLARED) {
+            TypeElement element = (TypeElement)((DeclaredType)type).asElement();
+            ResponseStatus status = element.getAnnotation(ResponseStatus.class);
+            if (status != null) {
+                return status;
+            }
+            type = element.getSuperclass();
+        }
+        return null;
+    }
+
+    // code is an alias of value, the one left at its default gives way.
+    private static int status(ResponseStatus responseStatus) {
+        return responseStatus.code() != HttpStatus.INTERNAL_SERVER_ERROR
+                ? responseStatus.code().value()
+                : responseStatus.value().value();
+    }
+
+    // Each mapping comes after every mapping of a subtype, so the first instanceof that
+    // matches is the closest handler.
+    private List<Mapping> specificFirst(List<Mapping> mappings) {
+        List<Mapping> remaining = new ArrayList<>(mappings);
+        List<Mapping> ordered = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            for (Mapping mapping : remaining) {
+                boolean hasSubtype = remaining.stream().anyMatch(other -> other != mapping
+                        && types.isSubtype(other.exception, mapping.exception)
+                        && !types.isSameType(other.exception, mapping.exception));
+                if (!hasSubtype) {
+                    ordered.add(mapping);
+                    remaining.remove(mapping);
+                    break;
+                }
+            }
+        }
+        return ordered;
+    }
+}
@@ -0,0 +1,652 @@
+package com.ociweb.greenspring.adaptors;
+
+import com.ociweb.greenspring.runtime.GreenBinaryReader;
+import com.ociweb.greenspring.runtime.GreenBinaryWriter;
+import com.ociweb.greenspring.runtime.GreenJsonReader;
+import com.ociweb.greenspring.runtime.GreenJsonWriter;
+import com.squareup.javapoet.*;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+
+public class GreenJsonCodecs {
+    private final Messager messager;
+    private final String subPackage;
+    private final GreenConstraints constraints;
+    private final Map<String, ClassName> codecNames = new HashMap<>();
+    private final Map<ClassName, TypeSpec> codecs = new LinkedHashMap<>();
+    private int locals = 0;
+
+    private enum Kind {
+        BOOLEAN, BYTE, SHORT, INT, LONG, FLOAT, DOUBLE,
+        BOXED_BOOLEAN, BOXED_BYTE, BOXED_SHORT, BOXED_INT, BOXED_LONG, BOXED_FLOAT, BOXED_DOUBLE,
+        TEXT, ENUM, LIST, SET, BEAN
+    }
+
+    private final static Map<String, Kind> declared = new HashMap<>();
+    static {
+        declared.put("java.lang.Boolean", Kind.BOXED_BOOLEAN);
+        declared.put("java.lang.Byte", Kind.BOXED_BYTE);
+        declared.put("java.lang.Short", Kind.BOXED_SHORT);
+        declared.put("java.lang.Integer", Kind.BOXED_INT);
+        declared.put("java.lang.Long", Kind.BOXED_LONG);
+        declared.put("java.lang.Float", Kind.BOXED_FLOAT);
+        declared.put("java.lang.Double", Kind.BOXED_DOUBLE);
+        declared.put("java.lang.String", Kind.TEXT);
+        declared.put("java.lang.CharSequence", Kind.TEXT);
+        declared.put("java.lang.Iterable", Kind.LIST);
+        declared.put("java.util.Collection", Kind.LIST);
+        declared.put("java.util.List", Kind.LIST);
+        declared.put("java.util.ArrayList", Kind.LIST);
+        declared.put("java.util.Set", Kind.SET);
+        declared.put("java.util.HashSet", Kind.SET);
+    }
+
+    public GreenJsonCodecs(Messager messager, String subPackage) {
+        this.messager = messager;
+        this.subPackage = subPackage;
+        this.constraints = new GreenConstraints(messager);
+    }
+
+    public boolean isSupported(TypeMirror type) {
+        return kindOf(type) != null;
+    }
+
+    public ClassName codecFor(TypeElement element) {
+        String key = element.getQualifiedName().toString();
+        ClassName codecName = codecNames.get(key);
+        if (codecName == null) {
+            ClassName beanName = ClassName.get(element);
+            codecName = ClassName.get(beanName.packageName() + subPackage + ".codecs",
+                    "Green" + String.join("", beanName.simpleNames()) + "Codec");
+            codecNames.put(key, codecName);
+            codecs.put(codecName, buildCodec(new GreenBean(element), beanName, codecName));
+        }
+        return codecName;
+    }
+
+    public CodeBlock read(TypeMirror type, String json, Function<CodeBlock, CodeBlock> assign) {
+        return read(type, json, assign, false);
+    }
+
+    // Validated beans are checked as each one is decoded, so an invalid element of an array
+    // fails the request before the rest of the array is read.
+    public CodeBlock read(TypeMirror type, String json, Function<CodeBlock, CodeBlock> assign, boolean validated) {
+        Kind kind = kindOf(type);
+        if (kind == null) {
+            return unsupported(type);
+        }
+        if (kind == Kind.LIST || kind == Kind.SET) {
+            TypeMirror item = itemType(type);
+            ClassName collection = ClassName.get(kind == Kind.LIST ? ArrayList.class : HashSet.class);
+            String items = "items" + locals++;
+            return CodeBlock.builder()
+                    .beginControlFlow("if ($L.beginArray())", json)
+                    .addStatement("$T $L = new $T<>()", ParameterizedTypeName.get(collection, TypeName.get(item)), items, collection)
+                    .beginControlFlow("while ($L.hasNext())", json)
+                    .add(read(item, json, value -> CodeBlock.builder().addStatement("$L.add($L)", items, value).build(), validated))
+                    .endControlFlow()
+                    .add(assign.apply(CodeBlock.of("$L", items)))
+                    .nextControlFlow("else")
+                    .add(assign.apply(CodeBlock.of("null")))
+                    .endControlFlow()
+                    .build();
+        }
+        if (validated && kind == Kind.BEAN) {
+            return assign.apply(CodeBlock.of("$T.validate($L)", codecFor(asElement(type)), readValue(type, kind, json)));
+        }
+        return assign.apply(readValue(type, kind, json));
+    }
+
+    public CodeBlock decoder(TypeMirror type) {
+        return decoder(type, false);
+    }
+
+    public CodeBlock decoder(TypeMirror type, boolean validated) {
+        Kind kind = kindOf(type);
+        if (kind == null || kind == Kind.LIST || kind == Kind.SET) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "GreenSpring cannot stream elements of type " + type);
+            return CodeBlock.of("null");
+        }
+        if (kind == Kind.BEAN && validated) {
+            ClassName codec = codecFor(asElement(type));
+            return CodeBlock.of("json -> $T.validate($T.read(json))", codec, codec);
+        }
+        if (kind == Kind.BEAN) {
+            return CodeBlock.of("$T::read", codecFor(asElement(type)));
+        }
+        return CodeBlock.of("json -> $L", readValue(type, kind, "json"));
+    }
+
+    // The binary format follows the same structure as JSON: the collections and beans it
+    // cannot encode are reported the same way.
+    public CodeBlock readBinary(TypeMirror type, String binary, Function<CodeBlock, CodeBlock> assign, boolean validated) {
+        Kind kind = kindOf(type);
+        if (kind == null) {
+            return unsupported(type);
+        }
+        if (kind == Kind.LIST || kind == Kind.SET) {
+            TypeMirror item = itemType(type);
+            ClassName collection = ClassName.get(kind == Kind.LIST ? ArrayList.class : HashSet.class);
+            String items = "items" + locals++;
+            return CodeBlock.builder()
+                    .beginControlFlow("if ($L.readMarker())", binary)
+                    .addStatement("$T $L = new $T<>()", ParameterizedTypeName.get(collection, TypeName.get(item)), items, collection)
+                    .beginControlFlow("while ($L.hasNext())", binary)
+                    .add(readBinary(item, binary, value -> CodeBlock.builder().addStatement("$L.add($L)", items, value).build(), validated))
+                    .endControlFlow()
+                    .add(assign.apply(CodeBlock.of("$L", items)))
+                    .nextControlFlow("else")
+                    .add(assign.apply(CodeBlock.of("null")))
+                    .endControlFlow()
+                    .build();
+        }
+        if (validated && kind == Kind.BEAN) {
+            return assign.apply(CodeBlock.of("$T.validate($L)", codecFor(asElement(type)), readBinaryValue(type, kind, binary)));
+        }
+        return assign.apply(readBinaryValue(type, kind, binary));
+    }
+
+    public CodeBlock binaryDecoder(TypeMirror type, boolean validated) {
+        Kind kind = kindOf(type);
+        if (kind == null || kind == Kind.LIST || kind == Kind.SET) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "GreenSpring cannot stream elements of type " + type);
+            return CodeBlock.of("null");
+        }
+        if (kind == Kind.BEAN && validated) {
+            ClassName codec = codecFor(asElement(type));
+            return CodeBlock.of("binary -> $T.validate($T.readBinary(binary))", codec, codec);
+        }
+        if (kind == Kind.BEAN) {
+            return CodeBlock.of("$T::readBinary", codecFor(asElement(type)));
+        }
+        return CodeBlock.of("binary -> $L", readBinaryValue(type, kind, "binary"));
+    }
+
+    public CodeBlock writeBinary(TypeMirror type, CodeBlock value, String binary) {
+        Kind kind = kindOf(type);
+        if (kind == null) {
+            return unsupported(type);
+        }
+        int local = locals++;
+        if (kind == Kind.LIST || kind == Kind.SET) {
+            TypeMirror item = itemType(type);
+            String items = "items" + local;
+            CodeBlock.Builder code = CodeBlock.builder()
+                    .addStatement("$T $L = $L", TypeName.get(type), items, value)
+                    .beginControlFlow("if ($L.writeMarker($L != null))", binary, items);
+            if (isIndexed(type)) {
+                String idx = "i" + local;
+                code.beginControlFlow("for (int $L = 0; $L < $L.size(); $L++)", idx, idx, items, idx)
+                        .addStatement("$L.writeItem()", binary)
+                        .add(writeBinary(item, CodeBlock.of("$L.get($L)", items, idx), binary))
+                        .endControlFlow();
+            }
+            else {
+                String each = "item" + local;
+                code.beginControlFlow("for ($T $L : $L)", TypeName.get(item), each, items)
+                        .addStatement("$L.writeItem()", binary)
+                        .add(writeBinary(item, CodeBlock.of("$L", each), binary))
+                        .endControlFlow();
+            }
+            return code.addStatement("$L.writeEnd()", binary)
+                    .endControlFlow()
+                    .build();
+        }
+        Kind unboxed = unboxed(kind);
+        if (unboxed != null) {
+            String boxed = "boxed" + local;
+            return CodeBlock.builder()
+                    .addStatement("$T $L = $L", TypeName.get(type), boxed, value)
+                    .beginControlFlow("if ($L.writeMarker($L != null))", binary, boxed)
+                    .addStatement("$L", writeBinaryValue(type, unboxed, CodeBlock.of("$L", boxed), binary))
+                    .endControlFlow()
+                    .build();
+        }
+        return CodeBlock.builder().addStatement("$L", writeBinaryValue(type, kind, value, binary)).build();
+    }
+
+    public CodeBlock write(TypeMirror type, CodeBlock value, String json) {
+        Kind kind = kindOf(type);
+        if (kind == null) {
+            return unsupported(type);
+        }
+        if (kind == Kind.LIST || kind == Kind.SET) {
+            TypeMirror item = itemType(type);
+            int local = locals++;
+            String items = "items" + local;
+            String each = "item" + local;
+            CodeBlock.Builder code = CodeBlock.builder()
+                    .addStatement("$T $L = $L", TypeName.get(type), items, value)
+                    .beginControlFlow("if ($L == null)", items)
+                    .addStatement("$L.writeNull()", json)
+                    .nextControlFlow("else")
+                    .addStatement("$L.beginArray()", json);
+            if (isIndexed(type)) {
+                String idx = "i" + local;
+                code.beginControlFlow("for (int $L = 0; $L < $L.size(); $L++)", idx, idx, items, idx)
+                        .beginControlFlow("if ($L > 0)", idx)
+                        .addStatement("$L.comma()", json)
+                        .endControlFlow()
+                        .add(write(item, CodeBlock.of("$L.get($L)", items, idx), json))
+                        .endControlFlow();
+            }
+            else {
+                String first = "first" + local;
+                code.addStatement("boolean $L = true", first)
+                        .beginControlFlow("for ($T $L : $L)", TypeName.get(item), each, items)
+                        .beginControlFlow("if (!$L)", first)
+                        .addStatement("$L.comma()", json)
+                        .endControlFlow()
+                        .addStatement("$L = false", first)
+                        .add(write(item, CodeBlock.of("$L", each), json))
+                        .endControlFlow();
+            }
+            return code.addStatement("$L.endArray()", json)
+                    .endControlFlow()
+                    .build();
+        }
+        return CodeBlock.builder().addStatement("$L", writeValue(type, kind, value, json)).build();
+    }
+
+    public void write(Filer filer, String indent) throws IOException {
+        for (Map.Entry<ClassName, TypeSpec> codec : codecs.entrySet()) {
+            JavaFile.builder(codec.getKey().packageName(), codec.getValue())
+                    .skipJavaLangImports(true)
+                    .indent(indent)
+                    .build()
+                    .writeTo(filer);
+        }
+    }
+
+    private CodeBlock readValue(TypeMirror type, Kind kind, String json) {
+        switch (kind) {
+            case BOOLEAN: return CodeBlock.of("$L.readBoolean()", json);
+            case BYTE: return CodeBlock.of("$L.readByte()", json);
+            case SHORT: return CodeBlock.of("$L.readShort()", json);
+            case INT: return CodeBlock.of("$L.readInt()", json);
+            case LONG: return CodeBlock.of("$L.readLong()", json);
+            case FLOAT: return CodeBlock.of("(float)$L.readDouble()", json);
+            case DOUBLE: return CodeBlock.of("$L.readDouble()", json);
+            case BOXED_BOOLEAN: return nullable(json, Boolean.class, readValue(type, Kind.BOOLEAN, json));
+            case BOXED_BYTE: return nullable(json, Byte.class, readValue(type, Kind.BYTE, json));
+            case BOXED_SHORT: return nullable(json, Short.class, readValue(type, Kind.SHORT, json));
+            case BOXED_INT: return nullable(json, Integer.class, readValue(type, Kind.INT, json));
+            case BOXED_LONG: return nullable(json, Long.class, readValue(type, Kind.LONG, json));
+            case BOXED_FLOAT: return nullable(json, Float.class, readValue(type, Kind.FLOAT, json));
+            case BOXED_DOUBLE: return nullable(json, Double.class, readValue(type, Kind.DOUBLE, json));
+            case TEXT: return CodeBlock.of("$L.readString()", json);
+            case ENUM: return CodeBlock.of("$L.readNull() ? null : $T.valueOf($L.readString())", json, TypeName.get(type), json);
+            default: return CodeBlock.of("$T.read($L)", codecFor(asElement(type)), json);
+        }
+    }
+
+    private CodeBlock writeValue(TypeMirror type, Kind kind, CodeBlock value, String json) {
+        switch (kind) {
+            case BOOLEAN: return CodeBlock.of("$L.writeBoolean($L)", json, value);
+            case BYTE:
+            case SHORT:
+            case INT: return CodeBlock.of("$L.writeInt($L)", json, value);
+            case LONG: return CodeBlock.of("$L.writeLong($L)", json, value);
+            case FLOAT: return CodeBlock.of("$L.writeFloat($L)", json, value);
+            case DOUBLE: return CodeBlock.of("$L.writeDouble($L)", json, value);
+            case BOXED_BOOLEAN: return CodeBlock.of("$L.writeBoxedBoolean($L)", json, value);
+            case TEXT: return CodeBlock.of("$L.writeString($L)", json, value);
+            case ENUM: return CodeBlock.of("$L.writeEnum($L)", json, value);
+            case BEAN: return CodeBlock.of("$T.write($L, $L)", codecFor(asElement(type)), value, json);
+            default: return CodeBlock.of("$L.writeNumber($L)", json, value);
+        }
+    }
+
+    private CodeBlock readBinaryValue(TypeMirror type, Kind kind, String binary) {
+        switch (kind) {
+            case BOOLEAN: return CodeBlock.of("$L.readBoolean()", binary);
+            case BYTE: return CodeBlock.of("$L.readByte()", binary);
+            case SHORT: return CodeBlock.of("$L.readShort()", binary);
+            case INT: return CodeBlock.of("$L.readInt()", binary);
+            case LONG: return CodeBlock.of("$L.readLong()", binary);
+            case FLOAT: return CodeBlock.of("$L.readFloat()", binary);
+            case DOUBLE: return CodeBlock.of("$L.readDouble()", binary);
+            case BOXED_BOOLEAN: return present(binary, Boolean.class, readBinaryValue(type, Kind.BOOLEAN, binary));
+            case BOXED_BYTE: return present(binary, Byte.class, readBinaryValue(type, Kind.BYTE, binary));
+            case BOXED_SHORT: return present(binary, Short.class, readBinaryValue(type, Kind.SHORT, binary));
+            case BOXED_INT: return present(binary, Integer.class, readBinaryValue(type, Kind.INT, binary));
+            case BOXED_LONG: return present(binary, Long.class, readBinaryValue(type, Kind.LONG, binary));
+            case BOXED_FLOAT: return present(binary, Float.class, readBinaryValue(type, Kind.FLOAT, binary));
+            case BOXED_DOUBLE: return present(binary, Double.class, readBinaryValue(type, Kind.DOUBLE, binary));
+            case TEXT: return CodeBlock.of("$L.readString()", binary);
+            case ENUM: return CodeBlock.of("$L.readEnum($T.class)", binary, TypeName.get(type));
+            default: return CodeBlock.of("$T.readBinary($L)", codecFor(asElement(type)), binary);
+        }
+    }
+
+    private CodeBlock writeBinaryValue(TypeMirror type, Kind kind, CodeBlock value, String binary) {
+        switch (kind) {
+            case BOOLEAN: return CodeBlock.of("$L.writeBoolean($L)", binary, value);
+            case BYTE: return CodeBlock.of("$L.writeByte($L)", binary, value);
+            case SHORT: return CodeBlock.of("$L.writeShort($L)", binary, value);
+            case INT: return CodeBlock.of("$L.writeInt($L)", binary, value);
+            case LONG: return CodeBlock.of("$L.writeLong($L)", binary, value);
+            case FLOAT: return CodeBlock.of("$L.writeFloat($L)", binary, value);
+            case DOUBLE: return CodeBlock.of("$L.writeDouble($L)", binary, value);
+            case TEXT: return CodeBlock.of("$L.writeString($L)", binary, value);
+            case ENUM: return CodeBlock.of("$L.writeEnum($L)", binary, value);
+            default: return CodeBlock.of("$T.writeBinary($L, $L)", codecFor(asElement(type)), value, binary);
+        }
+    }
+
+    private static Kind unboxed(Kind kind) {
+        switch (kind) {
+            case BOXED_BOOLEAN: return Kind.BOOLEAN;
+            case BOXED_BYTE: return Kind.BYTE;
+            case BOXED_SHORT: return Kind.SHORT;
+            case BOXED_INT: return Kind.INT;
+            case BOXED_LONG: return Kind.LONG;
+            case BOXED_FLOAT: return Kind.FLOAT;
+            case BOXED_DOUBLE: return Kind.DOUBLE;
+            default: return null;
+        }
+    }
+
+    private static CodeBlock present(String binary, Class<?> boxed, CodeBlock value) {
+        return CodeBlock.of("$L.readMarker() ? $T.valueOf($L) : null", binary, boxed, value);
+    }
+
+    // Placeholder of a property the other side cannot supply, so positions stay aligned.
+    private static CodeBlock absent(TypeMirror type, Kind kind, String binary) {
+        switch (kind) {
+            case BOOLEAN: return CodeBlock.of("$L.writeBoolean(false)", binary);
+            case BYTE: return CodeBlock.of("$L.writeByte((byte)0)", binary);
+            case SHORT: return CodeBlock.of("$L.writeShort((short)0)", binary);
+            case INT: return CodeBlock.of("$L.writeInt(0)", binary);
+            case LONG: return CodeBlock.of("$L.writeLong(0L)", binary);
+            case FLOAT: return CodeBlock.of("$L.writeFloat(0f)", binary);
+            case DOUBLE: return CodeBlock.of("$L.writeDouble(0d)", binary);
+            case TEXT:
+            case ENUM: return CodeBlock.of("$L.writeString(null)", binary);
+            default: return CodeBlock.of("$L.writeMarker(false)", binary);
+        }
+    }
+
+    private CodeBlock unsupported(TypeMirror type) {
+        messager.printMessage(Diagnostic.Kind.ERROR, "GreenSpring has no JSON codec for " + type);
+        return CodeBlock.builder().addStatement("throw new $T($S)", IOException.class, "No JSON codec for " + type).build();
+    }
+
+    private static CodeBlock nullable(String json, Class<?> boxed, CodeBlock value) {
+        return CodeBlock.of("$L.readNull() ? null : $T.valueOf($L)", json, boxed, value);
+    }
+
+    private TypeSpec buildCodec(GreenBean bean, ClassName beanName, ClassName codecName) {
+        TypeSpec.Builder codec = TypeSpec.classBuilder(codecName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build());
+
+        List<GreenBean.Property> readable = new ArrayList<>();
+        List<GreenBean.Property> writable = new ArrayList<>();
+        List<GreenBean.Property> positional = new ArrayList<>();
+        for (GreenBean.Property property : bean.getProperties()) {
+            if (!property.isReadable() && !property.isWritable()) {
+                continue;
+            }
+            if (!isSupported(property.getType())) {
+                messager.printMessage(Diagnostic.Kind.WARNING,
+                        "GreenSpring cannot encode " + property.getType() + " and skips " + beanName + "." + property.getName(),
+                        property.getElement() != null ? property.getElement() : bean.getElement());
+                continue;
+            }
+            positional.add(property);
+            if (property.isReadable()) {
+                readable.add(property);
+            }
+            if (property.isWritable()) {
+                writable.add(property);
+            }
+        }
+
+        CodeBlock.Builder fields = CodeBlock.builder().add("$T.names(", GreenJsonReader.class);
+        for (int i = 0; i < writable.size(); i++) {
+            fields.add(i == 0 ? "$S" : ", $S", writable.get(i).getJsonName());
+        }
+        codec.addField(FieldSpec.builder(byte[][].class, "FIELDS", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer(fields.add(")").build())
+                .build());
+        for (GreenBean.Property property : readable) {
+            codec.addField(FieldSpec.builder(byte[].class, constantName(property), Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$T.name($S)", GreenJsonWriter.class, property.getJsonName())
+                    .build());
+        }
+
+        MethodSpec.Builder read = MethodSpec.methodBuilder("read")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(beanName)
+                .addParameter(GreenJsonReader.class, "json")
+                .addException(IOException.class);
+        if (bean.isInstantiable()) {
+            read.beginControlFlow("if (!json.beginObject())")
+                    .addStatement("return null")
+                    .endControlFlow()
+                    .addStatement("$T value = new $T()", beanName, beanName)
+                    .addStatement("int field")
+                    .beginControlFlow("while ((field = json.nextField(FIELDS)) != $T.END)", GreenJsonReader.class)
+                    .beginControlFlow("switch (field)");
+            for (int i = 0; i < writable.size(); i++) {
+                GreenBean.Property property = writable.get(i);
+                read.addCode("case $L:\n", i)
+                        .addCode("$>")
+                        .addCode(read(property.getType(), "json", value -> property.set("value", value)))
+                        .addStatement("break")
+                        .addCode("$<");
+            }
+            read.addCode("default:\n$>")
+                    .addStatement("json.skipValue()")
+                    .addCode("$<")
+                    .endControlFlow()
+                    .endControlFlow()
+                    .addStatement("return value");
+        }
+        else {
+            read.addStatement("throw new $T($S)", IOException.class, beanName + " cannot be instantiated");
+        }
+
+        MethodSpec.Builder write = MethodSpec.methodBuilder("write")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(beanName, "value")
+                .addParameter(GreenJsonWriter.class, "json")
+                .addException(IOException.class)
+                .beginControlFlow("if (value == null)")
+                .addStatement("json.writeNull()")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("json.beginObject()");
+        for (int i = 0; i < readable.size(); i++) {
+            GreenBean.Property property = readable.get(i);
+            if (i > 0) {
+                write.addStatement("json.comma()");
+            }
+            write.addStatement("json.name($L)", constantName(property))
+                    .addCode(write(property.getType(), property.get("value"), "json"));
+        }
+        write.addStatement("json.endObject()");
+
+        // Constraints are checked through the getters, so defaults the JSON left alone are
+        // checked as well, like a validator would check the bean.
+        MethodSpec.Builder validate = MethodSpec.methodBuilder("validate")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(beanName)
+                .addParameter(beanName, "value")
+                .beginControlFlow("if (value == null)")
+                .addStatement("return null")
+                .endControlFlow();
+        for (GreenBean.Property property : bean.getProperties()) {
+            boolean cascaded = constraints.isCascaded(property) && isSupported(property.getType());
+            if (!constraints.isConstrained(property) && !cascaded) {
+                continue;
+            }
+            if (!property.isReadable()) {
+                messager.printMessage(Diagnostic.Kind.WARNING, "GreenSpring cannot check " + beanName + "." + property.getName()
+                        + " without a getter", property.getMembers().get(0));
+                continue;
+            }
+            String local = "value" + locals++;
+            CodeBlock.Builder checks = CodeBlock.builder();
+            constraints.addChecks(codec, checks, property, local);
+            if (cascaded) {
+                checks.add(cascade(property.getType(), local));
+            }
+            CodeBlock checked = checks.build();
+            if (!checked.isEmpty()) {
+                validate.addStatement("$T $L = $L", TypeName.get(property.getType()), local, property.get("value"))
+                        .addCode(checked);
+            }
+        }
+        validate.addStatement("return value");
+
+        // The binary form has no names, every property holds its place in declaration order
+        // whether this side can get or set it.
+        MethodSpec.Builder readBinary = MethodSpec.methodBuilder("readBinary")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(beanName)
+                .addParameter(GreenBinaryReader.class, "binary")
+                .addException(IOException.class);
+        if (bean.isInstantiable()) {
+            readBinary.beginControlFlow("if (!binary.readMarker())")
+                    .addStatement("return null")
+                    .endControlFlow()
+                    .addStatement("$T value = new $T()", beanName, beanName);
+            for (GreenBean.Property property : positional) {
+                if (property.isWritable()) {
+                    readBinary.addCode(readBinary(property.getType(), "binary", value -> property.set("value", value), false));
+                }
+                else {
+                    String skipped = "skipped" + locals++;
+                    readBinary.addCode(readBinary(property.getType(), "binary",
+                            value -> CodeBlock.builder().addStatement("$T $L = $L", TypeName.get(property.getType()), skipped, value).build(), false));
+                }
+            }
+            readBinary.addStatement("return value");
+        }
+        else {
+            readBinary.addStatement("throw new $T($S)", IOException.class, beanName + " cannot be instantiated");
+        }
+
+        MethodSpec.Builder writeBinary = MethodSpec.methodBuilder("writeBinary")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(beanName, "value")
+                .addParameter(GreenBinaryWriter.class, "binary")
+                .addException(IOException.class)
+                .beginControlFlow("if (!binary.writeMarker(value != null))")
+                .addStatement("return")
+                .endControlFlow();
+        for (GreenBean.Property property : positional) {
+            if (property.isReadable()) {
+                writeBinary.addCode(writeBinary(property.getType(), property.get("value"), "binary"));
+            }
+            else {
+                writeBinary.addStatement("$L", absent(property.getType(), kindOf(property.getType()), "binary"));
+            }
+        }
+
+        return codec.addMethod(read.build())
+                .addMethod(write.build())
+                .addMethod(readBinary.build())
+                .addMethod(writeBinary.build())
+                .addMethod(validate.build())
+                .build();
+    }
+
+    // @Valid checks the beans a property holds, directly or as elements.
+    private CodeBlock cascade(TypeMirror type, String local) {
+        Kind kind = kindOf(type);
+        if (kind == Kind.BEAN) {
+            return CodeBlock.builder().addStatement("$T.validate($L)", codecFor(asElement(type)), local).build();
+        }
+        if (kind == Kind.LIST || kind == Kind.SET) {
+            TypeMirror item = itemType(type);
+            String each = "item" + locals++;
+            CodeBlock nested = cascade(item, each);
+            if (nested.isEmpty()) {
+                return nested;
+            }
+            return CodeBlock.builder()
+                    .beginControlFlow("if ($L != null)", local)
+                    .beginControlFlow("for ($T $L : $L)", TypeName.get(item), each, local)
+                    .add(nested)
+                    .endControlFlow()
+                    .endControlFlow()
+                    .build();
+        }
+        return CodeBlock.builder().build();
+    }
+
+    private Kind kindOf(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN: return Kind.BOOLEAN;
+            case BYTE: return Kind.BYTE;
+            case SHORT: return Kind.SHORT;
+            case INT: return Kind.INT;
+            case LONG: return Kind.LONG;
+            case FLOAT: return Kind.FLOAT;
+            case DOUBLE: return Kind.DOUBLE;
+            case DECLARED: break;
+            default: return null;
+        }
+        DeclaredType declaredType = (DeclaredType)type;
+        TypeElement element = asElement(type);
+        Kind kind = declared.get(element.getQualifiedName().toString());
+        if (kind == Kind.LIST || kind == Kind.SET) {
+            List<? extends TypeMirror> args = declaredType.getTypeArguments();
+            if (args.size() != 1 || kindOf(args.get(0)) == null) {
+                return null;
+            }
+            return kind;
+        }
+        if (kind != null) {
+            return kind;
+        }
+        if (element.getKind() == ElementKind.ENUM) {
+            return Kind.ENUM;
+        }
+        String name = element.getQualifiedName().toString();
+        if (element.getKind() == ElementKind.CLASS && declaredType.getTypeArguments().isEmpty()
+                && !name.startsWith("java.") && !name.startsWith("javax.")) {
+            return Kind.BEAN;
+        }
+        return null;
+    }
+
+    private static boolean isIndexed(TypeMirror type) {
+        String name = asElement(type).getQualifiedName().toString();
+        return name.equals("java.util.List") || name.equals("java.util.ArrayList");
+    }
+
+    private static TypeMirror itemType(TypeMirror type) {
+        return ((DeclaredType)type).getTypeArguments().get(0);
+    }
+
+    private static TypeElement asElement(TypeMirror type) {
+        return (TypeElement)((DeclaredType)type).asElement();
+    }
+
+    private static String constantName(GreenBean.Property property) {
+        StringBuilder name = new StringBuilder();
+        String source = property.getName();
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (Character.isUpperCase(c) && i > 0) {
+                name.append('_');
+            }
+            name.append(Character.toUpperCase(c));
+        }
+        return name.append("_NAME").toString();
+    }
+}
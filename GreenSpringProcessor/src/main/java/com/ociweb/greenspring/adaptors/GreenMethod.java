@@ -1,9 +1,19 @@
 package com.ociweb.greenspring.adaptors;
 
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ValueConstants;
 
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.validation.Valid;
+import java.util.Map;
 
 public class GreenMethod {
 
@@ -15,6 +25,22 @@ public class GreenMethod {
         return false;
     }
 
+    public boolean isParamInQuery(VariableElement param) {
+        RequestParam queryParam = param.getAnnotation(RequestParam.class);
+        if (queryParam != null) {
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isParamInHeader(VariableElement param) {
+        RequestHeader headerParam = param.getAnnotation(RequestHeader.class);
+        if (headerParam != null) {
+            return true;
+        }
+        return false;
+    }
+
     public boolean isParamRequestBody(VariableElement param) {
         RequestBody requestBodyParam = param.getAnnotation(RequestBody.class);
         if (requestBodyParam != null) {
@@ -22,4 +48,69 @@ public class GreenMethod {
         }
         return false;
     }
+
+    // Spring validates a body marked either way, @Validated groups are not told apart.
+    public boolean isParamValidated(VariableElement param) {
+        return param.getAnnotation(Valid.class) != null || param.getAnnotation(Validated.class) != null;
+    }
+
+    // Name used in the route template, value and name are aliases and fall back to the parameter.
+    public String getRoutedName(VariableElement param) {
+        String name = null;
+        PathVariable routeParam = param.getAnnotation(PathVariable.class);
+        if (routeParam != null) {
+            name = alias(routeParam.value(), sourceValue(param, PathVariable.class, "name"));
+        }
+        RequestParam queryParam = param.getAnnotation(RequestParam.class);
+        if (queryParam != null) {
+            name = alias(queryParam.value(), queryParam.name());
+        }
+        return name == null || name.isEmpty() ? param.getSimpleName().toString() : name;
+    }
+
+    public String getHeaderName(VariableElement param) {
+        RequestHeader headerParam = param.getAnnotation(RequestHeader.class);
+        String name = headerParam != null ? alias(headerParam.value(), headerParam.name()) : null;
+        return name == null || name.isEmpty() ? param.getSimpleName().toString() : name;
+    }
+
+    public boolean isHeaderRequired(VariableElement param) {
+        RequestHeader headerParam = param.getAnnotation(RequestHeader.class);
+        return headerParam != null && headerParam.required() && getHeaderDefault(param) == null;
+    }
+
+    // GreenLightning matches a route only when all of its query parameters are present.
+    public boolean isQueryOptional(VariableElement param) {
+        RequestParam queryParam = param.getAnnotation(RequestParam.class);
+        return queryParam != null && (!queryParam.required() || !ValueConstants.DEFAULT_NONE.equals(queryParam.defaultValue()));
+    }
+
+    // Null when the annotation leaves the default unset.
+    public String getHeaderDefault(VariableElement param) {
+        RequestHeader headerParam = param.getAnnotation(RequestHeader.class);
+        if (headerParam == null || ValueConstants.DEFAULT_NONE.equals(headerParam.defaultValue())) {
+            return null;
+        }
+        return headerParam.defaultValue();
+    }
+
+    private static String alias(String value, String name) {
+        return value.isEmpty() ? name : value;
+    }
+
+    // PathVariable has name only from Spring 4.3.3, later than the 4.3.0 the processor is built
+    // with, so the member is read from the annotation as written, empty when it is not.
+    private static String sourceValue(VariableElement param, Class<?> annotation, String member) {
+        for (AnnotationMirror mirror : param.getAnnotationMirrors()) {
+            if (!((TypeElement)mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation.getName())) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : mirror.getElementValues().entrySet()) {
+                if (value.getKey().getSimpleName().contentEquals(member)) {
+                    return value.getValue().getValue().toString();
+                }
+            }
+        }
+        return "";
+    }
 }
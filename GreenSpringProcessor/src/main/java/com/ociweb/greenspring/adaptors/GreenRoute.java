@@ -1,13 +1,24 @@
 package com.ociweb.greenspring.adaptors;
 
+import com.ociweb.greenspring.annotation.GreenCache;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 
 import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,10 +27,12 @@ import java.util.stream.Collectors;
 public class GreenRoute {
     private final String routeStr;
     private final Element element;
+    private final List<String> verbs;
 
     private final static Map<String, String> spec = new HashMap<>();
     static {
         spec.put("java.lang.String", "$");
+        spec.put("java.lang.CharSequence", "$");
         spec.put("byte", "#");
         spec.put("short", "#");
         spec.put("int", "#");
@@ -33,31 +46,49 @@ public class GreenRoute {
                 .filter(element -> element.getKind() == ElementKind.CLASS)
                 .map(element -> {
                     RequestMapping mapping = element.getAnnotation(RequestMapping.class);
-                    return new GreenRoute(mapping.value(), element);
+                    return new GreenRoute(paths(mapping.value(), mapping.path()), element, mapping.method());
                 }
         ).collect(Collectors.toList());
     }
 
     public static List<GreenRoute> fetchMethods(Element controller) {
+        RequestMapping controllerMapping = controller.getAnnotation(RequestMapping.class);
+        RequestMethod[] controllerVerbs = controllerMapping != null ? controllerMapping.method() : new RequestMethod[0];
+
         List<GreenRoute> routes = new ArrayList<>();
         for (Element element : controller.getEnclosedElements()) {
             if (element.getKind() == ElementKind.METHOD) {
                 RequestMapping m1 = element.getAnnotation(RequestMapping.class);
+                GetMapping get = element.getAnnotation(GetMapping.class);
+                PostMapping post = element.getAnnotation(PostMapping.class);
+                PutMapping put = element.getAnnotation(PutMapping.class);
+                DeleteMapping delete = element.getAnnotation(DeleteMapping.class);
+                PatchMapping patch = element.getAnnotation(PatchMapping.class);
                 if (m1 != null) {
-                    routes.add(new GreenRoute(m1.value(), element));
+                    RequestMethod[] verbs = m1.method().length > 0 ? m1.method() : controllerVerbs;
+                    routes.add(new GreenRoute(paths(m1.value(), m1.path()), element, verbs));
                 }
-                else {
-                    GetMapping m2 = element.getAnnotation(GetMapping.class);
-                    if (m2 != null) {
-                        routes.add(new GreenRoute(m2.value(), element));
-                    }
+                else if (get != null) {
+                    routes.add(new GreenRoute(paths(get.value(), get.path()), element, RequestMethod.GET));
+                }
+                else if (post != null) {
+                    routes.add(new GreenRoute(paths(post.value(), post.path()), element, RequestMethod.POST));
+                }
+                else if (put != null) {
+                    routes.add(new GreenRoute(paths(put.value(), put.path()), element, RequestMethod.PUT));
+                }
+                else if (delete != null) {
+                    routes.add(new GreenRoute(paths(delete.value(), delete.path()), element, RequestMethod.DELETE));
+                }
+                else if (patch != null) {
+                    routes.add(new GreenRoute(paths(patch.value(), patch.path()), element, RequestMethod.PATCH));
                 }
             }
         }
         return routes;
     }
 
-    private GreenRoute(String[] routeStrs, Element element) {
+    private GreenRoute(String[] routeStrs, Element element, RequestMethod... verbs) {
         this.element = element;
         if (routeStrs != null && routeStrs.length > 0) {
             this.routeStr = routeStrs[0];
@@ -65,12 +96,36 @@ public class GreenRoute {
         else {
             this.routeStr = "";
         }
+        this.verbs = Arrays.stream(verbs).map(RequestMethod::name).collect(Collectors.toList());
+    }
+
+    // value and path are aliases on every mapping annotation.
+    private static String[] paths(String[] value, String[] path) {
+        return value.length > 0 ? value : path;
     }
 
     public Element getElement() {
         return element;
     }
 
+    // Names of the accepted verbs, empty when the mapping accepts any verb.
+    public List<String> getVerbs() {
+        return verbs;
+    }
+
+    public boolean isCached() {
+        return element.getAnnotation(GreenCache.class) != null;
+    }
+
+    // Spring's cache annotations need its proxies, keys and evictions, which GreenSpring does not
+    // compile, so a class or handler using them is reported rather than cached differently.
+    public boolean hasSpringCaching() {
+        return element.getAnnotation(Cacheable.class) != null
+                || element.getAnnotation(CacheEvict.class) != null
+                || element.getAnnotation(CachePut.class) != null
+                || element.getAnnotation(Caching.class) != null;
+    }
+
     public String getRoute() {
         return this.routeStr;
     }
@@ -91,7 +146,18 @@ public class GreenRoute {
         return norm;
     }
 
-    public String getGreenRouteString(String baseRoute, Map<String, String> routedParams) {
+    // Routed variable names in the order they appear in the path.
+    public List<String> getRouteVariables() {
+        List<String> names = new ArrayList<>();
+        for (String partial : getNormalizedRoute().split("/")) {
+            if (!partial.isEmpty() && partial.charAt(0) == '{') {
+                names.add(partial.substring(1, partial.length() - 1));
+            }
+        }
+        return names;
+    }
+
+    public String getGreenRouteString(String baseRoute, Map<String, String> routedParams, Map<String, String> queryParams) {
         int s = 1;
         String route = getNormalizedRoute();
         StringBuilder transformed = new StringBuilder();
@@ -116,6 +182,18 @@ public class GreenRoute {
             s = p + 1;
         } while (s < route.length());
 
+        char separator = '?';
+        for (Map.Entry<String, String> query : queryParams.entrySet()) {
+            String typeSpec = spec.get(query.getValue());
+            transformed.append(separator).append(query.getKey()).append('=')
+                    .append(typeSpec != null ? typeSpec : "$").append('{').append(query.getKey()).append('}');
+            separator = '&';
+        }
+
         return transformed.toString();
     }
+
+    public static boolean isRoutable(String kind) {
+        return spec.containsKey(kind);
+    }
 }
@@ -0,0 +1,170 @@
+package com.ociweb.greenspring.adaptors;
+
+import com.ociweb.greenspring.runtime.GreenSchedule;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.annotation.Schedules;
+import org.springframework.scheduling.support.CronSequenceGenerator;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.function.Function;
+
+// The @Scheduled methods of the app, by the class declaring them, checked the way Spring checks
+// them when the context starts. The timing has to be known at compile time: literal numbers
+// only, placeholders are resolved by Spring's environment, which a GreenSpring app does not have.
+// Cron expressions are parsed here so a bad one fails the build instead of the start up.
+public class GreenScheduledMethods {
+    private static final long INVALID = Long.MIN_VALUE;
+
+    private final Messager messager;
+    private final Map<TypeElement, List<Function<CodeBlock, CodeBlock>>> schedules = new LinkedHashMap<>();
+    private final Set<TypeElement> crons = new LinkedHashSet<>();
+
+    public GreenScheduledMethods(ProcessingEnvironment processingEnv, RoundEnvironment roundEnv) {
+        this.messager = processingEnv.getMessager();
+
+        Set<Element> methods = new LinkedHashSet<>(roundEnv.getElementsAnnotatedWith(Scheduled.class));
+        methods.addAll(roundEnv.getElementsAnnotatedWith(Schedules.class));
+        for (Element element : methods) {
+            if (element.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement)element;
+            if (!method.getParameters().isEmpty() || !method.getModifiers().contains(Modifier.PUBLIC)
+                    || method.getModifiers().contains(Modifier.STATIC)) {
+                error("GreenSpring schedules public instance methods without parameters", method);
+                continue;
+            }
+            TypeElement type = (TypeElement)method.getEnclosingElement();
+            for (Scheduled scheduled : method.getAnnotationsByType(Scheduled.class)) {
+                Function<CodeBlock, CodeBlock> schedule = schedule(method, scheduled, type);
+                if (schedule != null) {
+                    schedules.computeIfAbsent(type, key -> new ArrayList<>()).add(schedule);
+                }
+            }
+        }
+    }
+
+    // Expressions creating the GreenSchedules of a class, with its instance named by service.
+    public List<CodeBlock> forClass(Element element, CodeBlock service) {
+        List<CodeBlock> created = new ArrayList<>();
+        for (Function<CodeBlock, CodeBlock> schedule : schedules.getOrDefault(element, Collections.emptyList())) {
+            created.add(schedule.apply(service));
+        }
+        return created;
+    }
+
+    public boolean hasSchedules(Element element) {
+        return schedules.containsKey(element);
+    }
+
+    // Classes with schedules that are not controllers get a behavior of their own.
+    public List<TypeElement> getComponents() {
+        List<TypeElement> components = new ArrayList<>();
+        for (TypeElement element : schedules.keySet()) {
+            if (element.getAnnotation(RequestMapping.class) == null) {
+                components.add(element);
+            }
+        }
+        return components;
+    }
+
+    // The generated class turns its cron expressions into GreenSchedule.Cron with this method.
+    public MethodSpec cronMethod(Element element) {
+        if (!crons.contains(element)) {
+            return null;
+        }
+        return MethodSpec.methodBuilder("cron")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(String.class, "expression")
+                .addParameter(String.class, "zone")
+                .returns(GreenSchedule.Cron.class)
+                .addStatement("$T sequence = new $T(expression, zone.isEmpty() ? $T.getDefault() : $T.getTimeZone(zone))",
+                        CronSequenceGenerator.class, CronSequenceGenerator.class, TimeZone.class, TimeZone.class)
+                .addStatement("return after -> sequence.next(new $T(after)).getTime()", Date.class)
+                .build();
+    }
+
+    // The schedule's expression once the service is known.
+    private Function<CodeBlock, CodeBlock> schedule(ExecutableElement method, Scheduled scheduled, TypeElement type) {
+        String task = method.getSimpleName().toString();
+        long initialDelay = millis(scheduled.initialDelay(), scheduled.initialDelayString(), "initialDelay", method);
+        long fixedDelay = millis(scheduled.fixedDelay(), scheduled.fixedDelayString(), "fixedDelay", method);
+        long fixedRate = millis(scheduled.fixedRate(), scheduled.fixedRateString(), "fixedRate", method);
+        if (initialDelay == INVALID || fixedDelay == INVALID || fixedRate == INVALID) {
+            return null;
+        }
+        String cron = scheduled.cron();
+        int kinds = (cron.isEmpty() ? 0 : 1) + (fixedDelay < 0 ? 0 : 1) + (fixedRate < 0 ? 0 : 1);
+        if (kinds != 1) {
+            error("@Scheduled needs exactly one of cron, fixedDelay and fixedRate", method);
+            return null;
+        }
+        if (!cron.isEmpty()) {
+            if (initialDelay >= 0) {
+                error("@Scheduled cannot have an initialDelay with a cron expression", method);
+                return null;
+            }
+            String zone = scheduled.zone();
+            if (!zone.isEmpty() && TimeZone.getTimeZone(zone).getID().equals("GMT") && !zone.startsWith("GMT")) {
+                error("Unknown time zone " + scheduled.zone(), method);
+                return null;
+            }
+            try {
+                new CronSequenceGenerator(cron);
+            } catch (IllegalArgumentException e) {
+                error("Invalid cron expression " + cron + ": " + e.getMessage(), method);
+                return null;
+            }
+            crons.add(type);
+            return service -> CodeBlock.of("$T.cron($L::$L, cron($S, $S))", GreenSchedule.class, service, task, cron, zone);
+        }
+        if (!scheduled.zone().isEmpty()) {
+            error("@Scheduled only takes a zone with a cron expression", method);
+            return null;
+        }
+        String kind = fixedRate >= 0 ? "fixedRate" : "fixedDelay";
+        long period = fixedRate >= 0 ? fixedRate : fixedDelay;
+        long delay = Math.max(0, initialDelay);
+        return service -> CodeBlock.of("$T.$L($L::$L, $LL, $LL)", GreenSchedule.class, kind, service, task, period, delay);
+    }
+
+    private long millis(long value, String text, String name, ExecutableElement method) {
+        if (text.isEmpty()) {
+            return value;
+        }
+        if (value >= 0) {
+            error("@Scheduled takes " + name + " or " + name + "String, not both", method);
+            return value;
+        }
+        try {
+            return Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            error("GreenSpring needs " + name + "String to be a number of milliseconds, not " + text, method);
+            return INVALID;
+        }
+    }
+
+    private void error(String message, Element element) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -1,52 +1,190 @@
 package com.ociweb.greenspring.adaptors;
 
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ociweb.greenspring.runtime.GreenBinaryNegotiation;
+import com.ociweb.greenspring.runtime.GreenBinaryReader;
+import com.ociweb.greenspring.runtime.GreenBinaryStream;
+import com.ociweb.greenspring.runtime.GreenBinaryWriter;
+import com.ociweb.greenspring.runtime.GreenContentType;
+import com.ociweb.greenspring.runtime.GreenErrorResponses;
+import com.ociweb.greenspring.runtime.GreenJsonReader;
+import com.ociweb.greenspring.runtime.GreenJsonStream;
+import com.ociweb.greenspring.runtime.GreenJsonWriter;
+import com.ociweb.greenspring.runtime.GreenStatusException;
+import com.ociweb.pronghorn.network.config.HTTPContentTypeDefaults;
 import com.squareup.javapoet.*;
 
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.List;
 
 public class GreenSerializer {
+    private static final String streamedIterable = "java.lang.Iterable";
+    private static final String streamedIterator = "java.util.Iterator";
+    private static final String streamedStream = "java.util.stream.Stream";
 
-    public void buildMember(TypeSpec.Builder builder) {
-        builder.addField(FieldSpec.builder(ObjectMapper.class, "mapper", Modifier.PRIVATE, Modifier.FINAL)
-                .initializer("new $T()", ObjectMapper.class)
+    private final GreenJsonCodecs codecs;
+
+    public GreenSerializer(GreenJsonCodecs codecs) {
+        this.codecs = codecs;
+    }
+
+    public void buildMember(TypeSpec.Builder builder, boolean binary) {
+        builder.addField(FieldSpec.builder(GreenJsonWriter.class, "jsonWriter", Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("new $T()", GreenJsonWriter.class)
                 .build());
+        if (binary) {
+            builder.addField(FieldSpec.builder(GreenBinaryWriter.class, "binaryWriter", Modifier.PRIVATE, Modifier.FINAL)
+                            .initializer("new $T()", GreenBinaryWriter.class)
+                            .build())
+                    .addField(FieldSpec.builder(GreenBinaryNegotiation.class, "binaryNegotiation", Modifier.PRIVATE, Modifier.FINAL)
+                            .initializer("new $T()", GreenBinaryNegotiation.class)
+                            .build())
+                    .addField(boolean.class, "binaryRequest", Modifier.PRIVATE)
+                    .addField(boolean.class, "binaryResponse", Modifier.PRIVATE);
+        }
     }
 
-    public void buildRecycledMember(TypeSpec.Builder builder, TypeName kind) {
-        builder.addField(FieldSpec.builder(JavaType.class, "requestBodyType")
+    public void buildRecycledMember(TypeSpec.Builder builder, boolean binary) {
+        builder.addField(FieldSpec.builder(GreenJsonReader.class, "jsonReader")
                 .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
-                .initializer(initializerForType(kind))
+                .initializer("new $T()", GreenJsonReader.class)
                 .build());
+        if (binary) {
+            builder.addField(FieldSpec.builder(GreenBinaryReader.class, "binaryReader")
+                    .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer("new $T()", GreenBinaryReader.class)
+                    .build());
+        }
     }
 
-    private CodeBlock initializerForType(TypeName kind) {
-        if (kind instanceof ParameterizedTypeName) {
-            ParameterizedTypeName param = (ParameterizedTypeName)kind;
-            TypeName sub = param.typeArguments.get(0);
-            return CodeBlock.of("mapper.getTypeFactory().constructCollectionType($T.class, $T.class)", ArrayList.class, sub);
+    // The format of each direction is settled from the headers before anything is read.
+    public void addNegotiation(MethodSpec.Builder method, String contentTypeHeader, String acceptHeader) {
+        if (contentTypeHeader != null) {
+            method.addStatement("this.binaryRequest = binaryNegotiation.isNamedBy(httpRequestReader, $L)", contentTypeHeader);
         }
-        return CodeBlock.of("mapper.getTypeFactory().constructType($T)", kind);
+        method.addStatement("this.binaryResponse = binaryNegotiation.isNamedBy(httpRequestReader, $L)", acceptHeader);
     }
 
-    public void addRequestBodyRead(MethodSpec.Builder method) {
-        method.beginControlFlow("try")
-                .addStatement("requestBody = mapper.readValue(channelReader, requestBodyType)")
-                .endControlFlow()
+    public CodeBlock contentType(boolean binary) {
+        return binary
+                ? CodeBlock.of("(binaryResponse ? $T.BINARY : $T.JSON)", GreenContentType.class, HTTPContentTypeDefaults.class)
+                : CodeBlock.of("$T.JSON", HTTPContentTypeDefaults.class);
+    }
+
+    public boolean isStreamed(TypeMirror kind) {
+        String name = qualifiedName(kind);
+        return streamedIterable.equals(name) || streamedIterator.equals(name) || streamedStream.equals(name);
+    }
+
+    public void buildStreamedMember(TypeSpec.Builder builder, TypeMirror kind, boolean validated, boolean binary) {
+        TypeMirror item = ((DeclaredType)kind).getTypeArguments().get(0);
+        builder.addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(GreenJsonStream.class), TypeName.get(item)), "requestBody")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("new $T<>($L)", GreenJsonStream.class, codecs.decoder(item, validated))
+                .build());
+        if (binary) {
+            builder.addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(GreenBinaryStream.class), TypeName.get(item)), "binaryRequestBody")
+                    .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer("new $T<>($L)", GreenBinaryStream.class, codecs.binaryDecoder(item, validated))
+                    .build());
+        }
+    }
+
+    public CodeBlock streamedArgument(TypeMirror kind, boolean binary) {
+        boolean stream = streamedStream.equals(qualifiedName(kind));
+        if (binary) {
+            return stream
+                    ? CodeBlock.of("(binaryRequest ? binaryRequestBody.stream() : requestBody.stream())")
+                    : CodeBlock.of("(binaryRequest ? binaryRequestBody : requestBody)");
+        }
+        return stream ? CodeBlock.of("requestBody.stream()") : CodeBlock.of("requestBody");
+    }
+
+    // Resets the stream the request is read from, to nothing when there is no payload.
+    public void addStreamReset(MethodSpec.Builder method, String reader, boolean binary) {
+        if (binary) {
+            method.beginControlFlow("if (binaryRequest)")
+                    .addStatement("binaryRequestBody.reset($L)", reader == null ? "null" : "binaryReader.reset(" + reader + ")")
+                    .nextControlFlow("else")
+                    .addStatement("requestBody.reset($L)", reader == null ? "null" : "jsonReader.reset(" + reader + ")")
+                    .endControlFlow();
+        }
+        else {
+            method.addStatement("requestBody.reset($L)", reader == null ? "null" : "jsonReader.reset(" + reader + ")");
+        }
+    }
+
+    public void addRequestBodyStream(MethodSpec.Builder method, boolean binary) {
+        method.beginControlFlow("try");
+        addStreamReset(method, "channelReader", binary);
+        method.endControlFlow()
                 .beginControlFlow("catch ($T e)", IOException.class)
-                .addStatement("throw new $T(e)", RuntimeException.class)
+                .addStatement("throw new $T($T.decodeStatusDefault, e.getMessage(), e)", GreenStatusException.class, GreenErrorResponses.class)
+                .endControlFlow();
+    }
+
+    public void addRequestBodyRead(MethodSpec.Builder method, TypeMirror kind, boolean validated, boolean binary) {
+        method.beginControlFlow("try");
+        if (binary) {
+            method.beginControlFlow("if (binaryRequest)")
+                    .addStatement("$T binary = binaryReader.reset(channelReader)", GreenBinaryReader.class)
+                    .addCode(codecs.readBinary(kind, "binary", value -> CodeBlock.builder().addStatement("requestBody = $L", value).build(), validated))
+                    .nextControlFlow("else");
+        }
+        method.addStatement("$T json = jsonReader.reset(channelReader)", GreenJsonReader.class)
+                .addCode(codecs.read(kind, "json", value -> CodeBlock.builder().addStatement("requestBody = $L", value).build(), validated))
+                .addStatement("json.end()");
+        if (binary) {
+            method.endControlFlow();
+        }
+        method.endControlFlow()
+                .beginControlFlow("catch ($T e)", IOException.class)
+                .addStatement("throw new $T($T.decodeStatusDefault, e.getMessage(), e)", GreenStatusException.class, GreenErrorResponses.class)
                 .endControlFlow();
     }
 
-    public void addResponseBodyWrite(MethodSpec.Builder method) {
-        method.beginControlFlow("try")
-                .addStatement("mapper.writeValue(channelWriter, responseBody)")
+    public void addResponseBodyWrite(MethodSpec.Builder method, TypeMirror kind, boolean binary) {
+        method.beginControlFlow("if (responseBody == null)")
+                .addStatement("return")
                 .endControlFlow()
+                .beginControlFlow("try");
+        if (binary) {
+            method.beginControlFlow("if (binaryResponse)")
+                    .addStatement("$T binary = binaryWriter.reset(channelWriter)", GreenBinaryWriter.class)
+                    .addCode(codecs.writeBinary(kind, CodeBlock.of("responseBody"), "binary"))
+                    .nextControlFlow("else");
+        }
+        method.addStatement("$T json = jsonWriter.reset(channelWriter)", GreenJsonWriter.class)
+                .addCode(codecs.write(kind, CodeBlock.of("responseBody"), "json"));
+        if (binary) {
+            method.endControlFlow();
+        }
+        method.endControlFlow()
                 .beginControlFlow("catch ($T e)", IOException.class)
                 .addStatement("throw new $T(e)", RuntimeException.class)
                 .endControlFlow();
     }
+
+    // Writes value as the first listed type it is an instance of.
+    public void addEmittedWrite(MethodSpec.Builder method, List<TypeMirror> types) {
+        for (TypeMirror type : types) {
+            method.beginControlFlow("if (value instanceof $T)", TypeName.get(type))
+                    .addCode(codecs.write(type, CodeBlock.of("(($T)value)", TypeName.get(type)), "json"))
+                    .addStatement("return")
+                    .endControlFlow();
+        }
+        method.addStatement("throw new $T($S + value.getClass().getName() + $S)", IOException.class,
+                "GreenSpring has no codec for ", ", list it in @GreenEmits");
+    }
+
+    private static String qualifiedName(TypeMirror kind) {
+        if (kind.getKind() != TypeKind.DECLARED || ((DeclaredType)kind).getTypeArguments().size() != 1) {
+            return null;
+        }
+        return ((TypeElement)((DeclaredType)kind).asElement()).getQualifiedName().toString();
+    }
 }
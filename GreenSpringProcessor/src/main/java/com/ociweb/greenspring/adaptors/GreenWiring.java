@@ -0,0 +1,351 @@
+package com.ociweb.greenspring.adaptors;
+
+import com.ociweb.greenspring.annotation.GreenParallelism;
+import com.ociweb.greenspring.annotation.GreenServiceScope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Repository;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.beans.Introspector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// The @Autowired graph of a controller or component, resolved at compile time against the
+// @Component, @Service and @Repository classes compiled with the app, so the generated code
+// creates it with plain constructor calls and assignments, no scanning and no reflection.
+// Injection points are constructors, @Autowired fields and @Autowired methods. Generated code
+// lives in other packages, so what it calls has to be public; private fields are reported
+// rather than set reflectively. A collaborator with the app service scope is one instance for
+// the whole app, any other collaborator is created with each instance of the class using it,
+// which is reported when more than one class needs it as Spring would share a singleton.
+public class GreenWiring {
+    private final Types types;
+    private final Messager messager;
+    private final List<TypeElement> candidates = new ArrayList<>();
+    private final Map<TypeElement, Bean> beans = new HashMap<>();
+    private final Set<TypeElement> resolving = new LinkedHashSet<>();
+
+    public static class Bean {
+        private final TypeElement type;
+        private final boolean shared;
+        private final ExecutableElement constructor;
+        private final List<Bean> arguments = new ArrayList<>();
+        private final List<Injection> injections = new ArrayList<>();
+
+        private Bean(TypeElement type, boolean shared, ExecutableElement constructor) {
+            this.type = type;
+            this.shared = shared;
+            this.constructor = constructor;
+        }
+
+        public TypeElement getType() {
+            return type;
+        }
+
+        // One instance for the whole app.
+        public boolean isShared() {
+            return shared;
+        }
+
+        public List<Bean> getArguments() {
+            return arguments;
+        }
+
+        public List<Injection> getInjections() {
+            return injections;
+        }
+
+        // Nothing to inject, the class is created as it always was.
+        public boolean isPlain() {
+            return arguments.isEmpty() && injections.isEmpty();
+        }
+
+        // Constructor arguments, then what the injections take.
+        public List<Bean> getDependencies() {
+            List<Bean> dependencies = new ArrayList<>(arguments);
+            injections.forEach(injection -> dependencies.addAll(injection.getArguments()));
+            return dependencies;
+        }
+    }
+
+    // An @Autowired field, given one argument, or method.
+    public static class Injection {
+        private final Element member;
+        private final List<Bean> arguments;
+
+        private Injection(Element member, List<Bean> arguments) {
+            this.member = member;
+            this.arguments = arguments;
+        }
+
+        public boolean isField() {
+            return member.getKind() == ElementKind.FIELD;
+        }
+
+        public String getName() {
+            return member.getSimpleName().toString();
+        }
+
+        public List<Bean> getArguments() {
+            return arguments;
+        }
+    }
+
+    public GreenWiring(ProcessingEnvironment processingEnv, RoundEnvironment roundEnv) {
+        this.types = processingEnv.getTypeUtils();
+        this.messager = processingEnv.getMessager();
+        Set<Element> found = new LinkedHashSet<>();
+        found.addAll(roundEnv.getElementsAnnotatedWith(Component.class));
+        found.addAll(roundEnv.getElementsAnnotatedWith(Service.class));
+        found.addAll(roundEnv.getElementsAnnotatedWith(Repository.class));
+        for (Element element : found) {
+            if (element.getKind() == ElementKind.CLASS && !element.getModifiers().contains(Modifier.ABSTRACT)) {
+                candidates.add((TypeElement)element);
+            }
+        }
+    }
+
+    // Null when the class cannot be wired, the reasons are reported on the elements at fault.
+    public Bean resolve(TypeElement type) {
+        if (beans.containsKey(type)) {
+            return beans.get(type);
+        }
+        if (!resolving.add(type)) {
+            List<TypeElement> chain = new ArrayList<>(resolving);
+            List<String> cycle = new ArrayList<>();
+            chain.subList(chain.indexOf(type), chain.size()).forEach(element -> cycle.add(element.getSimpleName().toString()));
+            error("GreenSpring cannot wire circular dependencies: " + String.join(" -> ", cycle) + " -> " + type.getSimpleName(), type);
+            return null;
+        }
+        Bean bean;
+        try {
+            bean = build(type);
+        } finally {
+            resolving.remove(type);
+        }
+        beans.put(type, bean);
+        return bean;
+    }
+
+    private Bean build(TypeElement type) {
+        ExecutableElement constructor = constructorOf(type);
+        if (constructor == null) {
+            return null;
+        }
+        GreenParallelism parallelism = type.getAnnotation(GreenParallelism.class);
+        Bean bean = new Bean(type, parallelism != null && parallelism.serviceScope() == GreenServiceScope.app, constructor);
+        boolean wired = true;
+        for (VariableElement parameter : constructor.getParameters()) {
+            Bean argument = dependency(parameter, true);
+            wired &= argument != null;
+            bean.arguments.add(argument);
+        }
+
+        // Superclass members first, as Spring injects them.
+        List<TypeElement> hierarchy = new ArrayList<>();
+        for (TypeElement current = type; current != null; current = superclassOf(current)) {
+            hierarchy.add(0, current);
+        }
+        for (TypeElement declaring : hierarchy) {
+            for (Element member : declaring.getEnclosedElements()) {
+                Autowired autowired = member.getAnnotation(Autowired.class);
+                if (autowired == null || member.getKind() == ElementKind.CONSTRUCTOR) {
+                    continue;
+                }
+                Set<Modifier> modifiers = member.getModifiers();
+                if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL)) {
+                    error("GreenSpring injects without reflection, make " + member.getSimpleName()
+                            + " a public instance member or use constructor injection", member);
+                    wired = false;
+                    continue;
+                }
+                List<VariableElement> points = member.getKind() == ElementKind.FIELD
+                        ? Arrays.asList((VariableElement)member)
+                        : new ArrayList<>(((ExecutableElement)member).getParameters());
+                List<Bean> arguments = new ArrayList<>();
+                for (VariableElement point : points) {
+                    arguments.add(dependency(point, autowired.required()));
+                }
+                if (!arguments.contains(null)) {
+                    bean.injections.add(new Injection(member, arguments));
+                }
+                else if (autowired.required()) {
+                    wired = false;
+                }
+            }
+        }
+        if (!isDirect(bean) && !constructor.getModifiers().contains(Modifier.PUBLIC)) {
+            error("GreenSpring creates " + type.getSimpleName() + " from generated code, its constructor needs to be public", constructor);
+            return null;
+        }
+        return wired ? bean : null;
+    }
+
+    // Each factory creates the collaborators of its graph, so one without the app scope is
+    // created apart for every class whose graph holds it. The app's instances are graphs too.
+    public void reportUnshared(Collection<TypeElement> created) {
+        Map<Bean, Set<TypeElement>> users = new LinkedHashMap<>();
+        List<Bean> roots = new ArrayList<>();
+        created.forEach(type -> roots.add(beans.get(type)));
+        Set<Bean> rooted = new HashSet<>(roots);
+        for (int i = 0; i < roots.size(); i++) {
+            Bean root = roots.get(i);
+            if (root == null) {
+                continue;
+            }
+            List<Bean> pending = new ArrayList<>(root.getDependencies());
+            Set<Bean> seen = new HashSet<>();
+            while (!pending.isEmpty()) {
+                Bean bean = pending.remove(pending.size() - 1);
+                if (bean.isShared()) {
+                    if (rooted.add(bean)) {
+                        roots.add(bean);
+                    }
+                }
+                else if (seen.add(bean)) {
+                    users.computeIfAbsent(bean, key -> new LinkedHashSet<>()).add(root.getType());
+                    pending.addAll(bean.getDependencies());
+                }
+            }
+        }
+        users.forEach((bean, classes) -> {
+            if (classes.size() > 1) {
+                List<String> names = new ArrayList<>();
+                classes.forEach(type -> names.add(type.getSimpleName().toString()));
+                messager.printMessage(Diagnostic.Kind.WARNING, "GreenSpring creates a " + bean.getType().getSimpleName()
+                        + " for each of " + String.join(", ", names) + " where Spring shares one, mark it @GreenParallelism(serviceScope = GreenServiceScope.app) to share it", bean.getType());
+            }
+        });
+    }
+
+    // A class with nothing to inject that is not the app's instance of an injected one is created
+    // directly by the generated behavior, as it always was.
+    public boolean isDirect(Bean bean) {
+        return bean.isPlain() && !(bean.isShared() && candidates.contains(bean.getType()));
+    }
+
+    // The @Autowired constructor, the only one, or the one without parameters, as Spring picks it.
+    private ExecutableElement constructorOf(TypeElement type) {
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        List<ExecutableElement> autowired = new ArrayList<>();
+        for (ExecutableElement constructor : constructors) {
+            if (constructor.getAnnotation(Autowired.class) != null) {
+                autowired.add(constructor);
+            }
+        }
+        if (autowired.size() == 1) {
+            return autowired.get(0);
+        }
+        if (autowired.isEmpty()) {
+            if (constructors.size() == 1) {
+                return constructors.get(0);
+            }
+            for (ExecutableElement constructor : constructors) {
+                if (constructor.getParameters().isEmpty()) {
+                    return constructor;
+                }
+            }
+        }
+        error("GreenSpring cannot choose a constructor of " + type.getSimpleName() + ", mark one @Autowired", type);
+        return null;
+    }
+
+    private Bean dependency(VariableElement point, boolean required) {
+        TypeMirror wanted = point.asType();
+        List<TypeElement> matches = new ArrayList<>();
+        for (TypeElement candidate : candidates) {
+            if (types.isAssignable(types.erasure(candidate.asType()), types.erasure(wanted))) {
+                matches.add(candidate);
+            }
+        }
+        Qualifier qualifier = point.getAnnotation(Qualifier.class);
+        if (qualifier != null) {
+            matches.removeIf(candidate -> !beanName(candidate).equals(qualifier.value()));
+        }
+        if (matches.size() > 1) {
+            List<TypeElement> primary = new ArrayList<>();
+            matches.stream().filter(candidate -> candidate.getAnnotation(Primary.class) != null).forEach(primary::add);
+            if (primary.size() == 1) {
+                matches = primary;
+            }
+        }
+        if (matches.isEmpty()) {
+            if (required) {
+                error("GreenSpring found no @Component, @Service or @Repository of type " + wanted + " to inject", point);
+            }
+            return null;
+        }
+        if (matches.size() > 1) {
+            List<String> names = new ArrayList<>();
+            matches.forEach(candidate -> names.add(beanName(candidate)));
+            error("GreenSpring found " + names + " of type " + wanted + " to inject, mark one @Primary or add a @Qualifier", point);
+            return null;
+        }
+        TypeElement match = matches.get(0);
+        GreenParallelism parallelism = match.getAnnotation(GreenParallelism.class);
+        if (parallelism != null && parallelism.serviceScope() == GreenServiceScope.pool) {
+            error("GreenSpring pools controllers only, " + match.getSimpleName() + " cannot be injected from a pool", point);
+            return null;
+        }
+        Bean bean = resolve(match);
+        if (bean != null && !bean.constructor.getModifiers().contains(Modifier.PUBLIC)) {
+            error("GreenSpring creates " + match.getSimpleName() + " from generated code, its constructor needs to be public", point);
+            return null;
+        }
+        return bean;
+    }
+
+    // The name @Qualifier refers to, the stereotype's value or the decapitalized class name.
+    private static String beanName(TypeElement type) {
+        String name = "";
+        if (type.getAnnotation(Component.class) != null) {
+            name = type.getAnnotation(Component.class).value();
+        }
+        else if (type.getAnnotation(Service.class) != null) {
+            name = type.getAnnotation(Service.class).value();
+        }
+        else if (type.getAnnotation(Repository.class) != null) {
+            name = type.getAnnotation(Repository.class).value();
+        }
+        return name.isEmpty() ? Introspector.decapitalize(type.getSimpleName().toString()) : name;
+    }
+
+    private static TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement)((DeclaredType)superclass).asElement();
+        return element.getQualifiedName().contentEquals(Object.class.getName()) ? null : element;
+    }
+
+    private void error(String message, Element element) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,37 @@
+package com.ociweb.greenspring.annotation;
+
+// Placed on one type of the application, usually next to its main package. Every server
+// value can still be overridden when the app starts with a greenspring.<name> system property
+// or a GREENSPRING_<NAME> environment variable. Zero leaves the GreenLightning default.
+public @interface CreateGreenSpringApp {
+    String appNameDefault = "GreenSpringApp";
+    String subPackageDefault = "";
+    String hostDefault = "";
+    int portDefault = 80;
+    int tracksDefault = 0; // the most any @GreenParallelism asks for
+    int maxConnectionsDefault = 0;
+    int requestQueueDefault = 0;
+    int responseQueueDefault = 0;
+    int maxRequestSizeDefault = 0;
+    int maxResponseSizeDefault = 0;
+    boolean tlsDefault = true;
+    String metricsRouteDefault = "/greenspring/metrics";
+    String staticRouteDefault = "/static";
+    String staticDirectoryDefault = ""; // no static files
+
+    String appName() default appNameDefault;
+    String subPackage() default subPackageDefault;
+    String host() default hostDefault;
+    int port() default portDefault;
+    int tracks() default tracksDefault;
+    int maxConnections() default maxConnectionsDefault;
+    int requestQueue() default requestQueueDefault;
+    int responseQueue() default responseQueueDefault;
+    int maxRequestSize() default maxRequestSizeDefault;
+    int maxResponseSize() default maxResponseSizeDefault;
+    boolean tls() default tlsDefault;
+    String metricsRoute() default metricsRouteDefault;
+    // Files under staticDirectory are served below staticRoute, mapped into memory at start up.
+    String staticRoute() default staticRouteDefault;
+    String staticDirectory() default staticDirectoryDefault;
+}
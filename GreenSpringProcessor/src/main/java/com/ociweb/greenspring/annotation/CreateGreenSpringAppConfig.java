@@ -1,12 +1,58 @@
 package com.ociweb.greenspring.annotation;
 
-// TODO: turn into annotation
 // TODO split into service and code-gen responsibilties
 public class CreateGreenSpringAppConfig {
     private final String indent = "    ";
-    private final String subPackage =  "";
-    private final String appName =  "GreenSpringApp";
-    private final int port =  80;
+    private final String subPackage;
+    private final String appName;
+    private final String host;
+    private final int port;
+    private final int tracks;
+    private final int maxConnections;
+    private final int requestQueue;
+    private final int responseQueue;
+    private final int maxRequestSize;
+    private final int maxResponseSize;
+    private final boolean tls;
+    private final String metricsRoute;
+    private final String staticRoute;
+    private final String staticDirectory;
+
+    // Null when the application has no @CreateGreenSpringApp.
+    public CreateGreenSpringAppConfig(CreateGreenSpringApp app) {
+        if (app != null) {
+            this.subPackage = app.subPackage();
+            this.appName = app.appName();
+            this.host = app.host();
+            this.port = app.port();
+            this.tracks = app.tracks();
+            this.maxConnections = app.maxConnections();
+            this.requestQueue = app.requestQueue();
+            this.responseQueue = app.responseQueue();
+            this.maxRequestSize = app.maxRequestSize();
+            this.maxResponseSize = app.maxResponseSize();
+            this.tls = app.tls();
+            this.metricsRoute = app.metricsRoute();
+            this.staticRoute = app.staticRoute();
+            this.staticDirectory = app.staticDirectory();
+        }
+        else {
+            this.subPackage = CreateGreenSpringApp.subPackageDefault;
+            this.appName = CreateGreenSpringApp.appNameDefault;
+            this.host = CreateGreenSpringApp.hostDefault;
+            this.port = CreateGreenSpringApp.portDefault;
+            this.tracks = CreateGreenSpringApp.tracksDefault;
+            this.maxConnections = CreateGreenSpringApp.maxConnectionsDefault;
+            this.requestQueue = CreateGreenSpringApp.requestQueueDefault;
+            this.responseQueue = CreateGreenSpringApp.responseQueueDefault;
+            this.maxRequestSize = CreateGreenSpringApp.maxRequestSizeDefault;
+            this.maxResponseSize = CreateGreenSpringApp.maxResponseSizeDefault;
+            this.tls = CreateGreenSpringApp.tlsDefault;
+            this.metricsRoute = CreateGreenSpringApp.metricsRouteDefault;
+            this.staticRoute = CreateGreenSpringApp.staticRouteDefault;
+            this.staticDirectory = CreateGreenSpringApp.staticDirectoryDefault;
+        }
+    }
 
     public String getIndent() {
         return indent;
@@ -20,7 +66,51 @@ public class CreateGreenSpringAppConfig {
         return appName;
     }
 
+    public String getHost() {
+        return host;
+    }
+
     public int getPort() {
         return port;
         }
+
+    public int getTracks() {
+        return tracks;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getRequestQueue() {
+        return requestQueue;
+    }
+
+    public int getResponseQueue() {
+        return responseQueue;
+    }
+
+    public int getMaxRequestSize() {
+        return maxRequestSize;
+    }
+
+    public int getMaxResponseSize() {
+        return maxResponseSize;
+    }
+
+    public boolean isTls() {
+        return tls;
+    }
+
+    public String getMetricsRoute() {
+        return metricsRoute;
+    }
+
+    public String getStaticRoute() {
+        return staticRoute;
+    }
+
+    public String getStaticDirectory() {
+        return staticDirectory;
+    }
 }
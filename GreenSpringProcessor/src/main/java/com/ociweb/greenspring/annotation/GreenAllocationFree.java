@@ -0,0 +1,7 @@
+package com.ociweb.greenspring.annotation;
+
+// Marks a controller or handler method whose generated route must not allocate once warm.
+// The processor lists the marked routes and GreenSpringAllocationCheck fails the build when
+// one of them allocates per request.
+public @interface GreenAllocationFree {
+}
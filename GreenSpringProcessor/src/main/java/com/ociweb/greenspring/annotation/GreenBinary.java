@@ -0,0 +1,8 @@
+package com.ociweb.greenspring.annotation;
+
+// Lets the annotated controller or handler method exchange its bodies in the binary format of
+// the generated codecs as well as in JSON. A request whose Content-Type names
+// application/x-greenspring-binary is decoded as binary and a request whose Accept names it is
+// answered in binary, anything else stays JSON. Meant for callers built from the same DTOs.
+public @interface GreenBinary {
+}
@@ -0,0 +1,16 @@
+package com.ociweb.greenspring.annotation;
+
+// Caches the encoded response of a GET handler keyed by its routed, query and header values.
+// Entries expire after ttl milliseconds and the least recently used is evicted when a set is
+// full. The cache takes entries * entrySize bytes off heap, larger responses are not stored.
+// Each track keeps its own cache and nothing evicts an entry early. Spring's @Cacheable is not
+// applied, GreenSpring reports it with a warning.
+public @interface GreenCache {
+    long ttlDefault = 60_000;
+    int entriesDefault = 1024;
+    int entrySizeDefault = 4096;
+
+    long ttl() default ttlDefault;
+    int entries() default entriesDefault;
+    int entrySize() default entrySizeDefault;
+}
@@ -0,0 +1,15 @@
+package com.ociweb.greenspring.annotation;
+
+// Compresses the responses of the annotated controller or handler method with gzip or deflate,
+// as named by the request's Accept-Encoding, once the encoded body reaches threshold bytes.
+// Level is the java.util.zip.Deflater level. Constant and cached responses are stored already
+// compressed, async responses and error bodies are sent as they are. Content-Encoding can only
+// be sent through GreenHeaderedType, so nothing is compressed unless the app starts with
+// greenspring.headersInContentType set to true.
+public @interface GreenCompression {
+    int thresholdDefault = 1024;
+    int levelDefault = -1;
+
+    int threshold() default thresholdDefault;
+    int level() default levelDefault;
+}
@@ -0,0 +1,8 @@
+package com.ociweb.greenspring.annotation;
+
+// Lists the types a handler sends through the SseEmitter or ResponseBodyEmitter it returns, so
+// they are encoded by generated JSON codecs. Text is always sent as it is, a value of any other
+// type makes the emitter's send fail.
+public @interface GreenEmits {
+    Class<?>[] value();
+}
@@ -0,0 +1,7 @@
+package com.ociweb.greenspring.annotation;
+
+public @interface GreenIntern {
+    int capacityDefault = 64;
+
+    int capacity() default capacityDefault;
+}
@@ -0,0 +1,6 @@
+package com.ociweb.greenspring.annotation;
+
+// Records decode, service and encode timings of the annotated controller or handler method.
+// The generated app then serves them on the metrics route.
+public @interface GreenMetrics {
+}
@@ -4,8 +4,16 @@ public @interface GreenParallelism {
     boolean parallelBehaviorDefault = false;
     boolean parallelRoutesDefault = false;
     int serviceScopeDefault = GreenServiceScope.behavior;
+    int poolSizeDefault = 0; // one instance per available processor
+    int tracksDefault = 0; // whatever the app runs
 
     boolean parallelBehavior() default parallelBehaviorDefault;
     boolean parallelRoutes() default parallelRoutesDefault;
     int serviceScope() default serviceScopeDefault;
+    int poolSize() default poolSizeDefault;
+    // Number of tracks a parallel behavior wants to scale across, the app runs the largest count
+    // any controller asks for unless told otherwise. GreenLightning spreads connections over its
+    // tracks, not routes, so a parallel behavior is declared on every track. A cold controller
+    // that should keep to one thread leaves parallelBehavior off and is declared once.
+    int tracks() default tracksDefault;
 }
@@ -4,4 +4,9 @@ public class GreenServiceScope {
     public static final int app = 0;
     public static final int behavior = 1;
     public static final int route = 2;
+    // One instance per thread serving the controller, per track or per route when routes run in parallel.
+    public static final int track = 3;
+    // A bounded set of instances shared by every route and track, each borrowed for one request.
+    // Async and streamed handlers keep working after the request and are rejected.
+    public static final int pool = 4;
 }
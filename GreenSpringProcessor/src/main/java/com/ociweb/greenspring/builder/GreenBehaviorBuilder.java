@@ -1,9 +1,18 @@
 package com.ociweb.greenspring.builder;
 
 import com.ociweb.gl.api.*;
+import com.ociweb.greenspring.adaptors.GreenConstantResponses;
+import com.ociweb.greenspring.adaptors.GreenEventListeners;
+import com.ociweb.greenspring.adaptors.GreenExceptionHandlers;
+import com.ociweb.greenspring.adaptors.GreenJsonCodecs;
 import com.ociweb.greenspring.adaptors.GreenRoute;
 import com.ociweb.greenspring.annotation.GreenParallelism;
 import com.ociweb.greenspring.annotation.GreenServiceScope;
+import com.ociweb.greenspring.runtime.GreenAsyncResponses;
+import com.ociweb.greenspring.runtime.GreenServicePool;
+import com.ociweb.greenspring.runtime.GreenVerbDispatch;
+import com.ociweb.pronghorn.network.config.HTTPHeaderDefaults;
+import com.ociweb.pronghorn.network.config.HTTPVerbDefaults;
 import com.squareup.javapoet.*;
 
 import javax.annotation.processing.Filer;
@@ -12,38 +21,100 @@ import javax.lang.model.element.Modifier;
 import javax.lang.model.element.PackageElement;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class GreenBehaviorBuilder {
+    private final Element element;
     private final ClassName serviceName;
     private final ClassName behaviorName;
     private final String subPackage;
     private final boolean parallelBehavior;
     private final boolean parallelRoutes;
     private final int serviceScope;
+    private final int poolSize;
+    private final int tracks;
     private final String baseRoute;
     private final TypeSpec.Builder builder;
     private final List<GreenRouteBuilder> routes = new ArrayList<>();
-
-    public GreenBehaviorBuilder(GreenRoute mapping, String subPackage) throws ClassNotFoundException {
-        Element element = mapping.getElement();
+    private final List<Integer> routeSlots = new ArrayList<>();
+    private final Map<String, Integer> templates = new LinkedHashMap<>();
+    private final Set<String> claimedVerbs = new HashSet<>();
+    private final GreenJsonCodecs codecs;
+    private final GreenConstantResponses constants;
+    private final GreenErrorsBuilder errors;
+    private final GreenEventsBuilder events;
+    private final List<GreenEventListeners.Listener> listeners;
+    private final boolean publisher;
+    private final GreenSchedulesBuilder schedules;
+    private final boolean scheduled;
+    private final GreenWiringBuilder wiring;
+
+    public GreenBehaviorBuilder(GreenRoute mapping, String subPackage, GreenJsonCodecs codecs, GreenConstantResponses constants, GreenExceptionHandlers handlers, GreenEventsBuilder events, GreenSchedulesBuilder schedules, GreenWiringBuilder wiring) throws ClassNotFoundException {
+        this.element = mapping.getElement();
         this.subPackage = subPackage;
+        this.codecs = codecs;
+        this.constants = constants;
+        this.wiring = wiring;
         Element enclosingElement = element.getEnclosingElement();
         PackageElement packageElement = (PackageElement)enclosingElement;
         this.serviceName = ClassName.get(packageElement.getQualifiedName().toString(), element.getSimpleName().toString());
         this.behaviorName = ClassName.get(packageElement.getQualifiedName().toString() + subPackage, "Green" + element.getSimpleName().toString());
         this.baseRoute = mapping.getNormalizedRoute();
 
+        List<GreenExceptionHandlers.Mapping> mappings = handlers.forController(element);
+        this.errors = mappings.isEmpty() ? null : new GreenErrorsBuilder(serviceName, subPackage, mappings, codecs);
+
         GreenParallelism paralellism = element.getAnnotation(GreenParallelism.class);
         if (paralellism != null) {
             this.parallelBehavior = paralellism.parallelBehavior();
             this.parallelRoutes = paralellism.parallelRoutes();
             this.serviceScope = paralellism.serviceScope();
+            this.poolSize = paralellism.poolSize();
+            this.tracks = paralellism.tracks();
         }
         else {
             this.parallelBehavior = GreenParallelism.parallelBehaviorDefault;
             this.parallelRoutes = GreenParallelism.parallelRoutesDefault;
             this.serviceScope = GreenParallelism.serviceScopeDefault;
+            this.poolSize = GreenParallelism.poolSizeDefault;
+            this.tracks = GreenParallelism.tracksDefault;
+        }
+        if (tracks != GreenParallelism.tracksDefault && !parallelBehavior) {
+            throw new IllegalArgumentException("tracks needs parallelBehavior");
+        }
+        if (tracks < 0) {
+            throw new IllegalArgumentException("tracks cannot be negative");
+        }
+        if (serviceScope < GreenServiceScope.app || serviceScope > GreenServiceScope.pool) {
+            throw new IllegalArgumentException("Unknown service scope " + serviceScope);
+        }
+
+        // Events are published on the channel of the route calling the service and delivered on
+        // the behavior's own thread, so either side needs a service used by one thread.
+        this.events = events;
+        this.listeners = events.forClass(element);
+        this.publisher = events.isPublisher(element);
+        boolean sharedService = serviceScope == GreenServiceScope.app || serviceScope == GreenServiceScope.pool
+                || (serviceScope == GreenServiceScope.behavior && parallelRoutes);
+        if (publisher && sharedService) {
+            throw new IllegalArgumentException("ApplicationEventPublisherAware needs a service instance per thread, use the behavior scope without parallel routes, or the track or route scope");
+        }
+        boolean ownService = serviceScope == GreenServiceScope.app || serviceScope == GreenServiceScope.behavior
+                || serviceScope == GreenServiceScope.track;
+        if (!listeners.isEmpty() && (parallelRoutes || !ownService)) {
+            throw new IllegalArgumentException("@EventListener on a controller needs the app, behavior or track scope without parallel routes");
+        }
+        this.schedules = schedules;
+        this.scheduled = schedules.hasSchedules(element);
+        if (scheduled && (parallelRoutes || !ownService)) {
+            throw new IllegalArgumentException("@Scheduled on a controller needs the app, behavior or track scope without parallel routes");
         }
 
         this.builder = TypeSpec.classBuilder(behaviorName)
@@ -60,6 +131,11 @@ public class GreenBehaviorBuilder {
         return parallelBehavior;
     }
 
+    // Zero when the behavior leaves the track count to the app.
+    int getTracks() {
+        return tracks;
+    }
+
     String getConfigInvocation() {
         return "registerRoutes";
     }
@@ -68,17 +144,44 @@ public class GreenBehaviorBuilder {
         return "registerBehavior";
     }
 
+    // Routes sharing a template are registered once and told apart by verb in the dispatch table.
     public void addRoutedMethod(GreenRoute route) {
-        GreenRouteBuilder routedMethod = new GreenRouteBuilder(serviceName, subPackage, route);
+        GreenRouteBuilder routedMethod = new GreenRouteBuilder(serviceName, subPackage, route, codecs, constants,
+                errors != null ? errors.getErrorsName() : null);
+        if (serviceScope == GreenServiceScope.pool) {
+            routedMethod.usePool();
+        }
+        if (publisher) {
+            routedMethod.usePublisher(events);
+        }
+        String template = routedMethod.getGreenRoute(baseRoute);
+        List<String> verbs = new ArrayList<>();
+        routedMethod.getVerbs().forEach(verb -> verbs.add(verb.name()));
+        if (verbs.isEmpty()) {
+            verbs.add("ANY");
+        }
+        for (String verb : verbs) {
+            if (!claimedVerbs.add(verb + ' ' + template)) {
+                throw new IllegalArgumentException("Ambiguous mapping, " + verb + " " + template + " is already mapped");
+            }
+        }
+        routeSlots.add(templates.computeIfAbsent(template, key -> templates.size()));
         routes.add(routedMethod);
     }
 
+    void describe(List<String> lines) {
+        for (GreenRouteBuilder route : routes) {
+            lines.add(route.describe(baseRoute));
+        }
+    }
+
     void write(Filer filer, String indent) throws IOException {
         buildConstructor();
         buildRegisterRoutes();
         buildRegisterBehaviors();
         buildStartup();
         buildRestRequest();
+        buildTimeEvent();
 
         JavaFile.builder(this.behaviorName.packageName(), builder.build())
                 .skipJavaLangImports(true)
@@ -89,6 +192,9 @@ public class GreenBehaviorBuilder {
         for (GreenRouteBuilder route: routes) {
             route.write(filer, indent);
         }
+        if (errors != null) {
+            errors.write(filer, indent);
+        }
     }
 
     private void buildConstructor() {
@@ -98,7 +204,7 @@ public class GreenBehaviorBuilder {
 
         if (!parallelRoutes) {
             builder.addField(GreenCommandChannel.class, "channel", Modifier.PRIVATE, Modifier.FINAL);
-            constructor.addStatement("this.channel = runtime.newCommandChannel(NET_REQUESTER)");
+            constructor.addStatement("this.channel = runtime.newCommandChannel($L)", getChannelFeatures());
         }
 
         builder.addMethod(constructor.build());
@@ -107,7 +213,7 @@ public class GreenBehaviorBuilder {
     private void buildRegisterRoutes() {
         if (!routes.isEmpty()) {
             builder.addField(FieldSpec.builder(int[].class, "routeIds", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
-                    .initializer("new $T[$L]", int.class, routes.size())
+                    .initializer("new $T[$L]", int.class, templates.size())
                     .build());
         }
 
@@ -119,8 +225,18 @@ public class GreenBehaviorBuilder {
                 .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                 .addParameter(Builder.class, "builder");
 
-        for (int i = 0; i < routes.size(); i++) {
-            config.addStatement("routeIds[$L] = builder.registerRoute($S)", i, routes.get(i).getGreenRoute(baseRoute));
+        for (Map.Entry<String, Integer> template : templates.entrySet()) {
+            Set<HTTPHeaderDefaults> routeHeaders = new LinkedHashSet<>();
+            for (int i = 0; i < routes.size(); i++) {
+                if (routeSlots.get(i).equals(template.getValue())) {
+                    routeHeaders.addAll(routes.get(i).getHeaders());
+                }
+            }
+            CodeBlock.Builder headers = CodeBlock.builder();
+            for (HTTPHeaderDefaults header : routeHeaders) {
+                headers.add(", $T.$L.rootBytes()", HTTPHeaderDefaults.class, header.name());
+            }
+            config.addStatement("routeIds[$L] = builder.registerRoute($S$L)", template.getValue(), template.getKey(), headers.build());
         }
 
         if (!parallelRoutes) {
@@ -129,6 +245,10 @@ public class GreenBehaviorBuilder {
             }
         }
 
+        if (hasTimedRoutes() || scheduled) {
+            config.addStatement("builder.setTimerPulseRate($T.pulseRateDefault)", GreenAsyncResponses.class);
+        }
+
         builder.addMethod(config.build());
     }
 
@@ -152,19 +272,48 @@ public class GreenBehaviorBuilder {
         for (int i = 0; i < routes.size(); i++) {
             GreenRouteBuilder route = routes.get(i);
             if (parallelRoutes) {
-                doRegister.addStatement("routes[$L] = new $T(runtime.newCommandChannel(NET_REQUESTER))", i, route.getBehaviorName());
-                doRegister.addStatement("runtime.registerListener(routes[$L]).includeRoutes(new int[] { routeIds[$L] })", i, i);
+                doRegister.addStatement("routes[$L] = new $T(runtime.newCommandChannel($L))", i, route.getBehaviorName(), getChannelFeatures());
             } else {
                 doRegister.addStatement("routes[$L] = new $T(channel)", i, route.getBehaviorName());
             }
         }
 
+        if (parallelRoutes) {
+            boolean declared = false;
+            for (int slot = 0; slot < templates.size(); slot++) {
+                List<Integer> slotRoutes = routesInSlot(slot);
+                if (slotRoutes.size() == 1 && routes.get(slotRoutes.get(0)).getVerbs().isEmpty()) {
+                    doRegister.addStatement("runtime.registerListener(routes[$L]).includeRoutes(new int[] { routeIds[$L] })", slotRoutes.get(0), slot);
+                }
+                else {
+                    if (!declared) {
+                        doRegister.addStatement("$T dispatch", GreenVerbDispatch.class);
+                        declared = true;
+                    }
+                    boolean timed = slotRoutes.stream().anyMatch(i -> routes.get(i).isTimed());
+                    doRegister.addStatement("dispatch = new $T(routeIds[$L], 1, runtime.newCommandChannel(NET_REQUESTER))",
+                            timed ? ClassName.get(GreenVerbDispatch.Timed.class) : ClassName.get(GreenVerbDispatch.class), slot);
+                    addDispatch(doRegister, slotRoutes);
+                    doRegister.addStatement("runtime.registerListener(dispatch).includeRoutes(new int[] { routeIds[$L] })", slot);
+                }
+            }
+        }
+        else if (!routes.isEmpty()) {
+            builder.addField(GreenVerbDispatch.class, "dispatch", Modifier.PRIVATE);
+            doRegister.addStatement("dispatch = new $T(routeOffset, routeIds.length, channel)", GreenVerbDispatch.class);
+            List<Integer> all = new ArrayList<>();
+            for (int i = 0; i < routes.size(); i++) {
+                all.add(i);
+            }
+            addDispatch(doRegister, all);
+        }
+
         if (!parallelRoutes) {
             if (routes.size() > 0) {
-                doRegister.addStatement("runtime.registerListener(this).includeRoutes(routeIds)");
+                doRegister.addStatement("runtime.registerListener(this).includeRoutes(routeIds)$L", events.subscriptions(listeners));
             }
             else {
-                doRegister.addStatement("runtime.registerListener(this)");
+                doRegister.addStatement("runtime.registerListener(this)$L", events.subscriptions(listeners));
             }
         }
         else {
@@ -175,36 +324,135 @@ public class GreenBehaviorBuilder {
         builder.addMethod(doRegister.build());
     }
 
+    // Routes of a publishing service raise its events on their own channel.
+    private String getChannelFeatures() {
+        return publisher ? "NET_REQUESTER | DYNAMIC_MESSAGING" : "NET_REQUESTER";
+    }
+
+    boolean hasMetrics() {
+        return routes.stream().anyMatch(GreenRouteBuilder::hasMetrics);
+    }
+
+    private boolean hasTimedRoutes() {
+        return routes.stream().anyMatch(GreenRouteBuilder::isTimed);
+    }
+
+    // Async and streamed routes publish from the time pulse, which arrives here when the routes share this behavior.
+    private void buildTimeEvent() {
+        if (parallelRoutes || (!hasTimedRoutes() && !scheduled)) {
+            return;
+        }
+        MethodSpec.Builder timeEvent = MethodSpec.methodBuilder("timeEvent")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .addParameter(long.class, "time")
+                .addParameter(int.class, "iteration");
+        for (int i = 0; i < routes.size(); i++) {
+            GreenRouteBuilder route = routes.get(i);
+            if (route.isTimed()) {
+                timeEvent.addStatement("(($T)routes[$L]).timeEvent(time, iteration)", route.getBehaviorName(), i);
+            }
+        }
+        if (scheduled) {
+            schedules.addTimeEvent(timeEvent);
+        }
+        builder.addSuperinterface(TimeListener.class);
+        builder.addMethod(timeEvent.build());
+    }
+
+    private List<Integer> routesInSlot(int slot) {
+        List<Integer> slotRoutes = new ArrayList<>();
+        for (int i = 0; i < routes.size(); i++) {
+            if (routeSlots.get(i) == slot) {
+                slotRoutes.add(i);
+            }
+        }
+        return slotRoutes;
+    }
+
+    // Routes accepting any verb go in first so the explicitly mapped verbs take their slots.
+    private void addDispatch(MethodSpec.Builder doRegister, List<Integer> indexes) {
+        for (boolean anyVerb : new boolean[] { true, false }) {
+            for (int i : indexes) {
+                List<HTTPVerbDefaults> verbs = routes.get(i).getVerbs();
+                if (verbs.isEmpty() != anyVerb) {
+                    continue;
+                }
+                for (HTTPVerbDefaults verb : anyVerb ? Arrays.asList(HTTPVerbDefaults.values()) : verbs) {
+                    doRegister.addStatement("dispatch.route(routeIds[$L], $T.$L, routes[$L])", routeSlots.get(i), HTTPVerbDefaults.class, verb.name(), i);
+                }
+            }
+        }
+    }
+
+    // Shared instances are created by the class initializer of a nested holder, which publishes
+    // them safely to every track and defers construction until the first behavior starts.
     private void buildStartup() {
         MethodSpec.Builder startup = MethodSpec.methodBuilder("startup")
                 .addModifiers(Modifier.PUBLIC)
                 .addAnnotation(Override.class);
 
-        boolean serviceAsMember = true;
+        boolean perRoute = serviceScope == GreenServiceScope.route
+                || (serviceScope == GreenServiceScope.track && parallelRoutes);
+        CodeBlock service = CodeBlock.of("service");
         if (serviceScope == GreenServiceScope.app) {
-            builder.addField(serviceName, "service", Modifier.PRIVATE, Modifier.STATIC);
-            startup.addStatement("if (service != null) service = new $T()", serviceName);
+            buildScopeHolder(serviceName, wiring.create(element), scheduled);
+            service = CodeBlock.of("Scope.instance");
+        }
+        else if (serviceScope == GreenServiceScope.pool) {
+            TypeName poolName = ParameterizedTypeName.get(ClassName.get(GreenServicePool.class), serviceName);
+            buildScopeHolder(poolName, CodeBlock.of("new $T<>($L, $L)", GreenServicePool.class, wiring.supplier(element), poolSize), false);
+            service = CodeBlock.of("Scope.instance");
         }
-        else if (serviceScope == GreenServiceScope.behavior || routes.isEmpty()) {
+        else if (!perRoute || routes.isEmpty()) {
             builder.addField(serviceName, "service", Modifier.PRIVATE);
-            startup.addStatement("service = new $T()", serviceName);
+            startup.addStatement("service = $L", wiring.create(element));
+            if (publisher && routes.isEmpty() && !parallelRoutes) {
+                startup.addStatement("service.setApplicationEventPublisher(new $T(channel))", events.getPublisherName());
+            }
         }
         else {
-            serviceAsMember = false;
+            service = wiring.create(element);
         }
 
+        String setter = serviceScope == GreenServiceScope.pool ? "setServicePool" : "setService";
         for (int i = 0; i < routes.size(); i++) {
             GreenRouteBuilder route = routes.get(i);
-            if (serviceAsMember) {
-                startup.addStatement("(($T)routes[$L]).setService(service)", route.getBehaviorName(), i);
-            } else {
-                startup.addStatement("(($T)routes[$L]).setService(new $T())", route.getBehaviorName(), i, serviceName);
+            startup.addStatement("(($T)routes[$L]).$L($L)", route.getBehaviorName(), i, setter, service);
+        }
+        if (!listeners.isEmpty()) {
+            events.addMessage(builder, listeners, service);
+        }
+        // A service shared by the app is scheduled once, by whichever of its behaviors starts first.
+        if (scheduled) {
+            schedules.addField(builder, element);
+            if (serviceScope == GreenServiceScope.app) {
+                startup.beginControlFlow("if (Scope.scheduled.compareAndSet(false, true))")
+                        .addStatement("schedules = $L", schedules.create(element, service))
+                        .endControlFlow();
+            }
+            else {
+                startup.addStatement("schedules = $L", schedules.create(element, service));
             }
         }
 
         builder.addMethod(startup.build());
     }
 
+    private void buildScopeHolder(TypeName kind, CodeBlock initializer, boolean scheduler) {
+        TypeSpec.Builder scope = TypeSpec.classBuilder("Scope")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addField(FieldSpec.builder(kind, "instance", Modifier.STATIC, Modifier.FINAL)
+                        .initializer(initializer)
+                        .build());
+        if (scheduler) {
+            scope.addField(FieldSpec.builder(AtomicBoolean.class, "scheduled", Modifier.STATIC, Modifier.FINAL)
+                    .initializer("new $T()", AtomicBoolean.class)
+                    .build());
+        }
+        builder.addType(scope.build());
+    }
+
     private void buildRestRequest() {
         MethodSpec.Builder restRequest = MethodSpec.methodBuilder("restRequest")
             .addModifiers(Modifier.PUBLIC)
@@ -213,7 +461,7 @@ public class GreenBehaviorBuilder {
             .returns(boolean.class)
             .addStatement(routes.isEmpty() || parallelRoutes
                     ? "return true"
-                    : "return (routes[httpRequestReader.getRouteId() - routeOffset]).restRequest(httpRequestReader)");
+                    : "return dispatch.restRequest(httpRequestReader)");
 
         builder.addMethod(restRequest.build());
     }
@@ -0,0 +1,102 @@
+package com.ociweb.greenspring.builder;
+
+import com.ociweb.gl.api.GreenCommandChannel;
+import com.ociweb.gl.api.GreenRuntime;
+import com.ociweb.gl.api.StartupListener;
+import com.ociweb.greenspring.adaptors.GreenEventListeners;
+import com.squareup.javapoet.*;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Services that are not controllers but listen to events or have schedules. Each gets a behavior
+// of its own holding one instance, declared once rather than per track, so its listeners and
+// schedules all run on that behavior's thread.
+public class GreenComponentsBuilder {
+    private final GreenEventsBuilder events;
+    private final GreenSchedulesBuilder schedules;
+    private final GreenWiringBuilder wiring;
+    private final String subPackage;
+    private final List<TypeElement> components;
+
+    public GreenComponentsBuilder(GreenEventsBuilder events, GreenSchedulesBuilder schedules, GreenWiringBuilder wiring, String subPackage) {
+        this.events = events;
+        this.schedules = schedules;
+        this.wiring = wiring;
+        this.subPackage = subPackage;
+        Set<TypeElement> all = new LinkedHashSet<>(events.getComponents());
+        all.addAll(schedules.getComponents());
+        this.components = new ArrayList<>(all);
+    }
+
+    List<TypeElement> getComponents() {
+        return components;
+    }
+
+    boolean hasSchedules() {
+        return components.stream().anyMatch(schedules::hasSchedules);
+    }
+
+    ClassName getComponentName(TypeElement component) {
+        ClassName serviceName = ClassName.get(component);
+        return ClassName.get(serviceName.packageName() + subPackage, "Green" + String.join("", serviceName.simpleNames()));
+    }
+
+    void write(Filer filer, String indent) throws IOException {
+        for (TypeElement component : components) {
+            ClassName componentName = getComponentName(component);
+            JavaFile.builder(componentName.packageName(), buildComponent(component, componentName))
+                    .skipJavaLangImports(true)
+                    .indent(indent)
+                    .build()
+                    .writeTo(filer);
+        }
+    }
+
+    private TypeSpec buildComponent(TypeElement component, ClassName componentName) {
+        ClassName serviceName = ClassName.get(component);
+        List<GreenEventListeners.Listener> listeners = events.forClass(component);
+
+        MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(GreenRuntime.class, "runtime");
+        MethodSpec.Builder startup = MethodSpec.methodBuilder("startup")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .addStatement("service = $L", wiring.create(component));
+
+        TypeSpec.Builder builder = TypeSpec.classBuilder(componentName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(StartupListener.class)
+                .addField(serviceName, "service", Modifier.PRIVATE);
+        if (events.isPublisher(component)) {
+            builder.addField(GreenCommandChannel.class, "channel", Modifier.PRIVATE, Modifier.FINAL);
+            constructor.addStatement("this.channel = runtime.newCommandChannel(DYNAMIC_MESSAGING)");
+            startup.addStatement("service.setApplicationEventPublisher(new $T(channel))", events.getPublisherName());
+        }
+        if (!listeners.isEmpty()) {
+            events.addMessage(builder, listeners, CodeBlock.of("service"));
+        }
+        if (schedules.hasSchedules(component)) {
+            schedules.addField(builder, component);
+            schedules.addTimeListener(builder);
+            startup.addStatement("schedules = $L", schedules.create(component, CodeBlock.of("service")));
+        }
+
+        return builder
+                .addMethod(constructor.build())
+                .addMethod(MethodSpec.methodBuilder("registerBehavior")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .addParameter(GreenRuntime.class, "runtime")
+                        .addStatement("runtime.registerListener(new $T(runtime))$L", componentName, events.subscriptions(listeners))
+                        .build())
+                .addMethod(startup.build())
+                .build();
+    }
+}
@@ -0,0 +1,19 @@
+package com.ociweb.greenspring.builder;
+
+import javax.lang.model.element.Element;
+
+// A compile error about a part of the handler, reported on that part rather than the method.
+public class GreenElementException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Element element;
+
+    public GreenElementException(String message, Element element) {
+        super(message);
+        this.element = element;
+    }
+
+    public Element getElement() {
+        return element;
+    }
+}
@@ -0,0 +1,94 @@
+package com.ociweb.greenspring.builder;
+
+import com.ociweb.greenspring.adaptors.GreenExceptionHandlers;
+import com.ociweb.greenspring.adaptors.GreenJsonCodecs;
+import com.ociweb.greenspring.runtime.GreenErrorResponses;
+import com.ociweb.greenspring.runtime.GreenJsonWriter;
+import com.squareup.javapoet.*;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Modifier;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+// Green<Controller>Errors, the exception dispatch of one controller. An instanceof chain in
+// resolution order gives the index of the mapping, whose status and body were encoded once
+// when the class was loaded.
+class GreenErrorsBuilder {
+    private final ClassName errorsName;
+    private final List<GreenExceptionHandlers.Mapping> mappings;
+    private final GreenJsonCodecs codecs;
+
+    GreenErrorsBuilder(ClassName serviceName, String subPackage, List<GreenExceptionHandlers.Mapping> mappings, GreenJsonCodecs codecs) {
+        this.errorsName = ClassName.get(serviceName.packageName() + subPackage + ".routes", "Green" + serviceName.simpleName() + "Errors");
+        this.mappings = mappings;
+        this.codecs = codecs;
+    }
+
+    ClassName getErrorsName() {
+        return errorsName;
+    }
+
+    void write(Filer filer, String indent) throws IOException {
+        TypeSpec.Builder builder = TypeSpec.classBuilder(errorsName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .build());
+
+        CodeBlock.Builder statuses = CodeBlock.builder().add("{");
+        CodeBlock.Builder bodies = CodeBlock.builder().add("{");
+        MethodSpec.Builder find = MethodSpec.methodBuilder("find")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(Throwable.class, "failure")
+                .returns(int.class);
+
+        for (int i = 0; i < mappings.size(); i++) {
+            GreenExceptionHandlers.Mapping mapping = mappings.get(i);
+            statuses.add(i == 0 ? "$L" : ", $L", mapping.getStatus());
+            if (mapping.getBody() != null) {
+                bodies.add(i == 0 ? "encode$L()" : ", encode$L()", i);
+                builder.addMethod(MethodSpec.methodBuilder("encode" + i)
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .returns(byte[].class)
+                        .addStatement("$T out = new $T()", ByteArrayOutputStream.class, ByteArrayOutputStream.class)
+                        .beginControlFlow("try")
+                        .addStatement("$T json = new $T().reset(out)", GreenJsonWriter.class, GreenJsonWriter.class)
+                        .addCode(codecs.write(mapping.getBodyType(), mapping.getBody(), "json"))
+                        .endControlFlow()
+                        .beginControlFlow("catch ($T e)", IOException.class)
+                        .addStatement("throw new $T(e)", IllegalStateException.class)
+                        .endControlFlow()
+                        .addStatement("return out.toByteArray()")
+                        .build());
+            }
+            else {
+                bodies.add(i == 0 ? "null" : ", null");
+            }
+            find.beginControlFlow("if (failure instanceof $T)", TypeName.get(mapping.getException()))
+                    .addStatement("return $L", i)
+                    .endControlFlow();
+        }
+        find.addStatement("return -1");
+
+        builder.addField(FieldSpec.builder(int[].class, "statuses", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer(statuses.add("}").build())
+                        .build())
+                .addField(FieldSpec.builder(byte[][].class, "bodies", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer(bodies.add("}").build())
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("responses")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(GreenErrorResponses.class)
+                        .addStatement("return new $T(statuses, bodies)", GreenErrorResponses.class)
+                        .build())
+                .addMethod(find.build());
+
+        JavaFile.builder(errorsName.packageName(), builder.build())
+                .skipJavaLangImports(true)
+                .indent(indent)
+                .build()
+                .writeTo(filer);
+    }
+}
@@ -0,0 +1,229 @@
+package com.ociweb.greenspring.builder;
+
+import com.ociweb.gl.api.GreenCommandChannel;
+import com.ociweb.gl.api.PubSubListener;
+import com.ociweb.gl.api.Writable;
+import com.ociweb.greenspring.adaptors.GreenEventListeners;
+import com.ociweb.greenspring.adaptors.GreenJsonCodecs;
+import com.ociweb.greenspring.runtime.GreenAppProperties;
+import com.ociweb.greenspring.runtime.GreenBinaryReader;
+import com.ociweb.greenspring.runtime.GreenBinaryWriter;
+import com.ociweb.pronghorn.pipe.ChannelReader;
+import com.ociweb.pronghorn.pipe.ChannelWriter;
+import com.squareup.javapoet.*;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Application events as GreenLightning topics. A publishing service gets a GreenEventPublisher
+// on the command channel of the route that calls it, so an event is encoded into the topic's
+// pipe by the thread raising it, with the binary codec of each listened type it is an instance
+// of. Every behavior with listeners subscribes to the topics of their types and decodes each
+// message on its own thread, so no listener is called by two threads and nothing is locked.
+// A controller's listeners run on its behavior, components with listeners get one of their own.
+// The components themselves are built by GreenComponentsBuilder.
+public class GreenEventsBuilder {
+    private static final ClassName applicationEventPublisher = ClassName.get("org.springframework.context", "ApplicationEventPublisher");
+    private static final ClassName applicationEvent = ClassName.get("org.springframework.context", "ApplicationEvent");
+    private static final int publishRetriesDefault = 64;
+
+    private final GreenEventListeners listeners;
+    private final GreenJsonCodecs codecs;
+    private ClassName publisherName;
+
+    public GreenEventsBuilder(GreenEventListeners listeners, GreenJsonCodecs codecs) {
+        this.listeners = listeners;
+        this.codecs = codecs;
+    }
+
+    // The publisher lives in the app's package, known before any behavior is written.
+    void setPackage(String packageName) {
+        this.publisherName = ClassName.get(packageName, "GreenEventPublisher");
+    }
+
+    ClassName getPublisherName() {
+        return publisherName;
+    }
+
+    List<GreenEventListeners.Listener> forClass(Element element) {
+        return listeners.forClass(element);
+    }
+
+    boolean isPublisher(Element element) {
+        return listeners.isPublisher(element);
+    }
+
+    List<TypeElement> getComponents() {
+        return listeners.getComponents();
+    }
+
+    CodeBlock subscriptions(List<GreenEventListeners.Listener> classListeners) {
+        Set<String> topics = new LinkedHashSet<>();
+        classListeners.forEach(listener -> topics.add(listener.getTopic()));
+        CodeBlock.Builder code = CodeBlock.builder();
+        for (String topic : topics) {
+            code.add(".addSubscription($S)", topic);
+        }
+        return code.build();
+    }
+
+    // A listener that throws is reported like an uncaught exception, the behavior keeps running.
+    void addMessage(TypeSpec.Builder builder, List<GreenEventListeners.Listener> classListeners, CodeBlock service) {
+        MethodSpec.Builder message = MethodSpec.methodBuilder("message")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .addParameter(CharSequence.class, "topic")
+                .addParameter(ChannelReader.class, "payload")
+                .returns(boolean.class)
+                .beginControlFlow("try");
+        Map<String, TypeMirror> topics = new LinkedHashMap<>();
+        classListeners.forEach(listener -> topics.putIfAbsent(listener.getTopic(), listener.getEvent()));
+        boolean first = true;
+        for (Map.Entry<String, TypeMirror> entry : topics.entrySet()) {
+            String topic = entry.getKey();
+            TypeName eventName = TypeName.get(entry.getValue());
+            if (first) {
+                message.beginControlFlow("if ($S.contentEquals(topic))", topic);
+                first = false;
+            }
+            else {
+                message.nextControlFlow("else if ($S.contentEquals(topic))", topic);
+            }
+            message.addStatement("binary.reset(payload)")
+                    .addCode(codecs.readBinary(entry.getValue(), "binary", value -> CodeBlock.builder()
+                            .addStatement("$T event = $L", eventName, value).build(), false));
+            for (GreenEventListeners.Listener listener : classListeners) {
+                if (listener.getTopic().equals(topic)) {
+                    message.addStatement("$L.$L(event)", service, listener.getMethodName());
+                }
+            }
+        }
+        message.endControlFlow()
+                .nextControlFlow("catch ($T e)", Throwable.class)
+                .addStatement("$T thread = $T.currentThread()", Thread.class, Thread.class)
+                .addStatement("thread.getUncaughtExceptionHandler().uncaughtException(thread, e)")
+                .endControlFlow()
+                .addStatement("return true");
+
+        builder.addSuperinterface(PubSubListener.class)
+                .addField(FieldSpec.builder(GreenBinaryReader.class, "binary", Modifier.PRIVATE, Modifier.FINAL)
+                        .initializer("new $T()", GreenBinaryReader.class)
+                        .build())
+                .addMethod(message.build());
+    }
+
+    void write(Filer filer, String indent) throws IOException {
+        JavaFile.builder(publisherName.packageName(), buildPublisher())
+                .skipJavaLangImports(true)
+                .indent(indent)
+                .build()
+                .writeTo(filer);
+    }
+
+    // Events no one listens to are dropped, as Spring drops them.
+    private TypeSpec buildPublisher() {
+        List<TypeMirror> events = listeners.getEvents();
+
+        MethodSpec.Builder publishEvent = MethodSpec.methodBuilder("publishEvent")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .addParameter(Object.class, "event");
+        MethodSpec.Builder write = MethodSpec.methodBuilder("write")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .addParameter(ChannelWriter.class, "channelWriter");
+        if (!events.isEmpty()) {
+            write.addStatement("binary.reset(channelWriter)")
+                    .beginControlFlow("try");
+        }
+        for (int i = 0; i < events.size(); i++) {
+            TypeMirror event = events.get(i);
+            TypeName eventName = TypeName.get(event);
+            publishEvent.beginControlFlow("if (event instanceof $T)", eventName)
+                    .addStatement("publish($S, $L, event)", GreenEventListeners.topicOf(event), i)
+                    .endControlFlow();
+            if (i == 0) {
+                write.beginControlFlow("if (type == $L)", i);
+            }
+            else {
+                write.nextControlFlow("else if (type == $L)", i);
+            }
+            write.addCode(codecs.writeBinary(event, CodeBlock.of("(($T)event)", eventName), "binary"));
+        }
+        if (!events.isEmpty()) {
+            write.endControlFlow()
+                    .nextControlFlow("catch ($T e)", IOException.class)
+                    .addStatement("throw new $T(e)", UncheckedIOException.class)
+                    .endControlFlow();
+        }
+
+        // Spring's publish cannot fail and the service's side effects are done by then, so a full
+        // pipe is retried greenspring.eventPublishRetries times, yielding to the listeners draining it,
+        // and the event is then dropped and counted rather than answering the request with a 500.
+        MethodSpec publish = MethodSpec.methodBuilder("publish")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(String.class, "topic")
+                .addParameter(int.class, "type")
+                .addParameter(Object.class, "event")
+                .addStatement("this.type = type")
+                .addStatement("this.event = event")
+                .addStatement("boolean published = channel.publishTopic(topic, this)")
+                .beginControlFlow("for (int retry = 0; !published && retry < retries; retry++)")
+                .addStatement("$T.yield()", Thread.class)
+                .addStatement("published = channel.publishTopic(topic, this)")
+                .endControlFlow()
+                .addStatement("this.event = null")
+                .beginControlFlow("if (!published)")
+                .addStatement("dropped.incrementAndGet()")
+                .endControlFlow()
+                .build();
+
+        return TypeSpec.classBuilder(publisherName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(applicationEventPublisher)
+                .addSuperinterface(Writable.class)
+                .addField(FieldSpec.builder(int.class, "retries", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$T.get($S, $L)", GreenAppProperties.class, "eventPublishRetries", publishRetriesDefault)
+                        .build())
+                .addField(FieldSpec.builder(AtomicLong.class, "dropped", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new $T()", AtomicLong.class)
+                        .build())
+                .addField(GreenCommandChannel.class, "channel", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(FieldSpec.builder(GreenBinaryWriter.class, "binary", Modifier.PRIVATE, Modifier.FINAL)
+                        .initializer("new $T()", GreenBinaryWriter.class)
+                        .build())
+                .addField(Object.class, "event", Modifier.PRIVATE)
+                .addField(int.class, "type", Modifier.PRIVATE)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(GreenCommandChannel.class, "channel")
+                        .addStatement("this.channel = channel")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("publishEvent")
+                        .addModifiers(Modifier.PUBLIC)
+                        .addAnnotation(Override.class)
+                        .addParameter(applicationEvent, "event")
+                        .addStatement("publishEvent(($T)event)", Object.class)
+                        .build())
+                .addMethod(publishEvent.build())
+                .addMethod(publish)
+                .addMethod(MethodSpec.methodBuilder("getDropped")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(long.class)
+                        .addStatement("return dropped.get()")
+                        .build())
+                .addMethod(write.build())
+                .build();
+    }
+}
@@ -1,10 +1,36 @@
 package com.ociweb.greenspring.builder;
 
 import com.ociweb.gl.api.*;
+import com.ociweb.greenspring.adaptors.GreenConstantResponses;
+import com.ociweb.greenspring.adaptors.GreenJsonCodecs;
 import com.ociweb.greenspring.adaptors.GreenMethod;
 import com.ociweb.greenspring.adaptors.GreenRoute;
 import com.ociweb.greenspring.adaptors.GreenSerializer;
+import com.ociweb.greenspring.annotation.GreenAllocationFree;
+import com.ociweb.greenspring.annotation.GreenBinary;
+import com.ociweb.greenspring.annotation.GreenCache;
+import com.ociweb.greenspring.annotation.GreenCompression;
+import com.ociweb.greenspring.annotation.GreenEmits;
+import com.ociweb.greenspring.annotation.GreenIntern;
+import com.ociweb.greenspring.annotation.GreenMetrics;
+import com.ociweb.greenspring.runtime.GreenAppProperties;
+import com.ociweb.greenspring.runtime.GreenAsyncResponses;
+import com.ociweb.greenspring.runtime.GreenDeferredResults;
+import com.ociweb.greenspring.runtime.GreenByteCounter;
+import com.ociweb.greenspring.runtime.GreenResponseCompression;
+import com.ociweb.greenspring.runtime.GreenContentType;
+import com.ociweb.greenspring.runtime.GreenErrorResponses;
+import com.ociweb.greenspring.runtime.GreenHeaderValue;
+import com.ociweb.greenspring.runtime.GreenInternTable;
+import com.ociweb.greenspring.runtime.GreenJsonWriter;
+import com.ociweb.greenspring.runtime.GreenMetricsRegistry;
+import com.ociweb.greenspring.runtime.GreenResponseCache;
+import com.ociweb.greenspring.runtime.GreenRouteMetrics;
+import com.ociweb.greenspring.runtime.GreenServicePool;
+import com.ociweb.greenspring.runtime.GreenStreamedResponses;
 import com.ociweb.pronghorn.network.config.HTTPContentTypeDefaults;
+import com.ociweb.pronghorn.network.config.HTTPHeaderDefaults;
+import com.ociweb.pronghorn.network.config.HTTPVerbDefaults;
 import com.ociweb.pronghorn.pipe.ChannelReader;
 import com.ociweb.pronghorn.pipe.ChannelWriter;
 
@@ -13,12 +39,22 @@ import com.squareup.javapoet.*;
 import javax.annotation.processing.Filer;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypesException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 class GreenRouteBuilder {
@@ -26,13 +62,37 @@ class GreenRouteBuilder {
     private final ClassName serviceName;
     private final String methodName;
     private final ClassName behaviorName;
+    private final ClassName errorsName;
     private boolean hasRequestBody;
+    private TypeMirror requestBodyType;
+    private boolean validatedRequestBody;
+    private final boolean streamedRequestBody;
     private final TypeName responseName;
     private final TypeName responseBodyName;
+    private final TypeMirror responseBodyType;
+    private final boolean asyncResponse;
+    private final boolean asyncEntity;
+    private final String asyncKind;
+    private final TypeMirror streamedResponse;
+    private final boolean streamedEntity;
+    private final boolean metrics;
+    private final GreenConstantResponses.Constant constant;
+    private final boolean cached;
+    private final boolean allocationFree;
+    private final boolean binary;
+    private final GreenCompression compression;
     private final Map<String, String> routedParams = new HashMap<>();
+    private final Map<String, String> queryParams = new LinkedHashMap<>();
     private final Map<String, Integer> routedIds = new HashMap<>();
+    private final Map<String, HTTPHeaderDefaults> headers = new LinkedHashMap<>();
+    private final Set<String> headerIds = new HashSet<>();
+    private final List<HTTPVerbDefaults> verbs = new ArrayList<>();
     private final List<VariableElement> orderedParams = new ArrayList<>();
     private final TypeSpec.Builder builder;
+    private boolean hasTextParams;
+    private boolean hasInternedParams;
+    private boolean pooled;
+    private GreenEventsBuilder events;
 
     private final static Map<String, String> init = new HashMap<>();
     static {
@@ -45,41 +105,189 @@ class GreenRouteBuilder {
         init.put("double", "httpRequestReader.getDouble($L)");
     }
 
+    private final static Set<String> asyncReturns = new HashSet<>();
+    static {
+        asyncReturns.add("java.util.concurrent.CompletableFuture");
+        asyncReturns.add("java.util.concurrent.CompletionStage");
+        asyncReturns.add("java.util.concurrent.Callable");
+        asyncReturns.add("org.springframework.web.context.request.async.DeferredResult");
+    }
+
+    private final static String sseEmitter = "org.springframework.web.servlet.mvc.method.annotation.SseEmitter";
+    private final static String bodyEmitter = "org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter";
+    private final static String streamingBody = "org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody";
+    private final static String responseEntity = "org.springframework.http.ResponseEntity";
+
+    private final static Map<String, String> headerInit = new HashMap<>();
+    static {
+        headerInit.put("java.lang.String", "asString");
+        headerInit.put("java.lang.CharSequence", "asText");
+        headerInit.put("byte", "asByte");
+        headerInit.put("short", "asShort");
+        headerInit.put("int", "asInt");
+        headerInit.put("long", "asLong");
+        headerInit.put("float", "(float)$L.asDouble");
+        headerInit.put("double", "asDouble");
+        headerInit.put("boolean", "asBoolean");
+    }
+
     private final GreenMethod annotatedMethod = new GreenMethod();
-    private final GreenSerializer serializer = new GreenSerializer();
+    private final GreenSerializer serializer;
 
-    GreenRouteBuilder(ClassName serviceName, String subPackage, GreenRoute route) {
+    GreenRouteBuilder(ClassName serviceName, String subPackage, GreenRoute route, GreenJsonCodecs codecs, GreenConstantResponses constants, ClassName errorsName) {
         ExecutableElement element = (ExecutableElement)route.getElement();
         this.route = route;
+        this.serializer = new GreenSerializer(codecs);
         this.serviceName = serviceName;
         this.methodName = element.getSimpleName().toString();
+        this.errorsName = errorsName;
 
         String packageName = serviceName.packageName() + subPackage + ".routes";
         String className = "Green" + serviceName.simpleName() + methodName.substring(0, 1).toUpperCase() + methodName.substring(1);
         this.behaviorName = ClassName.get(packageName, className);
 
-        int idx = 0;
         this.hasRequestBody = false;
         List<? extends VariableElement> parameters = element.getParameters();
         for (VariableElement param : parameters) {
-            String name = param.getSimpleName().toString();
+            String name = annotatedMethod.getRoutedName(param);
             String kind = param.asType().toString();
             if (annotatedMethod.isParamInRoute(param)) {
+                if (!GreenRoute.isRoutable(kind)) {
+                    throw new GreenElementException("Unsupported @PathVariable type " + kind + " for " + name, param);
+                }
+                if (!route.getRouteVariables().contains(name)) {
+                    throw new GreenElementException("@PathVariable " + name + " is not a variable of the route " + route.getNormalizedRoute(), param);
+                }
                 this.routedParams.put(name, kind);
-                this.routedIds.put(name, idx);
-                idx++;
+            }
+            else if (annotatedMethod.isParamInQuery(param)) {
+                if (!GreenRoute.isRoutable(kind)) {
+                    throw new GreenElementException("Unsupported @RequestParam type " + kind + " for " + name, param);
+                }
+                if (annotatedMethod.isQueryOptional(param)) {
+                    throw new GreenElementException("GreenLightning matches a route only with all of its query parameters,"
+                            + " required=false and defaultValue are not supported for " + name + ", map a second route without it", param);
+                }
+                this.queryParams.put(name, kind);
+            }
+            else if (annotatedMethod.isParamInHeader(param)) {
+                if (!headerInit.containsKey(kind)) {
+                    throw new GreenElementException("Unsupported @RequestHeader type " + kind + " for " + name, param);
+                }
+                this.headers.put(annotatedMethod.getHeaderName(param), header(annotatedMethod.getHeaderName(param), param));
+                // parsed now so a bad default is reported with the handler, not when the route is written
+                String defaultValue = annotatedMethod.getHeaderDefault(param);
+                if (defaultValue != null) {
+                    headerDefault(param, kind, defaultValue);
+                }
             }
             else  if (annotatedMethod.isParamRequestBody(param)) {
                 this.hasRequestBody = true;
+                this.requestBodyType = param.asType();
+                this.validatedRequestBody = annotatedMethod.isParamValidated(param);
+            }
+            else {
+                throw new GreenElementException("GreenSpring cannot bind " + param.getSimpleName() + " of type " + kind
+                        + ", only @PathVariable, @RequestParam, @RequestHeader and @RequestBody parameters are compiled", param);
             }
             orderedParams.add(param);
         }
 
+        for (String verb : route.getVerbs()) {
+            try {
+                this.verbs.add(HTTPVerbDefaults.valueOf(verb));
+            } catch (IllegalArgumentException e) {
+                throw new GreenElementException("GreenLightning does not route " + verb + " requests", element);
+            }
+        }
+
+        // GreenLightning numbers the template fields in the order they appear, path first then query.
+        int idx = 0;
+        for (String name : route.getRouteVariables()) {
+            this.routedIds.put(name, idx++);
+        }
+        for (String name : queryParams.keySet()) {
+            this.routedIds.put(name, idx++);
+        }
+
+        this.streamedRequestBody = hasRequestBody && serializer.isStreamed(requestBodyType);
+        this.metrics = element.getAnnotation(GreenMetrics.class) != null
+                || element.getEnclosingElement().getAnnotation(GreenMetrics.class) != null;
+        this.allocationFree = element.getAnnotation(GreenAllocationFree.class) != null
+                || element.getEnclosingElement().getAnnotation(GreenAllocationFree.class) != null;
+        if (element.getReturnType().getKind() != TypeKind.DECLARED) {
+            throw new GreenElementException("GreenSpring compiles handlers returning ResponseEntity<T>, "
+                    + methodName + " returns " + element.getReturnType(), element);
+        }
         this.responseName = TypeName.get(element.getReturnType());
+        this.asyncKind = ((TypeElement)((DeclaredType)element.getReturnType()).asElement()).getQualifiedName().toString();
+        this.asyncResponse = asyncReturns.contains(asyncKind);
+        this.streamedEntity = asyncKind.equals(responseEntity);
+        TypeMirror streamedBody = streamedEntity ? typeArgument(element.getReturnType()) : element.getReturnType();
+        this.streamedResponse = streamedBody != null ? streamedResponse(streamedBody) : null;
+        // CharSequence parameters and headers are views over buffers the next request on the track
+        // refills, while async and streamed work goes on after this request returns.
+        if (asyncResponse || streamedResponse != null) {
+            for (VariableElement param : orderedParams) {
+                if (param.asType().toString().equals("java.lang.CharSequence")) {
+                    throw new GreenElementException("A CharSequence is only valid while the request is served, "
+                            + methodName + " answers after it, declare " + param.getSimpleName() + " a String", param);
+                }
+            }
+        }
+        this.constant = hasRequestBody || asyncResponse || streamedResponse != null ? null : constants.find(element);
+        boolean isGet = verbs.size() == 1 && verbs.get(0) == HTTPVerbDefaults.GET;
+        if (element.getAnnotation(GreenCache.class) != null && (!isGet || hasRequestBody || asyncResponse || streamedResponse != null)) {
+            throw new GreenElementException("@GreenCache needs a synchronous @GetMapping handler without a request body", element);
+        }
+        this.cached = route.isCached() && isGet && !hasRequestBody && !asyncResponse && streamedResponse == null && constant == null;
+        // Constant and cached responses are encoded once and async and streamed ones published later, in JSON.
+        this.binary = (element.getAnnotation(GreenBinary.class) != null || element.getEnclosingElement().getAnnotation(GreenBinary.class) != null)
+                && constant == null && !cached && !asyncResponse && streamedResponse == null;
+        if (binary) {
+            if (hasRequestBody) {
+                this.headers.put("Content-Type", HTTPHeaderDefaults.CONTENT_TYPE);
+            }
+            this.headers.put("Accept", HTTPHeaderDefaults.ACCEPT);
+        }
+        // Async and streamed responses are encoded when they complete, after the request is gone.
+        GreenCompression compression = element.getAnnotation(GreenCompression.class);
+        if (compression == null) {
+            compression = element.getEnclosingElement().getAnnotation(GreenCompression.class);
+        }
+        this.compression = asyncResponse || streamedResponse != null || (constant != null && constant.getBody() == null) ? null : compression;
+        if (this.compression != null) {
+            this.headers.put("Accept-Encoding", HTTPHeaderDefaults.ACCEPT_ENCODING);
+        }
+        TypeMirror entityType = asyncResponse ? typeArgument(element.getReturnType()) : element.getReturnType();
+        if (entityType == null) {
+            String asyncName = asyncKind.substring(asyncKind.lastIndexOf('.') + 1);
+            throw new GreenElementException("GreenSpring needs the value type of " + element.getReturnType()
+                    + ", as in " + asyncName + "<ResponseEntity<T>> or " + asyncName + "<T>", element);
+        }
+        this.asyncEntity = asyncResponse && isResponseEntity(entityType);
 
-        //if (responseName.toString().endsWith("ResponseEntity")) {
-            this.responseBodyName = ((ParameterizedTypeName)responseName).typeArguments.get(0);
-        //}
+        if (streamedResponse != null) {
+            this.responseBodyName = null;
+            this.responseBodyType = null;
+        }
+        else if (isResponseEntity(entityType)) {
+            TypeMirror bodyType = typeArgument(entityType);
+            if (bodyType == null) {
+                throw new GreenElementException("GreenSpring needs the body type of " + entityType + ", as in ResponseEntity<T>", element);
+            }
+            this.responseBodyName = TypeName.get(bodyType);
+            this.responseBodyType = bodyType;
+        }
+        else if (asyncResponse) {
+            // A bare value is answered 200 with it as the body, as Spring does.
+            this.responseBodyName = TypeName.get(entityType);
+            this.responseBodyType = entityType;
+        }
+        else {
+            throw new GreenElementException("GreenSpring compiles handlers returning ResponseEntity<T>, "
+                    + methodName + " returns " + element.getReturnType(), element);
+        }
 
         //TypeName returnType = TypeName.get(element.getReturnType());
 
@@ -88,18 +296,59 @@ class GreenRouteBuilder {
                 .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
                 .addSuperinterface(RestListener.class);
 
-        if (this.responseName != null) {
+        if (streamedResponse == null) {
             this.builder.addSuperinterface(Writable.class);
         }
         if (hasRequestBody) {
             this.builder.addSuperinterface(Payloadable.class);
         }
+        if (streamedResponse != null) {
+            this.builder.addSuperinterface(TimeListener.class);
+        }
+        if (asyncResponse) {
+            this.builder.addSuperinterface(TimeListener.class);
+            this.builder.addSuperinterface(ParameterizedTypeName.get(ClassName.get(GreenAsyncResponses.Publisher.class), responseBodyName));
+        }
+    }
+
+    boolean hasMetrics() {
+        return metrics;
+    }
+
+    // The service is borrowed from the controller's pool for each request instead of being held.
+    // Async and streamed work goes on after the request returns the instance, while another
+    // request may have borrowed it, so those handlers cannot use the pool.
+    void usePool() {
+        if (isTimed()) {
+            throw new GreenElementException("A pool scoped service is only borrowed while the request is served, "
+                    + methodName + " keeps using it after, use the track or route scope", route.getElement());
+        }
+        pooled = true;
+    }
+
+    // The service publishes application events, on this route's channel while it serves it.
+    void usePublisher(GreenEventsBuilder events) {
+        this.events = events;
+    }
+
+    // Async and streamed responses are published from the time pulse.
+    boolean isTimed() {
+        return asyncResponse || streamedResponse != null;
     }
 
     TypeName getBehaviorName() {
         return behaviorName;
     }
 
+    // Empty when the route accepts any verb.
+    List<HTTPVerbDefaults> getVerbs() {
+        return verbs;
+    }
+
+    List<HTTPHeaderDefaults> getHeaders() {
+        return new ArrayList<>(headers.values());
+    }
+
     void write(Filer filer, String indent) throws IOException {
         buildConstructor();
         buildState();
@@ -134,23 +383,69 @@ class GreenRouteBuilder {
                 .addStatement("return paramBuffer.toString()")
                 .build();
 
-        MethodSpec setService = MethodSpec.methodBuilder("setService")
-                .addModifiers(Modifier.PUBLIC)
-                .addParameter(serviceName, "service")
-                .addStatement("this.service = service;")
-                .build();
+        if (pooled) {
+            TypeName poolName = ParameterizedTypeName.get(ClassName.get(GreenServicePool.class), serviceName);
+            builder.addField(poolName, "servicePool", Modifier.PRIVATE)
+                    .addMethod(MethodSpec.methodBuilder("setServicePool")
+                            .addModifiers(Modifier.PUBLIC)
+                            .addParameter(poolName, "servicePool")
+                            .addStatement("this.servicePool = servicePool")
+                            .build());
+        }
+        else {
+            MethodSpec.Builder setService = MethodSpec.methodBuilder("setService")
+                    .addModifiers(Modifier.PUBLIC)
+                    .addParameter(serviceName, "service")
+                    .addStatement("this.service = service");
+            if (events != null) {
+                setService.addStatement("service.setApplicationEventPublisher(new $T(channel))", events.getPublisherName());
+            }
+            builder.addMethod(setService.build());
+        }
 
         builder
                 .addField(GreenCommandChannel.class, "channel", Modifier.PRIVATE, Modifier.FINAL)
                 .addField(serviceName, "service", Modifier.PRIVATE)
-                .addMethod(setService)
                 .addMethod(paramToString)
                 .addField(FieldSpec.builder(StringBuilder.class, "paramBuffer", Modifier.PRIVATE, Modifier.FINAL)
                         .initializer("new $T()", StringBuilder.class)
-                        .build())
-                .addField(responseBodyName, "responseBody", Modifier.PRIVATE);
+                        .build());
+        if (streamedResponse == null) {
+            builder.addField(responseBodyName, "responseBody", Modifier.PRIVATE);
+            serializer.buildMember(builder, binary);
+        }
 
-        serializer.buildMember(builder);
+        if (constant == null) {
+            builder.addField(FieldSpec.builder(GreenErrorResponses.class, "errors", Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer(errorsName != null ? CodeBlock.of("$T.responses()", errorsName) : CodeBlock.of("new $T()", GreenErrorResponses.class))
+                    .build());
+        }
+
+        if (compression != null && constant == null) {
+            builder.addField(FieldSpec.builder(GreenResponseCompression.class, "compression", Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer(newCompression())
+                    .build());
+        }
+
+        if (cached) {
+            GreenCache cache = route.getElement().getAnnotation(GreenCache.class);
+            builder.addField(FieldSpec.builder(GreenResponseCache.class, "responseCache", Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer("new $T($LL, $L, $L)", GreenResponseCache.class,
+                            cache.ttl(),
+                            cache.entries(),
+                            cache.entrySize())
+                    .build());
+            builder.addField(int.class, "cachedEntry", Modifier.PRIVATE);
+        }
+
+        if (metrics) {
+            builder.addField(FieldSpec.builder(GreenRouteMetrics.class, "metrics", Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer("$T.register($S)", GreenMetricsRegistry.class, serviceName.simpleName() + "." + methodName)
+                    .build());
+            builder.addField(FieldSpec.builder(GreenByteCounter.class, "byteCounter", Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer("new $T()", GreenByteCounter.class)
+                    .build());
+        }
     }
 
     private void buildReader() {
@@ -160,7 +455,16 @@ class GreenRouteBuilder {
                     .addAnnotation(Override.class)
                     .addParameter(ChannelReader.class, "channelReader");
 
-            serializer.addRequestBodyRead(method);
+            if (metrics) {
+                method.addStatement("metrics.bytesIn(channelReader.available())");
+            }
+            if (streamedRequestBody) {
+                serializer.addRequestBodyStream(method, binary);
+                method.addStatement("invoke()");
+            }
+            else {
+                serializer.addRequestBodyRead(method, requestBodyType, validatedRequestBody, binary);
+            }
 
             builder.addMethod(method.build());
         }
@@ -173,12 +477,173 @@ class GreenRouteBuilder {
                     .addAnnotation(Override.class)
                     .addParameter(ChannelWriter.class, "channelWriter");
 
-            serializer.addResponseBodyWrite(method);
+            if (constant != null) {
+                buildConstantWriter(method);
+            }
+            else if (compression != null) {
+                buildCompressedWriter(method);
+            }
+            else if (cached) {
+                buildCachedWriter(method);
+            }
+            else if (metrics) {
+                MethodSpec.Builder body = MethodSpec.methodBuilder("writeBody")
+                        .addModifiers(Modifier.PRIVATE)
+                        .addParameter(OutputStream.class, "channelWriter");
+                serializer.addResponseBodyWrite(body, responseBodyType, binary);
+                builder.addMethod(body.build());
+
+                method.addStatement("long started = System.nanoTime()")
+                        .addStatement("writeBody(byteCounter.reset(channelWriter))")
+                        .addStatement("metrics.encode(System.nanoTime() - started, byteCounter.getCount())");
+            }
+            else {
+                serializer.addResponseBodyWrite(method, responseBodyType, binary);
+            }
 
             builder.addMethod(method.build());
         }
     }
 
+    // The body was encoded and compressed before it was published, it is only copied here.
+    // A cache hit copies the stored bytes, which are in the encoding they were stored in.
+    private void buildCompressedWriter(MethodSpec.Builder method) {
+        MethodSpec.Builder body = MethodSpec.methodBuilder("writeBody")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(OutputStream.class, "channelWriter");
+        serializer.addResponseBodyWrite(body, responseBodyType, binary);
+        builder.addMethod(body.build());
+
+        if (!cached) {
+            method.beginControlFlow("try")
+                    .addStatement("compression.write(channelWriter)")
+                    .endControlFlow()
+                    .beginControlFlow("catch ($T e)", IOException.class)
+                    .addStatement("throw new $T(e)", RuntimeException.class)
+                    .endControlFlow();
+            return;
+        }
+        if (metrics) {
+            method.addStatement("long started = System.nanoTime()")
+                    .addStatement("$T out = byteCounter.reset(channelWriter)", OutputStream.class);
+        }
+        else {
+            method.addStatement("$T out = channelWriter", OutputStream.class);
+        }
+        method.beginControlFlow("try")
+                .beginControlFlow("if (cachedEntry >= 0)")
+                .addStatement("responseCache.write(cachedEntry, out)")
+                .nextControlFlow("else")
+                .addStatement("compression.write(out)")
+                .endControlFlow()
+                .endControlFlow()
+                .beginControlFlow("catch ($T e)", IOException.class)
+                .addStatement("throw new $T(e)", RuntimeException.class)
+                .endControlFlow();
+        if (metrics) {
+            method.beginControlFlow("if (cachedEntry >= 0)")
+                    .addStatement("metrics.encode(System.nanoTime() - started, byteCounter.getCount())")
+                    .endControlFlow();
+        }
+    }
+
+    // Encodes the response body into the compression buffer while the request is still being
+    // served, so the content type can tell whether it was compressed.
+    private void addCompressedEncode(MethodSpec.Builder method) {
+        if (metrics) {
+            method.addStatement("long encodeStarted = System.nanoTime()");
+        }
+        method.addStatement("writeBody(compression.begin())")
+                .addStatement("compression.finish()");
+        if (metrics) {
+            method.addStatement("metrics.encode(System.nanoTime() - encodeStarted, compression.getLength())");
+        }
+    }
+
+    // A hit copies the stored bytes, a miss is encoded through the recorder and stored after.
+    private void buildCachedWriter(MethodSpec.Builder method) {
+        MethodSpec.Builder body = MethodSpec.methodBuilder("writeBody")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(OutputStream.class, "channelWriter");
+        serializer.addResponseBodyWrite(body, responseBodyType, false);
+        builder.addMethod(body.build());
+
+        if (metrics) {
+            method.addStatement("long started = System.nanoTime()")
+                    .addStatement("$T out = byteCounter.reset(channelWriter)", OutputStream.class);
+        }
+        else {
+            method.addStatement("$T out = channelWriter", OutputStream.class);
+        }
+        method.beginControlFlow("if (cachedEntry >= 0)")
+                .beginControlFlow("try")
+                .addStatement("responseCache.write(cachedEntry, out)")
+                .endControlFlow()
+                .beginControlFlow("catch ($T e)", IOException.class)
+                .addStatement("throw new $T(e)", RuntimeException.class)
+                .endControlFlow()
+                .endControlFlow()
+                .beginControlFlow("else")
+                .addStatement("writeBody(responseCache.record(out))")
+                .addStatement("responseCache.store(responseStatus)")
+                .endControlFlow();
+        if (metrics) {
+            method.addStatement("metrics.encode(System.nanoTime() - started, byteCounter.getCount())");
+        }
+    }
+
+    // The body is encoded once when the route is created and copied with one write per response.
+    private void buildConstantWriter(MethodSpec.Builder method) {
+        if (constant.getBody() == null) {
+            return;
+        }
+        MethodSpec.Builder body = MethodSpec.methodBuilder("writeConstant")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(responseBodyName, "responseBody")
+                .addParameter(OutputStream.class, "channelWriter");
+        serializer.addResponseBodyWrite(body, responseBodyType, false);
+        builder.addMethod(body.build());
+
+        builder.addMethod(MethodSpec.methodBuilder("encodeConstant")
+                .addModifiers(Modifier.PRIVATE)
+                .returns(byte[].class)
+                .addStatement("$T out = new $T()", ByteArrayOutputStream.class, ByteArrayOutputStream.class)
+                .addStatement("writeConstant($L, out)", constant.getBody())
+                .addStatement("return out.toByteArray()")
+                .build());
+        builder.addField(FieldSpec.builder(byte[].class, "constantBody", Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("encodeConstant()")
+                .build());
+        if (compression != null) {
+            builder.addField(FieldSpec.builder(GreenResponseCompression.class, "compression", Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer("$L.fixed(constantBody)", newCompression())
+                    .build());
+        }
+
+        if (metrics) {
+            method.addStatement("long started = System.nanoTime()");
+        }
+        method.addStatement("$T out = channelWriter", OutputStream.class)
+                .beginControlFlow("try");
+        if (compression != null) {
+            method.addStatement("compression.write(out)");
+        }
+        else {
+            method.addStatement("out.write(constantBody, 0, constantBody.length)");
+        }
+        method.endControlFlow()
+                .beginControlFlow("catch ($T e)", IOException.class)
+                .addStatement("throw new $T(e)", RuntimeException.class)
+                .endControlFlow();
+        if (metrics) {
+            method.addStatement("metrics.encode(System.nanoTime() - started, $L)", compression != null ? "compression.getLength()" : "constantBody.length");
+        }
+    }
+
+    private CodeBlock newCompression() {
+        return CodeBlock.of("new $T($L, $L)", GreenResponseCompression.class, compression.threshold(), compression.level());
+    }
+
     private void buildRestRequest() {
         MethodSpec.Builder method = MethodSpec.methodBuilder("restRequest")
                 .addModifiers(Modifier.PUBLIC)
@@ -186,45 +651,747 @@ class GreenRouteBuilder {
                 .addParameter(HTTPRequestReader.class, "httpRequestReader")
                 .returns(boolean.class);
 
+        builder.addField(long.class, "pipeFull", Modifier.PRIVATE);
+        builder.addMethod(MethodSpec.methodBuilder("getPipeFull")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(long.class)
+                .addStatement("return pipeFull")
+                .build());
+
+        if (constant != null) {
+            buildConstantRequest(method);
+        }
+        else if (asyncResponse) {
+            buildAsyncRequest(method);
+        }
+        else if (streamedResponse != null) {
+            buildStreamingRequest(method);
+        }
+        else {
+            buildSyncRequest(method);
+        }
+
+        builder.addMethod(method.build());
+        buildParamBinders();
+        buildAsyncPublisher();
+        buildStreamingPublisher();
+    }
+
+    // The handler only returns its constant, so it is not called and nothing is read from the request.
+    private void buildConstantRequest(MethodSpec.Builder method) {
+        if (constant.getBody() == null) {
+            method.beginControlFlow("if (!channel.publishHTTPResponse(httpRequestReader, $L))", constant.getStatus());
+        }
+        else if (compression != null) {
+            method.addStatement("compression.negotiate(httpRequestReader, $L)", headerId(HTTPHeaderDefaults.ACCEPT_ENCODING))
+                    .beginControlFlow("if (!channel.publishHTTPResponse(httpRequestReader, $L, compression.contentType($T.JSON), this))", constant.getStatus(), HTTPContentTypeDefaults.class);
+        }
+        else {
+            method.beginControlFlow("if (!channel.publishHTTPResponse(httpRequestReader, $L, $T.JSON, this))", constant.getStatus(), HTTPContentTypeDefaults.class);
+        }
+        addPipeFull(method);
+        method.addStatement("return false")
+                .endControlFlow();
+        if (metrics) {
+            method.addStatement("metrics.response($L)", constant.getStatus());
+        }
+        method.addStatement("return true");
+    }
+
+    // When the response cannot be published GreenLightning delivers the same request again,
+    // the outcome of the first call is kept so the service runs once per request.
+    private void buildSyncRequest(MethodSpec.Builder method) {
+        builder.addField(FieldSpec.builder(long.class, "pendingConnectionId", Modifier.PRIVATE)
+                        .initializer("-1")
+                        .build())
+                .addField(long.class, "pendingSequenceCode", Modifier.PRIVATE)
+                .addField(int.class, "responseStatus", Modifier.PRIVATE)
+                .addField(boolean.class, "failed", Modifier.PRIVATE);
+
+        method.beginControlFlow("if (httpRequestReader.getConnectionId() != pendingConnectionId || httpRequestReader.getSequenceCode() != pendingSequenceCode)");
+        borrowService(method);
+        if (metrics) {
+            method.addStatement("long started = System.nanoTime()");
+        }
+        method.addStatement("this.pendingConnectionId = httpRequestReader.getConnectionId()")
+                .addStatement("this.pendingSequenceCode = httpRequestReader.getSequenceCode()");
+        if (binary) {
+            serializer.addNegotiation(method, hasRequestBody ? headerId(HTTPHeaderDefaults.CONTENT_TYPE) : null, headerId(HTTPHeaderDefaults.ACCEPT));
+        }
+        if (compression != null) {
+            method.addStatement("compression.negotiate(httpRequestReader, $L)", headerId(HTTPHeaderDefaults.ACCEPT_ENCODING));
+        }
+        method.addStatement("boolean decoding = true");
         method.beginControlFlow("try");
 
+        if (cached) {
+            buildCachedInvoke(method);
+        }
+        else {
+            if (streamedRequestBody) {
+                buildStreamedInvoke(method);
+            }
+            else {
+                buildInvoke(method);
+            }
+            method.addStatement("this.responseBody = response.getBody()")
+                    .addStatement("this.responseStatus = response.getStatusCodeValue()");
+            if (compression != null) {
+                addCompressedEncode(method);
+            }
+        }
+        method.addStatement("this.failed = false");
+        method.endControlFlow();
+        method.beginControlFlow("catch (Throwable e)")
+                .addStatement("this.responseBody = null")
+                .addStatement("this.responseStatus = errors.select($L, e, decoding)", findError("e"))
+                .addStatement("this.failed = true")
+                .endControlFlow();
+        releaseService(method);
+        method.endControlFlow();
+
+        CodeBlock contentType = serializer.contentType(binary);
+        if (compression != null) {
+            contentType = cached
+                    ? CodeBlock.of("$T.encoded($L, cachedEntry >= 0 ? responseCache.getEncoding(cachedEntry) : compression.getEncoding())", GreenContentType.class, contentType)
+                    : CodeBlock.of("compression.contentType($L)", contentType);
+        }
+        method.beginControlFlow("if (!(failed ? errors.publish(channel, httpRequestReader) : channel.publishHTTPResponse(httpRequestReader, responseStatus, $L, this)))", contentType);
+        addPipeFull(method);
+        method.addStatement("return false")
+                .endControlFlow()
+                .addStatement("this.pendingConnectionId = -1");
+        if (metrics) {
+            method.addStatement("metrics.response(responseStatus)");
+        }
+        method.addStatement("return true");
+    }
+
+    // The slot is claimed before the service runs, a request redelivered because the ring was full
+    // and the 503 could not be published has not reached the service yet.
+    private void buildAsyncRequest(MethodSpec.Builder method) {
+        if (metrics) {
+            method.addStatement("long started = System.nanoTime()");
+        }
+        method.addStatement("int slot = asyncResponses.park(httpRequestReader)")
+                .beginControlFlow("if (slot < 0)");
+        publishUnavailable(method);
+        method.endControlFlow();
+
+        method.addStatement("boolean decoding = true")
+                .beginControlFlow("try");
+        if (streamedRequestBody) {
+            buildStreamedInvoke(method);
+        }
+        else {
+            buildInvoke(method);
+        }
+        if (asyncKind.equals("java.util.concurrent.Callable")) {
+            method.addStatement("asyncResponses.expireAfter(slot, null)")
+                    .addStatement("$T.execute(() -> call(slot, response))", GreenAsyncResponses.class);
+        }
+        else if (asyncKind.equals("org.springframework.web.context.request.async.DeferredResult")) {
+            method.addStatement("asyncResponses.expireAfter(slot, $T.timeoutOf(response, asyncResponses.getTimeout()), response)", GreenDeferredResults.class)
+                    .addStatement("response.setResultHandler(value -> completeValue(slot, value))");
+        }
+        else {
+            method.addStatement("asyncResponses.expireAfter(slot, null)")
+                    .addStatement("response.whenComplete((entity, failure) -> complete(slot, entity, failure))");
+        }
+        method.endControlFlow();
+        method.beginControlFlow("catch (Throwable e)")
+                .addStatement("asyncResponses.complete(slot, errors.statusOf($L, e, decoding), null)", findError("e"))
+                .endControlFlow();
+        method.addStatement("return true");
+    }
+
+    // The service returns the emitter or body and the response is streamed from the pulse after,
+    // so like an async request this one is never delivered again once a slot is claimed.
+    private void buildStreamingRequest(MethodSpec.Builder method) {
+        if (metrics) {
+            method.addStatement("long started = System.nanoTime()");
+        }
+        method.addStatement("int slot = streamedResponses.open(httpRequestReader)")
+                .beginControlFlow("if (slot < 0)");
+        publishUnavailable(method);
+        method.endControlFlow();
+
+        method.addStatement("boolean decoding = true")
+                .beginControlFlow("try");
+        if (streamedRequestBody) {
+            buildStreamedInvoke(method);
+        }
+        else {
+            buildInvoke(method);
+        }
+        String status = streamedEntity ? "response.getStatusCodeValue()" : "200";
+        TypeName streamedName = TypeName.get(streamedResponse);
+        method.addStatement("$T streamed = $L", streamedName, streamedEntity ? "response.getBody()" : "response");
+        String kind = ((TypeElement)((DeclaredType)streamedResponse).asElement()).getQualifiedName().toString();
+        if (kind.equals(streamingBody)) {
+            method.addStatement("$T sink = streamedResponses.start(slot, $L, 0)", GreenStreamedResponses.Sink.class, status)
+                    .beginControlFlow("if (streamed == null)")
+                    .addStatement("sink.complete()")
+                    .nextControlFlow("else")
+                    .addStatement("sink.stream(streamed::writeTo)")
+                    .endControlFlow();
+        }
+        else {
+            // The handler is named rather than loaded, it needs spring-webmvc and the processor does not.
+            method.addStatement("$T sink = streamedResponses.start(slot, $L, streamed != null && streamed.getTimeout() != null ? streamed.getTimeout() : 0)", GreenStreamedResponses.Sink.class, status)
+                    .beginControlFlow("if (streamed == null)")
+                    .addStatement("sink.complete()")
+                    .nextControlFlow("else")
+                    .addStatement("$T.attach(streamed, sink)", ClassName.get(GreenStreamedResponses.class.getPackage().getName(), "GreenEmitterHandler"))
+                    .endControlFlow();
+        }
+        if (metrics) {
+            method.addStatement("metrics.response($L)", status);
+        }
+        method.endControlFlow()
+                .beginControlFlow("catch (Throwable e)")
+                .addStatement("int status = errors.statusOf($L, e, decoding)", findError("e"))
+                .addStatement("streamedResponses.fail(slot, status)");
+        if (metrics) {
+            method.addStatement("metrics.response(status)");
+        }
+        method.endControlFlow();
+        method.addStatement("return true");
+    }
+
+    // The open responses are drained on the pulse of the thread that owns the channel. Values
+    // the emitter sends are encoded by the codecs of the types listed in @GreenEmits.
+    private void buildStreamingPublisher() {
+        if (streamedResponse == null) {
+            return;
+        }
+        String kind = ((TypeElement)((DeclaredType)streamedResponse).asElement()).getQualifiedName().toString();
+        List<TypeMirror> emitted = emittedTypes();
+        CodeBlock encoder = CodeBlock.of("null");
+        if (!emitted.isEmpty()) {
+            MethodSpec.Builder encode = MethodSpec.methodBuilder("encodeEmitted")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .addParameter(Object.class, "value")
+                    .addParameter(GreenJsonWriter.class, "json")
+                    .addException(IOException.class);
+            serializer.addEmittedWrite(encode, emitted);
+            builder.addMethod(encode.build());
+            encoder = CodeBlock.of("$T::encodeEmitted", behaviorName);
+        }
+        builder.addField(FieldSpec.builder(GreenStreamedResponses.class, "streamedResponses", Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("new $T($T.capacityDefault, $T.bufferSizeDefault, $L)", GreenStreamedResponses.class,
+                        GreenStreamedResponses.class, GreenStreamedResponses.class, encoder)
+                .build());
+
+        CodeBlock contentType = kind.equals(sseEmitter) ? CodeBlock.of("$T.EVENT_STREAM", GreenContentType.class)
+                : kind.equals(streamingBody) ? CodeBlock.of("$T.OCTET_STREAM", GreenContentType.class)
+                : CodeBlock.of("$T.JSON", HTTPContentTypeDefaults.class);
+        builder.addMethod(MethodSpec.methodBuilder("timeEvent")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .addParameter(long.class, "time")
+                .addParameter(int.class, "iteration")
+                .addStatement("streamedResponses.publish(channel, $L)", contentType)
+                .build());
+    }
+
+    private List<TypeMirror> emittedTypes() {
+        GreenEmits emits = route.getElement().getAnnotation(GreenEmits.class);
+        List<TypeMirror> types = new ArrayList<>();
+        if (emits != null) {
+            try {
+                emits.value();
+            } catch (MirroredTypesException e) {
+                types.addAll(e.getTypeMirrors());
+            }
+        }
+        return types;
+    }
+
+    // The single type argument when it is a class or array, null when raw, a wildcard or a variable.
+    private static TypeMirror typeArgument(TypeMirror kind) {
+        List<? extends TypeMirror> arguments = ((DeclaredType)kind).getTypeArguments();
+        if (arguments.size() != 1) {
+            return null;
+        }
+        TypeKind argumentKind = arguments.get(0).getKind();
+        return argumentKind == TypeKind.DECLARED || argumentKind == TypeKind.ARRAY ? arguments.get(0) : null;
+    }
+
+    private static boolean isResponseEntity(TypeMirror kind) {
+        return kind.getKind() == TypeKind.DECLARED
+                && ((TypeElement)((DeclaredType)kind).asElement()).getQualifiedName().contentEquals(responseEntity);
+    }
+
+    // The emitter or body a handler returns, bare or in a ResponseEntity, null for other returns.
+    private static TypeMirror streamedResponse(TypeMirror kind) {
+        if (kind.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        String name = ((TypeElement)((DeclaredType)kind).asElement()).getQualifiedName().toString();
+        return name.equals(sseEmitter) || name.equals(bodyEmitter) || name.equals(streamingBody) ? kind : null;
+    }
+
+    // An empty pool answers 503 like a full async or streaming slot table, returning false would
+    // have GreenLightning deliver the request again at once and spin the track until one is back.
+    private void borrowService(MethodSpec.Builder method) {
+        if (pooled) {
+            method.addStatement("this.service = servicePool.borrow()")
+                    .beginControlFlow("if (service == null)");
+            publishUnavailable(method);
+            method.endControlFlow();
+        }
+    }
+
+    // Only a full pipe delivers the request again, nothing has been read from it yet.
+    private void publishUnavailable(MethodSpec.Builder method) {
+        method.beginControlFlow("if (!channel.publishHTTPResponse(httpRequestReader, 503))");
+        addPipeFull(method);
+        method.addStatement("return false")
+                .endControlFlow();
+        if (metrics) {
+            method.addStatement("metrics.response(503)");
+        }
+        method.addStatement("return true");
+    }
+
+    private void releaseService(MethodSpec.Builder method) {
+        if (pooled) {
+            method.addStatement("servicePool.release(service)")
+                    .addStatement("this.service = null");
+        }
+    }
+
+    // Index of the controller's mapping for the failure, the chain is only generated when there are mappings.
+    private CodeBlock findError(String failure) {
+        return errorsName != null ? CodeBlock.of("$T.find($L)", errorsName, failure) : CodeBlock.of("-1");
+    }
+
+    private void addPipeFull(MethodSpec.Builder method) {
+        method.addStatement("pipeFull++");
+        if (metrics) {
+            method.addStatement("metrics.pipeFull()");
+        }
+    }
+
+    // Completed responses are published on the pulse of the thread that owns the channel.
+    private void buildAsyncPublisher() {
+        if (!asyncResponse) {
+            return;
+        }
+        builder.addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(GreenAsyncResponses.class), responseBodyName), "asyncResponses")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("new $T<>($T.capacityDefault, $T.get($S, $T.timeoutDefault))", GreenAsyncResponses.class,
+                        GreenAsyncResponses.class, GreenAppProperties.class, "asyncTimeout", GreenAsyncResponses.class)
+                .build());
+
+        builder.addMethod(MethodSpec.methodBuilder("timeEvent")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .addParameter(long.class, "time")
+                .addParameter(int.class, "iteration")
+                .addStatement("asyncResponses.publish(this)")
+                .build());
+
+        MethodSpec.Builder publish = MethodSpec.methodBuilder("publish")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .addParameter(long.class, "connectionId")
+                .addParameter(long.class, "sequenceCode")
+                .addParameter(int.class, "status")
+                .addParameter(responseBodyName, "body")
+                .returns(boolean.class)
+                .addStatement("this.responseBody = body");
+        publish.beginControlFlow("if (!channel.publishHTTPResponse(connectionId, sequenceCode, status, false, $T.JSON, this))", HTTPContentTypeDefaults.class);
+        addPipeFull(publish);
+        publish.addStatement("return false")
+                .endControlFlow();
+        if (metrics) {
+            publish.addStatement("metrics.response(status)");
+        }
+        publish.addStatement("return true");
+        builder.addMethod(publish.build());
+
+        // A bare value is answered 200 with it as the body, null answers 200 without one, as in Spring.
+        TypeName entityName = asyncEntity
+                ? ParameterizedTypeName.get(ClassName.get("org.springframework.http", "ResponseEntity"), responseBodyName)
+                : responseBodyName;
+        builder.addMethod(MethodSpec.methodBuilder("complete")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(int.class, "slot")
+                .addParameter(entityName, "entity")
+                .addParameter(Throwable.class, "failure")
+                .beginControlFlow("if (failure != null)")
+                .addStatement("$T cause = $T.unwrap(failure)", Throwable.class, GreenErrorResponses.class)
+                .addStatement("asyncResponses.complete(slot, errors.statusOf($L, cause, false), null)", findError("cause"))
+                .endControlFlow()
+                .beginControlFlow("else")
+                .addStatement(asyncEntity ? "asyncResponses.complete(slot, entity != null ? entity.getStatusCodeValue() : 200, entity != null ? entity.getBody() : null)"
+                        : "asyncResponses.complete(slot, 200, entity)")
+                .endControlFlow()
+                .build());
+
+        if (asyncKind.equals("java.util.concurrent.Callable")) {
+            builder.addMethod(MethodSpec.methodBuilder("call")
+                    .addModifiers(Modifier.PRIVATE)
+                    .addParameter(int.class, "slot")
+                    .addParameter(responseName, "callable")
+                    .beginControlFlow("try")
+                    .addStatement("complete(slot, callable.call(), null)")
+                    .endControlFlow()
+                    .beginControlFlow("catch (Throwable e)")
+                    .addStatement("complete(slot, null, e)")
+                    .endControlFlow()
+                    .build());
+        }
+        else if (asyncKind.equals("org.springframework.web.context.request.async.DeferredResult")) {
+            builder.addMethod(MethodSpec.methodBuilder("completeValue")
+                    .addModifiers(Modifier.PRIVATE)
+                    .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked").build())
+                    .addParameter(int.class, "slot")
+                    .addParameter(Object.class, "value")
+                    .addCode(deferredValue(entityName))
+                    .build());
+            // The timeout result or a value set by onTimeout completes the ticket before the 503 does.
+            builder.addMethod(MethodSpec.methodBuilder("expire")
+                    .addModifiers(Modifier.PUBLIC)
+                    .addAnnotation(Override.class)
+                    .addParameter(int.class, "slot")
+                    .addParameter(Object.class, "pending")
+                    .beginControlFlow("try")
+                    .addStatement("$T.expire(($T)pending)", GreenDeferredResults.class, ParameterizedTypeName.get(
+                            ClassName.get("org.springframework.web.context.request.async", "DeferredResult"), WildcardTypeName.subtypeOf(Object.class)))
+                    .endControlFlow()
+                    .beginControlFlow("catch (Throwable e)")
+                    .addStatement("asyncResponses.complete(slot, errors.statusOf($L, e, false), null)", findError("e"))
+                    .endControlFlow()
+                    .build());
+        }
+    }
+
+    // Spring answers a value of the body type 200 even when the handler declares a ResponseEntity,
+    // and hands a Throwable to the exception handlers. Other values have no codec here.
+    private CodeBlock deferredValue(TypeName entityName) {
+        TypeName rawBody = responseBodyName instanceof ParameterizedTypeName ? ((ParameterizedTypeName)responseBodyName).rawType : responseBodyName;
+        CodeBlock.Builder code = CodeBlock.builder()
+                .beginControlFlow("if (value instanceof $T)", Throwable.class)
+                .addStatement("complete(slot, null, ($T)value)", Throwable.class);
+        if (asyncEntity) {
+            code.nextControlFlow("else if (value instanceof $T)", ClassName.get("org.springframework.http", "ResponseEntity"))
+                    .addStatement("complete(slot, ($T)value, null)", entityName);
+        }
+        return code.nextControlFlow("else if (value == null || value instanceof $T)", rawBody)
+                .addStatement("asyncResponses.complete(slot, 200, ($T)value)", responseBodyName)
+                .nextControlFlow("else")
+                .addStatement("complete(slot, null, new $T($S + value.getClass().getName()))", IllegalStateException.class,
+                        "GreenSpring cannot encode a DeferredResult value of type ")
+                .endControlFlow()
+                .build();
+    }
+
+    private void buildParamBinders() {
+        if (hasTextParams) {
+            builder.addMethod(MethodSpec.methodBuilder("paramToText")
+                    .addModifiers(Modifier.PRIVATE)
+                    .addParameter(int.class, "idx")
+                    .addParameter(HTTPRequestReader.class, "httpRequestReader")
+                    .addParameter(StringBuilder.class, "text")
+                    .returns(CharSequence.class)
+                    .addStatement("text.setLength(0)")
+                    .addStatement("httpRequestReader.getText(idx, text)")
+                    .addStatement("return text")
+                    .build());
+        }
+        if (hasInternedParams) {
+            builder.addMethod(MethodSpec.methodBuilder("paramToInterned")
+                    .addModifiers(Modifier.PRIVATE)
+                    .addParameter(int.class, "idx")
+                    .addParameter(HTTPRequestReader.class, "httpRequestReader")
+                    .addParameter(GreenInternTable.class, "table")
+                    .returns(String.class)
+                    .addStatement("paramBuffer.setLength(0)")
+                    .addStatement("httpRequestReader.getText(idx, paramBuffer)")
+                    .addStatement("return table.intern(paramBuffer)")
+                    .build());
+        }
+    }
+
+    private void buildInvoke(MethodSpec.Builder method) {
+        String paramList = decodeParams(method);
+        markDecoded(method);
+        method.addStatement("decoding = false")
+                .addStatement("$T response = service." + methodName + "(" + paramList + ")", responseName);
+        markServiced(method);
+    }
+
+    // The key is made of the decoded values, so equal requests hit whatever their text encoding.
+    private void buildCachedInvoke(MethodSpec.Builder method) {
+        String paramList = decodeParams(method);
+        CodeBlock.Builder key = CodeBlock.builder().add("responseCache.key()");
+        for (VariableElement param : orderedParams) {
+            if (!annotatedMethod.isParamRequestBody(param)) {
+                key.add(".add($L)", param.getSimpleName());
+            }
+        }
+        if (compression != null) {
+            key.add(".add(compression.getAccepted())");
+        }
+        markDecoded(method);
+        method.addStatement("$L", key.build())
+                .addStatement("this.cachedEntry = responseCache.find(System.currentTimeMillis())")
+                .beginControlFlow("if (cachedEntry >= 0)")
+                .addStatement("this.responseBody = null")
+                .addStatement("this.responseStatus = responseCache.getStatus(cachedEntry)")
+                .endControlFlow()
+                .beginControlFlow("else")
+                .addStatement("decoding = false")
+                .addStatement("$T response = service." + methodName + "(" + paramList + ")", responseName);
+        markServiced(method);
+        method.addStatement("this.responseBody = response.getBody()")
+                .addStatement("this.responseStatus = response.getStatusCodeValue()");
+        if (compression != null) {
+            addCompressedEncode(method);
+            method.addStatement("responseCache.store(responseStatus, compression.getEncoding(), compression.getBody(), compression.getLength())");
+        }
+        method.endControlFlow();
+    }
+
+    private String decodeParams(MethodSpec.Builder method) {
         for (VariableElement param : orderedParams) {
             TypeName kind = TypeName.get(param.asType());
             String name = param.getSimpleName().toString();
             if (annotatedMethod.isParamRequestBody(param)) {
-                serializer.buildRecycledMember(builder, kind);
+                serializer.buildRecycledMember(builder, binary);
                 builder.addField(FieldSpec.builder(kind, "requestBody")
                         .addModifiers(Modifier.PRIVATE)
                         .build());
+                // A primitive body is assigned by read or the request fails to decode.
+                if (!kind.isPrimitive()) {
+                    method.addStatement("this.requestBody = null");
+                }
                 method.addStatement("httpRequestReader.openPayloadData(this)");
                 method.addStatement("$T $L = requestBody", kind, name);
             }
             else {
-                if (annotatedMethod.isParamInRoute(param)) {
-                    String key = kind.toString();
-                    String initializer = init.get(key);
-                    method.addStatement("$T $L = " + initializer, kind, name, routedIds.get(name));
-                }
-                else {
-                    method.addStatement("$T $L", kind, name);
-                }
+                method.addStatement("$T $L = $L", kind, name, paramInitializer(param));
             }
         }
 
-        String paramList = orderedParams.stream().map(VariableElement::getSimpleName).collect(Collectors.joining(", "));
-        method.addStatement("$T response = service." + methodName + "(" + paramList + ")", responseName);
-        method.addStatement("this.responseBody = response.getBody()");
-        method.addStatement("channel.publishHTTPResponse(httpRequestReader, response.getStatusCodeValue(), $T.JSON, this)", HTTPContentTypeDefaults.class);
-        method.endControlFlow();
-        method.beginControlFlow("catch (Throwable e)");
-        method.addStatement("channel.publishHTTPResponse(httpRequestReader, 400)");
-        method.endControlFlow();
-        method.addStatement("return true");
+        return orderedParams.stream().map(VariableElement::getSimpleName).collect(Collectors.joining(", "));
+    }
 
-        builder.addMethod(method.build());
+    // The service runs inside the payload callback so the records are decoded while it iterates.
+    // The routed parameters are read before the payload is opened and handed over in fields.
+    private void buildStreamedInvoke(MethodSpec.Builder method) {
+        MethodSpec.Builder invoke = MethodSpec.methodBuilder("invoke")
+                .addModifiers(Modifier.PRIVATE)
+                .addStatement("this.invoked = true");
+
+        List<CodeBlock> args = new ArrayList<>();
+        for (VariableElement param : orderedParams) {
+            TypeName kind = TypeName.get(param.asType());
+            String name = param.getSimpleName().toString();
+            if (annotatedMethod.isParamRequestBody(param)) {
+                serializer.buildRecycledMember(builder, binary);
+                serializer.buildStreamedMember(builder, param.asType(), validatedRequestBody, binary);
+                args.add(serializer.streamedArgument(param.asType(), binary));
+            }
+            else {
+                builder.addField(kind, name, Modifier.PRIVATE);
+                method.addStatement("this.$L = $L", name, paramInitializer(param));
+                args.add(CodeBlock.of("$L", name));
+            }
+        }
+
+        builder.addField(boolean.class, "invoked", Modifier.PRIVATE)
+                .addField(responseName, "response", Modifier.PRIVATE);
+
+        CodeBlock.Builder argList = CodeBlock.builder();
+        for (int i = 0; i < args.size(); i++) {
+            argList.add(i == 0 ? "$L" : ", $L", args.get(i));
+        }
+        invoke.addStatement("this.response = service.$L($L)", methodName, argList.build());
+        builder.addMethod(invoke.build());
+
+        markDecoded(method);
+        method.addStatement("decoding = false")
+                .addStatement("this.invoked = false")
+                .addStatement("httpRequestReader.openPayloadData(this)")
+                .beginControlFlow("if (!invoked)");
+        serializer.addStreamReset(method, null, binary);
+        method.addStatement("invoke()")
+                .endControlFlow()
+                .addStatement("$T response = this.response", responseName);
+        markServiced(method);
+    }
+
+    // A streamed body is decoded while the service runs, so its decode phase only covers the routed parameters.
+    private void markDecoded(MethodSpec.Builder method) {
+        if (metrics) {
+            method.addStatement("long decoded = System.nanoTime()")
+                    .addStatement("metrics.decode(decoded - started)");
+        }
+    }
+
+    private void markServiced(MethodSpec.Builder method) {
+        if (metrics) {
+            method.addStatement("metrics.service(System.nanoTime() - decoded)");
+        }
+    }
+
+    // CharSequence parameters are views over a reused buffer and interned Strings come from a
+    // bounded per-route table, neither allocates once the route is warm.
+    private CodeBlock paramInitializer(VariableElement param) {
+        String name = param.getSimpleName().toString();
+        String kind = param.asType().toString();
+        if (annotatedMethod.isParamInHeader(param)) {
+            return headerInitializer(param);
+        }
+        int idx = routedIds.get(annotatedMethod.getRoutedName(param));
+        if (kind.equals("java.lang.CharSequence")) {
+            hasTextParams = true;
+            builder.addField(FieldSpec.builder(StringBuilder.class, name + "Text", Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer("new $T()", StringBuilder.class)
+                    .build());
+            return CodeBlock.of("paramToText($L, httpRequestReader, $L)", idx, name + "Text");
+        }
+        GreenIntern intern = param.getAnnotation(GreenIntern.class);
+        if (intern != null && kind.equals("java.lang.String")) {
+            hasInternedParams = true;
+            builder.addField(FieldSpec.builder(GreenInternTable.class, name + "Interned", Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer("new $T($L)", GreenInternTable.class, intern.capacity())
+                    .build());
+            return CodeBlock.of("paramToInterned($L, httpRequestReader, $L)", idx, name + "Interned");
+        }
+        return CodeBlock.of(init.get(kind), idx);
+    }
+
+    // Header ids are constants of the route class, the value holder is reused per request.
+    private CodeBlock headerInitializer(VariableElement param) {
+        String name = param.getSimpleName().toString();
+        String kind = param.asType().toString();
+        String headerName = annotatedMethod.getHeaderName(param);
+        String headerId = headerId(headers.get(headerName));
+        builder.addField(FieldSpec.builder(GreenHeaderValue.class, name + "Header", Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("new $T($S)", GreenHeaderValue.class, headerName)
+                .build());
+
+        CodeBlock value = CodeBlock.of("$L.read(httpRequestReader, $L)", name + "Header", headerId);
+        String accessor = headerInit.get(kind);
+        String defaultValue = annotatedMethod.getHeaderDefault(param);
+        CodeBlock arguments;
+        if (defaultValue != null) {
+            arguments = headerDefault(param, kind, defaultValue);
+        }
+        else if (annotatedMethod.isHeaderRequired(param)) {
+            arguments = CodeBlock.of("");
+        }
+        else {
+            arguments = absentValue(param.asType());
+        }
+        if (accessor.indexOf('$') >= 0) {
+            return CodeBlock.of(accessor + "($L)", value, arguments);
+        }
+        return CodeBlock.of("$L.$L($L)", value, accessor, arguments);
+    }
+
+    private String headerId(HTTPHeaderDefaults header) {
+        String headerId = header.name() + "_HEADER";
+        if (headerIds.add(headerId)) {
+            builder.addField(FieldSpec.builder(int.class, headerId, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$T.$L.ordinal()", HTTPHeaderDefaults.class, header.name())
+                    .build());
+        }
+        return headerId;
+    }
+
+    private static CodeBlock headerDefault(VariableElement param, String kind, String defaultValue) {
+        try {
+            switch (kind) {
+                case "java.lang.String":
+                case "java.lang.CharSequence":
+                    return CodeBlock.of("$S", defaultValue);
+                case "boolean":
+                    return CodeBlock.of("$L", Boolean.parseBoolean(defaultValue.trim()));
+                case "float":
+                case "double":
+                    return CodeBlock.of("$Ld", Double.parseDouble(defaultValue.trim()));
+                case "long":
+                    return CodeBlock.of("$LL", Long.parseLong(defaultValue.trim()));
+                case "byte":
+                    return CodeBlock.of("(byte)$L", Byte.parseByte(defaultValue.trim()));
+                case "short":
+                    return CodeBlock.of("(short)$L", Short.parseShort(defaultValue.trim()));
+                default:
+                    return CodeBlock.of("$L", Integer.parseInt(defaultValue.trim()));
+            }
+        } catch (NumberFormatException e) {
+            throw new GreenElementException("Invalid default value " + defaultValue + " for " + param.getSimpleName(), param);
+        }
+    }
+
+    private static HTTPHeaderDefaults header(String name, VariableElement param) {
+        try {
+            return HTTPHeaderDefaults.valueOf(name.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new GreenElementException("Unsupported @RequestHeader " + name + ", only the GreenLightning default headers can be routed", param);
+        }
+    }
+
+    // What an optional header without a default binds to when it is missing.
+    private static CodeBlock absentValue(TypeMirror kind) {
+        if (kind.getKind() == TypeKind.BOOLEAN) {
+            return CodeBlock.of("false");
+        }
+        return CodeBlock.of(kind.getKind().isPrimitive() ? "0" : "null");
+    }
+
+    // One tab separated line of the route listing read by GreenSpringAllocationCheck:
+    // route class, service class, verbs, template, flags and the binder of each template field
+    // the route reads.
+    String describe(String baseRoute) {
+        List<String> binders = new ArrayList<>();
+        for (VariableElement param : orderedParams) {
+            if (constant == null && (annotatedMethod.isParamInRoute(param) || annotatedMethod.isParamInQuery(param))) {
+                String name = param.getSimpleName().toString();
+                String kind = param.asType().toString();
+                String binder = kind.equals("java.lang.CharSequence") ? "text"
+                        : kind.equals("java.lang.String") ? (param.getAnnotation(GreenIntern.class) != null ? "interned" : "string")
+                        : kind;
+                binders.add(routedIds.get(annotatedMethod.getRoutedName(param)) + ":" + name + ":" + binder);
+            }
+        }
+        List<String> flags = new ArrayList<>();
+        if (allocationFree) {
+            flags.add("allocationFree");
+        }
+        if (asyncResponse) {
+            flags.add("async");
+        }
+        if (streamedResponse != null) {
+            flags.add("streamedResponse");
+        }
+        if (hasRequestBody) {
+            flags.add(streamedRequestBody ? "streamedBody" : "body");
+        }
+        if (pooled) {
+            flags.add("pooled");
+        }
+        if (binary) {
+            flags.add("binary");
+        }
+        if (compression != null) {
+            flags.add("compressed");
+        }
+        return behaviorName.reflectionName()
+                + '\t' + serviceName.reflectionName()
+                + '\t' + (verbs.isEmpty() ? "ANY" : verbs.stream().map(Enum::name).collect(Collectors.joining(",")))
+                + '\t' + getGreenRoute(baseRoute)
+                + '\t' + (flags.isEmpty() ? "-" : String.join(",", flags))
+                + '\t' + (binders.isEmpty() ? "-" : String.join(",", binders));
     }
 
     String getGreenRoute(String baseRoute) {
-        return this.route.getGreenRouteString(baseRoute, routedParams);
+        return this.route.getGreenRouteString(baseRoute, routedParams, queryParams);
     }
 }
@@ -0,0 +1,69 @@
+package com.ociweb.greenspring.builder;
+
+import com.ociweb.gl.api.TimeListener;
+import com.ociweb.greenspring.adaptors.GreenScheduledMethods;
+import com.ociweb.greenspring.runtime.GreenSchedule;
+import com.squareup.javapoet.*;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import java.util.List;
+
+// @Scheduled methods as GreenLightning time pulses instead of a task scheduler's thread pool.
+// The behavior owning the service runs its schedules from timeEvent, on the thread of its
+// routes and listeners, so a scheduled method never races the requests using the same service.
+public class GreenSchedulesBuilder {
+    private final GreenScheduledMethods scheduled;
+
+    public GreenSchedulesBuilder(GreenScheduledMethods scheduled) {
+        this.scheduled = scheduled;
+    }
+
+    boolean hasSchedules(Element element) {
+        return scheduled.hasSchedules(element);
+    }
+
+    List<TypeElement> getComponents() {
+        return scheduled.getComponents();
+    }
+
+    // The schedules of the class for the given service, created when the behavior starts.
+    CodeBlock create(Element element, CodeBlock service) {
+        CodeBlock.Builder array = CodeBlock.builder().add("new $T[] {", GreenSchedule.class);
+        boolean first = true;
+        for (CodeBlock schedule : scheduled.forClass(element, service)) {
+            array.add(first ? " $L" : ", $L", schedule);
+            first = false;
+        }
+        return array.add(" }").build();
+    }
+
+    void addField(TypeSpec.Builder builder, Element element) {
+        builder.addField(FieldSpec.builder(GreenSchedule[].class, "schedules", Modifier.PRIVATE)
+                .initializer("new $T[0]", GreenSchedule.class)
+                .build());
+        MethodSpec cron = scheduled.cronMethod(element);
+        if (cron != null) {
+            builder.addMethod(cron);
+        }
+    }
+
+    void addTimeEvent(MethodSpec.Builder timeEvent) {
+        timeEvent.beginControlFlow("for ($T schedule : schedules)", GreenSchedule.class)
+                .addStatement("schedule.timeEvent(time)")
+                .endControlFlow();
+    }
+
+    // Components have nothing else on their pulse.
+    void addTimeListener(TypeSpec.Builder builder) {
+        MethodSpec.Builder timeEvent = MethodSpec.methodBuilder("timeEvent")
+                .addModifiers(Modifier.PUBLIC)
+                .addAnnotation(Override.class)
+                .addParameter(long.class, "time")
+                .addParameter(int.class, "iteration");
+        addTimeEvent(timeEvent);
+        builder.addSuperinterface(TimeListener.class)
+                .addMethod(timeEvent.build());
+    }
+}
@@ -1,8 +1,16 @@
 package com.ociweb.greenspring.builder;
 
 import com.ociweb.gl.api.Builder;
+import com.ociweb.gl.api.GreenCommandChannel;
 import com.ociweb.gl.api.GreenAppParallel;
 import com.ociweb.gl.api.GreenRuntime;
+import com.ociweb.gl.api.HTTPServerConfig;
+import com.ociweb.greenspring.adaptors.GreenJsonCodecs;
+import com.ociweb.greenspring.annotation.CreateGreenSpringAppConfig;
+import com.ociweb.greenspring.runtime.GreenAppProperties;
+import com.ociweb.greenspring.runtime.GreenAsyncResponses;
+import com.ociweb.greenspring.runtime.GreenMetricsListener;
+import com.ociweb.greenspring.runtime.GreenStaticFiles;
 
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.JavaFile;
@@ -11,27 +19,42 @@ import com.squareup.javapoet.TypeSpec;
 
 import javax.annotation.processing.Filer;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
 public class GreenSpringAppBuilder {
-    private final int port;
+    private static final String routeList = "META-INF/greenspring/routes";
+
+    private final CreateGreenSpringAppConfig config;
     private final List<GreenBehaviorBuilder> models = new ArrayList<>();
-    private final String appName;
-    private final String subPackage;
+    private final GreenJsonCodecs codecs;
+    private final GreenEventsBuilder events;
+    private final GreenComponentsBuilder components;
+    private final GreenWiringBuilder wiring;
     private String topPackage = null;
 
-    public GreenSpringAppBuilder(String appName, String subPackage, int port) {
-        this.appName = appName;
-        this.subPackage = subPackage;
-        this.port = port;
+    public GreenSpringAppBuilder(CreateGreenSpringAppConfig config, GreenJsonCodecs codecs, GreenEventsBuilder events, GreenComponentsBuilder components, GreenWiringBuilder wiring) {
+        this.config = config;
+        this.codecs = codecs;
+        this.events = events;
+        this.components = components;
+        this.wiring = wiring;
+        for (TypeElement component : components.getComponents()) {
+            addPackage(components.getComponentName(component).packageName());
+        }
     }
 
     public void addBehavior(GreenBehaviorBuilder model) {
         models.add(model);
+        addPackage(model.getBehaviorName().packageName());
+    }
 
-        String newPackage = model.getBehaviorName().packageName();
+    private void addPackage(String newPackage) {
         if (topPackage == null) {
             topPackage = newPackage;
         }
@@ -51,7 +74,7 @@ public class GreenSpringAppBuilder {
 
     public void write(Filer filer, String indent) throws IOException {
 
-        ClassName buildName = ClassName.get(topPackage + subPackage, appName);
+        ClassName buildName = ClassName.get(topPackage + config.getSubPackage(), config.getAppName());
 
         TypeSpec.Builder builder = TypeSpec.classBuilder(buildName)
                 .addModifiers(Modifier.PUBLIC)
@@ -60,22 +83,54 @@ public class GreenSpringAppBuilder {
         MethodSpec.Builder declareConfiguration = MethodSpec.methodBuilder("declareConfiguration")
                 .addModifiers(Modifier.PUBLIC)
                 .addParameter(Builder.class, "builder")
-                .addStatement("builder.useHTTP1xServer($L)", port)
+                .addStatement("declareServer(builder)")
                 .addStatement("builder.useInsecureNetClient()");
 
         for (GreenBehaviorBuilder model : models) {
             declareConfiguration.addStatement("$T.$L(builder)", model.getBehaviorName(), model.getConfigInvocation());
         }
 
+        if (components.hasSchedules()) {
+            declareConfiguration.addStatement("builder.setTimerPulseRate($T.pulseRateDefault)", GreenAsyncResponses.class);
+        }
+
+        boolean hasMetrics = models.stream().anyMatch(GreenBehaviorBuilder::hasMetrics);
+        if (hasMetrics) {
+            builder.addField(int.class, "metricsRouteId", Modifier.PRIVATE, Modifier.STATIC);
+            declareConfiguration.addStatement("metricsRouteId = builder.registerRoute($S)", config.getMetricsRoute());
+        }
+
         MethodSpec.Builder declareBehavior = MethodSpec.methodBuilder("declareBehavior")
                 .addModifiers(Modifier.PUBLIC)
                 .addParameter(GreenRuntime.class, "runtime");
 
+        // The directory is read once, by a single behavior, the route and directory can be moved at start up.
+        if (!config.getStaticDirectory().isEmpty()) {
+            builder.addField(int.class, "staticRouteId", Modifier.PRIVATE, Modifier.STATIC);
+            declareConfiguration.addStatement("staticRouteId = $T.registerRoute(builder, $T.get($S, $S))",
+                            GreenStaticFiles.class, GreenAppProperties.class, "staticRoute", config.getStaticRoute())
+                    .addStatement("builder.setTimerPulseRate($T.pulseRateDefault)", GreenAsyncResponses.class);
+            declareBehavior.addStatement("$T.registerBehavior(runtime, staticRouteId, $T.get($S, $S), $T.get($S, $L))",
+                    GreenStaticFiles.class, GreenAppProperties.class, "staticDirectory", config.getStaticDirectory(),
+                    GreenAppProperties.class, "maxResponseSize", config.getMaxResponseSize());
+        }
 
+        // GreenLightning calls declareParallelBehavior once per track and spreads connections, not
+        // routes, over the tracks, so every parallel behavior is declared on each of them.
         MethodSpec.Builder declareParallelBehavior = MethodSpec.methodBuilder("declareParallelBehavior")
                 .addModifiers(Modifier.PUBLIC)
                 .addParameter(GreenRuntime.class, "runtime");
 
+        if (hasMetrics) {
+            declareBehavior.addStatement("runtime.registerListener(new $T(runtime.newCommandChannel($T.NET_REQUESTER))).includeRoutes(new int[] { metricsRouteId })",
+                    GreenMetricsListener.class, GreenCommandChannel.class);
+        }
+
+        // Components are declared once, their instance is not per track.
+        for (TypeElement component : components.getComponents()) {
+            declareBehavior.addStatement("$T.registerBehavior(runtime)", components.getComponentName(component));
+        }
+
         for (GreenBehaviorBuilder model : models) {
             if (model.isParallelBehavior()) {
                 declareParallelBehavior.addStatement("$T.$L(runtime)", model.getBehaviorName(), model.getBehaviorInvocation());
@@ -93,6 +148,7 @@ public class GreenSpringAppBuilder {
                     .addStatement("GreenRuntime.run(new $T(), args)", buildName)
                     .build())
             .addMethod(declareConfiguration.build())
+            .addMethod(buildDeclareServer())
             .addMethod(declareBehavior.build())
             .addMethod(declareParallelBehavior.build());
 
@@ -100,10 +156,76 @@ public class GreenSpringAppBuilder {
                 .skipJavaLangImports(true)
                 .indent(indent);
 
+        events.setPackage(buildName.packageName());
+        wiring.setPackage(buildName.packageName());
         for (GreenBehaviorBuilder behavior : models) {
             behavior.write(filer, indent);
         }
+        events.write(filer, indent);
+        components.write(filer, indent);
+        wiring.write(filer, indent);
+        codecs.write(filer, indent);
+        writeRouteList(filer);
 
         java.build().writeTo(filer);
     }
+
+    // Lists the generated routes so tools can drive them without scanning the class path.
+    private void writeRouteList(Filer filer) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (GreenBehaviorBuilder model : models) {
+            model.describe(lines);
+        }
+        FileObject resource = filer.createResource(StandardLocation.CLASS_OUTPUT, "", routeList);
+        try (Writer writer = resource.openWriter()) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+
+    // Values from @CreateGreenSpringApp are the defaults of the start up properties.
+    private MethodSpec buildDeclareServer() {
+        MethodSpec.Builder declareServer = MethodSpec.methodBuilder("declareServer")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(Builder.class, "builder")
+                .addStatement("$T server = builder.useHTTP1xServer($T.get($S, $L))",
+                        HTTPServerConfig.class, GreenAppProperties.class, "port", config.getPort())
+                .addStatement("String host = $T.get($S, $S)", GreenAppProperties.class, "host", config.getHost())
+                .beginControlFlow("if (!host.isEmpty())")
+                .addStatement("server.setHost(host)")
+                .endControlFlow()
+                .beginControlFlow("if (!$T.get($S, $L))", GreenAppProperties.class, "tls", config.isTls())
+                .addStatement("server.useInsecureServer()")
+                .endControlFlow();
+        sizing(declareServer, "maxConnections", config.getMaxConnections(),
+                "server.setMaxConnectionBits($T.bits(maxConnections))", GreenAppProperties.class);
+        sizing(declareServer, "requestQueue", config.getRequestQueue(), "server.setMaxQueueIn(requestQueue)");
+        sizing(declareServer, "responseQueue", config.getResponseQueue(), "server.setMaxQueueOut(responseQueue)");
+        sizing(declareServer, "maxRequestSize", config.getMaxRequestSize(), "server.setMaxRequestSize(maxRequestSize)");
+        sizing(declareServer, "maxResponseSize", config.getMaxResponseSize(), "server.setMaxResponseSize(maxResponseSize)");
+        sizing(declareServer, "tracks", getTracks(), "builder.parallelTracks(tracks)");
+        return declareServer.build();
+    }
+
+    // The most tracks any controller asks for, unless the app sets the count.
+    private int getTracks() {
+        int tracks = config.getTracks();
+        if (tracks == 0) {
+            for (GreenBehaviorBuilder model : models) {
+                if (model.isParallelBehavior() && model.getTracks() > 0) {
+                    tracks = Math.max(tracks, model.getTracks());
+                }
+            }
+        }
+        return tracks;
+    }
+
+    private static void sizing(MethodSpec.Builder method, String name, int value, String apply, Object... args) {
+        method.addStatement("int $L = $T.get($S, $L)", name, GreenAppProperties.class, name, value)
+                .beginControlFlow("if ($L > 0)", name)
+                .addStatement(apply, args)
+                .endControlFlow();
+    }
 }
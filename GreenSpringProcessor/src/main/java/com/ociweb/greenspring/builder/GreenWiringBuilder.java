@@ -0,0 +1,201 @@
+package com.ociweb.greenspring.builder;
+
+import com.ociweb.greenspring.adaptors.GreenWiring;
+import com.squareup.javapoet.*;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import java.beans.Introspector;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// GreenWiring, the factory methods creating the controllers and components that have something
+// injected. Each method creates the class's collaborators once, in dependency order, and hands
+// the same instance to every class of the graph asking for its type. Collaborators shared by
+// the app are created by the class initializer of a nested holder, like the app scoped services
+// of the behaviors, in dependency order so each sees the ones it needs already created.
+// Classes with nothing to inject are still created with new where they are used.
+public class GreenWiringBuilder {
+    private final GreenWiring wiring;
+    private final Set<TypeElement> requested = new LinkedHashSet<>();
+    private final Map<TypeElement, String> methods = new LinkedHashMap<>();
+    private final Set<String> names = new HashSet<>();
+    private ClassName wiringName;
+
+    public GreenWiringBuilder(GreenWiring wiring) {
+        this.wiring = wiring;
+    }
+
+    // The factory lives in the app's package, known before any behavior is written.
+    void setPackage(String packageName) {
+        this.wiringName = ClassName.get(packageName, "GreenWiring");
+    }
+
+    // An expression creating the class, or giving the app's instance of a shared one.
+    CodeBlock create(Element element) {
+        TypeElement type = (TypeElement)element;
+        GreenWiring.Bean bean = wiring.resolve(type);
+        if (bean == null || wiring.isDirect(bean)) {
+            return CodeBlock.of("new $T()", ClassName.get(type));
+        }
+        requested.add(type);
+        return CodeBlock.of("$T.$L()", wiringName, methodName(type));
+    }
+
+    CodeBlock supplier(Element element) {
+        TypeElement type = (TypeElement)element;
+        GreenWiring.Bean bean = wiring.resolve(type);
+        if (bean == null || wiring.isDirect(bean)) {
+            return CodeBlock.of("$T::new", ClassName.get(type));
+        }
+        requested.add(type);
+        return CodeBlock.of("$T::$L", wiringName, methodName(type));
+    }
+
+    void write(Filer filer, String indent) throws IOException {
+        if (requested.isEmpty()) {
+            return;
+        }
+        wiring.reportUnshared(requested);
+        TypeSpec.Builder builder = TypeSpec.classBuilder(wiringName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .build());
+
+        Set<GreenWiring.Bean> shared = new LinkedHashSet<>();
+        Set<GreenWiring.Bean> visited = new HashSet<>();
+        for (TypeElement type : requested) {
+            collectShared(wiring.resolve(type), shared, visited);
+        }
+        for (TypeElement type : requested) {
+            GreenWiring.Bean bean = wiring.resolve(type);
+            if (!bean.isShared()) {
+                builder.addMethod(factory(bean, methodName(type), Modifier.PUBLIC));
+            }
+        }
+
+        if (!shared.isEmpty()) {
+            TypeSpec.Builder app = TypeSpec.classBuilder("App")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL);
+            for (GreenWiring.Bean bean : shared) {
+                String name = methodName(bean.getType());
+                String creator = "new" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                ClassName beanName = ClassName.get(bean.getType());
+                app.addField(FieldSpec.builder(beanName, name, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$L()", creator)
+                        .build());
+                if (requested.contains(bean.getType())) {
+                    builder.addMethod(MethodSpec.methodBuilder(name)
+                            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                            .returns(beanName)
+                            .addStatement("return App.$L", name)
+                            .build());
+                }
+                builder.addMethod(factory(bean, creator, Modifier.PRIVATE));
+            }
+            builder.addType(app.build());
+        }
+
+        JavaFile.builder(wiringName.packageName(), builder.build())
+                .skipJavaLangImports(true)
+                .indent(indent)
+                .build()
+                .writeTo(filer);
+    }
+
+    private String methodName(TypeElement type) {
+        String name = methods.get(type);
+        if (name == null) {
+            String base = Introspector.decapitalize(String.join("", ClassName.get(type).simpleNames()));
+            name = base;
+            for (int i = 2; SourceVersion.isKeyword(name) || !names.add(name); i++) {
+                name = base + i;
+            }
+            methods.put(type, name);
+        }
+        return name;
+    }
+
+    // Shared beans after the shared beans they need.
+    private void collectShared(GreenWiring.Bean bean, Set<GreenWiring.Bean> shared, Set<GreenWiring.Bean> visited) {
+        if (!visited.add(bean)) {
+            return;
+        }
+        for (GreenWiring.Bean dependency : bean.getDependencies()) {
+            collectShared(dependency, shared, visited);
+        }
+        if (bean.isShared()) {
+            shared.add(bean);
+        }
+    }
+
+    private MethodSpec factory(GreenWiring.Bean bean, String name, Modifier visibility) {
+        MethodSpec.Builder factory = MethodSpec.methodBuilder(name)
+                .addModifiers(visibility, Modifier.STATIC)
+                .returns(ClassName.get(bean.getType()));
+        Map<GreenWiring.Bean, String> locals = new LinkedHashMap<>();
+        if (bean.getInjections().isEmpty()) {
+            List<String> arguments = new ArrayList<>();
+            for (GreenWiring.Bean argument : bean.getArguments()) {
+                arguments.add(instance(argument, factory, locals, false));
+            }
+            factory.addStatement("return new $T($L)", ClassName.get(bean.getType()), String.join(", ", arguments));
+        }
+        else {
+            factory.addStatement("return $L", instance(bean, factory, locals, true));
+        }
+        return factory.build();
+    }
+
+    // Creates the bean and what it needs into locals, returning how to refer to it.
+    private String instance(GreenWiring.Bean bean, MethodSpec.Builder factory, Map<GreenWiring.Bean, String> locals, boolean top) {
+        if (bean.isShared() && !top) {
+            return "App." + methodName(bean.getType());
+        }
+        String local = locals.get(bean);
+        if (local != null) {
+            return local;
+        }
+        List<String> arguments = new ArrayList<>();
+        for (GreenWiring.Bean argument : bean.getArguments()) {
+            arguments.add(instance(argument, factory, locals, false));
+        }
+        List<List<String>> injected = new ArrayList<>();
+        for (GreenWiring.Injection injection : bean.getInjections()) {
+            List<String> values = new ArrayList<>();
+            for (GreenWiring.Bean argument : injection.getArguments()) {
+                values.add(instance(argument, factory, locals, false));
+            }
+            injected.add(values);
+        }
+
+        String base = Introspector.decapitalize(bean.getType().getSimpleName().toString());
+        local = base;
+        for (int i = 2; locals.containsValue(local) || SourceVersion.isKeyword(local); i++) {
+            local = base + i;
+        }
+        locals.put(bean, local);
+        ClassName beanName = ClassName.get(bean.getType());
+        factory.addStatement("$T $L = new $T($L)", beanName, local, beanName, String.join(", ", arguments));
+        for (int i = 0; i < injected.size(); i++) {
+            GreenWiring.Injection injection = bean.getInjections().get(i);
+            if (injection.isField()) {
+                factory.addStatement("$L.$L = $L", local, injection.getName(), injected.get(i).get(0));
+            }
+            else {
+                factory.addStatement("$L.$L($L)", local, injection.getName(), String.join(", ", injected.get(i)));
+            }
+        }
+        return local;
+    }
+}
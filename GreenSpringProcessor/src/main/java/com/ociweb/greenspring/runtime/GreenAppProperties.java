@@ -0,0 +1,54 @@
+package com.ociweb.greenspring.runtime;
+
+// Start up overrides of the values compiled into the generated app. A system property
+// greenspring.maxRequestSize wins over the environment variable GREENSPRING_MAX_REQUEST_SIZE,
+// which wins over the annotation.
+public final class GreenAppProperties {
+    private static final String PROPERTY_PREFIX = "greenspring.";
+    private static final String ENV_PREFIX = "GREENSPRING_";
+
+    private GreenAppProperties() {
+    }
+
+    public static String get(String name, String defaultValue) {
+        String value = System.getProperty(PROPERTY_PREFIX + name);
+        if (value == null) {
+            value = System.getenv(ENV_PREFIX + envName(name));
+        }
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    public static int get(String name, int defaultValue) {
+        String value = get(name, (String)null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Property " + PROPERTY_PREFIX + name + " is not a number: " + value);
+        }
+    }
+
+    public static boolean get(String name, boolean defaultValue) {
+        String value = get(name, (String)null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    // GreenLightning sizes the connection table in powers of two.
+    public static int bits(int count) {
+        return count <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(count - 1);
+    }
+
+    private static String envName(String name) {
+        StringBuilder env = new StringBuilder(name.length() + 8);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                env.append('_');
+            }
+            env.append(Character.toUpperCase(c));
+        }
+        return env.toString();
+    }
+}
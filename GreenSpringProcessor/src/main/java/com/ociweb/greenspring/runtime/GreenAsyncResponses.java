@@ -0,0 +1,181 @@
+package com.ociweb.greenspring.runtime;
+
+import com.ociweb.gl.api.HTTPRequestReader;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Parks the connection and sequence of requests whose service returned before the response
+// was ready. Completion may happen on any thread, it only fills the slot and flags it. The
+// owning route drains the ready slots from its time event, so every response is published
+// by the thread that owns the command channel. Park and publish must be called by that thread.
+// A parked request not completed before its deadline is answered 503, as Spring answers an
+// async request that times out. Each park hands out a new ticket for the slot, so a late
+// completion of an expired request is dropped instead of answering the slot's next request.
+public final class GreenAsyncResponses<T> {
+    public static final int capacityDefault = 1024;
+    public static final long pulseRateDefault = 1;
+    public static final int timeoutDefault = 30_000;
+    public static final int timeoutStatus = 503;
+
+    // Slot states, a waiting slot holds its ticket.
+    private static final int FREE = -1;
+    private static final int COMPLETING = -2;
+    private static final int READY = -3;
+
+    private static final ExecutorService callables = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "GreenSpringCallable");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public interface Publisher<T> {
+        boolean publish(long connectionId, long sequenceCode, int status, T body);
+
+        // Called on the owning thread when the request is past its deadline, before it is
+        // answered with the timeout status. Completing the ticket here answers it instead.
+        default void expire(int ticket, Object pending) {
+        }
+    }
+
+    private final long[] connectionIds;
+    private final long[] sequenceCodes;
+    private final int[] statuses;
+    private final Object[] bodies;
+    private final int[] generations;
+    private final long[] deadlines;
+    private final Object[] pendings;
+    private final AtomicIntegerArray states;
+    private final AtomicInteger ready = new AtomicInteger();
+    private final int mask;
+    private final int bits;
+    private final long timeout;
+    private long nextDeadline = Long.MAX_VALUE;
+    private int next;
+
+    public GreenAsyncResponses(int capacity) {
+        this(capacity, timeoutDefault);
+    }
+
+    // A timeout of zero or less never expires a request.
+    public GreenAsyncResponses(int capacity, long timeout) {
+        int slots = Integer.highestOneBit(Math.max(1, capacity) * 2 - 1);
+        this.connectionIds = new long[slots];
+        this.sequenceCodes = new long[slots];
+        this.statuses = new int[slots];
+        this.bodies = new Object[slots];
+        this.generations = new int[slots];
+        this.deadlines = new long[slots];
+        this.pendings = new Object[slots];
+        this.states = new AtomicIntegerArray(slots);
+        this.mask = slots - 1;
+        this.bits = Integer.numberOfTrailingZeros(slots);
+        this.timeout = timeout;
+        for (int slot = 0; slot < slots; slot++) {
+            states.set(slot, FREE);
+        }
+    }
+
+    public static void execute(Runnable task) {
+        callables.execute(task);
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    // Returns the ticket to complete, or -1 when every slot is waiting.
+    public int park(HTTPRequestReader httpRequestReader) {
+        for (int i = 0; i <= mask; i++) {
+            int slot = (next + i) & mask;
+            if (states.get(slot) == FREE) {
+                connectionIds[slot] = httpRequestReader.getConnectionId();
+                sequenceCodes[slot] = httpRequestReader.getSequenceCode();
+                deadlines[slot] = 0;
+                generations[slot] = (generations[slot] + 1) & (Integer.MAX_VALUE >>> bits);
+                int ticket = (generations[slot] << bits) | slot;
+                states.set(slot, ticket);
+                next = slot + 1;
+                return ticket;
+            }
+        }
+        return -1;
+    }
+
+    // The request expires after the default timeout, pending is handed back to the publisher then.
+    public void expireAfter(int ticket, Object pending) {
+        expireAfter(ticket, timeout, pending);
+    }
+
+    public void expireAfter(int ticket, long timeout, Object pending) {
+        int slot = ticket & mask;
+        if (timeout <= 0 || states.get(slot) != ticket) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        deadlines[slot] = deadline;
+        pendings[slot] = pending;
+        nextDeadline = Math.min(nextDeadline, deadline);
+    }
+
+    // May be called from any thread. Only the first completion of a ticket counts, false for the others.
+    public boolean complete(int ticket, int status, T body) {
+        int slot = ticket & mask;
+        if (!states.compareAndSet(slot, ticket, COMPLETING)) {
+            return false;
+        }
+        statuses[slot] = status;
+        bodies[slot] = body;
+        ready.incrementAndGet();
+        states.set(slot, READY);
+        return true;
+    }
+
+    // Slots the channel could not take stay ready and are retried on the next pulse.
+    @SuppressWarnings("unchecked")
+    public void publish(Publisher<T> publisher) {
+        if (nextDeadline != Long.MAX_VALUE) {
+            long now = System.currentTimeMillis();
+            if (now - nextDeadline >= 0) {
+                expire(publisher, now);
+            }
+        }
+        if (ready.get() == 0) {
+            return;
+        }
+        for (int slot = 0; slot <= mask; slot++) {
+            if (states.get(slot) == READY) {
+                T body = (T)bodies[slot];
+                if (!publisher.publish(connectionIds[slot], sequenceCodes[slot], statuses[slot], body)) {
+                    return;
+                }
+                bodies[slot] = null;
+                ready.decrementAndGet();
+                states.set(slot, FREE);
+            }
+        }
+    }
+
+    private void expire(Publisher<T> publisher, long now) {
+        long earliest = Long.MAX_VALUE;
+        for (int slot = 0; slot <= mask; slot++) {
+            int ticket = states.get(slot);
+            if (ticket < 0 || deadlines[slot] == 0) {
+                continue;
+            }
+            if (now - deadlines[slot] >= 0) {
+                Object pending = pendings[slot];
+                deadlines[slot] = 0;
+                pendings[slot] = null;
+                publisher.expire(ticket, pending);
+                complete(ticket, timeoutStatus, null);
+            }
+            else {
+                earliest = Math.min(earliest, deadlines[slot]);
+            }
+        }
+        nextDeadline = earliest;
+    }
+}
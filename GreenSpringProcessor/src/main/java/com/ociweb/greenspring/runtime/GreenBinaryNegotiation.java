@@ -0,0 +1,56 @@
+package com.ociweb.greenspring.runtime;
+
+import com.ociweb.gl.api.HTTPRequestReader;
+import com.ociweb.gl.api.Headable;
+import com.ociweb.pronghorn.network.config.HTTPHeader;
+import com.ociweb.pronghorn.pipe.ChannelReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Tells from the Content-Type or Accept header whether a request uses the binary format. The
+// header bytes are copied into a reused buffer and searched for the binary media type, so the
+// choice costs no allocation and no parsing of the media ranges: naming the type is enough,
+// whatever its quality. Not thread safe, each route owns its instance.
+public final class GreenBinaryNegotiation implements Headable {
+    private static final byte[] mediaType = GreenContentType.BINARY.contentType().getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] value = new byte[64];
+    private int length;
+
+    public boolean isNamedBy(HTTPRequestReader httpRequestReader, int headerId) {
+        length = 0;
+        httpRequestReader.openHeaderData(headerId, this);
+        return contains();
+    }
+
+    @Override
+    public void read(HTTPHeader header, ChannelReader reader) {
+        try {
+            int c;
+            while ((c = reader.read()) >= 0) {
+                if (length == value.length) {
+                    value = Arrays.copyOf(value, length * 2);
+                }
+                value[length++] = (byte)c;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean contains() {
+        for (int start = 0; start + mediaType.length <= length; start++) {
+            int i = 0;
+            while (i < mediaType.length && Character.toLowerCase(value[start + i]) == mediaType[i]) {
+                i++;
+            }
+            if (i == mediaType.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
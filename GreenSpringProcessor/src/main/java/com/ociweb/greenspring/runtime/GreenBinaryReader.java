@@ -0,0 +1,161 @@
+package com.ociweb.greenspring.runtime;
+
+import com.ociweb.pronghorn.pipe.ChannelReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Reader of the format GreenBinaryWriter produces. Strings are numbered in the order their
+// literals arrive, the same way the writer numbered them, and a reference returns the String
+// decoded the first time, so a repeated value is one instance for the whole message.
+// A string length comes from the client, so it is checked against maxString and, when the
+// input is a payload, against the bytes left in it, and the buffer only grows as bytes arrive.
+public final class GreenBinaryReader {
+    public static final int maxStringDefault = 1 << 20;
+    private static final int maxString = GreenAppProperties.get("maxBinaryString", maxStringDefault);
+
+    private InputStream in;
+    private final String[] strings = new String[GreenBinaryWriter.tableCapacity];
+    private int count;
+    private byte[] buffer = new byte[64];
+
+    public GreenBinaryReader reset(InputStream in) {
+        this.in = in;
+        if (count > 0) {
+            Arrays.fill(strings, 0, count, null);
+            count = 0;
+        }
+        return this;
+    }
+
+    public boolean readMarker() throws IOException {
+        int c = read();
+        if (c == GreenBinaryWriter.PRESENT) {
+            return true;
+        }
+        if (c == GreenBinaryWriter.NULL) {
+            return false;
+        }
+        throw error("Expected a marker, found " + c);
+    }
+
+    public boolean hasNext() throws IOException {
+        int c = read();
+        if (c == GreenBinaryWriter.ITEM) {
+            return true;
+        }
+        if (c == GreenBinaryWriter.END) {
+            return false;
+        }
+        throw error("Expected an item or the end, found " + c);
+    }
+
+    public boolean readBoolean() throws IOException {
+        return read() != 0;
+    }
+
+    public byte readByte() throws IOException {
+        return (byte)read();
+    }
+
+    public short readShort() throws IOException {
+        return (short)((read() << 8) | read());
+    }
+
+    public int readInt() throws IOException {
+        return (read() << 24) | (read() << 16) | (read() << 8) | read();
+    }
+
+    public long readLong() throws IOException {
+        return ((long)readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    public String readString() throws IOException {
+        int tag = readVarint();
+        if (tag == GreenBinaryWriter.NULL_STRING) {
+            return null;
+        }
+        if (tag >= GreenBinaryWriter.REFERENCE) {
+            int index = tag - GreenBinaryWriter.REFERENCE;
+            if (index >= count) {
+                throw error("Unknown string " + index);
+            }
+            return strings[index];
+        }
+        int length = readVarint();
+        if (length < 0 || length > maxString) {
+            throw error("String length " + length + " outside 0 to " + maxString);
+        }
+        if (in instanceof ChannelReader && length > ((ChannelReader)in).available()) {
+            throw error("String length " + length + " beyond the end of input");
+        }
+        for (int filled = 0; filled < length; ) {
+            if (filled == buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(length, buffer.length * 2));
+            }
+            int read = in.read(buffer, filled, Math.min(length, buffer.length) - filled);
+            if (read < 0) {
+                throw error("Unexpected end of input");
+            }
+            filled += read;
+        }
+        String value = new String(buffer, 0, length, StandardCharsets.UTF_8);
+        if (count < strings.length) {
+            strings[count++] = value;
+        }
+        return value;
+    }
+
+    public <E extends Enum<E>> E readEnum(Class<E> type) throws IOException {
+        String name = readString();
+        return name == null ? null : Enum.valueOf(type, name);
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int c = read();
+            value |= (c & 0x7F) << shift;
+            if ((c & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw error("Malformed length");
+    }
+
+    private int read() throws IOException {
+        int c = in.read();
+        if (c < 0) {
+            throw error("Unexpected end of input");
+        }
+        return c;
+    }
+
+    private static IOException error(String message) {
+        return new MalformedBinary(message);
+    }
+
+    // Same reasoning as for malformed JSON, no stack trace is taken.
+    private static final class MalformedBinary extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private MalformedBinary(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.ociweb.greenspring.runtime;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// GreenJsonStream for a binary payload: the records are decoded one at a time as the service
+// asks for them. The instance is owned by a route and reset per request.
+public final class GreenBinaryStream<T> implements Iterable<T>, Iterator<T> {
+    private static final int UNKNOWN = 0;
+    private static final int READY = 1;
+    private static final int DONE = 2;
+
+    public interface Decoder<T> {
+        T read(GreenBinaryReader binary) throws IOException;
+    }
+
+    private final Decoder<T> decoder;
+    private GreenBinaryReader binary;
+    private int state = DONE;
+
+    public GreenBinaryStream(Decoder<T> decoder) {
+        this.decoder = decoder;
+    }
+
+    public GreenBinaryStream<T> reset(GreenBinaryReader binary) throws IOException {
+        this.binary = binary;
+        this.state = binary != null && binary.readMarker() ? UNKNOWN : DONE;
+        return this;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (state == UNKNOWN) {
+            try {
+                state = binary.hasNext() ? READY : DONE;
+            } catch (IOException e) {
+                state = DONE;
+                throw new GreenStatusException(GreenErrorResponses.decodeStatusDefault, e.getMessage(), e);
+            }
+        }
+        return state == READY;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        state = UNKNOWN;
+        try {
+            return decoder.read(binary);
+        } catch (IOException e) {
+            state = DONE;
+            throw new GreenStatusException(GreenErrorResponses.decodeStatusDefault, e.getMessage(), e);
+        }
+    }
+}
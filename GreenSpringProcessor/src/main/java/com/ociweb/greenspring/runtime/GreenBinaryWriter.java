@@ -0,0 +1,177 @@
+package com.ociweb.greenspring.runtime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// Writer of the compact binary format the generated codecs offer next to JSON, meant for
+// traffic between services built from the same DTOs. Beans are their properties in declaration
+// order without names, numbers are fixed width big endian, references and collections are led
+// by a marker byte and text is UTF-8 behind its length. The first strings of a message are
+// numbered as they are written and a repeat is sent as its number, so enum names and keys that
+// recur across the records of a feed cost a byte or two. Not thread safe, reset per message.
+public final class GreenBinaryWriter {
+    public static final int tableCapacity = 256;
+
+    static final int NULL = 0;
+    static final int PRESENT = 1;
+    static final int END = 0;
+    static final int ITEM = 1;
+    static final int NULL_STRING = 0;
+    static final int LITERAL = 1;
+    static final int REFERENCE = 2;
+
+    private OutputStream out;
+    private final String[] strings = new String[tableCapacity];
+    private final int[] slots = new int[tableCapacity * 2];
+    private int count;
+
+    public GreenBinaryWriter reset(OutputStream out) {
+        this.out = out;
+        if (count > 0) {
+            Arrays.fill(strings, 0, count, null);
+            Arrays.fill(slots, 0);
+            count = 0;
+        }
+        return this;
+    }
+
+    // Returns present, so the value can follow under the same test.
+    public boolean writeMarker(boolean present) throws IOException {
+        out.write(present ? PRESENT : NULL);
+        return present;
+    }
+
+    public void writeItem() throws IOException {
+        out.write(ITEM);
+    }
+
+    public void writeEnd() throws IOException {
+        out.write(END);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        out.write(value ? 1 : 0);
+    }
+
+    public void writeByte(byte value) throws IOException {
+        out.write(value);
+    }
+
+    public void writeShort(short value) throws IOException {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    public void writeInt(int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        writeInt((int)(value >>> 32));
+        writeInt((int)value);
+    }
+
+    public void writeFloat(float value) throws IOException {
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    public void writeDouble(double value) throws IOException {
+        writeLong(Double.doubleToLongBits(value));
+    }
+
+    public void writeEnum(Enum<?> value) throws IOException {
+        writeString(value == null ? null : value.name());
+    }
+
+    // Only Strings are looked up, other text is never equal to a later value for sure. Every
+    // literal still takes a number while the table has room, the reader numbers them all.
+    public void writeString(CharSequence value) throws IOException {
+        if (value == null) {
+            writeVarint(NULL_STRING);
+            return;
+        }
+        if (value instanceof String) {
+            int mask = slots.length - 1;
+            int hash = value.hashCode();
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (slots[slot] != 0) {
+                int index = slots[slot] - 1;
+                if (value.equals(strings[index])) {
+                    writeVarint(REFERENCE + index);
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (count < tableCapacity) {
+                strings[count] = (String)value;
+                slots[slot] = ++count;
+            }
+        }
+        else if (count < tableCapacity) {
+            count++;
+        }
+        writeVarint(LITERAL);
+        writeVarint(utf8Length(value));
+        writeUtf8(value);
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int utf8Length(CharSequence value) {
+        int len = value.length();
+        int bytes = 0;
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            }
+            else if (c < 0x800) {
+                bytes += 2;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            }
+            else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private void writeUtf8(CharSequence value) throws IOException {
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out.write(c);
+            }
+            else if (c < 0x800) {
+                out.write(0xC0 | (c >> 6));
+                out.write(0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.write(0xF0 | (codePoint >> 18));
+                out.write(0x80 | ((codePoint >> 12) & 0x3F));
+                out.write(0x80 | ((codePoint >> 6) & 0x3F));
+                out.write(0x80 | (codePoint & 0x3F));
+            }
+            else {
+                out.write(0xE0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+}
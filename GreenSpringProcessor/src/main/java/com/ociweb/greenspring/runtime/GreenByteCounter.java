@@ -0,0 +1,32 @@
+package com.ociweb.greenspring.runtime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Reused pass through stream counting the bytes of one response.
+public final class GreenByteCounter extends OutputStream {
+    private OutputStream out;
+    private long count;
+
+    public GreenByteCounter reset(OutputStream out) {
+        this.out = out;
+        this.count = 0;
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+}
@@ -0,0 +1,55 @@
+package com.ociweb.greenspring.runtime;
+
+import com.ociweb.pronghorn.network.config.HTTPContentType;
+
+// Content types the generated routes publish besides the GreenLightning defaults, and the
+// compressed variants of JSON and BINARY, which carry Content-Encoding and Vary as
+// GreenHeaderedType explains.
+public enum GreenContentType implements HTTPContentType {
+    BINARY("application/x-greenspring-binary", "gsb"),
+    EVENT_STREAM("text/event-stream", "sse"),
+    OCTET_STREAM("application/octet-stream", "bin");
+
+    private static final HTTPContentType JSON_GZIP = compressed("application/json", "json", "gzip");
+    private static final HTTPContentType JSON_DEFLATE = compressed("application/json", "json", "deflate");
+    private static final HTTPContentType BINARY_GZIP = compressed(BINARY.contentType, BINARY.fileExtension, "gzip");
+    private static final HTTPContentType BINARY_DEFLATE = compressed(BINARY.contentType, BINARY.fileExtension, "deflate");
+
+    private final String contentType;
+    private final String fileExtension;
+
+    GreenContentType(String contentType, String fileExtension) {
+        this.contentType = contentType;
+        this.fileExtension = fileExtension;
+    }
+
+    // The variant of JSON or BINARY for a GreenResponseCompression encoding.
+    public static HTTPContentType encoded(HTTPContentType plainType, int encoding) {
+        if (encoding == GreenResponseCompression.GZIP) {
+            return plainType == BINARY ? BINARY_GZIP : JSON_GZIP;
+        }
+        if (encoding == GreenResponseCompression.DEFLATE) {
+            return plainType == BINARY ? BINARY_DEFLATE : JSON_DEFLATE;
+        }
+        return plainType;
+    }
+
+    private static HTTPContentType compressed(String mediaType, String fileExtension, String encoding) {
+        return new GreenHeaderedType(mediaType, fileExtension, "Content-Encoding", encoding, "Vary", "Accept-Encoding");
+    }
+
+    @Override
+    public String contentType() {
+        return contentType;
+    }
+
+    @Override
+    public String fileExtension() {
+        return fileExtension;
+    }
+
+    @Override
+    public boolean isAlias() {
+        return false;
+    }
+}
@@ -0,0 +1,58 @@
+package com.ociweb.greenspring.runtime;
+
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+
+// The timeout of a DeferredResult and its timeout handling are package private, Spring's async
+// manager reaches them from inside the package. They are looked up once here, so an expired
+// result runs its onTimeout callback and takes its timeout result as it would under Spring,
+// and is marked expired so a value set after it is dropped.
+public final class GreenDeferredResults {
+    private static final MethodHandle timeoutValue;
+    private static final MethodHandle interceptor;
+
+    static {
+        try {
+            Method timeout = DeferredResult.class.getDeclaredMethod("getTimeoutValue");
+            timeout.setAccessible(true);
+            Method handling = DeferredResult.class.getDeclaredMethod("getInterceptor");
+            handling.setAccessible(true);
+            timeoutValue = MethodHandles.lookup().unreflect(timeout);
+            interceptor = MethodHandles.lookup().unreflect(handling);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private GreenDeferredResults() {
+    }
+
+    public static long timeoutOf(DeferredResult<?> result, long defaultTimeout) {
+        Long timeout;
+        try {
+            timeout = (Long)timeoutValue.invoke(result);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        return timeout != null ? timeout : defaultTimeout;
+    }
+
+    // Exceptions of the onTimeout callback are passed on, as Spring handles them like the service's.
+    public static void expire(DeferredResult<?> result) throws Exception {
+        DeferredResultProcessingInterceptor handling;
+        try {
+            handling = (DeferredResultProcessingInterceptor)interceptor.invoke(result);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        try {
+            handling.handleTimeout(null, result);
+        } finally {
+            handling.afterCompletion(null, result);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.ociweb.greenspring.runtime;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+// Connects an emitter returned by a service to the GreenSpring stream of its response through
+// ResponseBodyEmitter.initialize, the hook Spring MVC's own return value handler uses. The method
+// and its Handler interface are package private, so both are looked up once here and the handler
+// is a proxy of the interface. What was sent before the emitter is attached is replayed by
+// initialize, and the media types are ignored since the codecs settle the format.
+public final class GreenEmitterHandler implements InvocationHandler {
+    private static final MethodHandle initialize;
+    private static final MethodHandle newHandler;
+
+    static {
+        try {
+            Class<?> handlerType = Class.forName(ResponseBodyEmitter.class.getName() + "$Handler", false, ResponseBodyEmitter.class.getClassLoader());
+            Method attach = ResponseBodyEmitter.class.getDeclaredMethod("initialize", handlerType);
+            attach.setAccessible(true);
+            Class<?> proxyType = Proxy.newProxyInstance(handlerType.getClassLoader(), new Class<?>[]{handlerType}, (target, method, args) -> null).getClass();
+            Constructor<?> proxy = proxyType.getConstructor(InvocationHandler.class);
+            proxy.setAccessible(true);
+            initialize = MethodHandles.lookup().unreflect(attach);
+            newHandler = MethodHandles.lookup().unreflectConstructor(proxy);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final GreenStreamedResponses.Sink sink;
+
+    private GreenEmitterHandler(GreenStreamedResponses.Sink sink) {
+        this.sink = sink;
+    }
+
+    public static void attach(ResponseBodyEmitter emitter, GreenStreamedResponses.Sink sink) throws IOException {
+        try {
+            initialize.invoke(emitter, newHandler.invoke(new GreenEmitterHandler(sink)));
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The status is already out when the emitter fails, the response just ends.
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws IOException {
+        switch (method.getName()) {
+            case "send":
+                sink.send(args[0]);
+                return null;
+            case "complete":
+            case "completeWithError":
+                sink.complete();
+                return null;
+            case "onTimeout":
+                sink.onTimeout((Runnable)args[0]);
+                return null;
+            case "onCompletion":
+                sink.onCompletion((Runnable)args[0]);
+                return null;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "GreenEmitterHandler for " + sink;
+            default:
+                throw new UnsupportedOperationException(method.toString());
+        }
+    }
+}
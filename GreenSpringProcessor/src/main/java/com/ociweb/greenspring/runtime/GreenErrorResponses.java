@@ -0,0 +1,87 @@
+package com.ociweb.greenspring.runtime;
+
+import com.ociweb.gl.api.GreenCommandChannel;
+import com.ociweb.gl.api.HTTPRequestReader;
+import com.ociweb.gl.api.Writable;
+import com.ociweb.pronghorn.network.config.HTTPContentTypeDefaults;
+import com.ociweb.pronghorn.pipe.ChannelWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+// Error response of a route. The generated Green<Controller>Errors class finds the mapping of
+// a failure with an instanceof chain, and its statuses and bodies are encoded when that class
+// loads, so answering a failure copies bytes and nothing else. Select and publish belong to
+// the thread that owns the route, statusOf may be called from any thread.
+public final class GreenErrorResponses implements Writable {
+    public static final int decodeStatusDefault = 400;
+    public static final int serviceStatusDefault = 500;
+
+    private static final int[] noStatuses = new int[0];
+    private static final byte[][] noBodies = new byte[0][];
+
+    private final int[] statuses;
+    private final byte[][] bodies;
+    private int status;
+    private byte[] body;
+
+    public GreenErrorResponses() {
+        this(noStatuses, noBodies);
+    }
+
+    public GreenErrorResponses(int[] statuses, byte[][] bodies) {
+        this.statuses = statuses;
+        this.bodies = bodies;
+    }
+
+    // Failures no mapping handles answer with the status of a GreenStatusException, or else
+    // with 400 while the request was being decoded and 500 once the service was called.
+    public int statusOf(int mapping, Throwable failure, boolean decoding) {
+        if (mapping >= 0) {
+            return statuses[mapping];
+        }
+        if (failure instanceof GreenStatusException) {
+            return ((GreenStatusException)failure).getStatus();
+        }
+        return decoding ? decodeStatusDefault : serviceStatusDefault;
+    }
+
+    // A rejected body that no mapping handles carries its own encoded response.
+    public int select(int mapping, Throwable failure, boolean decoding) {
+        this.status = statusOf(mapping, failure, decoding);
+        if (mapping >= 0) {
+            this.body = bodies[mapping];
+        }
+        else {
+            this.body = failure instanceof GreenValidationException ? ((GreenValidationException)failure).getBody() : null;
+        }
+        return status;
+    }
+
+    public boolean publish(GreenCommandChannel channel, HTTPRequestReader httpRequestReader) {
+        return body == null
+                ? channel.publishHTTPResponse(httpRequestReader, status)
+                : channel.publishHTTPResponse(httpRequestReader, status, HTTPContentTypeDefaults.JSON, this);
+    }
+
+    @Override
+    public void write(ChannelWriter channelWriter) {
+        OutputStream out = channelWriter;
+        try {
+            out.write(body, 0, body.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Async results fail with the wrapper of the exception the service threw.
+    public static Throwable unwrap(Throwable failure) {
+        while ((failure instanceof CompletionException || failure instanceof ExecutionException) && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+}
@@ -0,0 +1,176 @@
+package com.ociweb.greenspring.runtime;
+
+import com.ociweb.gl.api.HTTPRequestReader;
+import com.ociweb.gl.api.Headable;
+import com.ociweb.pronghorn.network.config.HTTPHeader;
+import com.ociweb.pronghorn.pipe.ChannelReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// Reused capture of one request header. The value is copied into a buffer owned by the
+// route and whole numbers are parsed from it in place, so binding a header allocates nothing
+// unless the service asks for a String or a floating point number, which Double.parseDouble
+// only takes as a String. A number out of range for the parameter is a NumberFormatException,
+// as in Spring. Not thread safe, each route owns its values.
+public final class GreenHeaderValue implements Headable {
+    private final String name;
+    private final StringBuilder text = new StringBuilder();
+    private boolean present;
+
+    public GreenHeaderValue(String name) {
+        this.name = name;
+    }
+
+    public GreenHeaderValue read(HTTPRequestReader httpRequestReader, int headerId) {
+        text.setLength(0);
+        present = false;
+        httpRequestReader.openHeaderData(headerId, this);
+        return this;
+    }
+
+    @Override
+    public void read(HTTPHeader header, ChannelReader reader) {
+        present = true;
+        try {
+            int c;
+            while ((c = reader.read()) >= 0) {
+                text.append((char)c);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean isPresent() {
+        return present;
+    }
+
+    public CharSequence asText() {
+        return present ? text : null;
+    }
+
+    public CharSequence asText(CharSequence defaultValue) {
+        return present ? text : defaultValue;
+    }
+
+    public String asString() {
+        return present ? text.toString() : null;
+    }
+
+    public String asString(String defaultValue) {
+        return present ? text.toString() : defaultValue;
+    }
+
+    public long asLong() {
+        required();
+        return parseLong(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public long asLong(long defaultValue) {
+        return present ? parseLong(Long.MIN_VALUE, Long.MAX_VALUE) : defaultValue;
+    }
+
+    public int asInt() {
+        required();
+        return (int)parseLong(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public int asInt(int defaultValue) {
+        return present ? (int)parseLong(Integer.MIN_VALUE, Integer.MAX_VALUE) : defaultValue;
+    }
+
+    public short asShort() {
+        required();
+        return (short)parseLong(Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+
+    public short asShort(short defaultValue) {
+        return present ? (short)parseLong(Short.MIN_VALUE, Short.MAX_VALUE) : defaultValue;
+    }
+
+    public byte asByte() {
+        required();
+        return (byte)parseLong(Byte.MIN_VALUE, Byte.MAX_VALUE);
+    }
+
+    public byte asByte(byte defaultValue) {
+        return present ? (byte)parseLong(Byte.MIN_VALUE, Byte.MAX_VALUE) : defaultValue;
+    }
+
+    // parseDouble trims the value itself.
+    public double asDouble() {
+        required();
+        return Double.parseDouble(text.toString());
+    }
+
+    public double asDouble(double defaultValue) {
+        return present ? asDouble() : defaultValue;
+    }
+
+    public boolean asBoolean() {
+        required();
+        return parseBoolean();
+    }
+
+    public boolean asBoolean(boolean defaultValue) {
+        return present ? parseBoolean() : defaultValue;
+    }
+
+    private void required() {
+        if (!present) {
+            throw new IllegalStateException("Missing header " + name);
+        }
+    }
+
+    // Accumulates negatively like Long.parseLong, so Long.MIN_VALUE parses and nothing wraps.
+    private long parseLong(long min, long max) {
+        int i = 0;
+        int len = text.length();
+        while (i < len && text.charAt(i) == ' ') {
+            i++;
+        }
+        while (len > i && text.charAt(len - 1) == ' ') {
+            len--;
+        }
+        boolean negative = i < len && text.charAt(i) == '-';
+        if (negative || (i < len && text.charAt(i) == '+')) {
+            i++;
+        }
+        if (i == len) {
+            throw new NumberFormatException("Header " + name + " is not a number");
+        }
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        for (; i < len; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Header " + name + " is not a number");
+            }
+            if (value < (limit + digit) / 10) {
+                throw outOfRange();
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            value = -value;
+        }
+        if (value < min || value > max) {
+            throw outOfRange();
+        }
+        return value;
+    }
+
+    private NumberFormatException outOfRange() {
+        return new NumberFormatException("Header " + name + " is out of range");
+    }
+
+    private boolean parseBoolean() {
+        int len = text.length();
+        return len == 4
+                && Character.toLowerCase(text.charAt(0)) == 't'
+                && Character.toLowerCase(text.charAt(1)) == 'r'
+                && Character.toLowerCase(text.charAt(2)) == 'u'
+                && Character.toLowerCase(text.charAt(3)) == 'e';
+    }
+}
@@ -0,0 +1,65 @@
+package com.ociweb.greenspring.runtime;
+
+import com.ociweb.pronghorn.network.config.HTTPContentType;
+
+// A content type that carries more response headers after its media type. GreenLightning
+// [0.0.6-SNAPSHOT,0.1.0), the range this build pins, has no publishHTTPResponse that takes
+// headers, and it writes contentType() verbatim after "Content-Type: " followed by CRLF, so
+// header lines joined with CRLF after the media type reach the client as headers of their own.
+// This is the only place that relies on it, and it has not been checked against a running
+// GreenLightning server. Should a build escape the content type, a compressed body would reach
+// the client without its Content-Encoding, so everything that needs these headers, compression
+// and the static file validators, stays off unless greenspring.headersInContentType is true.
+// Set it only after the raw response bytes of the GreenLightning build in use show the lines as
+// headers of their own. When a release with a headers overload is pinned, publish through that
+// and drop this class. Names and values are checked for CR and LF so none can start a line.
+// The types are not registered with GreenLightning, only published, so none is an alias.
+public final class GreenHeaderedType implements HTTPContentType {
+    private static final boolean enabled = GreenAppProperties.get("headersInContentType", false);
+
+    private final String contentType;
+    private final String fileExtension;
+
+    // headers are name, value pairs.
+    public GreenHeaderedType(String mediaType, String fileExtension, String... headers) {
+        this.contentType = lines(mediaType, headers);
+        this.fileExtension = fileExtension;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    private static String lines(String mediaType, String... headers) {
+        if (headers.length % 2 != 0) {
+            throw new IllegalArgumentException("Header " + headers[headers.length - 1] + " has no value");
+        }
+        StringBuilder lines = new StringBuilder(checked(mediaType));
+        for (int i = 0; i < headers.length; i += 2) {
+            lines.append("\r\n").append(checked(headers[i])).append(": ").append(checked(headers[i + 1]));
+        }
+        return lines.toString();
+    }
+
+    private static String checked(String text) {
+        if (text.indexOf('\r') >= 0 || text.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Line break in response header text " + text);
+        }
+        return text;
+    }
+
+    @Override
+    public String contentType() {
+        return contentType;
+    }
+
+    @Override
+    public String fileExtension() {
+        return fileExtension;
+    }
+
+    @Override
+    public boolean isAlias() {
+        return false;
+    }
+}
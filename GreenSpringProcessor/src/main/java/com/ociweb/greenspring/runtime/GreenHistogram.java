@@ -0,0 +1,82 @@
+package com.ociweb.greenspring.runtime;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log linear histogram in the style of HdrHistogram with 64 sub buckets per power of two,
+// about 1.6% relative precision. Values up to 2^40 are tracked, larger ones land in the last
+// bucket. One thread records with ordered stores and any thread may read.
+public final class GreenHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int LINEAR = SUB << 1;
+    private static final int MAX_MAGNITUDE = 40 - SUB_BITS - 1;
+    public static final int BUCKETS = LINEAR + MAX_MAGNITUDE * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        int idx = index(value);
+        counts.lazySet(idx, counts.get(idx) + 1);
+        total.lazySet(total.get() + 1);
+        if (value > max.get()) {
+            max.lazySet(value);
+        }
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public void addTo(long[] merged) {
+        for (int i = 0; i < BUCKETS; i++) {
+            merged[i] += counts.get(i);
+        }
+    }
+
+    // Highest value of the bucket holding the given fraction of the merged counts.
+    public static long percentile(long[] merged, double fraction) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += merged[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long)Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += merged[i];
+            if (seen >= rank) {
+                return highestValue(i);
+            }
+        }
+        return highestValue(BUCKETS - 1);
+    }
+
+    static int index(long value) {
+        if (value < LINEAR) {
+            return value < 0 ? 0 : (int)value;
+        }
+        int magnitude = 64 - Long.numberOfLeadingZeros(value) - (SUB_BITS + 1);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        return LINEAR + (magnitude - 1) * SUB + (int)(value >>> magnitude) - SUB;
+    }
+
+    static long highestValue(int idx) {
+        if (idx < LINEAR) {
+            return idx;
+        }
+        int magnitude = (idx - LINEAR) / SUB + 1;
+        long sub = (idx - LINEAR) % SUB + SUB;
+        return ((sub + 1) << magnitude) - 1;
+    }
+}
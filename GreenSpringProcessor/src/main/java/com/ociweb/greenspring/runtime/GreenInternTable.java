@@ -0,0 +1,83 @@
+package com.ociweb.greenspring.runtime;
+
+// Bounded intern table for low cardinality routed text such as organization codes.
+// Lookups hash and compare the characters in place, so a known key returns the same
+// String instance without allocating. A key hashes to a bucket of four slots, and there
+// are at least twice capacity slots. When its bucket is full, an unknown key takes the
+// place of one that was not looked up since the bucket's clock hand last passed it, so
+// keys still in use stay and one-off keys, never looked up again, are the first to go.
+// Not thread safe, each route owns its table.
+public final class GreenInternTable {
+    private static final int WAYS = 4;
+
+    private final String[] table;
+    private final boolean[] referenced;
+    private final byte[] hands;
+    private final int mask;
+    private int size;
+
+    public GreenInternTable(int capacity) {
+        int slots = Math.max(WAYS, Integer.highestOneBit(Math.max(1, capacity) * 2 - 1) << 1);
+        this.table = new String[slots];
+        this.referenced = new boolean[slots];
+        this.hands = new byte[slots / WAYS];
+        this.mask = slots / WAYS - 1;
+    }
+
+    public String intern(CharSequence text) {
+        int hash = hash(text);
+        int bucket = (hash ^ (hash >>> 16)) & mask;
+        int first = bucket * WAYS;
+        int free = -1;
+        for (int i = first; i < first + WAYS; i++) {
+            String candidate = table[i];
+            if (candidate == null) {
+                if (free < 0) {
+                    free = i;
+                }
+            }
+            else if (candidate.hashCode() == hash && candidate.contentEquals(text)) {
+                referenced[i] = true;
+                return candidate;
+            }
+        }
+        String value = text.toString();
+        int slot = free;
+        if (slot >= 0) {
+            size++;
+        }
+        else {
+            slot = replaced(bucket);
+        }
+        table[slot] = value;
+        referenced[slot] = false;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Second chance: the hand clears the keys looked up since its last pass and stops at the
+    // first that was not, which it finds within two turns of the full bucket.
+    private int replaced(int bucket) {
+        while (true) {
+            int slot = bucket * WAYS + hands[bucket];
+            hands[bucket] = (byte)((hands[bucket] + 1) % WAYS);
+            if (!referenced[slot]) {
+                return slot;
+            }
+            referenced[slot] = false;
+        }
+    }
+
+    // Same function as String.hashCode so cached hashes of the stored keys can be compared.
+    private static int hash(CharSequence text) {
+        int h = 0;
+        int len = text.length();
+        for (int i = 0; i < len; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        return h;
+    }
+}
@@ -0,0 +1,516 @@
+package com.ociweb.greenspring.runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Pull parser used by the generated codecs. It reads the request bytes straight from the
+// payload stream, matches field names against precomputed byte arrays and keeps its
+// scratch buffers between requests, so only the decoded values themselves are allocated.
+// The separators are checked where the grammar puts them, one flag is enough because a
+// closed object or array always leaves its container past its first member.
+public final class GreenJsonReader {
+    public static final int END = -1;
+    public static final int UNKNOWN = -2;
+
+    private static final int NONE = -2;
+    private static final int MAX_DEPTH = 256;
+    private static final byte[][] NO_NAMES = new byte[0][];
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private InputStream in;
+    private int pushback = NONE;
+    private byte[] nameBuffer = new byte[64];
+    private final StringBuilder text = new StringBuilder(64);
+    private boolean first;
+    private int depth;
+
+    // The last number scanned. The integer part is kept negated, so Long.MIN_VALUE fits.
+    private boolean negative;
+    private boolean integral;
+    private boolean overflow;
+    private long exact;
+    private long mantissa;
+    private int significant;
+    private int scale;
+
+    public static byte[][] names(String... names) {
+        byte[][] result = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            result[i] = names[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+
+    public GreenJsonReader reset(InputStream in) {
+        this.in = in;
+        this.pushback = NONE;
+        this.first = false;
+        this.depth = 0;
+        return this;
+    }
+
+    public boolean beginObject() throws IOException {
+        int c = nextToken();
+        if (c == '{') {
+            first = true;
+            return true;
+        }
+        if (c == 'n') {
+            expectNull();
+            return false;
+        }
+        throw error("Expected '{'", c);
+    }
+
+    public int nextField(byte[][] names) throws IOException {
+        int c = nextToken();
+        if (c == '}') {
+            first = false;
+            return END;
+        }
+        if (!first) {
+            if (c != ',') {
+                throw error("Expected ',' or '}'", c);
+            }
+            c = nextToken();
+        }
+        first = false;
+        if (c != '"') {
+            throw error("Expected field name", c);
+        }
+        int len = 0;
+        while ((c = read()) != '"') {
+            if (c < 0) {
+                throw error("Unterminated field name", c);
+            }
+            if (c == '\\') {
+                c = read();
+            }
+            if (len == nameBuffer.length) {
+                nameBuffer = Arrays.copyOf(nameBuffer, len * 2);
+            }
+            nameBuffer[len++] = (byte)c;
+        }
+        if ((c = nextToken()) != ':') {
+            throw error("Expected ':'", c);
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (matches(names[i], len)) {
+                return i;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    public boolean beginArray() throws IOException {
+        int c = nextToken();
+        if (c == '[') {
+            first = true;
+            return true;
+        }
+        if (c == 'n') {
+            expectNull();
+            return false;
+        }
+        throw error("Expected '['", c);
+    }
+
+    public boolean hasNext() throws IOException {
+        int c = nextToken();
+        if (c == ']') {
+            first = false;
+            return false;
+        }
+        if (!first) {
+            if (c != ',') {
+                throw error(c < 0 ? "Unterminated array" : "Expected ',' or ']'", c);
+            }
+            c = nextToken();
+        }
+        first = false;
+        if (c < 0 || c == ']') {
+            throw error("Expected value", c);
+        }
+        pushback = c;
+        return true;
+    }
+
+    public boolean readNull() throws IOException {
+        int c = nextToken();
+        if (c == 'n') {
+            expectNull();
+            return true;
+        }
+        pushback = c;
+        return false;
+    }
+
+    public boolean readBoolean() throws IOException {
+        int c = nextToken();
+        switch (c) {
+            case 't':
+                expect('r');
+                expect('u');
+                expect('e');
+                return true;
+            case 'f':
+                expect('a');
+                expect('l');
+                expect('s');
+                expect('e');
+                return false;
+            case 'n':
+                expectNull();
+                return false;
+            default:
+                throw error("Expected boolean", c);
+        }
+    }
+
+    public int readInt() throws IOException {
+        long value = readLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new MalformedJson("Number out of int range");
+        }
+        return (int)value;
+    }
+
+    public short readShort() throws IOException {
+        long value = readLong();
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+            throw new MalformedJson("Number out of short range");
+        }
+        return (short)value;
+    }
+
+    public byte readByte() throws IOException {
+        long value = readLong();
+        if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+            throw new MalformedJson("Number out of byte range");
+        }
+        return (byte)value;
+    }
+
+    // Fractions are truncated and exponents applied, as Jackson coerces floats to integers.
+    public long readLong() throws IOException {
+        int c = nextToken();
+        if (c == 'n') {
+            expectNull();
+            return 0;
+        }
+        scanNumber(c);
+        if (integral) {
+            if (overflow || (!negative && exact == Long.MIN_VALUE)) {
+                throw new MalformedJson("Number out of long range");
+            }
+            return negative ? exact : -exact;
+        }
+        double value = toDouble();
+        if (value < -0x1p63 || value >= 0x1p63) {
+            throw new MalformedJson("Number out of long range");
+        }
+        return (long)value;
+    }
+
+    public double readDouble() throws IOException {
+        int c = nextToken();
+        if (c == 'n') {
+            expectNull();
+            return 0;
+        }
+        scanNumber(c);
+        return toDouble();
+    }
+
+    public String readString() throws IOException {
+        int c = nextToken();
+        if (c == 'n') {
+            expectNull();
+            return null;
+        }
+        if (c != '"') {
+            throw error("Expected string", c);
+        }
+        text.setLength(0);
+        readText(text);
+        return text.toString();
+    }
+
+    // Only whitespace may follow the top level value, anything else is a malformed payload.
+    public void end() throws IOException {
+        int c = nextToken();
+        if (c >= 0) {
+            throw error("Unexpected data after the value", c);
+        }
+    }
+
+    // Skipped values are checked like read ones, nesting is bounded so the stack is.
+    public void skipValue() throws IOException {
+        int c = nextToken();
+        switch (c) {
+            case '"':
+                skipText();
+                break;
+            case '{':
+            case '[':
+                if (++depth > MAX_DEPTH) {
+                    throw new MalformedJson("Nested too deeply");
+                }
+                first = true;
+                if (c == '{') {
+                    while (nextField(NO_NAMES) != END) {
+                        skipValue();
+                    }
+                }
+                else {
+                    while (hasNext()) {
+                        skipValue();
+                    }
+                }
+                depth--;
+                break;
+            case 't':
+                expect('r');
+                expect('u');
+                expect('e');
+                break;
+            case 'f':
+                expect('a');
+                expect('l');
+                expect('s');
+                expect('e');
+                break;
+            case 'n':
+                expectNull();
+                break;
+            default:
+                scanNumber(c);
+        }
+    }
+
+    // Reads a number in JSON's grammar, leaving the character after it to be read next.
+    private void scanNumber(int c) throws IOException {
+        text.setLength(0);
+        negative = c == '-';
+        if (negative) {
+            text.append('-');
+            c = read();
+        }
+        if (c < '0' || c > '9') {
+            throw error("Expected digit", c);
+        }
+        integral = true;
+        overflow = false;
+        exact = 0;
+        mantissa = 0;
+        significant = 0;
+        scale = 0;
+        boolean leadingZero = c == '0';
+        while (c >= '0' && c <= '9') {
+            int digit = c - '0';
+            if (exact < (Long.MIN_VALUE + digit) / 10) {
+                overflow = true;
+            }
+            else {
+                exact = exact * 10 - digit;
+            }
+            c = digit(c);
+            if (leadingZero && c >= '0' && c <= '9') {
+                throw error("Leading zero", c);
+            }
+        }
+        if (c == '.') {
+            integral = false;
+            text.append('.');
+            c = read();
+            if (c < '0' || c > '9') {
+                throw error("Expected digit", c);
+            }
+            while (c >= '0' && c <= '9') {
+                c = digit(c);
+                scale--;
+            }
+        }
+        if (c == 'e' || c == 'E') {
+            integral = false;
+            text.append('e');
+            c = read();
+            boolean negativeExponent = c == '-';
+            if (c == '-' || c == '+') {
+                text.append((char)c);
+                c = read();
+            }
+            if (c < '0' || c > '9') {
+                throw error("Expected digit", c);
+            }
+            int exponent = 0;
+            while (c >= '0' && c <= '9') {
+                // past any double's range, the text keeps the real exponent for parseDouble
+                exponent = Math.min(exponent * 10 + (c - '0'), 100000);
+                text.append((char)c);
+                c = read();
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        pushback = c;
+    }
+
+    private int digit(int c) throws IOException {
+        significant = addDigit(significant, mantissa, c);
+        mantissa = mantissa * 10 + (c - '0');
+        text.append((char)c);
+        return read();
+    }
+
+    // Exact when both the mantissa and the power of ten are representable as doubles.
+    private double toDouble() {
+        if (significant <= 15 && scale >= -22 && scale <= 22) {
+            double value = scale < 0 ? mantissa / POW10[-scale] : mantissa * POW10[scale];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(text.toString());
+    }
+
+    private void readText(StringBuilder target) throws IOException {
+        int c;
+        while ((c = read()) != '"') {
+            if (c < 0) {
+                throw error("Unterminated string", c);
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'b': target.append('\b'); break;
+                    case 'f': target.append('\f'); break;
+                    case 'n': target.append('\n'); break;
+                    case 'r': target.append('\r'); break;
+                    case 't': target.append('\t'); break;
+                    case 'u': target.append((char)readHex()); break;
+                    default:
+                        if (c < 0) {
+                            throw error("Unterminated string", c);
+                        }
+                        target.append((char)c);
+                }
+            }
+            else if (c < 0x80) {
+                target.append((char)c);
+            }
+            else if ((c & 0xE0) == 0xC0) {
+                target.append((char)(((c & 0x1F) << 6) | continuation()));
+            }
+            else if ((c & 0xF0) == 0xE0) {
+                target.append((char)(((c & 0x0F) << 12) | (continuation() << 6) | continuation()));
+            }
+            else {
+                int codePoint = ((c & 0x07) << 18) | (continuation() << 12) | (continuation() << 6) | continuation();
+                target.append(Character.highSurrogate(codePoint)).append(Character.lowSurrogate(codePoint));
+            }
+        }
+    }
+
+    private void skipText() throws IOException {
+        int c;
+        while ((c = read()) != '"') {
+            if (c < 0) {
+                throw error("Unterminated string", c);
+            }
+            if (c == '\\') {
+                read();
+            }
+        }
+    }
+
+    private boolean matches(byte[] name, int len) {
+        if (name.length != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (name[i] != nameBuffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int addDigit(int significant, long mantissa, int c) {
+        return (mantissa != 0 || c != '0') ? significant + 1 : significant;
+    }
+
+    private int readHex() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int c = read();
+            int digit = Character.digit(c, 16);
+            if (c < 0 || digit < 0) {
+                throw error("Invalid escape", c);
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private int continuation() throws IOException {
+        int c = read();
+        if (c < 0 || (c & 0xC0) != 0x80) {
+            throw error("Invalid UTF-8", c);
+        }
+        return c & 0x3F;
+    }
+
+    private void expectNull() throws IOException {
+        expect('u');
+        expect('l');
+        expect('l');
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = read();
+        if (c != expected) {
+            throw error("Expected '" + expected + "'", c);
+        }
+    }
+
+    private int nextToken() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (isWhitespace(c));
+        return c;
+    }
+
+    private int read() throws IOException {
+        int c = pushback;
+        if (c != NONE) {
+            pushback = NONE;
+            return c;
+        }
+        return in.read();
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static IOException error(String message, int c) {
+        return new MalformedJson(c < 0 ? message + " at end of input" : message + " at '" + (char)c + "'");
+    }
+
+    // Malformed input is the client's fault and can arrive in floods, so no stack trace is taken.
+    private static final class MalformedJson extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private MalformedJson(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
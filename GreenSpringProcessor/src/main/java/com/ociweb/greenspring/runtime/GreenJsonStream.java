@@ -0,0 +1,79 @@
+package com.ociweb.greenspring.runtime;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Single pass view over a JSON array that is still in the request payload. Each element is
+// decoded when the service asks for it, so the service sees records one at a time and the
+// heap never holds the whole array. The instance is owned by a route and reset per request.
+// Once the array is read to its end, what follows it is checked like a fully read body.
+public final class GreenJsonStream<T> implements Iterable<T>, Iterator<T> {
+    private static final int UNKNOWN = 0;
+    private static final int READY = 1;
+    private static final int DONE = 2;
+
+    public interface Decoder<T> {
+        T read(GreenJsonReader json) throws IOException;
+    }
+
+    private final Decoder<T> decoder;
+    private GreenJsonReader json;
+    private int state = DONE;
+
+    public GreenJsonStream(Decoder<T> decoder) {
+        this.decoder = decoder;
+    }
+
+    public GreenJsonStream<T> reset(GreenJsonReader json) throws IOException {
+        this.json = json;
+        this.state = json != null && json.beginArray() ? UNKNOWN : DONE;
+        if (json != null && state == DONE) {
+            json.end();
+        }
+        return this;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (state == UNKNOWN) {
+            try {
+                state = json.hasNext() ? READY : DONE;
+                if (state == DONE) {
+                    json.end();
+                }
+            } catch (IOException e) {
+                state = DONE;
+                throw new GreenStatusException(GreenErrorResponses.decodeStatusDefault, e.getMessage(), e);
+            }
+        }
+        return state == READY;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        state = UNKNOWN;
+        try {
+            return decoder.read(json);
+        } catch (IOException e) {
+            state = DONE;
+            throw new GreenStatusException(GreenErrorResponses.decodeStatusDefault, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.ociweb.greenspring.runtime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Writer used by the generated codecs. Field names are written from precomputed byte arrays
+// and numbers are rendered into a reused digit buffer, so encoding does not allocate. The
+// exception is a double or float needing more than 15 digits or beyond 1e15, written by toString.
+public final class GreenJsonWriter {
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    // Below 2^53 every long is a double, so the division by a power of ten is correctly rounded.
+    private static final double EXACT = 0x1p53;
+
+    private OutputStream out;
+    private final byte[] digits = new byte[32];
+
+    public static byte[] name(String name) {
+        StringBuilder quoted = new StringBuilder(name.length() + 3).append('"');
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\');
+            }
+            quoted.append(c);
+        }
+        return quoted.append("\":").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public GreenJsonWriter reset(OutputStream out) {
+        this.out = out;
+        return this;
+    }
+
+    public void beginObject() throws IOException {
+        out.write('{');
+    }
+
+    public void endObject() throws IOException {
+        out.write('}');
+    }
+
+    public void beginArray() throws IOException {
+        out.write('[');
+    }
+
+    public void endArray() throws IOException {
+        out.write(']');
+    }
+
+    public void comma() throws IOException {
+        out.write(',');
+    }
+
+    public void name(byte[] name) throws IOException {
+        out.write(name, 0, name.length);
+    }
+
+    public void writeNull() throws IOException {
+        out.write(NULL, 0, NULL.length);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        if (value) {
+            out.write(TRUE, 0, TRUE.length);
+        }
+        else {
+            out.write(FALSE, 0, FALSE.length);
+        }
+    }
+
+    public void writeBoxedBoolean(Boolean value) throws IOException {
+        if (value == null) {
+            writeNull();
+        }
+        else {
+            writeBoolean(value);
+        }
+    }
+
+    public void writeInt(int value) throws IOException {
+        writeLong(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            out.write(MIN_LONG, 0, MIN_LONG.length);
+            return;
+        }
+        if (value < 0) {
+            out.write('-');
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte)('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        out.write(digits, pos, digits.length - pos);
+    }
+
+    public void writeDouble(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeString(Double.toString(value));
+            return;
+        }
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            out.write('-');
+            value = -value;
+        }
+        if (value < 1e15) {
+            long whole = (long)value;
+            if (whole == value) {
+                writeLong(whole);
+                out.write('.');
+                out.write('0');
+                return;
+            }
+            // the fewest decimals that read back as the same double
+            for (int decimals = 1; decimals < POW10.length; decimals++) {
+                double scaled = value * POW10[decimals];
+                if (scaled >= EXACT) {
+                    break;
+                }
+                long unscaled = Math.round(scaled);
+                if (unscaled / POW10[decimals] == value) {
+                    writeDecimal(unscaled, decimals);
+                    return;
+                }
+            }
+        }
+        String text = Double.toString(value);
+        for (int i = 0; i < text.length(); i++) {
+            out.write(text.charAt(i));
+        }
+    }
+
+    // A float widened to a double prints its binary error, 0.1f would come out as 0.10000000149011612.
+    public void writeFloat(float value) throws IOException {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            writeString(Float.toString(value));
+            return;
+        }
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            out.write('-');
+            value = -value;
+        }
+        if (value < 1e15f) {
+            long whole = (long)value;
+            if (whole == value) {
+                writeLong(whole);
+                out.write('.');
+                out.write('0');
+                return;
+            }
+            // the fewest decimals that read back as the same float, narrowed from a double as the reader does
+            for (int decimals = 1; decimals < POW10.length; decimals++) {
+                double scaled = value * POW10[decimals];
+                if (scaled >= EXACT) {
+                    break;
+                }
+                long unscaled = Math.round(scaled);
+                if ((float)(unscaled / POW10[decimals]) == value) {
+                    writeDecimal(unscaled, decimals);
+                    return;
+                }
+            }
+        }
+        String text = Float.toString(value);
+        for (int i = 0; i < text.length(); i++) {
+            out.write(text.charAt(i));
+        }
+    }
+
+    private void writeDecimal(long value, int decimals) throws IOException {
+        int pos = digits.length;
+        for (int i = 0; i < decimals; i++) {
+            digits[--pos] = (byte)('0' + (value % 10));
+            value /= 10;
+        }
+        digits[--pos] = '.';
+        do {
+            digits[--pos] = (byte)('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        out.write(digits, pos, digits.length - pos);
+    }
+
+    public void writeNumber(Number value) throws IOException {
+        if (value == null) {
+            writeNull();
+        }
+        else if (value instanceof Float) {
+            writeFloat(value.floatValue());
+        }
+        else if (value instanceof Double) {
+            writeDouble(value.doubleValue());
+        }
+        else {
+            writeLong(value.longValue());
+        }
+    }
+
+    public void writeEnum(Enum<?> value) throws IOException {
+        writeString(value == null ? null : value.name());
+    }
+
+    public void writeString(CharSequence value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        out.write('"');
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                writeAscii(c);
+            }
+            else if (c < 0x800) {
+                out.write(0xC0 | (c >> 6));
+                out.write(0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.write(0xF0 | (codePoint >> 18));
+                out.write(0x80 | ((codePoint >> 12) & 0x3F));
+                out.write(0x80 | ((codePoint >> 6) & 0x3F));
+                out.write(0x80 | (codePoint & 0x3F));
+            }
+            else {
+                out.write(0xE0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+        out.write('"');
+    }
+
+    private void writeAscii(char c) throws IOException {
+        switch (c) {
+            case '"':  out.write('\\'); out.write('"'); break;
+            case '\\': out.write('\\'); out.write('\\'); break;
+            case '\n': out.write('\\'); out.write('n'); break;
+            case '\r': out.write('\\'); out.write('r'); break;
+            case '\t': out.write('\\'); out.write('t'); break;
+            case '\b': out.write('\\'); out.write('b'); break;
+            case '\f': out.write('\\'); out.write('f'); break;
+            default:
+                if (c < 0x20) {
+                    out.write('\\');
+                    out.write('u');
+                    out.write('0');
+                    out.write('0');
+                    out.write(HEX[c >> 4]);
+                    out.write(HEX[c & 0xF]);
+                }
+                else {
+                    out.write(c);
+                }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.ociweb.greenspring.runtime;
+
+import com.ociweb.gl.api.GreenCommandChannel;
+import com.ociweb.gl.api.HTTPRequestReader;
+import com.ociweb.gl.api.RestListener;
+import com.ociweb.gl.api.Writable;
+import com.ociweb.pronghorn.network.config.HTTPContentTypeDefaults;
+import com.ociweb.pronghorn.pipe.ChannelWriter;
+
+import java.io.IOException;
+
+// Answers the metrics route with the merged route metrics as JSON.
+public final class GreenMetricsListener implements RestListener, Writable {
+    private final GreenCommandChannel channel;
+    private final GreenJsonWriter jsonWriter = new GreenJsonWriter();
+    private final long[] scratch = new long[GreenHistogram.BUCKETS];
+
+    public GreenMetricsListener(GreenCommandChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public boolean restRequest(HTTPRequestReader httpRequestReader) {
+        return channel.publishHTTPResponse(httpRequestReader, 200, HTTPContentTypeDefaults.JSON, this);
+    }
+
+    @Override
+    public void write(ChannelWriter channelWriter) {
+        try {
+            GreenMetricsRegistry.write(jsonWriter.reset(channelWriter), scratch);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
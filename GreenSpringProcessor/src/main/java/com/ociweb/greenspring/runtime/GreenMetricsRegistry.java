@@ -0,0 +1,138 @@
+package com.ociweb.greenspring.runtime;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// All route metrics of the process. Routes register while the app starts. Instances of the
+// same route on parallel tracks share a name and are merged when written.
+public final class GreenMetricsRegistry {
+    private static final List<GreenRouteMetrics> routes = new CopyOnWriteArrayList<>();
+
+    private static final byte[] ROUTE = GreenJsonWriter.name("route");
+    private static final byte[] REQUESTS = GreenJsonWriter.name("requests");
+    private static final byte[] ERRORS = GreenJsonWriter.name("errors");
+    private static final byte[] BYTES_IN = GreenJsonWriter.name("bytesIn");
+    private static final byte[] BYTES_OUT = GreenJsonWriter.name("bytesOut");
+    private static final byte[] PIPE_FULL = GreenJsonWriter.name("pipeFull");
+    private static final byte[] DECODE = GreenJsonWriter.name("decode");
+    private static final byte[] SERVICE = GreenJsonWriter.name("service");
+    private static final byte[] ENCODE = GreenJsonWriter.name("encode");
+    private static final byte[] COUNT = GreenJsonWriter.name("count");
+    private static final byte[] P50 = GreenJsonWriter.name("p50");
+    private static final byte[] P99 = GreenJsonWriter.name("p99");
+    private static final byte[] P999 = GreenJsonWriter.name("p999");
+    private static final byte[] MAX = GreenJsonWriter.name("max");
+
+    private GreenMetricsRegistry() {
+    }
+
+    public static GreenRouteMetrics register(String name) {
+        GreenRouteMetrics metrics = new GreenRouteMetrics(name);
+        routes.add(metrics);
+        return metrics;
+    }
+
+    // Scratch holds GreenHistogram.BUCKETS counts and is reused for every merge.
+    public static void write(GreenJsonWriter json, long[] scratch) throws IOException {
+        json.beginArray();
+        boolean first = true;
+        for (int i = 0; i < routes.size(); i++) {
+            String name = routes.get(i).getName();
+            if (isListed(name, i)) {
+                continue;
+            }
+            if (!first) {
+                json.comma();
+            }
+            first = false;
+
+            long requests = 0;
+            long errors = 0;
+            long bytesIn = 0;
+            long bytesOut = 0;
+            long pipeFull = 0;
+            for (int j = i; j < routes.size(); j++) {
+                GreenRouteMetrics route = routes.get(j);
+                if (route.getName().equals(name)) {
+                    requests += route.getRequests();
+                    errors += route.getErrors();
+                    bytesIn += route.getBytesIn();
+                    bytesOut += route.getBytesOut();
+                    pipeFull += route.getPipeFull();
+                }
+            }
+
+            json.beginObject();
+            json.name(ROUTE);
+            json.writeString(name);
+            json.comma();
+            json.name(REQUESTS);
+            json.writeLong(requests);
+            json.comma();
+            json.name(ERRORS);
+            json.writeLong(errors);
+            json.comma();
+            json.name(BYTES_IN);
+            json.writeLong(bytesIn);
+            json.comma();
+            json.name(BYTES_OUT);
+            json.writeLong(bytesOut);
+            json.comma();
+            json.name(PIPE_FULL);
+            json.writeLong(pipeFull);
+            json.comma();
+            json.name(DECODE);
+            writePhase(json, scratch, name, i, 0);
+            json.comma();
+            json.name(SERVICE);
+            writePhase(json, scratch, name, i, 1);
+            json.comma();
+            json.name(ENCODE);
+            writePhase(json, scratch, name, i, 2);
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    private static boolean isListed(String name, int before) {
+        for (int i = 0; i < before; i++) {
+            if (routes.get(i).getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void writePhase(GreenJsonWriter json, long[] scratch, String name, int from, int phase) throws IOException {
+        Arrays.fill(scratch, 0);
+        long count = 0;
+        long max = 0;
+        for (int j = from; j < routes.size(); j++) {
+            GreenRouteMetrics route = routes.get(j);
+            if (route.getName().equals(name)) {
+                GreenHistogram histogram = phase == 0 ? route.getDecode() : phase == 1 ? route.getService() : route.getEncode();
+                histogram.addTo(scratch);
+                count += histogram.getTotal();
+                max = Math.max(max, histogram.getMax());
+            }
+        }
+        json.beginObject();
+        json.name(COUNT);
+        json.writeLong(count);
+        json.comma();
+        json.name(P50);
+        json.writeLong(GreenHistogram.percentile(scratch, 0.5));
+        json.comma();
+        json.name(P99);
+        json.writeLong(GreenHistogram.percentile(scratch, 0.99));
+        json.comma();
+        json.name(P999);
+        json.writeLong(GreenHistogram.percentile(scratch, 0.999));
+        json.comma();
+        json.name(MAX);
+        json.writeLong(max);
+        json.endObject();
+    }
+}
@@ -0,0 +1,260 @@
+package com.ociweb.greenspring.runtime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// Set associative cache of encoded responses. Each entry owns a fixed slice of one direct
+// buffer holding its key bytes followed by the response bytes, the bookkeeping lives in
+// primitive arrays, so hits and stores allocate nothing and the cache adds no GC pressure.
+// The key is built in place for each request, looked up, and when missed the response is
+// recorded while it is written and stored under that same key.
+// Not thread safe, each route owns its cache.
+public final class GreenResponseCache {
+    private static final int WAYS = 4;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ByteBuffer data;
+    private final long[] hashes;
+    private final long[] expires;
+    private final long[] used;
+    private final int[] keyLengths;
+    private final int[] valueLengths;
+    private final int[] statuses;
+    private final int[] encodings;
+    private final int entrySize;
+    private final int setMask;
+    private final long ttl;
+
+    private final byte[] key;
+    private final byte[] value;
+    private final Recorder recorder = new Recorder();
+    private int keyLength;
+    private boolean keyOverflow;
+    private long keyHash;
+    private long now;
+    private long clock;
+    private long hits;
+    private long misses;
+
+    public GreenResponseCache(long ttl, int entries, int entrySize) {
+        int sets = Integer.highestOneBit(Math.max(1, (entries + WAYS - 1) / WAYS) * 2 - 1);
+        int slots = sets * WAYS;
+        this.entrySize = entrySize;
+        this.ttl = ttl;
+        this.setMask = sets - 1;
+        this.data = ByteBuffer.allocateDirect(slots * entrySize);
+        this.hashes = new long[slots];
+        this.expires = new long[slots];
+        this.used = new long[slots];
+        this.keyLengths = new int[slots];
+        this.valueLengths = new int[slots];
+        this.statuses = new int[slots];
+        this.encodings = new int[slots];
+        this.key = new byte[entrySize];
+        this.value = new byte[entrySize];
+    }
+
+    public GreenResponseCache key() {
+        keyLength = 0;
+        keyOverflow = false;
+        return this;
+    }
+
+    public GreenResponseCache add(long v) {
+        for (int i = 0; i < 8; i++) {
+            addByte((int)(v >>> (i << 3)));
+        }
+        return this;
+    }
+
+    public GreenResponseCache add(double v) {
+        return add(Double.doubleToLongBits(v));
+    }
+
+    public GreenResponseCache add(boolean v) {
+        addByte(v ? 1 : 0);
+        return this;
+    }
+
+    // Null and empty text differ by the length prefix.
+    public GreenResponseCache add(CharSequence text) {
+        if (text == null) {
+            add(-1L);
+            return this;
+        }
+        int len = text.length();
+        add((long)len);
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            addByte(c);
+            addByte(c >>> 8);
+        }
+        return this;
+    }
+
+    // Returns the entry holding the current key, or -1 when it is missing or expired.
+    public int find(long now) {
+        this.now = now;
+        if (keyOverflow) {
+            misses++;
+            return -1;
+        }
+        keyHash = hash();
+        int base = firstSlot();
+        for (int slot = base; slot < base + WAYS; slot++) {
+            if (valueLengths[slot] > 0 && hashes[slot] == keyHash && expires[slot] - now > 0 && isKey(slot)) {
+                used[slot] = ++clock;
+                hits++;
+                return slot;
+            }
+        }
+        misses++;
+        return -1;
+    }
+
+    public int getStatus(int entry) {
+        return statuses[entry];
+    }
+
+    // The GreenResponseCompression encoding the stored bytes are in.
+    public int getEncoding(int entry) {
+        return encodings[entry];
+    }
+
+    public void write(int entry, OutputStream out) throws IOException {
+        int length = valueLengths[entry] - 1;
+        data.position(entry * entrySize + keyLengths[entry]);
+        data.get(value, 0, length);
+        out.write(value, 0, length);
+    }
+
+    // Copies what the response writes to out so it can be stored after.
+    public OutputStream record(OutputStream out) {
+        return recorder.reset(out, keyOverflow ? 0 : entrySize - keyLength);
+    }
+
+    // Stores the recorded response under the key of the last find.
+    public void store(int status) {
+        if (recorder.overflow) {
+            return;
+        }
+        put(status, GreenResponseCompression.IDENTITY, value, recorder.length);
+    }
+
+    // Stores a response already encoded, as compressed responses are, under the key of the last find.
+    public void store(int status, int encoding, byte[] body, int length) {
+        if (keyOverflow || length > entrySize - keyLength) {
+            return;
+        }
+        put(status, encoding, body, length);
+    }
+
+    private void put(int status, int encoding, byte[] body, int length) {
+        if (keyOverflow) {
+            return;
+        }
+        int base = firstSlot();
+        int slot = base;
+        for (int i = base; i < base + WAYS; i++) {
+            if (valueLengths[i] == 0 || expires[i] - now <= 0 || (hashes[i] == keyHash && isKey(i))) {
+                slot = i;
+                break;
+            }
+            if (used[i] < used[slot]) {
+                slot = i;
+            }
+        }
+        data.position(slot * entrySize);
+        data.put(key, 0, keyLength);
+        data.put(body, 0, length);
+        hashes[slot] = keyHash;
+        expires[slot] = now + ttl;
+        used[slot] = ++clock;
+        keyLengths[slot] = keyLength;
+        valueLengths[slot] = length + 1; // zero marks an empty entry
+        statuses[slot] = status;
+        encodings[slot] = encoding;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    private void addByte(int b) {
+        if (keyLength < key.length) {
+            key[keyLength++] = (byte)b;
+        }
+        else {
+            keyOverflow = true;
+        }
+    }
+
+    private int firstSlot() {
+        return ((int)(keyHash ^ (keyHash >>> 32)) & setMask) * WAYS;
+    }
+
+    private long hash() {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < keyLength; i++) {
+            h = (h ^ (key[i] & 0xFF)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    private boolean isKey(int slot) {
+        if (keyLengths[slot] != keyLength) {
+            return false;
+        }
+        int offset = slot * entrySize;
+        for (int i = 0; i < keyLength; i++) {
+            if (data.get(offset + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final class Recorder extends OutputStream {
+        private OutputStream out;
+        private int limit;
+        private int length;
+        private boolean overflow;
+
+        private Recorder reset(OutputStream out, int limit) {
+            this.out = out;
+            this.limit = limit;
+            this.length = 0;
+            this.overflow = limit <= 0;
+            return this;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (length < limit) {
+                value[length++] = (byte)b;
+            }
+            else {
+                overflow = true;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (length + len <= limit) {
+                System.arraycopy(b, off, value, length, len);
+                length += len;
+            }
+            else {
+                overflow = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.ociweb.greenspring.runtime;
+
+import com.ociweb.gl.api.HTTPRequestReader;
+import com.ociweb.gl.api.Headable;
+import com.ociweb.pronghorn.network.config.HTTPContentType;
+import com.ociweb.pronghorn.network.config.HTTPHeader;
+import com.ociweb.pronghorn.pipe.ChannelReader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Response compression of one route. The body is encoded into a reused buffer before it is
+// published, so its size is known when the content type is chosen, and compressed into a second
+// reused buffer when the client accepts gzip or deflate and the body reaches the threshold.
+// The Deflaters are created on first use and reset per response. A constant body is compressed
+// once by fixed() and only selected per request after. Not thread safe, each route owns one.
+// While GreenHeaderedType is off every response goes out as it is, since Content-Encoding
+// could not be sent with it.
+public final class GreenResponseCompression implements Headable {
+    public static final int IDENTITY = 0;
+    public static final int GZIP = 1;
+    public static final int DEFLATE = 2;
+
+    private static final byte[] gzipToken = {'g', 'z', 'i', 'p'};
+    private static final byte[] deflateToken = {'d', 'e', 'f', 'l', 'a', 't', 'e'};
+    private static final int GZIP_TRAILER = 8;
+    private static final byte[] gzipHeader = {0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte)0xff};
+
+    private final int threshold;
+    private final int level;
+    private final Body plain = new Body();
+    private final CRC32 crc = new CRC32();
+    private Deflater gzipDeflater;
+    private Deflater zlibDeflater;
+    private byte[] packed = new byte[256];
+    private int packedLength;
+
+    private byte[] header = new byte[64];
+    private int headerLength;
+    private int accepted;
+    private int encoding;
+
+    private boolean fixed;
+    private byte[] fixedGzip;
+    private byte[] fixedDeflate;
+
+    public GreenResponseCompression(int threshold, int level) {
+        this.threshold = threshold;
+        this.level = level;
+    }
+
+    // Compresses a constant body in both forms, a form is kept only when it is smaller.
+    public GreenResponseCompression fixed(byte[] body) {
+        fixed = true;
+        plain.reset();
+        plain.write(body, 0, body.length);
+        if (GreenHeaderedType.isEnabled() && body.length >= threshold) {
+            fixedGzip = compress(GZIP) ? Arrays.copyOf(packed, packedLength) : null;
+            fixedDeflate = compress(DEFLATE) ? Arrays.copyOf(packed, packedLength) : null;
+        }
+        return this;
+    }
+
+    // Reads the Accept-Encoding of the request, gzip is preferred over deflate. A constant
+    // body is selected here, otherwise the choice applies to the next finish().
+    public int negotiate(HTTPRequestReader httpRequestReader, int headerId) {
+        headerLength = 0;
+        accepted = IDENTITY;
+        if (!GreenHeaderedType.isEnabled()) {
+            encoding = IDENTITY;
+            return accepted;
+        }
+        httpRequestReader.openHeaderData(headerId, this);
+        if (headerLength > 0) {
+            accepted = accepts(gzipToken) ? GZIP : accepts(deflateToken) ? DEFLATE : IDENTITY;
+        }
+        if (fixed) {
+            encoding = accepted == GZIP && fixedGzip != null ? GZIP
+                    : accepted == DEFLATE && fixedDeflate != null ? DEFLATE
+                    : IDENTITY;
+        }
+        return accepted;
+    }
+
+    public int getAccepted() {
+        return accepted;
+    }
+
+    // The stream the response body is encoded into.
+    public OutputStream begin() {
+        plain.reset();
+        encoding = IDENTITY;
+        return plain;
+    }
+
+    public void finish() {
+        if (accepted != IDENTITY && plain.length >= threshold && compress(accepted)) {
+            encoding = accepted;
+        }
+        else {
+            encoding = IDENTITY;
+        }
+    }
+
+    public int getEncoding() {
+        return encoding;
+    }
+
+    public HTTPContentType contentType(HTTPContentType plainType) {
+        return GreenContentType.encoded(plainType, encoding);
+    }
+
+    public byte[] getBody() {
+        if (fixed) {
+            return encoding == GZIP ? fixedGzip : encoding == DEFLATE ? fixedDeflate : plain.bytes;
+        }
+        return encoding == IDENTITY ? plain.bytes : packed;
+    }
+
+    public int getLength() {
+        if (fixed) {
+            return encoding == GZIP ? fixedGzip.length : encoding == DEFLATE ? fixedDeflate.length : plain.length;
+        }
+        return encoding == IDENTITY ? plain.length : packedLength;
+    }
+
+    public void write(OutputStream out) throws IOException {
+        out.write(getBody(), 0, getLength());
+    }
+
+    @Override
+    public void read(HTTPHeader header, ChannelReader reader) {
+        try {
+            int c;
+            while ((c = reader.read()) >= 0) {
+                if (headerLength == this.header.length) {
+                    this.header = Arrays.copyOf(this.header, headerLength * 2);
+                }
+                this.header[headerLength++] = (byte)Character.toLowerCase(c);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // True when the coding, or *, is listed without q=0.
+    private boolean accepts(byte[] token) {
+        int i = 0;
+        while (i < headerLength) {
+            int start = skipSpaces(i);
+            int end = start;
+            while (end < headerLength && header[end] != ',' && header[end] != ';' && header[end] != ' ') {
+                end++;
+            }
+            int next = end;
+            while (next < headerLength && header[next] != ',') {
+                next++;
+            }
+            if ((matches(start, end, token) || (end - start == 1 && header[start] == '*')) && !isRefused(end, next)) {
+                return true;
+            }
+            i = next + 1;
+        }
+        return false;
+    }
+
+    private boolean matches(int start, int end, byte[] token) {
+        if (end - start != token.length) {
+            return false;
+        }
+        for (int i = 0; i < token.length; i++) {
+            if (header[start + i] != token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A quality of zero, whatever its number of decimals, refuses the coding.
+    private boolean isRefused(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (header[i] != ';') {
+                continue;
+            }
+            int j = skipSpaces(i + 1);
+            if (j >= end || header[j] != 'q') {
+                continue;
+            }
+            j = skipSpaces(j + 1);
+            if (j >= end || header[j] != '=') {
+                continue;
+            }
+            j = skipSpaces(j + 1);
+            if (j >= end || header[j] != '0') {
+                return false;
+            }
+            for (j++; j < end && header[j] != ' ' && header[j] != ';'; j++) {
+                if (header[j] != '.' && header[j] != '0') {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private int skipSpaces(int i) {
+        while (i < headerLength && (header[i] == ' ' || header[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    // Compresses the plain body into packed, false when that would not make it smaller.
+    private boolean compress(int coding) {
+        Deflater deflater;
+        packedLength = 0;
+        if (coding == GZIP) {
+            if (gzipDeflater == null) {
+                gzipDeflater = new Deflater(level, true);
+            }
+            deflater = gzipDeflater;
+            ensure(gzipHeader.length);
+            System.arraycopy(gzipHeader, 0, packed, 0, gzipHeader.length);
+            packedLength = gzipHeader.length;
+        }
+        else {
+            if (zlibDeflater == null) {
+                zlibDeflater = new Deflater(level, false);
+            }
+            deflater = zlibDeflater;
+        }
+        deflater.reset();
+        deflater.setInput(plain.bytes, 0, plain.length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            if (packedLength >= plain.length) {
+                return false;
+            }
+            ensure(1);
+            packedLength += deflater.deflate(packed, packedLength, packed.length - packedLength);
+        }
+        if (coding == GZIP) {
+            crc.reset();
+            crc.update(plain.bytes, 0, plain.length);
+            ensure(GZIP_TRAILER);
+            writeIntLE((int)crc.getValue());
+            writeIntLE(plain.length);
+        }
+        return packedLength < plain.length;
+    }
+
+    private void ensure(int more) {
+        if (packedLength + more > packed.length) {
+            packed = Arrays.copyOf(packed, Math.max(packedLength + more, packed.length * 2));
+        }
+    }
+
+    private void writeIntLE(int v) {
+        packed[packedLength++] = (byte)v;
+        packed[packedLength++] = (byte)(v >>> 8);
+        packed[packedLength++] = (byte)(v >>> 16);
+        packed[packedLength++] = (byte)(v >>> 24);
+    }
+
+    private static final class Body extends OutputStream {
+        private byte[] bytes = new byte[256];
+        private int length;
+
+        private void reset() {
+            length = 0;
+        }
+
+        @Override
+        public void write(int b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+            bytes[length++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (length + len > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length + len, bytes.length * 2));
+            }
+            System.arraycopy(b, off, bytes, length, len);
+            length += len;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.ociweb.greenspring.runtime;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Phase timings and counters of one route instance. Recorded by the thread owning the route,
+// read by the metrics route. Times are in nanoseconds.
+public final class GreenRouteMetrics {
+    private final String name;
+    private final GreenHistogram decode = new GreenHistogram();
+    private final GreenHistogram service = new GreenHistogram();
+    private final GreenHistogram encode = new GreenHistogram();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong pipeFull = new AtomicLong();
+
+    GreenRouteMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void decode(long nanos) {
+        decode.record(nanos);
+    }
+
+    public void service(long nanos) {
+        service.record(nanos);
+    }
+
+    public void encode(long nanos, long bytes) {
+        encode.record(nanos);
+        bytesOut.lazySet(bytesOut.get() + bytes);
+    }
+
+    public void bytesIn(long bytes) {
+        bytesIn.lazySet(bytesIn.get() + bytes);
+    }
+
+    // Responses of 400 and above count as errors.
+    public void response(int status) {
+        requests.lazySet(requests.get() + 1);
+        if (status >= 400) {
+            errors.lazySet(errors.get() + 1);
+        }
+    }
+
+    // Publish attempts refused because the outgoing pipe was full.
+    public void pipeFull() {
+        pipeFull.lazySet(pipeFull.get() + 1);
+    }
+
+    GreenHistogram getDecode() {
+        return decode;
+    }
+
+    GreenHistogram getService() {
+        return service;
+    }
+
+    GreenHistogram getEncode() {
+        return encode;
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getErrors() {
+        return errors.get();
+    }
+
+    long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    long getPipeFull() {
+        return pipeFull.get();
+    }
+}
@@ -0,0 +1,75 @@
+package com.ociweb.greenspring.runtime;
+
+// One @Scheduled method, run from the time pulse of the behavior that owns its service, so it
+// runs on the thread of the routes sharing that service and never overlaps itself. Times are
+// the pulse's milliseconds, the pulse rate bounds how late a run can start. A fixed rate that
+// falls behind skips the runs it missed instead of running them back to back on the track.
+// A task that throws is reported like an uncaught exception and stays scheduled, as in Spring.
+public final class GreenSchedule {
+    private static final long UNSTARTED = Long.MIN_VALUE;
+
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    // The next time of a cron expression after the given one, without tying the runtime to Spring.
+    public interface Cron {
+        long next(long after);
+    }
+
+    private final Task task;
+    private final long rate;
+    private final long delay;
+    private final long initialDelay;
+    private final Cron cron;
+    private long next = UNSTARTED;
+
+    private GreenSchedule(Task task, long rate, long delay, long initialDelay, Cron cron) {
+        this.task = task;
+        this.rate = rate;
+        this.delay = delay;
+        this.initialDelay = Math.max(0, initialDelay);
+        this.cron = cron;
+    }
+
+    public static GreenSchedule fixedRate(Task task, long rate, long initialDelay) {
+        return new GreenSchedule(task, rate, 0, initialDelay, null);
+    }
+
+    public static GreenSchedule fixedDelay(Task task, long delay, long initialDelay) {
+        return new GreenSchedule(task, 0, delay, initialDelay, null);
+    }
+
+    public static GreenSchedule cron(Task task, Cron cron) {
+        return new GreenSchedule(task, 0, 0, 0, cron);
+    }
+
+    // The first pulse starts the clock, the initial delay counts from it.
+    public void timeEvent(long time) {
+        if (next == UNSTARTED) {
+            next = cron != null ? cron.next(time) : time + initialDelay;
+        }
+        if (time < next) {
+            return;
+        }
+        try {
+            task.run();
+        } catch (Throwable e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+        long finished = System.currentTimeMillis();
+        if (cron != null) {
+            next = cron.next(Math.max(time, finished));
+        }
+        else if (rate > 0) {
+            next += rate;
+            if (next <= time) {
+                next += ((time - next) / rate + 1) * rate;
+            }
+        }
+        else {
+            next = Math.max(time, finished) + delay;
+        }
+    }
+}
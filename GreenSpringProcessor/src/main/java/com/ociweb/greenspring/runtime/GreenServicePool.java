@@ -0,0 +1,38 @@
+package com.ociweb.greenspring.runtime;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+// Fixed set of service instances for controllers that keep per request state. A route borrows
+// one for the duration of a request and gives it back, so no instance is used by two threads
+// at once. Borrow returns null when every instance is out; the route then answers 503 instead
+// of blocking the track.
+public final class GreenServicePool<T> {
+    private final AtomicReferenceArray<T> idle;
+
+    public GreenServicePool(Supplier<T> factory, int size) {
+        int count = size > 0 ? size : Runtime.getRuntime().availableProcessors();
+        this.idle = new AtomicReferenceArray<>(count);
+        for (int i = 0; i < count; i++) {
+            idle.set(i, factory.get());
+        }
+    }
+
+    public T borrow() {
+        for (int i = 0; i < idle.length(); i++) {
+            T service = idle.get(i);
+            if (service != null && idle.compareAndSet(i, service, null)) {
+                return service;
+            }
+        }
+        return null;
+    }
+
+    public void release(T service) {
+        for (int i = 0; ; i = (i + 1) % idle.length()) {
+            if (idle.get(i) == null && idle.compareAndSet(i, null, service)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.ociweb.greenspring.runtime;
+
+import com.ociweb.gl.api.Builder;
+import com.ociweb.gl.api.GreenCommandChannel;
+import com.ociweb.gl.api.GreenRuntime;
+import com.ociweb.gl.api.HTTPRequestReader;
+import com.ociweb.gl.api.RestListener;
+import com.ociweb.gl.api.TimeListener;
+import com.ociweb.gl.api.Writable;
+import com.ociweb.pronghorn.network.config.HTTPContentType;
+import com.ociweb.pronghorn.network.config.HTTPHeaderDefaults;
+import com.ociweb.pronghorn.network.config.HTTPVerbDefaults;
+import com.ociweb.pronghorn.pipe.ChannelWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Serves a directory as it was when the app started, replacing Spring's resource handler.
+// Every regular file under it is mapped read only once, with its ETag and Last-Modified
+// computed then, so a request costs a table lookup and two copies. GreenLightning's
+// ChannelWriter is an OutputStream and takes no ByteBuffer, so the bytes are copied from the
+// mapping into one fixed heap chunk owned by the behavior and from there into the outbound pipe.
+// The chunk is reused, a request allocates nothing. Reading the file with a FileChannel into the
+// chunk instead would add a system call per chunk and, for a heap buffer, the JDK's own copy
+// through a temporary direct buffer. The chunk is no larger than the server's response size,
+// so every publish can fit. A file larger than the chunk goes out as a continued response, one
+// chunk per publish while the pipe takes them and the rest from the time pulse.
+// A GET whose If-None-Match names the ETag, or without one whose If-Modified-Since is not older
+// than the file, is answered 304. The validators travel as GreenHeaderedType headers, so while
+// that is off files go out without them and nothing is answered 304.
+// Changing the files needs a restart: a mapped file truncated under the app faults the reader.
+// Not thread safe, the app declares one behavior for the directory.
+public final class GreenStaticFiles implements RestListener, TimeListener, Writable {
+    public static final int chunkSizeDefault = 64 * 1024;
+    public static final int transfersDefault = 64;
+
+    // RFC 1123 with the day always two digits, as HTTP dates are written.
+    private static final DateTimeFormatter httpDate = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+    private static final Map<String, String> mediaTypes = new HashMap<>();
+
+    static {
+        mediaTypes.put("json", "application/json");
+        mediaTypes.put("js", "application/javascript");
+        mediaTypes.put("css", "text/css");
+        mediaTypes.put("html", "text/html");
+        mediaTypes.put("htm", "text/html");
+        mediaTypes.put("txt", "text/plain");
+        mediaTypes.put("csv", "text/csv");
+        mediaTypes.put("xml", "application/xml");
+        mediaTypes.put("svg", "image/svg+xml");
+        mediaTypes.put("png", "image/png");
+        mediaTypes.put("jpg", "image/jpeg");
+        mediaTypes.put("jpeg", "image/jpeg");
+        mediaTypes.put("gif", "image/gif");
+        mediaTypes.put("ico", "image/x-icon");
+        mediaTypes.put("woff", "font/woff");
+        mediaTypes.put("woff2", "font/woff2");
+        mediaTypes.put("pdf", "application/pdf");
+        mediaTypes.put("wasm", "application/wasm");
+        mediaTypes.put("map", "application/json");
+    }
+
+    private final GreenCommandChannel channel;
+    private final String[] paths;
+    private final Entry[] entries;
+    private final int mask;
+    private final Transfer[] transfers;
+    private final byte[] chunk;
+    private final StringBuilder path = new StringBuilder();
+    private final GreenHeaderValue ifNoneMatch = new GreenHeaderValue("If-None-Match");
+    private final GreenHeaderValue ifModifiedSince = new GreenHeaderValue("If-Modified-Since");
+    private final Writable empty = channelWriter -> { };
+    private int active;
+    private Entry writing;
+    private long writeFrom;
+    private int writeLength;
+
+    private static final class Entry {
+        private final MappedByteBuffer mapping;
+        private final long length;
+        private final String etag;
+        private final String lastModified;
+        private final long modifiedSeconds;
+        private final HTTPContentType type;
+
+        private Entry(MappedByteBuffer mapping, long length, String etag, String lastModified, long modifiedSeconds, HTTPContentType type) {
+            this.mapping = mapping;
+            this.length = length;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.modifiedSeconds = modifiedSeconds;
+            this.type = type;
+        }
+    }
+
+    // The rest of a continued response.
+    private static final class Transfer {
+        private Entry entry;
+        private long connectionId;
+        private long sequenceCode;
+        private long position;
+    }
+
+    public GreenStaticFiles(GreenCommandChannel channel, Path directory, int chunkSize, int transfers) throws IOException {
+        this.channel = channel;
+        this.chunk = new byte[chunkSize];
+        this.transfers = new Transfer[Math.max(1, transfers)];
+        for (int i = 0; i < this.transfers.length; i++) {
+            this.transfers[i] = new Transfer();
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.filter(Files::isRegularFile).forEach(files::add);
+        }
+        int slots = Integer.highestOneBit(Math.max(1, files.size()) * 2 - 1) << 1;
+        this.paths = new String[slots];
+        this.entries = new Entry[slots];
+        this.mask = slots - 1;
+        for (Path file : files) {
+            String relative = directory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+            int slot = slot(relative);
+            paths[slot] = relative;
+            entries[slot] = entry(file, relative);
+        }
+    }
+
+    // The path after the route is captured whole, slashes included. The app sets the pulse rate.
+    public static int registerRoute(Builder builder, String route) {
+        String base = route.endsWith("/") ? route.substring(0, route.length() - 1) : route;
+        return builder.registerRoute(base + "/${path}",
+                HTTPHeaderDefaults.IF_NONE_MATCH.rootBytes(), HTTPHeaderDefaults.IF_MODIFIED_SINCE.rootBytes());
+    }
+
+    // A maxResponseSize of zero leaves the GreenLightning default, which the default chunk fits.
+    public static void registerBehavior(GreenRuntime runtime, int routeId, String directory, int maxResponseSize) {
+        int chunkSize = maxResponseSize > 0 ? Math.min(chunkSizeDefault, maxResponseSize) : chunkSizeDefault;
+        GreenStaticFiles files;
+        try {
+            files = new GreenStaticFiles(runtime.newCommandChannel(GreenCommandChannel.NET_REQUESTER),
+                    Paths.get(directory), chunkSize, transfersDefault);
+        } catch (IOException e) {
+            throw new UncheckedIOException("GreenSpring cannot serve " + directory, e);
+        }
+        runtime.registerListener(files).includeRoutes(new int[] { routeId });
+    }
+
+    // Returns false to have the request delivered again when the pipe or every transfer is full.
+    @Override
+    public boolean restRequest(HTTPRequestReader httpRequestReader) {
+        if (httpRequestReader.getVerb() != HTTPVerbDefaults.GET) {
+            return channel.publishHTTPResponse(httpRequestReader, 405);
+        }
+        path.setLength(0);
+        httpRequestReader.getText(0, path);
+        Entry entry = entries[slot(path)];
+        if (entry == null) {
+            return channel.publishHTTPResponse(httpRequestReader, 404);
+        }
+        if (GreenHeaderedType.isEnabled() && notModified(httpRequestReader, entry)) {
+            return channel.publishHTTPResponse(httpRequestReader, 304, entry.type, empty);
+        }
+        if (entry.length <= chunk.length) {
+            return publish(httpRequestReader.getConnectionId(), httpRequestReader.getSequenceCode(), entry, 0, true);
+        }
+        Transfer transfer = null;
+        for (Transfer candidate : transfers) {
+            if (candidate.entry == null) {
+                transfer = candidate;
+                break;
+            }
+        }
+        if (transfer == null || !publish(httpRequestReader.getConnectionId(), httpRequestReader.getSequenceCode(), entry, 0, true)) {
+            return false;
+        }
+        transfer.entry = entry;
+        transfer.connectionId = httpRequestReader.getConnectionId();
+        transfer.sequenceCode = httpRequestReader.getSequenceCode();
+        transfer.position = chunk.length;
+        active++;
+        drain(transfer);
+        return true;
+    }
+
+    @Override
+    public void timeEvent(long time, int iteration) {
+        if (active == 0) {
+            return;
+        }
+        for (Transfer transfer : transfers) {
+            if (transfer.entry != null && !drain(transfer)) {
+                return;
+            }
+        }
+    }
+
+    // Publishes chunks until the file is out or the pipe is full, false when it is full.
+    private boolean drain(Transfer transfer) {
+        while (transfer.entry != null) {
+            if (!publish(transfer.connectionId, transfer.sequenceCode, transfer.entry, transfer.position, false)) {
+                return false;
+            }
+            transfer.position += chunk.length;
+            if (transfer.position >= transfer.entry.length) {
+                transfer.entry = null;
+                active--;
+            }
+        }
+        return true;
+    }
+
+    private boolean publish(long connectionId, long sequenceCode, Entry entry, long from, boolean first) {
+        writing = entry;
+        writeFrom = from;
+        writeLength = (int)Math.min(chunk.length, entry.length - from);
+        boolean more = from + writeLength < entry.length;
+        try {
+            return first
+                    ? channel.publishHTTPResponse(connectionId, sequenceCode, 200, more, entry.type, this)
+                    : channel.publishHTTPResponseContinuation(connectionId, sequenceCode, more, this);
+        } finally {
+            writing = null;
+        }
+    }
+
+    @Override
+    public void write(ChannelWriter channelWriter) {
+        MappedByteBuffer mapping = writing.mapping;
+        OutputStream out = channelWriter;
+        mapping.limit((int)(writeFrom + writeLength)).position((int)writeFrom);
+        mapping.get(chunk, 0, writeLength);
+        try {
+            out.write(chunk, 0, writeLength);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // If-None-Match wins over If-Modified-Since, as in Spring and RFC 7232.
+    private boolean notModified(HTTPRequestReader httpRequestReader, Entry entry) {
+        ifNoneMatch.read(httpRequestReader, HTTPHeaderDefaults.IF_NONE_MATCH.ordinal());
+        if (ifNoneMatch.isPresent()) {
+            CharSequence tags = ifNoneMatch.asText();
+            return contains(tags, "*") || contains(tags, entry.etag);
+        }
+        ifModifiedSince.read(httpRequestReader, HTTPHeaderDefaults.IF_MODIFIED_SINCE.ordinal());
+        if (!ifModifiedSince.isPresent()) {
+            return false;
+        }
+        CharSequence since = ifModifiedSince.asText();
+        if (entry.lastModified.contentEquals(since)) {
+            return true;
+        }
+        try {
+            return ZonedDateTime.parse(since, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond() >= entry.modifiedSeconds;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static boolean contains(CharSequence text, String tag) {
+        int last = text.length() - tag.length();
+        for (int i = 0; i <= last; i++) {
+            boolean match = true;
+            for (int j = 0; j < tag.length() && match; j++) {
+                match = text.charAt(i + j) == tag.charAt(j);
+            }
+            if (match) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Entry entry(Path file, String relative) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attributes.size();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("GreenSpring maps files up to 2GB, " + relative + " is larger");
+        }
+        MappedByteBuffer mapping;
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapping = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        long modified = attributes.lastModifiedTime().toMillis();
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(modified) + "\"";
+        String lastModified = httpDate.format(Instant.ofEpochMilli(modified).atZone(ZoneOffset.UTC));
+        int dot = relative.lastIndexOf('.');
+        String extension = dot > relative.lastIndexOf('/') ? relative.substring(dot + 1).toLowerCase() : "";
+        String mediaType = mediaTypes.getOrDefault(extension, GreenContentType.OCTET_STREAM.contentType());
+        // The 304 carries the validators as well, so both answers publish this type.
+        HTTPContentType type = GreenHeaderedType.isEnabled()
+                ? new GreenHeaderedType(mediaType, extension, "ETag", etag, "Last-Modified", lastModified)
+                : new GreenHeaderedType(mediaType, extension);
+        return new Entry(mapping, length, etag, lastModified, modified / 1000, type);
+    }
+
+    // Open addressing on the path's characters, so a lookup allocates nothing.
+    private int slot(CharSequence key) {
+        int hash = 0;
+        for (int i = 0; i < key.length(); i++) {
+            hash = 31 * hash + key.charAt(i);
+        }
+        int index = (hash ^ (hash >>> 16)) & mask;
+        String known;
+        while ((known = paths[index]) != null && !known.contentEquals(key)) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+}
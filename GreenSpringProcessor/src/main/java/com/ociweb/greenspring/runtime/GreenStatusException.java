@@ -0,0 +1,27 @@
+package com.ociweb.greenspring.runtime;
+
+// Exception for expected failures that carries the HTTP status to answer with. It records no
+// stack trace, which is most of the cost of throwing, so it is cheap to throw per request and
+// may even be preallocated. A mapping of the controller that matches it takes precedence.
+public class GreenStatusException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public GreenStatusException(int status) {
+        this(status, null, null);
+    }
+
+    public GreenStatusException(int status, String reason) {
+        this(status, reason, null);
+    }
+
+    public GreenStatusException(int status, String reason, Throwable cause) {
+        super(reason, cause, false, false);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
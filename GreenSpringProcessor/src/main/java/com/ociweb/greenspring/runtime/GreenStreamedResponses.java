@@ -0,0 +1,396 @@
+package com.ociweb.greenspring.runtime;
+
+import com.ociweb.gl.api.GreenCommandChannel;
+import com.ociweb.gl.api.HTTPRequestReader;
+import com.ociweb.gl.api.Writable;
+import com.ociweb.pronghorn.network.config.HTTPContentType;
+import com.ociweb.pronghorn.pipe.ChannelWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Responses that stay open while the service pushes to them, as SseEmitter, ResponseBodyEmitter
+// and StreamingResponseBody do. Each open response parks its connection in a slot with a fixed
+// buffer, the service writes to the slot's Sink from any thread, and the owning route drains
+// the buffers from its time event: the first drain publishes the status and headers with a
+// continuation, each later one a chunk, and the last ends the response. No thread waits on a
+// connection, only a StreamingResponseBody holds one while its writeTo runs, as in Spring.
+// Open and publish must be called by the thread that owns the command channel.
+public final class GreenStreamedResponses implements Writable {
+    public static final int capacityDefault = 1024;
+    public static final int bufferSizeDefault = 8192;
+
+    // Encodes an object a service sends, into the JSON of the route's listed types.
+    public interface Encoder {
+        void encode(Object value, GreenJsonWriter json) throws IOException;
+    }
+
+    public interface Body {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final Slot[] slots;
+    private final int bufferSize;
+    private final Encoder encoder;
+    private final AtomicInteger open = new AtomicInteger();
+    private final int mask;
+    private int next;
+    private Slot draining;
+
+    public GreenStreamedResponses(int capacity, int bufferSize, Encoder encoder) {
+        int count = Integer.highestOneBit(Math.max(1, capacity) * 2 - 1);
+        this.slots = new Slot[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = new Slot();
+        }
+        this.bufferSize = bufferSize;
+        this.encoder = encoder;
+        this.mask = count - 1;
+    }
+
+    // Returns the slot of the new response, or -1 when every slot is streaming.
+    public int open(HTTPRequestReader httpRequestReader) {
+        for (int i = 0; i <= mask; i++) {
+            int index = (next + i) & mask;
+            Slot slot = slots[index];
+            synchronized (slot) {
+                if (slot.state == Slot.FREE) {
+                    slot.connectionId = httpRequestReader.getConnectionId();
+                    slot.sequenceCode = httpRequestReader.getSequenceCode();
+                    slot.state = Slot.PENDING;
+                    slot.started = false;
+                    slot.completed = false;
+                    slot.timedOut = false;
+                    slot.length = 0;
+                    slot.deadline = 0;
+                    slot.generation++;
+                    next = index + 1;
+                    open.incrementAndGet();
+                    return index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // The service returned, the response is published with status on the next pulse.
+    public Sink start(int index, int status, long timeout) {
+        Slot slot = slots[index];
+        synchronized (slot) {
+            if (slot.buffer == null) {
+                slot.buffer = new byte[bufferSize];
+            }
+            slot.status = status;
+            slot.deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+            slot.state = Slot.STREAMING;
+            return new Sink(slot, slot.generation, encoder);
+        }
+    }
+
+    // Ends the response with status and no body, the service failed before it streamed.
+    public void fail(int index, int status) {
+        Slot slot = slots[index];
+        synchronized (slot) {
+            slot.status = status;
+            slot.length = 0;
+            slot.completed = true;
+            slot.state = Slot.STREAMING;
+        }
+    }
+
+    // Buffers the channel cannot take yet stay filled and are retried on the next pulse.
+    public void publish(GreenCommandChannel channel, HTTPContentType contentType) {
+        if (open.get() == 0) {
+            return;
+        }
+        long now = 0;
+        for (int index = 0; index <= mask; index++) {
+            Slot slot = slots[index];
+            boolean last;
+            synchronized (slot) {
+                if (slot.state != Slot.STREAMING) {
+                    continue;
+                }
+                if (slot.deadline != 0 && !slot.completed) {
+                    now = now == 0 ? System.currentTimeMillis() : now;
+                    if (now - slot.deadline >= 0) {
+                        slot.timedOut = true;
+                        slot.completed = true;
+                    }
+                }
+                if (slot.started && slot.length == 0 && !slot.completed) {
+                    continue;
+                }
+                last = slot.completed;
+            }
+            if (last && slot.timedOut) {
+                slot.runTimeout();
+            }
+            draining = slot;
+            boolean published = slot.started
+                    ? channel.publishHTTPResponseContinuation(slot.connectionId, slot.sequenceCode, !last, this)
+                    : channel.publishHTTPResponse(slot.connectionId, slot.sequenceCode, slot.status, !last, contentType, this);
+            draining = null;
+            if (!published) {
+                return;
+            }
+            slot.started = true;
+            if (last) {
+                slot.runCompletion();
+                synchronized (slot) {
+                    slot.state = Slot.FREE;
+                    slot.generation++;
+                    slot.notifyAll();
+                }
+                open.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void write(ChannelWriter channelWriter) {
+        Slot slot = draining;
+        synchronized (slot) {
+            if (slot.length > 0) {
+                OutputStream out = channelWriter;
+                try {
+                    out.write(slot.buffer, 0, slot.length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                slot.length = 0;
+                slot.notifyAll();
+            }
+        }
+    }
+
+    private static final class Slot {
+        private static final int FREE = 0;
+        private static final int PENDING = 1;
+        private static final int STREAMING = 2;
+
+        private long connectionId;
+        private long sequenceCode;
+        private int status;
+        private int state;
+        private int generation;
+        private boolean started;
+        private boolean completed;
+        private boolean timedOut;
+        private long deadline;
+        private byte[] buffer;
+        private int length;
+        private final List<Runnable> timeoutCallbacks = new ArrayList<>();
+        private final List<Runnable> completionCallbacks = new ArrayList<>();
+
+        private void runTimeout() {
+            Runnable[] callbacks;
+            synchronized (this) {
+                callbacks = timeoutCallbacks.toArray(new Runnable[0]);
+                timeoutCallbacks.clear();
+                timedOut = false;
+            }
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+
+        private void runCompletion() {
+            Runnable[] callbacks;
+            synchronized (this) {
+                callbacks = completionCallbacks.toArray(new Runnable[0]);
+                completionCallbacks.clear();
+                timeoutCallbacks.clear();
+            }
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+    }
+
+    // The service's end of one response. Writes fail once the response has ended. Each value an
+    // emitter sends is encoded aside and appended whole, or refused when the client has not read
+    // enough of the buffer to take it. Only a streamed body waits for room, it has its own thread.
+    public static final class Sink extends OutputStream {
+        private final Slot slot;
+        private final int generation;
+        private final Encoder encoder;
+        private final GreenJsonWriter json = new GreenJsonWriter();
+        private final Staging staging = new Staging();
+        private boolean blocking;
+
+        private Sink(Slot slot, int generation, Encoder encoder) {
+            this.slot = slot;
+            this.generation = generation;
+            this.encoder = encoder;
+        }
+
+        // Runs a StreamingResponseBody on the shared executor and ends the response after it.
+        public void stream(Body body) {
+            blocking = true;
+            GreenAsyncResponses.execute(() -> {
+                try {
+                    body.writeTo(this);
+                } catch (Throwable e) {
+                    // The status is already out, the response just ends.
+                } finally {
+                    complete();
+                }
+            });
+        }
+
+        // Text is sent as it is, any other value as the JSON of its codec.
+        public synchronized void send(Object value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            staging.length = 0;
+            if (value instanceof CharSequence) {
+                staging.writeUtf8((CharSequence)value);
+            }
+            else if (encoder != null) {
+                encoder.encode(value, json.reset(staging));
+            }
+            else {
+                throw new IOException("GreenSpring has no codec for " + value.getClass().getName() + ", list it in @GreenEmits");
+            }
+            synchronized (slot) {
+                if (room(0) < staging.length) {
+                    throw new IOException(staging.length > slot.buffer.length
+                            ? "The value is larger than the stream buffer"
+                            : "The client is not reading fast enough");
+                }
+                System.arraycopy(staging.bytes, 0, slot.buffer, slot.length, staging.length);
+                slot.length += staging.length;
+            }
+        }
+
+        public void complete() {
+            synchronized (slot) {
+                if (slot.generation == generation) {
+                    slot.completed = true;
+                }
+            }
+        }
+
+        public void onTimeout(Runnable callback) {
+            synchronized (slot) {
+                if (slot.generation == generation) {
+                    slot.timeoutCallbacks.add(callback);
+                }
+            }
+        }
+
+        public void onCompletion(Runnable callback) {
+            synchronized (slot) {
+                if (slot.generation == generation) {
+                    slot.completionCallbacks.add(callback);
+                }
+            }
+        }
+
+        // The direct writes of a streamed body.
+        @Override
+        public void write(int b) throws IOException {
+            synchronized (slot) {
+                if (room(1) < 1) {
+                    throw new IOException("The client is not reading fast enough");
+                }
+                slot.buffer[slot.length++] = (byte)b;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                synchronized (slot) {
+                    int count = Math.min(len, room(1));
+                    if (count < 1) {
+                        throw new IOException("The client is not reading fast enough");
+                    }
+                    System.arraycopy(b, off, slot.buffer, slot.length, count);
+                    slot.length += count;
+                    off += count;
+                    len -= count;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            complete();
+        }
+
+        // Called holding the slot, returns the free bytes once at least wanted are free.
+        private int room(int wanted) throws IOException {
+            while (true) {
+                if (slot.generation != generation || slot.completed) {
+                    throw new IOException("The response has ended");
+                }
+                int free = slot.buffer.length - slot.length;
+                if (free >= wanted || !blocking) {
+                    return free;
+                }
+                try {
+                    slot.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while the client was reading", e);
+                }
+            }
+        }
+    }
+
+    private static final class Staging extends OutputStream {
+        private byte[] bytes = new byte[256];
+        private int length;
+
+        @Override
+        public void write(int b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+            bytes[length++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (length + len > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length + len, bytes.length * 2));
+            }
+            System.arraycopy(b, off, bytes, length, len);
+            length += len;
+        }
+
+        private void writeUtf8(CharSequence text) {
+            int len = text.length();
+            for (int i = 0; i < len; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    write(c);
+                }
+                else if (c < 0x800) {
+                    write(0xC0 | (c >> 6));
+                    write(0x80 | (c & 0x3F));
+                }
+                else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    write(0xF0 | (codePoint >> 18));
+                    write(0x80 | ((codePoint >> 12) & 0x3F));
+                    write(0x80 | ((codePoint >> 6) & 0x3F));
+                    write(0x80 | (codePoint & 0x3F));
+                }
+                else {
+                    write(0xE0 | (c >> 12));
+                    write(0x80 | ((c >> 6) & 0x3F));
+                    write(0x80 | (c & 0x3F));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.ociweb.greenspring.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// Rejection of a request body by a constraint the codec checks. The generated codecs create one
+// per constraint when they load and throw that same instance, so rejecting a record neither
+// allocates nor encodes: the 400 body was written once, next to the exception.
+public class GreenValidationException extends GreenStatusException {
+    private static final long serialVersionUID = 1L;
+    private static final byte[] FIELD = GreenJsonWriter.name("field");
+    private static final byte[] MESSAGE = GreenJsonWriter.name("message");
+
+    private final String field;
+    private final byte[] body;
+
+    public GreenValidationException(String field, String message) {
+        super(GreenErrorResponses.decodeStatusDefault, field + " " + message);
+        this.field = field;
+        this.body = encode(field, message);
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    // Shared by every request the constraint rejects, never modify it.
+    public byte[] getBody() {
+        return body;
+    }
+
+    private static byte[] encode(String field, String message) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            GreenJsonWriter json = new GreenJsonWriter().reset(out);
+            json.beginObject();
+            json.name(FIELD);
+            json.writeString(field);
+            json.comma();
+            json.name(MESSAGE);
+            json.writeString(message);
+            json.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,74 @@
+package com.ociweb.greenspring.runtime;
+
+import com.ociweb.gl.api.GreenCommandChannel;
+import com.ociweb.gl.api.HTTPRequestReader;
+import com.ociweb.gl.api.RestListener;
+import com.ociweb.gl.api.TimeListener;
+import com.ociweb.pronghorn.network.config.HTTPVerbDefaults;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Flat table of listeners indexed by route and verb. Every slot is filled when the behavior
+// registers, the unmapped ones with a shared 405 listener, so a request costs one array load.
+public class GreenVerbDispatch implements RestListener {
+    public static final int VERBS = HTTPVerbDefaults.values().length;
+
+    private final RestListener[] table;
+    private final int routeOffset;
+
+    public GreenVerbDispatch(int routeOffset, int routeCount, GreenCommandChannel channel) {
+        this.routeOffset = routeOffset;
+        this.table = new RestListener[routeCount * VERBS];
+        Arrays.fill(table, new MethodNotAllowed(channel));
+    }
+
+    public GreenVerbDispatch route(int routeId, HTTPVerbDefaults verb, RestListener listener) {
+        table[(routeId - routeOffset) * VERBS + verb.ordinal()] = listener;
+        return this;
+    }
+
+    @Override
+    public boolean restRequest(HTTPRequestReader httpRequestReader) {
+        return table[(httpRequestReader.getRouteId() - routeOffset) * VERBS + httpRequestReader.getVerb().ordinal()]
+                .restRequest(httpRequestReader);
+    }
+
+    // Used when a parallel route behind the table also needs the time pulse of its thread.
+    public static final class Timed extends GreenVerbDispatch implements TimeListener {
+        private final List<TimeListener> timed = new ArrayList<>();
+
+        public Timed(int routeOffset, int routeCount, GreenCommandChannel channel) {
+            super(routeOffset, routeCount, channel);
+        }
+
+        @Override
+        public GreenVerbDispatch route(int routeId, HTTPVerbDefaults verb, RestListener listener) {
+            if (listener instanceof TimeListener && !timed.contains(listener)) {
+                timed.add((TimeListener)listener);
+            }
+            return super.route(routeId, verb, listener);
+        }
+
+        @Override
+        public void timeEvent(long time, int iteration) {
+            for (int i = 0; i < timed.size(); i++) {
+                timed.get(i).timeEvent(time, iteration);
+            }
+        }
+    }
+
+    private static final class MethodNotAllowed implements RestListener {
+        private final GreenCommandChannel channel;
+
+        private MethodNotAllowed(GreenCommandChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public boolean restRequest(HTTPRequestReader httpRequestReader) {
+            return channel.publishHTTPResponse(httpRequestReader, 405);
+        }
+    }
+}
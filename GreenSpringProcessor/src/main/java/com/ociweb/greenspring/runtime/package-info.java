@@ -0,0 +1,4 @@
+package com.ociweb.greenspring.runtime;
+
+// This package contains the support classes referenced by the generated code at runtime.
+// There shall be no dependencies on serialization or Web MVC platforms.
\ No newline at end of file
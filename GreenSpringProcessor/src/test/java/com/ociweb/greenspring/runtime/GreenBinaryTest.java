@@ -0,0 +1,217 @@
+package com.ociweb.greenspring.runtime;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GreenBinaryTest {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final GreenBinaryWriter writer = new GreenBinaryWriter().reset(out);
+    private final GreenBinaryReader reader = new GreenBinaryReader();
+
+    @Test
+    public void numbersRoundTrip() throws IOException {
+        writer.writeBoolean(true);
+        writer.writeBoolean(false);
+        writer.writeByte(Byte.MIN_VALUE);
+        writer.writeShort(Short.MIN_VALUE);
+        writer.writeShort((short)-2);
+        writer.writeInt(Integer.MIN_VALUE);
+        writer.writeInt(-2);
+        writer.writeLong(Long.MIN_VALUE);
+        writer.writeLong(-2);
+        writer.writeFloat(0.1f);
+        writer.writeFloat(Float.NaN);
+        writer.writeDouble(0.1);
+        writer.writeDouble(Double.NEGATIVE_INFINITY);
+
+        GreenBinaryReader binary = reader();
+        assertTrue(binary.readBoolean());
+        assertFalse(binary.readBoolean());
+        assertEquals(Byte.MIN_VALUE, binary.readByte());
+        assertEquals(Short.MIN_VALUE, binary.readShort());
+        assertEquals(-2, binary.readShort());
+        assertEquals(Integer.MIN_VALUE, binary.readInt());
+        assertEquals(-2, binary.readInt());
+        assertEquals(Long.MIN_VALUE, binary.readLong());
+        assertEquals(-2, binary.readLong());
+        assertEquals(0.1f, binary.readFloat(), 0f);
+        assertTrue(Float.isNaN(binary.readFloat()));
+        assertEquals(0.1, binary.readDouble(), 0d);
+        assertEquals(Double.NEGATIVE_INFINITY, binary.readDouble(), 0d);
+        assertEnd();
+    }
+
+    @Test
+    public void markersAndItemsRoundTrip() throws IOException {
+        assertTrue(writer.writeMarker(true));
+        assertFalse(writer.writeMarker(false));
+        writer.writeItem();
+        writer.writeItem();
+        writer.writeEnd();
+
+        GreenBinaryReader binary = reader();
+        assertTrue(binary.readMarker());
+        assertFalse(binary.readMarker());
+        assertTrue(binary.hasNext());
+        assertTrue(binary.hasNext());
+        assertFalse(binary.hasNext());
+        assertEnd();
+    }
+
+    @Test
+    public void stringsRoundTrip() throws IOException {
+        String[] values = {"", "plain", "caf\u00e9 \u20ac \ud83d\ude00", null, "line\nbreak\u0000"};
+        for (String value : values) {
+            writer.writeString(value);
+        }
+        GreenBinaryReader binary = reader();
+        for (String value : values) {
+            assertEquals(value, binary.readString());
+        }
+        assertEnd();
+    }
+
+    @Test
+    public void repeatsAreReferencesToTheFirstInstance() throws IOException {
+        writer.writeString("red");
+        writer.writeString("green");
+        writer.writeString("red");
+        writer.writeEnum(TimeUnit.SECONDS);
+        writer.writeString("green");
+        writer.writeEnum(TimeUnit.SECONDS);
+        writer.writeEnum(null);
+        int repeated = out.size();
+
+        GreenBinaryReader binary = reader();
+        String red = binary.readString();
+        String green = binary.readString();
+        assertSame(red, binary.readString());
+        assertEquals(TimeUnit.SECONDS, binary.readEnum(TimeUnit.class));
+        assertSame(green, binary.readString());
+        assertEquals(TimeUnit.SECONDS, binary.readEnum(TimeUnit.class));
+        assertNull(binary.readEnum(TimeUnit.class));
+        assertEnd();
+
+        out.reset();
+        writer.reset(out);
+        writer.writeString("red");
+        writer.writeString("green");
+        writer.writeString("red");
+        writer.writeString("SECONDS");
+        writer.writeString("green");
+        writer.writeString("SECONDS");
+        writer.writeString(null);
+        assertEquals(repeated, out.size());
+    }
+
+    // A CharSequence that is not a String is never looked up, but it still takes a number,
+    // so the references written after it point at the same strings on both sides.
+    @Test
+    public void otherTextIsNumberedLikeTheReader() throws IOException {
+        writer.writeString(new StringBuilder("builder"));
+        writer.writeString("after");
+        writer.writeString(new StringBuilder("builder"));
+        writer.writeString("after");
+        writer.writeString("builder");
+        writer.writeString("builder");
+
+        GreenBinaryReader binary = reader();
+        assertEquals("builder", binary.readString());
+        String after = binary.readString();
+        assertEquals("after", after);
+        assertEquals("builder", binary.readString());
+        assertSame(after, binary.readString());
+        String builder = binary.readString();
+        assertEquals("builder", builder);
+        assertSame(builder, binary.readString());
+        assertEnd();
+    }
+
+    // Past the table's capacity strings are literals, the numbered ones still resolve.
+    @Test
+    public void stringsPastTheTableAreLiterals() throws IOException {
+        int strings = GreenBinaryWriter.tableCapacity + 100;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < strings; i++) {
+                writer.writeString(i % 3 == 0 ? new StringBuilder("s" + i) : "s" + i);
+            }
+        }
+        GreenBinaryReader binary = reader();
+        String[] first = new String[strings];
+        for (int i = 0; i < strings; i++) {
+            first[i] = binary.readString();
+            assertEquals("s" + i, first[i]);
+        }
+        for (int i = 0; i < strings; i++) {
+            String again = binary.readString();
+            assertEquals("s" + i, again);
+            if (i < GreenBinaryWriter.tableCapacity && i % 3 != 0) {
+                assertSame(first[i], again);
+            }
+        }
+        assertEnd();
+    }
+
+    @Test
+    public void resetForgetsTheTable() throws IOException {
+        writer.writeString("kept");
+        writer.writeString("kept");
+        GreenBinaryReader binary = reader();
+        assertEquals("kept", binary.readString());
+        assertEquals("kept", binary.readString());
+
+        out.reset();
+        writer.reset(out);
+        writer.writeString("kept");
+        binary = reader();
+        assertEquals("kept", binary.readString());
+        assertEnd();
+    }
+
+    @Test
+    public void malformedInputIsRejected() {
+        malformed(new byte[0], binary -> binary.readInt());
+        malformed(new byte[] {7}, binary -> binary.readMarker());
+        malformed(new byte[] {7}, binary -> binary.hasNext());
+        malformed(new byte[] {(byte)GreenBinaryWriter.REFERENCE}, binary -> binary.readString());
+        malformed(new byte[] {GreenBinaryWriter.LITERAL, 5, 'a', 'b'}, binary -> binary.readString());
+        malformed(new byte[] {(byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80, 1}, binary -> binary.readString());
+        malformed(new byte[] {GreenBinaryWriter.LITERAL, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07}, binary -> binary.readString());
+    }
+
+    private interface Read {
+        void read(GreenBinaryReader binary) throws IOException;
+    }
+
+    private void malformed(byte[] input, Read read) {
+        try {
+            read.read(reader.reset(new ByteArrayInputStream(input)));
+            fail("accepted " + Arrays.toString(input));
+        } catch (IOException expected) {
+        }
+    }
+
+    private GreenBinaryReader reader() {
+        return reader.reset(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private void assertEnd() {
+        try {
+            reader.readByte();
+            fail("input left over");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.ociweb.greenspring.runtime;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GreenInternTableTest {
+
+    @Test
+    public void knownKeysAreTheSameInstance() {
+        GreenInternTable table = new GreenInternTable(8);
+        String org = table.intern(new StringBuilder("ORG1"));
+        assertEquals("ORG1", org);
+        assertSame(org, table.intern(new StringBuilder("ORG1")));
+        assertSame(org, table.intern("ORG1"));
+        assertEquals(1, table.size());
+    }
+
+    // A table for 16 keys has 32 slots, all of them taken once every bucket has filled.
+    @Test
+    public void sizeStaysWithinTheSlots() {
+        GreenInternTable table = new GreenInternTable(16);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("key" + i, table.intern(new StringBuilder("key" + i)));
+        }
+        assertEquals(32, table.size());
+    }
+
+    @Test
+    public void keysInUseSurviveOneOffKeys() {
+        GreenInternTable table = new GreenInternTable(64);
+        String[] hot = new String[16];
+        for (int i = 0; i < hot.length; i++) {
+            hot[i] = table.intern(new StringBuilder("ORG" + i));
+        }
+        int oneOff = 0;
+        for (int round = 0; round < 1000; round++) {
+            for (int i = 0; i < hot.length; i++) {
+                assertSame(hot[i], table.intern(new StringBuilder("ORG" + i)));
+            }
+            for (int i = 0; i < 4; i++) {
+                table.intern(new StringBuilder("scan" + oneOff++));
+            }
+        }
+    }
+
+    @Test
+    public void newKeysReplaceKeysNoLongerUsed() {
+        GreenInternTable table = new GreenInternTable(32);
+        for (int i = 0; i < 32; i++) {
+            table.intern(new StringBuilder("old" + i));
+        }
+        String[] fresh = new String[16];
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < fresh.length; i++) {
+                fresh[i] = table.intern(new StringBuilder("new" + i));
+            }
+        }
+        int cached = 0;
+        for (int i = 0; i < fresh.length; i++) {
+            String again = table.intern(new StringBuilder("new" + i));
+            assertEquals(fresh[i], again);
+            cached += fresh[i] == again ? 1 : 0;
+        }
+        assertEquals(fresh.length, cached);
+        assertTrue(table.size() <= 64);
+    }
+}
@@ -0,0 +1,242 @@
+package com.ociweb.greenspring.runtime;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GreenJsonTest {
+    private static final byte[][] FIELDS = GreenJsonReader.names("id", "name", "ratio");
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final GreenJsonWriter writer = new GreenJsonWriter().reset(out);
+
+    @Test
+    public void floatsAreWrittenShortest() throws IOException {
+        assertEquals("0.1", written(0.1f));
+        assertEquals("1.1", written(1.1f));
+        assertEquals("-2.5", written(-2.5f));
+        assertEquals("100.0", written(100f));
+        assertEquals("-0.0", written(-0f));
+        assertEquals("3.4028235E38", written(Float.MAX_VALUE));
+    }
+
+    @Test
+    public void boxedFloatsAreWrittenShortest() throws IOException {
+        writer.writeNumber(0.1f);
+        assertEquals("0.1", text());
+    }
+
+    @Test
+    public void floatsRoundTrip() throws IOException {
+        Random random = new Random(42);
+        float[] values = new float[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Float.intBitsToFloat(random.nextInt());
+            if (Float.isNaN(values[i]) || Float.isInfinite(values[i])) {
+                values[i] = random.nextFloat() * 1000;
+            }
+        }
+        values[0] = Float.MIN_VALUE;
+        values[1] = Float.MIN_NORMAL;
+        values[2] = 1e-7f;
+        for (float value : values) {
+            out.reset();
+            writer.writeFloat(value);
+            assertEquals(text(), value, (float)reader().readDouble(), 0f);
+        }
+    }
+
+    @Test
+    public void doublesRoundTrip() throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            double value = i % 2 == 0 ? Double.longBitsToDouble(random.nextLong()) : random.nextDouble() * 1e6;
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                continue;
+            }
+            out.reset();
+            writer.writeDouble(value);
+            assertEquals(text(), value, reader().readDouble(), 0d);
+        }
+        assertEquals("0.1", written(0.1d));
+    }
+
+    @Test
+    public void longsRoundTrip() throws IOException {
+        long[] values = {0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE, 1234567890123L};
+        for (long value : values) {
+            out.reset();
+            writer.writeLong(value);
+            assertEquals(value, reader().readLong());
+        }
+    }
+
+    @Test
+    public void stringsRoundTrip() throws IOException {
+        String[] values = {"", "plain", "quote \" and \\ slash", "line\nbreak\ttab\u0001", "caf\u00e9 \u20ac \ud83d\ude00"};
+        for (String value : values) {
+            out.reset();
+            writer.writeString(value);
+            assertEquals(value, reader().readString());
+        }
+    }
+
+    @Test
+    public void objectsRoundTrip() throws IOException {
+        writer.beginObject();
+        writer.name(GreenJsonWriter.name("id"));
+        writer.writeInt(7);
+        writer.comma();
+        writer.name(GreenJsonWriter.name("extra"));
+        writer.beginArray();
+        writer.writeBoolean(true);
+        writer.comma();
+        writer.writeNull();
+        writer.endArray();
+        writer.comma();
+        writer.name(GreenJsonWriter.name("ratio"));
+        writer.writeFloat(0.3f);
+        writer.endObject();
+        assertEquals("{\"id\":7,\"extra\":[true,null],\"ratio\":0.3}", text());
+
+        GreenJsonReader json = reader();
+        assertTrue(json.beginObject());
+        assertEquals(0, json.nextField(FIELDS));
+        assertEquals(7, json.readInt());
+        assertEquals(GreenJsonReader.UNKNOWN, json.nextField(FIELDS));
+        json.skipValue();
+        assertEquals(2, json.nextField(FIELDS));
+        assertEquals(0.3f, (float)json.readDouble(), 0f);
+        assertEquals(GreenJsonReader.END, json.nextField(FIELDS));
+        json.end();
+    }
+
+    @Test
+    public void bytesAndShortsAreRangeChecked() throws IOException {
+        assertEquals(Byte.MIN_VALUE, reader("-128").readByte());
+        assertEquals(Byte.MAX_VALUE, reader("127").readByte());
+        assertEquals(Short.MIN_VALUE, reader("-32768").readShort());
+        assertEquals(Short.MAX_VALUE, reader("32767").readShort());
+        malformed("128", json -> json.readByte());
+        malformed("-129", json -> json.readByte());
+        malformed("32768", json -> json.readShort());
+        malformed("-32769", json -> json.readShort());
+        malformed("2147483648", json -> json.readInt());
+        malformed("9223372036854775808", json -> json.readLong());
+    }
+
+    @Test
+    public void trailingDataIsRejected() throws IOException {
+        GreenJsonReader padded = reader(" 12 \n");
+        assertEquals(12, padded.readInt());
+        padded.end();
+        malformed("12 13", json -> {
+            json.readInt();
+            json.end();
+        });
+        malformed("{} x", json -> {
+            json.skipValue();
+            json.end();
+        });
+        malformed("[1]]", json -> {
+            json.skipValue();
+            json.end();
+        });
+        malformed("\"a\"\"b\"", json -> {
+            json.readString();
+            json.end();
+        });
+    }
+
+    @Test
+    public void malformedInputIsRejected() throws IOException {
+        malformed("", json -> json.readInt());
+        malformed("01", json -> json.readInt());
+        malformed("-", json -> json.readInt());
+        malformed("1.", json -> json.readDouble());
+        malformed("1e", json -> json.readDouble());
+        malformed("tru", json -> json.readBoolean());
+        malformed("nul", json -> json.readString());
+        malformed("\"open", json -> json.readString());
+        malformed("\"\\u12\"", json -> json.readString());
+        malformed("[1 2]", json -> json.skipValue());
+        malformed("[1,]", json -> json.skipValue());
+        malformed("[1", json -> json.skipValue());
+        malformed("{\"id\" 1}", json -> json.skipValue());
+        malformed("{\"id\":1 \"name\":2}", json -> json.skipValue());
+        malformed("{\"id\":1", json -> json.skipValue());
+        StringBuilder deep = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            deep.append('[');
+        }
+        malformed(deep.toString(), json -> json.skipValue());
+    }
+
+    @Test
+    public void streamsCheckWhatFollowsTheArray() throws IOException {
+        GreenJsonStream<Integer> stream = new GreenJsonStream<>(GreenJsonReader::readInt);
+        int sum = 0;
+        for (int value : stream.reset(reader("[1, 2, 3] "))) {
+            sum += value;
+        }
+        assertEquals(6, sum);
+        stream.reset(reader("[1] 2"));
+        assertEquals(1, (int)stream.next());
+        try {
+            stream.hasNext();
+            fail("trailing data accepted");
+        } catch (GreenStatusException expected) {
+        }
+        assertFalse(stream.reset(reader("null")).hasNext());
+        try {
+            stream.reset(reader("null x"));
+            fail("trailing data accepted");
+        } catch (IOException expected) {
+        }
+    }
+
+    private interface Read {
+        void read(GreenJsonReader json) throws IOException;
+    }
+
+    private static void malformed(String input, Read read) {
+        try {
+            read.read(reader(input));
+            fail("accepted " + input);
+        } catch (IOException expected) {
+        }
+    }
+
+    private String written(float value) throws IOException {
+        out.reset();
+        writer.writeFloat(value);
+        return text();
+    }
+
+    private String written(double value) throws IOException {
+        out.reset();
+        writer.writeDouble(value);
+        return text();
+    }
+
+    private String text() {
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private GreenJsonReader reader() {
+        return new GreenJsonReader().reset(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static GreenJsonReader reader(String input) {
+        return new GreenJsonReader().reset(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+    }
+}